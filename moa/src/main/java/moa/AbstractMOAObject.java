@@ -19,6 +19,7 @@
  */
 package moa;
 
+import moa.core.ByteSizeTracker;
 import moa.core.SerializeUtils;
 import moa.core.SizeOf;
 
@@ -68,12 +69,16 @@ public abstract class AbstractMOAObject implements MOAObject {
     }
 
     /**
-     * Gets the memory size of an object.
+     * Gets the memory size of an object. Objects that keep track of their own
+     * size are not walked with the SizeOf agent.
      *
      * @param obj object to measure the memory size
      * @return the memory size of this object
      */
     public static int measureByteSize(MOAObject obj) {
+        if (obj instanceof ByteSizeTracker) {
+            return (int) ((ByteSizeTracker) obj).getTrackedByteSize();
+        }
         return (int) SizeOf.fullSizeOf(obj);
     }
 }
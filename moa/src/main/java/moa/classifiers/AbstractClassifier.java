@@ -32,6 +32,7 @@ import com.yahoo.labs.samoa.instances.InstancesHeader;
 
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.StageLatencies;
 import moa.core.StringUtils;
 import moa.gui.AWTRenderer;
 import moa.learners.Learner;
@@ -74,6 +75,13 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
     /** Random Generator used in randomizable learners  */
     public Random classifierRandom;
 
+    /** Latencies of training and prediction, kept when instrumentation is enabled */
+    protected StageLatencies classifierLatencies;
+
+    protected static final int TRAIN_STAGE = 0;
+
+    protected static final int PREDICT_STAGE = 1;
+
     /**
      * Creates an classifier and setups the random seed option
      * if the classifier is randomizable.
@@ -99,6 +107,12 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
 	
     @Override
     public double[] getVotesForInstance(Example<Instance> example){
+        if (StageLatencies.ENABLED) {
+            long start = System.nanoTime();
+            double[] votes = getVotesForInstance(example.getData());
+            getClassifierLatencies().record(PREDICT_STAGE, start);
+            return votes;
+        }
 		return getVotesForInstance(example.getData());
 	}
 
@@ -163,6 +177,7 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         if (isRandomizable()) {
             this.classifierRandom = new Random(this.randomSeed);
         }
+        resetLatencies();
         resetLearningImpl();
     }
 
@@ -175,7 +190,13 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         }
         if (isTraining) {
             this.trainingWeightSeenByModel += inst.weight();
-            trainOnInstanceImpl(inst);
+            if (StageLatencies.ENABLED) {
+                long start = System.nanoTime();
+                trainOnInstanceImpl(inst);
+                getClassifierLatencies().record(TRAIN_STAGE, start);
+            } else {
+                trainOnInstanceImpl(inst);
+            }
         }
     }
 
@@ -190,6 +211,9 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         if (modelMeasurements != null) {
             measurementList.addAll(Arrays.asList(modelMeasurements));
         }
+        if (this.classifierLatencies != null) {
+            this.classifierLatencies.getMeasurements(measurementList);
+        }
         // add average of sub-model measurements
         Learner[] subModels = getSublearners();
         if ((subModels != null) && (subModels.length > 0)) {
@@ -222,6 +246,26 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         }
     }
 
+    /**
+     * Gets the latencies of training and prediction, created when first
+     * needed. Prediction is only timed through getVotesForInstance(Example).
+     */
+    protected StageLatencies getClassifierLatencies() {
+        if (this.classifierLatencies == null) {
+            this.classifierLatencies = new StageLatencies("training", "prediction");
+        }
+        return this.classifierLatencies;
+    }
+
+    /**
+     * Drops the latencies measured on the previous model, called when
+     * learning is reset. Subclasses keeping latencies of their own
+     * components override it and call this method.
+     */
+    protected void resetLatencies() {
+        this.classifierLatencies = null;
+    }
+
     @Override
     public Learner[] getSublearners() {
         return getSubClassifiers();
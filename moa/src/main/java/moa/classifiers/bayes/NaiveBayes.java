@@ -19,6 +19,7 @@
  */
 package moa.classifiers.bayes;
 
+import java.util.Arrays;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
@@ -131,9 +132,24 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
     public static double[] doNaiveBayesPrediction(Instance inst,
             DoubleVector observedClassDistribution,
             AutoExpandVector<AttributeClassObserver> attributeObservers) {
-        double[] votes = new double[observedClassDistribution.numValues()];
+        return doNaiveBayesPrediction(inst, observedClassDistribution,
+                attributeObservers,
+                new double[observedClassDistribution.numValues()]);
+    }
+
+    /**
+     * Naive Bayes prediction into an array given by the caller, which must be
+     * at least as long as the class distribution. Entries past the end of the
+     * class distribution are set to zero.
+     */
+    public static double[] doNaiveBayesPrediction(Instance inst,
+            DoubleVector observedClassDistribution,
+            AutoExpandVector<AttributeClassObserver> attributeObservers,
+            double[] votes) {
+        int numClasses = observedClassDistribution.numValues();
+        Arrays.fill(votes, numClasses, votes.length, 0.0);
         double observedClassSum = observedClassDistribution.sumOfValues();
-        for (int classIndex = 0; classIndex < votes.length; classIndex++) {
+        for (int classIndex = 0; classIndex < numClasses; classIndex++) {
             votes[classIndex] = observedClassDistribution.getValue(classIndex)
                     / observedClassSum;
             for (int attIndex = 0; attIndex < inst.numAttributes() - 1; attIndex++) {
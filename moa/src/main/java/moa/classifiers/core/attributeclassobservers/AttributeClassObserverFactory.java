@@ -0,0 +1,82 @@
+/*
+ *    AttributeClassObserverFactory.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+
+/**
+ * Creates new attribute class observers configured like a prepared one.
+ *
+ * <p>Copying a prepared observer serializes and deserializes it, which is
+ * costly when a new leaf needs an observer for every attribute. The factory
+ * instead constructs observers of the same class and only sets the options
+ * that differ from their defaults. Observers without a public constructor
+ * without arguments are still copied.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class AttributeClassObserverFactory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected AttributeClassObserver prototype;
+
+    // the options of the prototype, empty if they are all defaults
+    protected String optionsCLIString;
+
+    protected boolean copyPrototype;
+
+    // resolved again after deserialization, as constructors are not serializable
+    protected transient Constructor<? extends AttributeClassObserver> constructor;
+
+    public AttributeClassObserverFactory(AttributeClassObserver prototype) {
+        this.prototype = prototype;
+        this.optionsCLIString = prototype.getOptions().getAsCLIString();
+        this.copyPrototype = getConstructor() == null;
+    }
+
+    protected Constructor<? extends AttributeClassObserver> getConstructor() {
+        if (this.constructor == null) {
+            try {
+                this.constructor = this.prototype.getClass().getConstructor();
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        return this.constructor;
+    }
+
+    public AttributeClassObserver newObserver() {
+        if (this.copyPrototype) {
+            return (AttributeClassObserver) this.prototype.copy();
+        }
+        AttributeClassObserver observer;
+        try {
+            observer = getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot create attribute class observer "
+                    + this.prototype.getClass().getName(), e);
+        }
+        if (this.optionsCLIString.length() > 0) {
+            observer.getOptions().setViaCLIString(this.optionsCLIString);
+        }
+        observer.prepareForUse();
+        return observer;
+    }
+}
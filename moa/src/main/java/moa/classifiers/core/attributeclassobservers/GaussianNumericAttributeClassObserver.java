@@ -23,16 +23,18 @@ import moa.core.ObjectRepository;
 import moa.tasks.TaskMonitor;
 import moa.core.Utils;
 
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Arrays;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 
 import moa.core.AutoExpandVector;
+import moa.core.ByteSizeTracker;
 import moa.core.DoubleVector;
 import moa.core.GaussianEstimator;
+import moa.core.SizeOf;
 import moa.options.AbstractOptionHandler;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 
 /**
@@ -44,7 +46,7 @@ import com.github.javacliparser.IntOption;
  * @version $Revision: 7 $
  */
 public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
-        implements NumericAttributeClassObserver {
+        implements NumericAttributeClassObserver, ByteSizeTracker {
 
     private static final long serialVersionUID = 1L;
 
@@ -57,6 +59,19 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
     public IntOption numBinsOption = new IntOption("numBins", 'n',
             "The number of bins.", 10, 1, Integer.MAX_VALUE);
 
+    public FlagOption fastNormalApproximationOption = new FlagOption("fastNormalApproximation", 'f',
+            "Evaluate the splits with an approximation of the normal distribution, within 1e-7 of the exact one.");
+
+    // split values and class distributions of the last evaluation, dropped
+    // whenever the statistics change
+    protected transient double[] lastSplitValues;
+
+    protected transient double[][][] lastPostSplitDists;
+
+    protected transient int lastNumBins;
+
+    protected transient boolean lastFastApproximation;
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
         if (Utils.isMissingValue(attVal)) {
@@ -76,9 +91,19 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
                 }
             }
             valDist.addObservation(attVal, weight);
+            invalidateSplitCache();
         }
     }
 
+    /**
+     * Drops the class distributions of the last evaluated splits. Subclasses
+     * must call it whenever they change or replace the statistics.
+     */
+    protected void invalidateSplitCache() {
+        this.lastSplitValues = null;
+        this.lastPostSplitDists = null;
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
@@ -90,23 +115,39 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
     public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
             SplitCriterion criterion, double[] preSplitDist, int attIndex,
             boolean binaryOnly) {
-        AttributeSplitSuggestion bestSuggestion = null;
-        double[] suggestedSplitValues = getSplitPointSuggestions();
-        for (double splitValue : suggestedSplitValues) {
-            double[][] postSplitDists = getClassDistsResultingFromBinarySplit(splitValue);
+        int numBins = this.numBinsOption.getValue();
+        boolean fastApproximation = this.fastNormalApproximationOption.isSet();
+        if ((this.lastPostSplitDists == null) || (this.lastNumBins != numBins)
+                || (this.lastFastApproximation != fastApproximation)) {
+            this.lastSplitValues = getSplitPointSuggestions();
+            this.lastPostSplitDists = getClassDistsResultingFromBinarySplits(
+                    this.lastSplitValues, fastApproximation);
+            this.lastNumBins = numBins;
+            this.lastFastApproximation = fastApproximation;
+        }
+        // only the merits are computed again, as the criterion and the
+        // distribution before the split may have changed
+        int best = -1;
+        double bestMerit = 0.0;
+        for (int i = 0; i < this.lastSplitValues.length; i++) {
             double merit = criterion.getMeritOfSplit(preSplitDist,
-                    postSplitDists);
-            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
-                bestSuggestion = new AttributeSplitSuggestion(
-                        new NumericAttributeBinaryTest(attIndex, splitValue,
-                        true), postSplitDists, merit);
+                    this.lastPostSplitDists[i]);
+            if ((best == -1) || (merit > bestMerit)) {
+                best = i;
+                bestMerit = merit;
             }
         }
-        return bestSuggestion;
+        if (best == -1) {
+            return null;
+        }
+        double[][] postSplitDists = this.lastPostSplitDists[best];
+        return new AttributeSplitSuggestion(
+                new NumericAttributeBinaryTest(attIndex, this.lastSplitValues[best],
+                true), new double[][]{postSplitDists[0].clone(), postSplitDists[1].clone()},
+                bestMerit);
     }
 
     public double[] getSplitPointSuggestions() {
-        Set<Double> suggestedSplitValues = new TreeSet<Double>();
         double minValue = Double.POSITIVE_INFINITY;
         double maxValue = Double.NEGATIVE_INFINITY;
         for (int i = 0; i < this.attValDistPerClass.size(); i++) {
@@ -120,22 +161,22 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
                 }
             }
         }
-        if (minValue < Double.POSITIVE_INFINITY) {
-            double range = maxValue - minValue;
-            for (int i = 0; i < this.numBinsOption.getValue(); i++) {
-                double splitValue = range / (this.numBinsOption.getValue() + 1.0) * (i + 1)
-                        + minValue;
-                if ((splitValue > minValue) && (splitValue < maxValue)) {
-                    suggestedSplitValues.add(splitValue);
-                }
-            }
+        if (!(minValue < Double.POSITIVE_INFINITY)) {
+            return new double[0];
         }
-        double[] suggestions = new double[suggestedSplitValues.size()];
-        int i = 0;
-        for (double suggestion : suggestedSplitValues) {
-            suggestions[i++] = suggestion;
+        double range = maxValue - minValue;
+        double[] suggestions = new double[this.numBinsOption.getValue()];
+        int numSuggestions = 0;
+        for (int i = 0; i < this.numBinsOption.getValue(); i++) {
+            double splitValue = range / (this.numBinsOption.getValue() + 1.0) * (i + 1)
+                    + minValue;
+            // the values never decrease, so equal ones are next to each other
+            if ((splitValue > minValue) && (splitValue < maxValue)
+                    && ((numSuggestions == 0) || (splitValue != suggestions[numSuggestions - 1]))) {
+                suggestions[numSuggestions++] = splitValue;
+            }
         }
-        return suggestions;
+        return Arrays.copyOf(suggestions, numSuggestions);
     }
 
     // assume all values equal to splitValue go to lhs
@@ -159,6 +200,115 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
         return new double[][]{lhsDist.getArrayRef(), rhsDist.getArrayRef()};
     }
 
+    /**
+     * Gets the class distributions resulting from binary splits on several
+     * values, in a single pass over the estimators of the classes. Gives the
+     * same distributions as getClassDistsResultingFromBinarySplit, unless the
+     * normal distribution is approximated.
+     *
+     * @param splitValues the values of the splits
+     * @param fastApproximation whether the normal distribution is computed
+     * with the approximation 26.2.17 of Abramowitz and Stegun, which shares
+     * its exponential with the density
+     * @return the distributions of the left and right branches of each split
+     */
+    public double[][][] getClassDistsResultingFromBinarySplits(double[] splitValues,
+            boolean fastApproximation) {
+        int numClasses = 0;
+        for (int i = 0; i < this.attValDistPerClass.size(); i++) {
+            if (this.attValDistPerClass.get(i) != null) {
+                numClasses = i + 1;
+            }
+        }
+        int numSplits = splitValues.length;
+        double[] lhsDists = new double[numSplits * numClasses];
+        double[] rhsDists = new double[numSplits * numClasses];
+        // the branches only have the classes that reached them, as with DoubleVector
+        int[] lhsLengths = new int[numSplits];
+        int[] rhsLengths = new int[numSplits];
+        for (int i = 0; i < numClasses; i++) {
+            GaussianEstimator estimator = this.attValDistPerClass.get(i);
+            if (estimator == null) {
+                continue;
+            }
+            double minValue = this.minValueObservedPerClass.getValue(i);
+            double maxValue = this.maxValueObservedPerClass.getValue(i);
+            double weight = estimator.getTotalWeightObserved();
+            double mean = estimator.getMean();
+            double stdDev = estimator.getStdDev();
+            double densityScale = 1.0 / (GaussianEstimator.NORMAL_CONSTANT * stdDev);
+            double twoVariance = 2.0 * stdDev * stdDev;
+            for (int j = 0; j < numSplits; j++) {
+                double splitValue = splitValues[j];
+                int offset = j * numClasses + i;
+                if (splitValue < minValue) {
+                    rhsDists[offset] += weight;
+                    rhsLengths[j] = i + 1;
+                } else if (splitValue >= maxValue) {
+                    lhsDists[offset] += weight;
+                    lhsLengths[j] = i + 1;
+                } else {
+                    double lessThanWeight;
+                    double equalToWeight;
+                    double greaterThanWeight;
+                    if (stdDev > 0.0) {
+                        double diff = splitValue - mean;
+                        double density;
+                        double probability;
+                        if (fastApproximation) {
+                            double z = diff / stdDev;
+                            density = densityScale * Math.exp(-0.5 * z * z);
+                            double t = 1.0 / (1.0 + 0.2316419 * Math.abs(z));
+                            double tail = density * stdDev * t * (0.319381530 + t * (-0.356563782
+                                    + t * (1.781477937 + t * (-1.821255978 + t * 1.330274429))));
+                            probability = z < 0.0 ? tail : 1.0 - tail;
+                        } else {
+                            density = densityScale * Math.exp(-(diff * diff / twoVariance));
+                            probability = moa.core.Statistics.normalProbability(diff / stdDev);
+                        }
+                        equalToWeight = density * weight;
+                        lessThanWeight = probability * weight - equalToWeight;
+                        greaterThanWeight = weight - equalToWeight - lessThanWeight;
+                        if (greaterThanWeight < 0.0) {
+                            greaterThanWeight = 0.0;
+                        }
+                    } else {
+                        double[] weightDist = estimator.estimatedWeight_LessThan_EqualTo_GreaterThan_Value(splitValue);
+                        lessThanWeight = weightDist[0];
+                        equalToWeight = weightDist[1];
+                        greaterThanWeight = weightDist[2];
+                    }
+                    lhsDists[offset] += lessThanWeight + equalToWeight;
+                    rhsDists[offset] += greaterThanWeight;
+                    lhsLengths[j] = i + 1;
+                    rhsLengths[j] = i + 1;
+                }
+            }
+        }
+        double[][][] postSplitDists = new double[numSplits][][];
+        for (int j = 0; j < numSplits; j++) {
+            int offset = j * numClasses;
+            postSplitDists[j] = new double[][]{
+                Arrays.copyOfRange(lhsDists, offset, offset + lhsLengths[j]),
+                Arrays.copyOfRange(rhsDists, offset, offset + rhsLengths[j])};
+        }
+        return postSplitDists;
+    }
+
+    @Override
+    public long getTrackedByteSize() {
+        long size = SizeOf.sizeOfObject(5 * SizeOf.REFERENCE_BYTES)
+                + this.minValueObservedPerClass.getTrackedByteSize()
+                + this.maxValueObservedPerClass.getTrackedByteSize()
+                + SizeOf.sizeOfArrayList(this.attValDistPerClass.size());
+        for (GaussianEstimator estimator : this.attValDistPerClass) {
+            if (estimator != null) {
+                size += estimator.getTrackedByteSize();
+            }
+        }
+        return size;
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
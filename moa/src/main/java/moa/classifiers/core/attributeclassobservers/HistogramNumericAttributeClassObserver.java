@@ -0,0 +1,356 @@
+/*
+ *    HistogramNumericAttributeClassObserver.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.ByteSizeTracker;
+import moa.core.GaussianEstimator;
+import moa.core.ObjectRepository;
+import moa.core.SizeOf;
+import moa.core.Utils;
+import moa.options.AbstractOptionHandler;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Class for observing the class data distribution for a numeric attribute
+ * using a streaming histogram with a fixed number of bins.
+ *
+ * <p>All statistics live in one contiguous block of doubles, either a heap
+ * array or a direct (off-heap) buffer. The block holds the per class weight,
+ * mean and variance sum used for naive Bayes, followed by one row per bin
+ * with the bin centroid and its per class weights. When a new value would
+ * exceed the bin budget the two closest bins are merged, as in the streaming
+ * histogram of Ben-Haim and Tom-Tov, so the memory used by the observer only
+ * grows when a new class is seen.</p>
+ *
+ * <p>Y. Ben-Haim and E. Tom-Tov. A streaming parallel decision tree algorithm.
+ * Journal of Machine Learning Research, 11:849-872, 2010.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class HistogramNumericAttributeClassObserver extends AbstractOptionHandler
+        implements NumericAttributeClassObserver, ByteSizeTracker {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Values stored per class before the bins: weight, mean, variance sum. */
+    protected static final int CLASS_STATS_WIDTH = 3;
+
+    /** Approximate size of the object itself, excluding the statistics. */
+    protected static final int SHALLOW_BYTE_SIZE = 48;
+
+    public IntOption numBinsOption = new IntOption("numBins", 'n',
+            "The maximum number of bins.", 100, 2, Integer.MAX_VALUE);
+
+    public FlagOption offHeapOption = new FlagOption("offHeap", 'o',
+            "Keep the statistics in a direct buffer outside the Java heap.");
+
+    protected transient DoubleBuffer statistics;
+
+    protected int numClasses;
+
+    protected int numBins;
+
+    protected int maxBins;
+
+    @Override
+    public void observeAttributeClass(double attVal, int classVal, double weight) {
+        if (Utils.isMissingValue(attVal) || Double.isInfinite(attVal)) {
+            return;
+        }
+        ensureClassCapacity(classVal);
+        updateClassStatistics(classVal, attVal, weight);
+        int index = findBin(attVal);
+        if ((index < this.numBins) && (centroid(index) == attVal)) {
+            addToBinWeight(index, classVal, weight);
+            return;
+        }
+        // open a row for the new value
+        for (int bin = this.numBins; bin > index; bin--) {
+            copyBin(bin - 1, bin);
+        }
+        int offset = binOffset(index);
+        this.statistics.put(offset, attVal);
+        for (int i = 0; i < this.numClasses; i++) {
+            this.statistics.put(offset + 1 + i, 0.0);
+        }
+        addToBinWeight(index, classVal, weight);
+        this.numBins++;
+        if (this.numBins > this.maxBins) {
+            mergeClosestBins();
+        }
+    }
+
+    @Override
+    public double probabilityOfAttributeValueGivenClass(double attVal,
+            int classVal) {
+        if ((this.statistics == null) || (classVal >= this.numClasses)) {
+            return 0.0;
+        }
+        int offset = classVal * CLASS_STATS_WIDTH;
+        double weightSum = this.statistics.get(offset);
+        if (weightSum > 0.0) {
+            double mean = this.statistics.get(offset + 1);
+            double variance = weightSum > 1.0
+                    ? this.statistics.get(offset + 2) / (weightSum - 1.0) : 0.0;
+            double stdDev = Math.sqrt(variance);
+            if (stdDev > 0.0) {
+                double diff = attVal - mean;
+                return (1.0 / (GaussianEstimator.NORMAL_CONSTANT * stdDev))
+                        * Math.exp(-(diff * diff / (2.0 * stdDev * stdDev)));
+            }
+            return attVal == mean ? 1.0 : 0.0;
+        }
+        return 0.0;
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly) {
+        if (this.numBins < 2) {
+            return null;
+        }
+        double[] leftDist = new double[this.numClasses];
+        double[] rightDist = new double[this.numClasses];
+        for (int bin = 0; bin < this.numBins; bin++) {
+            int offset = binOffset(bin) + 1;
+            for (int i = 0; i < this.numClasses; i++) {
+                rightDist[i] += this.statistics.get(offset + i);
+            }
+        }
+        double[][] postSplitDists = new double[][]{leftDist, rightDist};
+        AttributeSplitSuggestion bestSuggestion = null;
+        for (int bin = 0; bin < this.numBins - 1; bin++) {
+            int offset = binOffset(bin) + 1;
+            for (int i = 0; i < this.numClasses; i++) {
+                double binWeight = this.statistics.get(offset + i);
+                leftDist[i] += binWeight;
+                rightDist[i] -= binWeight;
+            }
+            double merit = criterion.getMeritOfSplit(preSplitDist,
+                    postSplitDists);
+            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
+                double splitValue = (centroid(bin) + centroid(bin + 1)) / 2.0;
+                bestSuggestion = new AttributeSplitSuggestion(
+                        new NumericAttributeBinaryTest(attIndex, splitValue,
+                        true), new double[][]{leftDist.clone(),
+                            rightDist.clone()}, merit);
+            }
+        }
+        return bestSuggestion;
+    }
+
+    /**
+     * Gets the exact number of bytes held by the statistics of this observer,
+     * on or off the heap.
+     *
+     * @return the size of the statistics in bytes
+     */
+    public int getStatisticsByteSize() {
+        if (this.statistics == null) {
+            return 0;
+        }
+        int size = this.statistics.capacity() * 8;
+        return this.statistics.isDirect() ? size : size + SizeOf.ARRAY_HEADER_BYTES;
+    }
+
+    public int getNumBins() {
+        return this.numBins;
+    }
+
+    @Override
+    public long getTrackedByteSize() {
+        return SHALLOW_BYTE_SIZE + getStatisticsByteSize();
+    }
+
+    protected int binOffset(int bin) {
+        return this.numClasses * CLASS_STATS_WIDTH + bin * (this.numClasses + 1);
+    }
+
+    protected double centroid(int bin) {
+        return this.statistics.get(binOffset(bin));
+    }
+
+    protected void addToBinWeight(int bin, int classVal, double weight) {
+        int offset = binOffset(bin) + 1 + classVal;
+        this.statistics.put(offset, this.statistics.get(offset) + weight);
+    }
+
+    protected void copyBin(int from, int to) {
+        int fromOffset = binOffset(from);
+        int toOffset = binOffset(to);
+        for (int i = 0; i <= this.numClasses; i++) {
+            this.statistics.put(toOffset + i, this.statistics.get(fromOffset + i));
+        }
+    }
+
+    /**
+     * Finds the first bin whose centroid is not smaller than the value.
+     */
+    protected int findBin(double attVal) {
+        int min = 0;
+        int max = this.numBins;
+        while (min < max) {
+            int mid = (min + max) >>> 1;
+            if (centroid(mid) < attVal) {
+                min = mid + 1;
+            } else {
+                max = mid;
+            }
+        }
+        return min;
+    }
+
+    protected void mergeClosestBins() {
+        int closest = 0;
+        double minGap = Double.POSITIVE_INFINITY;
+        for (int bin = 0; bin < this.numBins - 1; bin++) {
+            double gap = centroid(bin + 1) - centroid(bin);
+            if (gap < minGap) {
+                minGap = gap;
+                closest = bin;
+            }
+        }
+        int leftOffset = binOffset(closest);
+        int rightOffset = binOffset(closest + 1);
+        double leftWeight = 0.0;
+        double rightWeight = 0.0;
+        for (int i = 1; i <= this.numClasses; i++) {
+            leftWeight += this.statistics.get(leftOffset + i);
+            rightWeight += this.statistics.get(rightOffset + i);
+            this.statistics.put(leftOffset + i, this.statistics.get(leftOffset + i)
+                    + this.statistics.get(rightOffset + i));
+        }
+        if (leftWeight + rightWeight > 0.0) {
+            this.statistics.put(leftOffset, (this.statistics.get(leftOffset) * leftWeight
+                    + this.statistics.get(rightOffset) * rightWeight)
+                    / (leftWeight + rightWeight));
+        }
+        for (int bin = closest + 2; bin < this.numBins; bin++) {
+            copyBin(bin, bin - 1);
+        }
+        this.numBins--;
+    }
+
+    protected void updateClassStatistics(int classVal, double attVal,
+            double weight) {
+        int offset = classVal * CLASS_STATS_WIDTH;
+        double weightSum = this.statistics.get(offset);
+        if (weightSum > 0.0) {
+            weightSum += weight;
+            double lastMean = this.statistics.get(offset + 1);
+            double mean = lastMean + weight * (attVal - lastMean) / weightSum;
+            this.statistics.put(offset, weightSum);
+            this.statistics.put(offset + 1, mean);
+            this.statistics.put(offset + 2, this.statistics.get(offset + 2)
+                    + weight * (attVal - lastMean) * (attVal - mean));
+        } else {
+            this.statistics.put(offset, weight);
+            this.statistics.put(offset + 1, attVal);
+        }
+    }
+
+    /**
+     * Makes room for the given class, moving the existing statistics into a
+     * larger block. Only happens when a class is observed for the first time.
+     */
+    protected void ensureClassCapacity(int classVal) {
+        if ((this.statistics != null) && (classVal < this.numClasses)) {
+            return;
+        }
+        int newNumClasses = Math.max(classVal + 1, 2);
+        if (this.statistics == null) {
+            this.maxBins = this.numBinsOption.getValue();
+            this.numBins = 0;
+        }
+        DoubleBuffer newStatistics = allocate(newNumClasses * CLASS_STATS_WIDTH
+                + (this.maxBins + 1) * (newNumClasses + 1));
+        if (this.statistics != null) {
+            for (int i = 0; i < this.numClasses * CLASS_STATS_WIDTH; i++) {
+                newStatistics.put(i, this.statistics.get(i));
+            }
+            for (int bin = 0; bin < this.numBins; bin++) {
+                int fromOffset = binOffset(bin);
+                int toOffset = newNumClasses * CLASS_STATS_WIDTH + bin * (newNumClasses + 1);
+                for (int i = 0; i <= this.numClasses; i++) {
+                    newStatistics.put(toOffset + i, this.statistics.get(fromOffset + i));
+                }
+            }
+        }
+        this.statistics = newStatistics;
+        this.numClasses = newNumClasses;
+    }
+
+    protected DoubleBuffer allocate(int capacity) {
+        if (this.offHeapOption.isSet()) {
+            return ByteBuffer.allocateDirect(capacity * 8).order(
+                    ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+        return DoubleBuffer.wrap(new double[capacity]);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (this.statistics == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(this.statistics.capacity());
+            for (int i = 0; i < this.statistics.capacity(); i++) {
+                out.writeDouble(this.statistics.get(i));
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        int capacity = in.readInt();
+        if (capacity >= 0) {
+            this.statistics = allocate(capacity);
+            for (int i = 0; i < capacity; i++) {
+                this.statistics.put(i, in.readDouble());
+            }
+        }
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        // TODO Auto-generated method stub
+    }
+
+    @Override
+    public void observeAttributeTarget(double attVal, double target) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+}
@@ -28,7 +28,9 @@ import moa.tasks.TaskMonitor;
 import moa.core.Utils;
 
 import moa.core.AutoExpandVector;
+import moa.core.ByteSizeTracker;
 import moa.core.DoubleVector;
+import moa.core.SizeOf;
 import moa.options.AbstractOptionHandler;
 
 /**
@@ -40,7 +42,7 @@ import moa.options.AbstractOptionHandler;
  * @version $Revision: 7 $
  */
 public class NominalAttributeClassObserver extends AbstractOptionHandler implements
-        DiscreteAttributeClassObserver {
+        DiscreteAttributeClassObserver, ByteSizeTracker {
 
     private static final long serialVersionUID = 1L;
 
@@ -74,6 +76,18 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
                 / (obs.sumOfValues() + obs.numValues()) : 0.0;
     }
 
+    @Override
+    public long getTrackedByteSize() {
+        long size = SizeOf.sizeOfObject(2 * 8 + 2 * SizeOf.REFERENCE_BYTES)
+                + SizeOf.sizeOfArrayList(this.attValDistPerClass.size());
+        for (DoubleVector valDist : this.attValDistPerClass) {
+            if (valDist != null) {
+                size += valDist.getTrackedByteSize();
+            }
+        }
+        return size;
+    }
+
     public double totalWeightOfClassObservations() {
         return this.totalWeightObserved;
     }
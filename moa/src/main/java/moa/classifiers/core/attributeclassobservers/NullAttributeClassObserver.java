@@ -21,7 +21,9 @@ package moa.classifiers.core.attributeclassobservers;
 
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.ByteSizeTracker;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
 
@@ -34,7 +36,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class NullAttributeClassObserver extends AbstractOptionHandler implements
-        AttributeClassObserver {
+        AttributeClassObserver, ByteSizeTracker {
 
     private static final long serialVersionUID = 1L;
 
@@ -56,6 +58,11 @@ public class NullAttributeClassObserver extends AbstractOptionHandler implements
         return 0.0;
     }
 
+    @Override
+    public long getTrackedByteSize() {
+        return SizeOf.sizeOfObject(SizeOf.REFERENCE_BYTES);
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
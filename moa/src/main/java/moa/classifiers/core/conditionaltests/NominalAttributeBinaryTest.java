@@ -69,4 +69,8 @@ public class NominalAttributeBinaryTest extends InstanceConditionalBinaryTest {
     public int[] getAttsTestDependsOn() {
         return new int[]{this.attIndex};
     }
+
+    public int getAttValue() {
+        return this.attValue;
+    }
 }
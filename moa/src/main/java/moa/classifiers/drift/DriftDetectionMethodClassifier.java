@@ -26,6 +26,7 @@ import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.meta.WEKAClassifier;
 import moa.core.Measurement;
+import moa.core.StageLatencies;
 import moa.core.Utils;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.options.ClassOption;
@@ -98,6 +99,15 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier implement
 
     protected int warningDetected = 0;
 
+    // latency of the change detector, kept when instrumentation is enabled
+    protected StageLatencies detectorLatencies;
+
+    @Override
+    protected void resetLatencies() {
+        super.resetLatencies();
+        this.detectorLatencies = null;
+    }
+
     @Override
     public void trainOnInstanceImpl(Instance inst) {
         //this.numberInstances++;
@@ -109,7 +119,16 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier implement
             prediction = false;
         }
         //this.ddmLevel = this.driftDetectionMethod.computeNextVal(prediction);
-        this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
+        if (StageLatencies.ENABLED) {
+            long start = System.nanoTime();
+            this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
+            if (this.detectorLatencies == null) {
+                this.detectorLatencies = new StageLatencies("drift detector input");
+            }
+            this.detectorLatencies.record(0, start);
+        } else {
+            this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
+        }
         this.ddmLevel = DDM_INCONTROL_LEVEL;
         if (this.driftDetectionMethod.getChange()) {
          this.ddmLevel =  DDM_OUTCONTROL_LEVEL;
@@ -180,6 +199,9 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier implement
                 measurementList.add(measurement);
             }
         }
+        if (this.detectorLatencies != null) {
+            this.detectorLatencies.getMeasurements(measurementList);
+        }
         this.changeDetected = 0;
         this.warningDetected = 0;
         return measurementList.toArray(new Measurement[measurementList.size()]);
@@ -20,6 +20,7 @@ import java.util.*;
 import com.yahoo.labs.samoa.instances.InstanceImpl;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.lazy.neighboursearch.SlidingWindowIndex;
 import moa.core.Measurement;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
@@ -83,7 +84,17 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 	private List<Integer> stmHistory;
 	private List<Integer> ltmHistory;
 	private List<Integer> cmHistory;
-	private double[][] distanceMatrixSTM;
+	//distances of each STM sample to the ones before it, one row per sample in a ring ordered like the STM.
+	//A row starts at the sample that was the oldest of the STM when the row was added, so discarding the
+	//oldest samples only moves the head of the ring.
+	private double[][] distancesSTM;
+	private long[] distancesSTMStart;
+	private int distancesSTMHead;
+	//number of samples discarded from the STM so far
+	private long stmFirstSequence;
+	//flat copies of the STM and LTM, for the distance computations
+	private SlidingWindowIndex stmIndex;
+	private SlidingWindowIndex ltmIndex;
 	//private int trainStepCount;
 	private Map<Integer, List<Integer>> predictionHistories;
 	private Random random;
@@ -94,8 +105,11 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
     	this.stmHistory = new ArrayList<>();
     	this.ltmHistory = new ArrayList<>();
     	this.cmHistory = new ArrayList<>();
-    	//store calculated STM distances in a matrix to avoid recalculation, are reused in the STM adaption phase
-		this.distanceMatrixSTM = new double[limitOption.getValue()+1][limitOption.getValue()+1];
+    	//store calculated STM distances to avoid recalculation, are reused in the STM adaption phase
+		this.distancesSTM = new double[limitOption.getValue()+1][];
+		this.distancesSTMStart = new long[limitOption.getValue()+1];
+		this.distancesSTMHead = 0;
+		this.stmFirstSequence = 0;
 		this.predictionHistories = new HashMap<>();
 		this.random = new Random();
 
@@ -108,6 +122,8 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 			this.stm.setClassIndex(context.classIndex());
 			this.ltm = new Instances(context,0); 
 			this.ltm.setClassIndex(context.classIndex());
+			this.stmIndex = new SlidingWindowIndex(this.stm);
+			this.ltmIndex = new SlidingWindowIndex(this.ltm);
 			this.init();
 		} catch(Exception e) {
 			System.err.println("Error: no Model Context available.");
@@ -120,10 +136,13 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
     public void resetLearningImpl() {
 		this.stm = null;
 		this.ltm = null;
+		this.stmIndex = null;
+		this.ltmIndex = null;
 		this.stmHistory = null;
 		this.ltmHistory = null;
 		this.cmHistory = null;
-		this.distanceMatrixSTM = null;
+		this.distancesSTM = null;
+		this.distancesSTMStart = null;
 		this.predictionHistories = null;
     }
 
@@ -133,28 +152,23 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 		if (inst.classValue() > maxClassValue)
 			maxClassValue = (int)inst.classValue();
 		this.stm.add(inst);
+		this.stmIndex.add(this.stm.get(this.stm.numInstances() - 1));
 		memorySizeCheck();
+		this.addSTMDistances(this.get1ToNDistances(inst, this.stm));
 		clean(this.stm, this.ltm, true);
-		double distancesSTM[] = this.get1ToNDistances(inst, this.stm);
-		for (int i =0; i < this.stm.numInstances();i++){
-			this.distanceMatrixSTM[this.stm.numInstances()-1][i] = distancesSTM[i];
-		}
 		int oldWindowSize = this.stm.numInstances();
 		int newWindowSize = this.getNewSTMSize(recalculateSTMErrorOption.isSet());
 
 		if (newWindowSize < oldWindowSize) {
 			int diff = oldWindowSize - newWindowSize;
-			Instances discardedSTMInstances = new Instances(this.stm, 0);
+			//adding to Instances copies
+			Instances discardedSTMInstances = new Instances(this.stm, 0, diff);
 
 			for (int i = diff; i>0;i--){
-				discardedSTMInstances.add(this.stm.get(0).copy());
 				this.stm.delete(0);
+				this.stmIndex.delete(0);
 			}
-			for (int i = 0; i < this.stm.numInstances(); i++){
-				for (int j = 0; j < this.stm.numInstances(); j++){
-					this.distanceMatrixSTM[i][j] = this.distanceMatrixSTM[diff+i][diff+j];
-				}
-			}
+			this.discardSTMDistances(diff);
 			for (int i = 0; i < diff; i++) {
 				this.stmHistory.remove(0);
 				this.ltmHistory.remove(0);
@@ -163,7 +177,8 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 
 			this.clean(this.stm, discardedSTMInstances, false);
 			for (int i = 0; i < discardedSTMInstances.numInstances(); i++){
-				this.ltm.add(discardedSTMInstances.get(i).copy());
+				this.ltm.add(discardedSTMInstances.get(i));
+				this.ltmIndex.add(this.ltm.get(this.ltm.numInstances() - 1));
 			}
 			memorySizeCheck();
 		}
@@ -292,6 +307,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 			}
 
 		}
+		this.ltmIndex = new SlidingWindowIndex(this.ltm);
 	}
 
     /**
@@ -304,34 +320,39 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 			}else{ //shift values from STM directly to LTM since STM is full
 				int numShifts = this.maxLTMSize - this.ltm.numInstances() + 1;
 				for (int i = 0; i < numShifts; i++){
-					this.ltm.add(this.stm.get(0).copy());
+					this.ltm.add(this.stm.get(0));
 					this.stm.delete(0);
+					this.stmIndex.delete(0);
 					this.stmHistory.remove(0);
 					this.ltmHistory.remove(0);
 					this.cmHistory.remove(0);
 				}
 				this.clusterDown();
 				this.predictionHistories.clear();
-				for (int i = 0; i < this.stm.numInstances(); i++){
-					for (int j = 0; j < this.stm.numInstances(); j++){
-						this.distanceMatrixSTM[i][j] = this.distanceMatrixSTM[numShifts+i][numShifts+j];
-					}
-				}
+				this.discardSTMDistances(numShifts);
 			}
 		}
 	}
 
 	private void cleanSingle(Instances cleanAgainst, int cleanAgainstindex, Instances toClean){
-		Instances cleanAgainstTmp = new Instances(cleanAgainst);
-		cleanAgainstTmp.delete(cleanAgainstindex);
-		double distancesSTM[] = get1ToNDistances(cleanAgainst.get(cleanAgainstindex), cleanAgainstTmp);
+		//distances to the other instances of cleanAgainst, without copying it
+		double distancesSTM[];
+		if (cleanAgainst == this.stm) {
+			distancesSTM = getSTMDistancesToOthers(cleanAgainstindex);
+		} else {
+			double distancesAll[] = get1ToNDistances(cleanAgainst.get(cleanAgainstindex), cleanAgainst);
+			distancesSTM = new double[distancesAll.length - 1];
+			System.arraycopy(distancesAll, 0, distancesSTM, 0, cleanAgainstindex);
+			System.arraycopy(distancesAll, cleanAgainstindex + 1, distancesSTM, cleanAgainstindex, distancesSTM.length - cleanAgainstindex);
+		}
 		int nnIndicesSTM[] = nArgMin(Math.min(this.kOption.getValue(), distancesSTM.length), distancesSTM);
 
 		double distancesLTM[] = get1ToNDistances(cleanAgainst.get(cleanAgainstindex), toClean);
 		int nnIndicesLTM[] = nArgMin(Math.min(this.kOption.getValue(), distancesLTM.length), distancesLTM);
 		double distThreshold = 0;
 		for (int nnIdx: nnIndicesSTM){
-			if (cleanAgainstTmp.get(nnIdx).classValue() == cleanAgainst.get(cleanAgainstindex).classValue()){
+			int idx = nnIdx < cleanAgainstindex ? nnIdx : nnIdx + 1;
+			if (cleanAgainst.get(idx).classValue() == cleanAgainst.get(cleanAgainstindex).classValue()){
 				if (distancesSTM[nnIdx] > distThreshold){
 					distThreshold = distancesSTM[nnIdx];
 				}
@@ -346,8 +367,12 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 			}
 		}
 		Collections.sort(delIndices, Collections.reverseOrder());
-		for (Integer idx : delIndices)
+		for (Integer idx : delIndices) {
 			toClean.delete(idx);
+			if (toClean == this.ltm) {
+				this.ltmIndex.delete(idx);
+			}
+		}
 	}
     /**
      * Removes distance-based all instances from the input samples that contradict those in the STM.
@@ -367,10 +392,14 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
      * Returns the distance weighted votes.
      */
 	private double [] getDistanceWeightedVotes(double distances[], int[] nnIndices, Instances instances){
+		return getDistanceWeightedVotes(distances, nnIndices, instances, 0);
+	}
+
+	private double [] getDistanceWeightedVotes(double distances[], int[] nnIndices, Instances instances, int offset){
 
 		double v[] = new double[this.maxClassValue +1];
         for (int nnIdx : nnIndices) {
-            v[(int)instances.instance(nnIdx).classValue()] += 1./Math.max(distances[nnIdx], 0.000000001);
+            v[(int)instances.instance(nnIdx - offset).classValue()] += 1./Math.max(distances[nnIdx], 0.000000001);
         }
 		return v;
 	}
@@ -413,12 +442,63 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 		return maxVoteClass;
 	}
 
-	private int getLabelFct(double distances[], Instances instances, int startIdx, int endIdx){
-		int nnIndices[] = nArgMin(Math.min(this.kOption.getValue(), distances.length), distances, startIdx, endIdx);
-		double votes[] = getDistanceWeightedVotes(distances, nnIndices, instances);
+	/**
+	 * Predicts the label of an STM sample from the STM samples between startIdx and the sample.
+	 */
+	private int getLabelFct(int sampleIdx, Instances instances, int startIdx){
+		double distances[] = this.getSTMDistances(sampleIdx);
+		int offset = this.getSTMDistancesOffset(sampleIdx);
+		int nnIndices[] = nArgMin(Math.min(this.kOption.getValue(), distances.length), distances, startIdx + offset, sampleIdx - 1 + offset);
+		double votes[] = getDistanceWeightedVotes(distances, nnIndices, instances, offset);
 		return this.getClassFromVotes(votes);
 	}
 
+	/**
+	 * Stores the distances of the last STM sample to the STM.
+	 */
+	private void addSTMDistances(double distances[]){
+		int row = (this.distancesSTMHead + this.stm.numInstances() - 1) % this.distancesSTM.length;
+		this.distancesSTM[row] = distances;
+		this.distancesSTMStart[row] = this.stmFirstSequence;
+	}
+
+	/**
+	 * Drops the distances of the samples discarded from the front of the STM.
+	 */
+	private void discardSTMDistances(int numberOfSamples){
+		for (int i = 0; i < numberOfSamples; i++){
+			this.distancesSTM[(this.distancesSTMHead + i) % this.distancesSTM.length] = null;
+		}
+		this.distancesSTMHead = (this.distancesSTMHead + numberOfSamples) % this.distancesSTM.length;
+		this.stmFirstSequence += numberOfSamples;
+	}
+
+	/**
+	 * Returns the row of an STM sample, the distance to the STM sample j is at j + getSTMDistancesOffset(sampleIdx).
+	 */
+	private double[] getSTMDistances(int sampleIdx){
+		return this.distancesSTM[(this.distancesSTMHead + sampleIdx) % this.distancesSTM.length];
+	}
+
+	private int getSTMDistancesOffset(int sampleIdx){
+		return (int)(this.stmFirstSequence - this.distancesSTMStart[(this.distancesSTMHead + sampleIdx) % this.distancesSTM.length]);
+	}
+
+	/**
+	 * Returns the distances of an STM sample to all the other STM samples, in STM order.
+	 */
+	private double[] getSTMDistancesToOthers(int sampleIdx){
+		int numSamples = this.stm.numInstances();
+		double distances[] = new double[numSamples - 1];
+		double row[] = this.getSTMDistances(sampleIdx);
+		int offset = this.getSTMDistancesOffset(sampleIdx);
+		System.arraycopy(row, offset, distances, 0, sampleIdx);
+		for (int j = sampleIdx + 1; j < numSamples; j++){
+			distances[j - 1] = this.getSTMDistances(j)[sampleIdx + this.getSTMDistancesOffset(j)];
+		}
+		return distances;
+	}
+
     /**
      * Returns the Euclidean distance.
      */
@@ -437,6 +517,11 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
      * Returns the Euclidean distance between one sample and a collection of samples in an 1D-array.
      */
 	private double[] get1ToNDistances(Instance sample, Instances samples){
+		if (samples == this.stm) {
+			return this.stmIndex.euclideanDistances(sample);
+		} else if (samples == this.ltm) {
+			return this.ltmIndex.euclideanDistances(sample);
+		}
 		double distances[] = new double[samples.numInstances()];
 		for (int i=0; i<samples.numInstances(); i++){
 			distances[i] = this.getDistance(sample, samples.get(i));
@@ -445,14 +530,18 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 	}
 
     /**
-     * Returns the n smallest indices of the smallest values (sorted).
+     * Returns the n smallest indices of the smallest values (sorted), between
+     * startIdx and endIdx. NaN values, the distances to samples with missing
+     * values, are taken as infinite.
      */
 	private int[] nArgMin(int n, double[] values, int startIdx, int endIdx){
 		int indices[] = new int[n];
 		for (int i=0; i<n; i++){
-			double minValue = Double.MAX_VALUE;
+			indices[i] = -1;
+			double minValue = Double.POSITIVE_INFINITY;
 			for (int j=startIdx; j<endIdx+1; j++){
-				if (values[j] < minValue){
+				double value = Double.isNaN(values[j]) ? Double.POSITIVE_INFINITY : values[j];
+				if (indices[i] == -1 || value < minValue){
 					boolean alreadyUsed = false;
 					for (int k=0; k<i; k++){
 						if (indices[k]==j){
@@ -461,7 +550,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 					}
 					if (!alreadyUsed){
 						indices[i] = j;
-						minValue = values[j];
+						minValue = value;
 					}
 				}
 			}
@@ -493,7 +582,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
      */
 	private List<Integer> getIncrementalTestTrainPredHistory(Instances instances, int startIdx, List<Integer> predictionHistory){
 		for (int i= startIdx + this.kOption.getValue() + predictionHistory.size(); i < instances.numInstances(); i++){
-			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], instances, startIdx,  i-1)==instances.get(i).classValue()) ? 1 : 0);
+			predictionHistory.add((this.getLabelFct(i, instances, startIdx)==instances.get(i).classValue()) ? 1 : 0);
 		}
 		return predictionHistory;
 	}
@@ -503,7 +592,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier {
 	private List<Integer> getTestTrainPredHistory(Instances instances, int startIdx){
 		List<Integer> predictionHistory = new ArrayList<>();
 		for (int i= startIdx + this.kOption.getValue(); i < instances.numInstances(); i++){
-			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], instances, startIdx, i-1)==instances.get(i).classValue()) ? 1 : 0);
+			predictionHistory.add((this.getLabelFct(i, instances, startIdx)==instances.get(i).classValue()) ? 1 : 0);
 		}
 		return predictionHistory;
 	}
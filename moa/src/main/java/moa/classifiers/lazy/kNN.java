@@ -21,9 +21,11 @@ import java.io.StringReader;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.lazy.neighboursearch.KDTree;
-import moa.classifiers.lazy.neighboursearch.LinearNNSearch;
 import moa.classifiers.lazy.neighboursearch.NearestNeighbourSearch;
+import moa.classifiers.lazy.neighboursearch.SlidingWindowIndex;
+import moa.core.ByteSizeTracker;
 import moa.core.Measurement;
+import moa.core.SizeOf;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
@@ -40,7 +42,7 @@ import com.github.javacliparser.MultiChoiceOption;
  * @author Jesse Read (jesse@tsc.uc3m.es)
  * @version 03.2012
  */
-public class kNN extends AbstractClassifier implements MultiClassClassifier {
+public class kNN extends AbstractClassifier implements MultiClassClassifier, ByteSizeTracker {
 
     private static final long serialVersionUID = 1L;
 
@@ -65,11 +67,17 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier {
 
     protected Instances window; 
 
+    protected long windowByteSize;
+
+    // kept in sync with the window for the linear search
+    protected SlidingWindowIndex windowIndex;
+
 	@Override
 	public void setModelContext(InstancesHeader context) {
 		try {
 			this.window = new Instances(context,0); //new StringReader(context.toString())
 			this.window.setClassIndex(context.classIndex());
+			this.windowByteSize = 0;
 		} catch(Exception e) {
 			System.err.println("Error: no Model Context available.");
 			e.printStackTrace();
@@ -80,6 +88,8 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier {
     @Override
     public void resetLearningImpl() {
 		this.window = null;
+		this.windowIndex = null;
+		this.windowByteSize = 0;
     }
 
     @Override
@@ -88,24 +98,62 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier {
 			C = (int)inst.classValue();
 		if (this.window == null) {
 			this.window = new Instances(inst.dataset());
+			this.windowByteSize = 0;
 		}
 		if (this.limitOption.getValue() <= this.window.numInstances()) {
-			this.window.delete(0);
+			deleteFromWindow(0);
 		}
+		addToWindow(inst);
+    }
+
+    protected void addToWindow(Instance inst) {
+		SlidingWindowIndex index = getWindowIndex();
+		// the window stores a copy
 		this.window.add(inst);
+		index.add(this.window.instance(this.window.numInstances() - 1));
+		this.windowByteSize += SizeOf.sizeOfInstance(inst);
+    }
+
+    protected void deleteFromWindow(int index) {
+		this.windowByteSize -= SizeOf.sizeOfInstance(this.window.instance(index));
+		getWindowIndex().delete(index);
+		this.window.delete(index);
+    }
+
+    /**
+     * Returns the index of the window, built again if the window was replaced.
+     */
+    protected SlidingWindowIndex getWindowIndex() {
+		if ((this.windowIndex == null) || (this.windowIndex.size() != this.window.numInstances())) {
+			this.windowIndex = new SlidingWindowIndex(this.window);
+		}
+		return this.windowIndex;
+    }
+
+    @Override
+    public long getTrackedByteSize() {
+		if (this.window == null) {
+			return 0;
+		}
+		return SizeOf.sizeOfArrayList(this.window.numInstances()) + this.windowByteSize;
     }
 
 	@Override
     public double[] getVotesForInstance(Instance inst) {
 		double v[] = new double[C+1];
 		try {
-			NearestNeighbourSearch search;
 			if (this.nearestNeighbourSearchOption.getChosenIndex()== 0) {
-				search = new LinearNNSearch(this.window);  
-			} else {
-				search = new KDTree();
-				search.setInstances(this.window);
-			}	
+				// same neighbours as a LinearNNSearch over the window
+				if (this.window.numInstances()>0) {
+					int[] neighbours = getWindowIndex().kNearestNeighbours(inst,Math.min(kOption.getValue(),this.window.numInstances()));
+					for (int position : neighbours) {
+						v[(int)this.window.instance(position).classValue()]++;
+					}
+				}
+				return v;
+			}
+			NearestNeighbourSearch search = new KDTree();
+			search.setInstances(this.window);
 			if (this.window.numInstances()>0) {	
 				Instances neighbours = search.kNearestNeighbours(inst,Math.min(kOption.getValue(),this.window.numInstances()));
 				for(int i = 0; i < neighbours.numInstances(); i++) {
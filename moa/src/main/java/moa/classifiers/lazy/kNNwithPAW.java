@@ -49,6 +49,8 @@ public class kNNwithPAW extends kNN implements MultiClassClassifier {
     @Override
     public void resetLearningImpl() {
         this.window = null;
+        this.windowIndex = null;
+        this.windowByteSize = 0;
         this.prob = Math.pow(2.0, -1.0 / this.limitOption.getValue());
     }
 
@@ -59,14 +61,15 @@ public class kNNwithPAW extends kNN implements MultiClassClassifier {
         }
         if (this.window == null) {
             this.window = new Instances(inst.dataset());
+            this.windowByteSize = 0;
         }
 
         for (int i = 0; i < this.window.size(); i++) {
             if (this.classifierRandom.nextDouble() > this.prob) {
-                this.window.delete(i);
+                deleteFromWindow(i);
             }
         }
-        this.window.add(inst);
+        addToWindow(inst);
 
     }
 
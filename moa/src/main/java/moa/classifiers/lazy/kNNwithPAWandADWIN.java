@@ -55,6 +55,8 @@ public class kNNwithPAWandADWIN extends kNN implements MultiClassClassifier {
     @Override
     public void resetLearningImpl() {
         this.window = null;
+        this.windowIndex = null;
+        this.windowByteSize = 0;
         this.adwin = new ADWIN();
         this.prob = Math.pow(2.0, -1.0 / this.limitOption.getValue());
         this.time = 0;
@@ -70,6 +72,7 @@ public class kNNwithPAWandADWIN extends kNN implements MultiClassClassifier {
         // ADWIN
         if (this.window == null) {
             this.window = new Instances(inst.dataset());
+            this.windowByteSize = 0;
         }
 
         if (this.timeStamp == null) {
@@ -77,11 +80,11 @@ public class kNNwithPAWandADWIN extends kNN implements MultiClassClassifier {
         }
         for (int i = 0; i < this.window.size(); i++) {
             if (this.classifierRandom.nextDouble() > this.prob) {
-                this.window.delete(i);
+                deleteFromWindow(i);
                 this.timeStamp.remove(i);
             }
         }
-        this.window.add(inst);
+        addToWindow(inst);
         this.timeStamp.add(this.time);
         this.time++;
         boolean correctlyClassifies = this.correctlyClassifies(inst);
@@ -90,7 +93,7 @@ public class kNNwithPAWandADWIN extends kNN implements MultiClassClassifier {
             int size = (int) this.adwin.getWidth();
             for (int i = 0; i < this.window.size(); i++) {
                 if (this.timeStamp.get(i) < this.time - size) {
-                    this.window.delete(i);
+                    deleteFromWindow(i);
                     this.timeStamp.remove(i);
                 }
             }
@@ -0,0 +1,494 @@
+/*
+ *    SlidingWindowIndex.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.lazy.neighboursearch;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Index for nearest neighbour search over a window of instances that is
+ * updated in place as instances enter and leave the window.
+ *
+ * <p>The attribute values are stored column by column in flat arrays, so
+ * adding or deleting an instance costs a constant amount of work per
+ * attribute instead of rebuilding a search structure. The distances from a
+ * target to all the instances are computed one attribute at a time over a
+ * whole column, a loop the JIT compiles to vector instructions.</p>
+ *
+ * <p>The instances keep the positions they would have in an
+ * <code>Instances</code> window with the same additions and deletions.
+ * Normalized distances are the same, bit for bit, as the ones
+ * {@link LinearNNSearch} computes with an {@link EuclideanDistance} over the
+ * window: the ranges of the attributes are maintained as instances come and
+ * go, and a column is only normalized again when its range changed.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class SlidingWindowIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final double MISSING_NOMINAL = -1;
+
+    protected int numAttributes;
+
+    protected int classIndex;
+
+    protected boolean[] isNominal;
+
+    protected int size;
+
+    // raw attribute values, one column per attribute, indexed by slot
+    protected double[][] columns;
+
+    // normalized numeric values and encoded nominal values, allocated by the
+    // first normalized search
+    protected double[][] normalized;
+
+    protected Instance[] instances;
+
+    // whether the instance in a slot has missing numeric values
+    protected boolean[] hasMissing;
+
+    protected int numWithMissing;
+
+    // slots are kept contiguous, positions follow the window order
+    protected int[] slotOfPosition;
+
+    protected int[] positionOfSlot;
+
+    protected double[] min;
+
+    protected double[] max;
+
+    // set when an extreme value left the window, the range is scanned again
+    // before the next normalized search
+    protected boolean[] rangeStale;
+
+    // range each normalized column was computed with
+    protected double[] normalizedMin;
+
+    protected double[] normalizedMax;
+
+    protected boolean[] normalizedValid;
+
+    protected double[] distances;
+
+    protected double[] selection;
+
+    protected double[] targetValues;
+
+    public SlidingWindowIndex(Instances window) {
+        this.numAttributes = window.numAttributes();
+        this.classIndex = window.classIndex();
+        this.isNominal = new boolean[this.numAttributes];
+        for (int a = 0; a < this.numAttributes; a++) {
+            this.isNominal[a] = window.attribute(a).isNominal();
+        }
+        int capacity = Math.max(window.numInstances(), 16);
+        this.columns = new double[this.numAttributes][capacity];
+        this.instances = new Instance[capacity];
+        this.hasMissing = new boolean[capacity];
+        this.slotOfPosition = new int[capacity];
+        this.positionOfSlot = new int[capacity];
+        this.distances = new double[capacity];
+        this.min = new double[this.numAttributes];
+        this.max = new double[this.numAttributes];
+        Arrays.fill(this.min, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.max, Double.NEGATIVE_INFINITY);
+        this.rangeStale = new boolean[this.numAttributes];
+        this.targetValues = new double[this.numAttributes];
+        for (int i = 0; i < window.numInstances(); i++) {
+            add(window.instance(i));
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public Instance instance(int position) {
+        return this.instances[this.slotOfPosition[position]];
+    }
+
+    /**
+     * Adds an instance at the end of the window.
+     */
+    public void add(Instance inst) {
+        if (this.size == this.instances.length) {
+            grow();
+        }
+        int slot = this.size;
+        boolean missing = false;
+        for (int a = 0; a < this.numAttributes; a++) {
+            double value = inst.value(a);
+            this.columns[a][slot] = value;
+            if ((a == this.classIndex) || this.isNominal[a]) {
+                continue;
+            }
+            if (Double.isNaN(value)) {
+                missing = true;
+            } else if (!this.rangeStale[a]) {
+                if (value < this.min[a]) {
+                    this.min[a] = value;
+                }
+                if (value > this.max[a]) {
+                    this.max[a] = value;
+                }
+            }
+        }
+        if (this.normalized != null) {
+            for (int a = 0; a < this.numAttributes; a++) {
+                if (a != this.classIndex) {
+                    this.normalized[a][slot] = encode(a, this.columns[a][slot]);
+                }
+            }
+        }
+        this.instances[slot] = inst;
+        this.hasMissing[slot] = missing;
+        if (missing) {
+            this.numWithMissing++;
+        }
+        this.slotOfPosition[this.size] = slot;
+        this.positionOfSlot[slot] = this.size;
+        this.size++;
+    }
+
+    /**
+     * Deletes the instance at a position of the window, moving the following
+     * ones back by one position.
+     */
+    public void delete(int position) {
+        if ((position < 0) || (position >= this.size)) {
+            throw new IndexOutOfBoundsException("Position " + position
+                    + " out of a window of " + this.size);
+        }
+        int slot = this.slotOfPosition[position];
+        for (int a = 0; a < this.numAttributes; a++) {
+            if ((a == this.classIndex) || this.isNominal[a]) {
+                continue;
+            }
+            double value = this.columns[a][slot];
+            if ((value == this.min[a]) || (value == this.max[a])) {
+                this.rangeStale[a] = true;
+            }
+        }
+        if (this.hasMissing[slot]) {
+            this.numWithMissing--;
+        }
+        System.arraycopy(this.slotOfPosition, position + 1, this.slotOfPosition,
+                position, this.size - position - 1);
+        for (int p = position; p < this.size - 1; p++) {
+            this.positionOfSlot[this.slotOfPosition[p]] = p;
+        }
+        // moves the last slot into the freed one
+        int last = this.size - 1;
+        if (slot != last) {
+            for (int a = 0; a < this.numAttributes; a++) {
+                this.columns[a][slot] = this.columns[a][last];
+                if ((this.normalized != null) && (a != this.classIndex)) {
+                    this.normalized[a][slot] = this.normalized[a][last];
+                }
+            }
+            this.instances[slot] = this.instances[last];
+            this.hasMissing[slot] = this.hasMissing[last];
+            this.positionOfSlot[slot] = this.positionOfSlot[last];
+            this.slotOfPosition[this.positionOfSlot[slot]] = slot;
+        }
+        this.instances[last] = null;
+        this.size--;
+    }
+
+    /**
+     * Returns the positions of the k nearest instances to a target, using
+     * the Euclidean distance normalized over the ranges of the window. All
+     * the instances as close as the k-th nearest are returned, and the
+     * target itself is skipped if it is in the window, as
+     * {@link LinearNNSearch} does.
+     *
+     * @return the positions, in increasing order
+     */
+    public int[] kNearestNeighbours(Instance target, int k) {
+        normalizedDistances(target);
+        double[] distances = this.distances;
+        int targetSlot = -1;
+        for (int slot = 0; slot < this.size; slot++) {
+            if (this.instances[slot] == target) {
+                targetSlot = slot;
+                break;
+            }
+        }
+        int numCandidates = targetSlot < 0 ? this.size : this.size - 1;
+        if (numCandidates <= 0) {
+            return new int[0];
+        }
+        double kthDistance = Double.POSITIVE_INFINITY;
+        if (k < numCandidates) {
+            if ((this.selection == null) || (this.selection.length < this.size)) {
+                this.selection = new double[this.instances.length];
+            }
+            int n = 0;
+            for (int slot = 0; slot < this.size; slot++) {
+                if (slot != targetSlot) {
+                    double d = distances[slot];
+                    this.selection[n++] = Double.isNaN(d) ? Double.POSITIVE_INFINITY : d;
+                }
+            }
+            kthDistance = select(this.selection, n, Math.max(k, 1) - 1);
+        }
+        int count = 0;
+        for (int slot = 0; slot < this.size; slot++) {
+            if ((slot != targetSlot) && (distances[slot] <= kthDistance)) {
+                count++;
+            }
+        }
+        int[] neighbours = new int[count];
+        count = 0;
+        for (int p = 0; p < this.size; p++) {
+            int slot = this.slotOfPosition[p];
+            if ((slot != targetSlot) && (distances[slot] <= kthDistance)) {
+                neighbours[count++] = p;
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * Returns the Euclidean distances, without normalization, between a
+     * target and all the instances of the window, over the input
+     * attributes.
+     *
+     * @return the distances, in window order
+     */
+    public double[] euclideanDistances(Instance target) {
+        double[] distances = this.distances;
+        int size = this.size;
+        Arrays.fill(distances, 0, size, 0.0);
+        for (int a = 0; a < this.numAttributes; a++) {
+            if (a == this.classIndex) {
+                continue;
+            }
+            double t = target.value(a);
+            double[] column = this.columns[a];
+            for (int slot = 0; slot < size; slot++) {
+                double diff = t - column[slot];
+                distances[slot] += diff * diff;
+            }
+        }
+        double[] result = new double[size];
+        for (int p = 0; p < size; p++) {
+            result[p] = Math.sqrt(distances[this.slotOfPosition[p]]);
+        }
+        return result;
+    }
+
+    // squared normalized distances from the target, indexed by slot
+    protected void normalizedDistances(Instance target) {
+        prepareNormalized();
+        double[] distances = this.distances;
+        int size = this.size;
+        Arrays.fill(distances, 0, size, 0.0);
+        boolean targetMissing = false;
+        for (int a = 0; a < this.numAttributes; a++) {
+            if (a == this.classIndex) {
+                continue;
+            }
+            double value = target.value(a);
+            this.targetValues[a] = value;
+            double[] column = this.normalized[a];
+            if (this.isNominal[a]) {
+                if (Double.isNaN(value)) {
+                    for (int slot = 0; slot < size; slot++) {
+                        distances[slot] += 1.0;
+                    }
+                } else {
+                    double t = (int) value;
+                    for (int slot = 0; slot < size; slot++) {
+                        distances[slot] += column[slot] != t ? 1.0 : 0.0;
+                    }
+                }
+            } else if (Double.isNaN(value)) {
+                targetMissing = true;
+            } else {
+                double t = norm(value, a);
+                for (int slot = 0; slot < size; slot++) {
+                    double diff = t - column[slot];
+                    distances[slot] += diff * diff;
+                }
+            }
+        }
+        if (targetMissing || (this.numWithMissing > 0)) {
+            for (int slot = 0; slot < size; slot++) {
+                if (targetMissing || this.hasMissing[slot]) {
+                    distances[slot] = exactDistance(slot);
+                }
+            }
+        }
+    }
+
+    // the distance of EuclideanDistance, for instances with missing values
+    protected double exactDistance(int slot) {
+        double distance = 0;
+        for (int a = 0; a < this.numAttributes; a++) {
+            if (a == this.classIndex) {
+                continue;
+            }
+            double val1 = this.targetValues[a];
+            double val2 = this.columns[a][slot];
+            double diff;
+            if (this.isNominal[a]) {
+                diff = (Double.isNaN(val1) || Double.isNaN(val2)
+                        || ((int) val1 != (int) val2)) ? 1 : 0;
+            } else if (Double.isNaN(val1) || Double.isNaN(val2)) {
+                if (Double.isNaN(val1) && Double.isNaN(val2)) {
+                    diff = 1;
+                } else {
+                    diff = norm(Double.isNaN(val2) ? val1 : val2, a);
+                    if (diff < 0.5) {
+                        diff = 1.0 - diff;
+                    }
+                }
+            } else {
+                diff = norm(val1, a) - norm(val2, a);
+            }
+            distance += diff * diff;
+        }
+        return distance;
+    }
+
+    protected void prepareNormalized() {
+        if (this.normalized == null) {
+            this.normalized = new double[this.numAttributes][];
+            for (int a = 0; a < this.numAttributes; a++) {
+                if (a != this.classIndex) {
+                    this.normalized[a] = new double[this.instances.length];
+                }
+            }
+            this.normalizedMin = new double[this.numAttributes];
+            this.normalizedMax = new double[this.numAttributes];
+            this.normalizedValid = new boolean[this.numAttributes];
+        }
+        for (int a = 0; a < this.numAttributes; a++) {
+            if (a == this.classIndex) {
+                continue;
+            }
+            if (this.rangeStale[a]) {
+                scanRange(a);
+            }
+            if (!this.normalizedValid[a] || (this.normalizedMin[a] != this.min[a])
+                    || (this.normalizedMax[a] != this.max[a])) {
+                this.normalizedMin[a] = this.min[a];
+                this.normalizedMax[a] = this.max[a];
+                double[] column = this.columns[a];
+                double[] normalizedColumn = this.normalized[a];
+                for (int slot = 0; slot < this.size; slot++) {
+                    normalizedColumn[slot] = encode(a, column[slot]);
+                }
+                this.normalizedValid[a] = true;
+            }
+        }
+    }
+
+    protected double encode(int a, double value) {
+        if (this.isNominal[a]) {
+            return Double.isNaN(value) ? MISSING_NOMINAL : (int) value;
+        }
+        return norm(value, a);
+    }
+
+    // same as NormalizableDistance.norm, with the range the column was
+    // normalized with. A column without any observed value has no range.
+    protected double norm(double x, int a) {
+        double low = this.normalizedMin[a];
+        double high = this.normalizedMax[a];
+        if (Double.isNaN(low) || !(high > low)) {
+            return 0;
+        }
+        return (x - low) / (high - low);
+    }
+
+    protected void scanRange(int a) {
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        double[] column = this.columns[a];
+        for (int slot = 0; slot < this.size; slot++) {
+            double value = column[slot];
+            if (value < low) {
+                low = value;
+            }
+            if (value > high) {
+                high = value;
+            }
+        }
+        this.min[a] = low;
+        this.max[a] = high;
+        this.rangeStale[a] = false;
+    }
+
+    protected void grow() {
+        int capacity = 2 * this.instances.length;
+        for (int a = 0; a < this.numAttributes; a++) {
+            this.columns[a] = Arrays.copyOf(this.columns[a], capacity);
+            if ((this.normalized != null) && (a != this.classIndex)) {
+                this.normalized[a] = Arrays.copyOf(this.normalized[a], capacity);
+            }
+        }
+        this.instances = Arrays.copyOf(this.instances, capacity);
+        this.hasMissing = Arrays.copyOf(this.hasMissing, capacity);
+        this.slotOfPosition = Arrays.copyOf(this.slotOfPosition, capacity);
+        this.positionOfSlot = Arrays.copyOf(this.positionOfSlot, capacity);
+        this.distances = new double[capacity];
+    }
+
+    // returns the k-th smallest (from 0) of the first n values, reordering them
+    protected static double select(double[] values, int n, int k) {
+        int left = 0;
+        int right = n - 1;
+        while (left < right) {
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+}
@@ -22,10 +22,13 @@ import com.yahoo.labs.samoa.instances.Instance;
 
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.core.ByteSizeTracker;
 import moa.core.DoubleVector;
 import moa.core.InstanceExample;
 import moa.core.Measurement;
 import moa.core.MiscUtils;
+import moa.core.SizeOf;
+import moa.core.StageLatencies;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FloatOption;
@@ -80,7 +83,8 @@ import moa.classifiers.core.driftdetection.ChangeDetector;
  * @author Heitor Murilo Gomes (heitor_murilo_gomes at yahoo dot com dot br)
  * @version $Revision: 1 $
  */
-public class AdaptiveRandomForest extends AbstractClassifier implements MultiClassClassifier {
+public class AdaptiveRandomForest extends AbstractClassifier implements MultiClassClassifier,
+        ByteSizeTracker {
 
     @Override
     public String getPurposeString() {
@@ -226,7 +230,32 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return null;
+        if (!StageLatencies.ENABLED || (this.ensemble == null)) {
+            return null;
+        }
+        // the members time their own detectors, as they may run on other threads
+        StageLatencies detectorLatencies = new StageLatencies(DETECTOR_STAGES);
+        for (ARFBaseLearner member : this.ensemble) {
+            if (member.detectorLatencies != null) {
+                detectorLatencies.add(member.detectorLatencies);
+            }
+        }
+        return detectorLatencies.appendMeasurements(null);
+    }
+
+    protected static final String[] DETECTOR_STAGES = {
+        "warning detector input", "drift detector input"};
+
+    @Override
+    public long getTrackedByteSize() {
+        if (this.ensemble == null) {
+            return 0;
+        }
+        long byteSize = SizeOf.sizeOfArray(this.ensemble.length, SizeOf.REFERENCE_BYTES);
+        for (ARFBaseLearner member : this.ensemble) {
+            byteSize += member.getTrackedByteSize();
+        }
+        return byteSize;
     }
 
     protected void initEnsemble(Instance instance) {
@@ -297,7 +326,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
      * Inner class that represents a single tree member of the forest. 
      * It contains some analysis information, such as the numberOfDriftsDetected, 
      */
-    protected final class ARFBaseLearner extends AbstractMOAObject {
+    protected final class ARFBaseLearner extends AbstractMOAObject implements ByteSizeTracker {
         public int indexOriginal;
         public long createdOn;
         public long lastDriftOn;
@@ -322,6 +351,11 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         public BasicClassificationPerformanceEvaluator evaluator;
         protected int numberOfDriftsDetected;
         protected int numberOfWarningsDetected;
+        // Size of the detectors and evaluator, measured when they are created
+        protected long componentsByteSize;
+
+        // latency of the detectors, kept when instrumentation is enabled
+        protected StageLatencies detectorLatencies;
 
         private void init(int indexOriginal, ARFHoeffdingTree instantiatedClassifier, BasicClassificationPerformanceEvaluator evaluatorInstantiated, 
             long instancesSeen, boolean useBkgLearner, boolean useDriftDetector, ClassOption driftOption, ClassOption warningOption, boolean isBackgroundLearner) {
@@ -349,6 +383,23 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 this.warningOption = warningOption;
                 this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
             }
+            measureComponentsByteSize();
+        }
+
+        private void measureComponentsByteSize() {
+            this.componentsByteSize = SizeOf.trackedSizeOf(this.driftDetectionMethod)
+                    + SizeOf.trackedSizeOf(this.warningDetectionMethod)
+                    + SizeOf.trackedSizeOf(this.evaluator);
+        }
+
+        @Override
+        public long getTrackedByteSize() {
+            long byteSize = SizeOf.sizeOfObject(12 * 8) + this.componentsByteSize
+                    + this.classifier.getTrackedByteSize();
+            if (this.bkgLearner != null) {
+                byteSize += this.bkgLearner.getTrackedByteSize();
+            }
+            return byteSize;
         }
 
         public ARFBaseLearner(int indexOriginal, ARFHoeffdingTree instantiatedClassifier, BasicClassificationPerformanceEvaluator evaluatorInstantiated, 
@@ -356,6 +407,13 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
             init(indexOriginal, instantiatedClassifier, evaluatorInstantiated, instancesSeen, useBkgLearner, useDriftDetector, driftOption, warningOption, isBackgroundLearner);
         }
 
+        protected StageLatencies getDetectorLatencies() {
+            if (this.detectorLatencies == null) {
+                this.detectorLatencies = new StageLatencies(DETECTOR_STAGES);
+            }
+            return this.detectorLatencies;
+        }
+
         public void reset() {
             if(this.useBkgLearner && this.bkgLearner != null) {
                 this.classifier = this.bkgLearner.classifier;
@@ -373,6 +431,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
             }
             this.evaluator.reset();
+            measureComponentsByteSize();
         }
 
         public void trainOnInstance(Instance instance, double weight, long instancesSeen) {
@@ -389,7 +448,11 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 // Check for warning only if useBkgLearner is active
                 if(this.useBkgLearner) {
                     // Update the warning detection method
+                    long start = StageLatencies.ENABLED ? System.nanoTime() : 0;
                     this.warningDetectionMethod.input(correctlyClassifies ? 0 : 1);
+                    if (StageLatencies.ENABLED) {
+                        getDetectorLatencies().record(0, start);
+                    }
                     // Check if there was a change
                     if(this.warningDetectionMethod.getChange()) {
                         this.lastWarningOn = instancesSeen;
@@ -415,7 +478,11 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 /*********** drift detection ***********/
                 
                 // Update the DRIFT detection method
+                long start = StageLatencies.ENABLED ? System.nanoTime() : 0;
                 this.driftDetectionMethod.input(correctlyClassifies ? 0 : 1);
+                if (StageLatencies.ENABLED) {
+                    getDetectorLatencies().record(1, start);
+                }
                 // Check if there was a change
                 if(this.driftDetectionMethod.getChange()) {
                     this.lastDriftOn = instancesSeen;
@@ -27,14 +27,16 @@ import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.ByteSizeTracker;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.options.ClassOption;
 import moa.tasks.TaskMonitor;
 
 import java.util.ArrayList;
 import java.util.Collections;
 
-public class BoostingSelector extends AbstractFeatureSelector {
+public class BoostingSelector extends AbstractFeatureSelector implements ByteSizeTracker {
 
     /**
      * The grace period for selecting a feature.
@@ -113,6 +115,16 @@ public class BoostingSelector extends AbstractFeatureSelector {
      */
     private int currentlySelected[];
 
+    /**
+     * Size of the instances in the sliding window.
+     */
+    private long windowByteSize;
+
+    /**
+     * Size of the layers, measured when layers are added, split or removed.
+     */
+    private long layersByteSize;
+
     /**
      * Method responsible for returning the selected subset of features.
      *
@@ -153,10 +165,15 @@ public class BoostingSelector extends AbstractFeatureSelector {
 
         // updates the sliding window
         window.add(instnc);
+        windowByteSize += SizeOf.sizeOfInstance(instnc);
         if (window.size() > gracePeriodOption.getValue()) {
+            windowByteSize -= SizeOf.sizeOfInstance(window.get(0));
             window.delete(0);
         }
 
+        // whether layers were added, split or removed
+        boolean layersChanged = false;
+
         // weight of the instance
         double lambda = instnc.weight();
         Instance evalInstance = instnc.copy();
@@ -234,6 +251,7 @@ public class BoostingSelector extends AbstractFeatureSelector {
 
             // instantiates a new candidate layer
             layers.add(instantiateLayer());
+            layersChanged = true;
 
             // resets the learner
             learner.resetLearning();
@@ -265,6 +283,7 @@ public class BoostingSelector extends AbstractFeatureSelector {
                 selectedFeatures.add(new Integer(last.getAttributeSelected()));
                 unselectedFeatures.remove(new Integer(last.getAttributeSelected()));
                 selectedChanged = true;
+                layersChanged = true;
             }
         }
 
@@ -277,9 +296,14 @@ public class BoostingSelector extends AbstractFeatureSelector {
                 selectedFeatures.remove((Integer) iRemoved);
                 layers.remove(r);
                 selectedChanged = true;
+                layersChanged = true;
             }
         }
 
+        if (layersChanged) {
+            measureLayersByteSize();
+        }
+
     }
 
     private void resetStructures(Instance instnc) {
@@ -293,6 +317,8 @@ public class BoostingSelector extends AbstractFeatureSelector {
 
         // instantiates the initial layer
         layers.add(instantiateLayer());
+        this.windowByteSize = 0;
+        measureLayersByteSize();
 
         // all features are initially unselected
         for(int i = 0; i < header.numAttributes(); i++){
@@ -312,6 +338,34 @@ public class BoostingSelector extends AbstractFeatureSelector {
         this.window = null;
         this.instancesSeen = 0;
         this.header = null;
+        this.windowByteSize = 0;
+        this.layersByteSize = 0;
+    }
+
+    /**
+     * Measures the layers, falling back to the SizeOf agent for them. Only
+     * done when the layers change, as they are small compared to the window.
+     */
+    private void measureLayersByteSize() {
+        this.layersByteSize = SizeOf.sizeOfArrayList(layers.size());
+        for (OzaBoostingLayer l : layers) {
+            this.layersByteSize += SizeOf.trackedSizeOf(l);
+        }
+    }
+
+    /**
+     * Gets the size of the window, the layers and the learner, without
+     * walking the window and layers.
+     *
+     * @return the tracked memory size in bytes
+     */
+    @Override
+    public long getTrackedByteSize() {
+        if (this.layers == null) {
+            return 0;
+        }
+        return SizeOf.sizeOfArrayList(window.size()) + this.windowByteSize
+                + this.layersByteSize + SizeOf.trackedSizeOf(learner);
     }
 
     /**
@@ -30,6 +30,7 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.core.FeatureSelectionUtils;
 import moa.core.Measurement;
+import moa.core.StageLatencies;
 
 import java.util.Arrays;
 
@@ -64,6 +65,15 @@ public class FeatureSelectionClassifier extends AbstractClassifier implements Mu
      */
     private boolean computingStability = false;
 
+    /**
+     * Latencies of the selector, kept when instrumentation is enabled.
+     */
+    protected StageLatencies selectorLatencies;
+
+    protected static final int SELECTOR_UPDATE_STAGE = 0;
+
+    protected static final int SELECTOR_FILTER_STAGE = 1;
+
     /**
      * Options to set up the items above.
      */
@@ -86,7 +96,11 @@ public class FeatureSelectionClassifier extends AbstractClassifier implements Mu
     @Override
     public double[] getVotesForInstance(Instance inst) {
         // first, filters the instance so only the selected features are used
+        long start = StageLatencies.ENABLED ? System.nanoTime() : 0;
         Instance filtered = selector.filterInstance(inst);
+        if (StageLatencies.ENABLED) {
+            getSelectorLatencies().record(SELECTOR_FILTER_STAGE, start);
+        }
         // and then trains the learner
         return learner.getVotesForInstance(filtered);
     }
@@ -124,6 +138,12 @@ public class FeatureSelectionClassifier extends AbstractClassifier implements Mu
 
         Measurement[] result = Arrays.copyOf(mClassifier, mClassifier.length + mSelector.length);
         System.arraycopy(mSelector, 0, result, mClassifier.length, mSelector.length);
+        if (this.classifierLatencies != null) {
+            result = this.classifierLatencies.appendMeasurements(result);
+        }
+        if (this.selectorLatencies != null) {
+            result = this.selectorLatencies.appendMeasurements(result);
+        }
         return result;
     }
 
@@ -161,15 +181,42 @@ public class FeatureSelectionClassifier extends AbstractClassifier implements Mu
         lastInstance = inst;
 
         // train the feature selection method
+        long start = StageLatencies.ENABLED ? System.nanoTime() : 0;
         selector.trainOnInstance(inst);
+        if (StageLatencies.ENABLED) {
+            getSelectorLatencies().record(SELECTOR_UPDATE_STAGE, start);
+        }
 
         // train the learner
         if(!this.computingStability || this.selector.dependsOnLearner()) {
+            start = StageLatencies.ENABLED ? System.nanoTime() : 0;
             Instance filtered = selector.filterInstance(inst);
+            if (StageLatencies.ENABLED) {
+                getSelectorLatencies().record(SELECTOR_FILTER_STAGE, start);
+            }
             learner.trainOnInstance(filtered);
         }
     }
 
+    /**
+     * Gets the latencies of the selector, created when first needed.
+     * The latencies of the learner are in its own measurements.
+     *
+     * @return the latencies of the selector updates and filtering
+     */
+    protected StageLatencies getSelectorLatencies() {
+        if (this.selectorLatencies == null) {
+            this.selectorLatencies = new StageLatencies("selector update", "selector filter");
+        }
+        return this.selectorLatencies;
+    }
+
+    @Override
+    protected void resetLatencies() {
+        super.resetLatencies();
+        this.selectorLatencies = null;
+    }
+
     /**
      * Gets the current measurements of this classifier.<br><br>
      * <p>
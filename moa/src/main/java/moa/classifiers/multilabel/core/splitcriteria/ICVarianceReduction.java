@@ -25,6 +25,35 @@ public class ICVarianceReduction extends AbstractOptionHandler implements MultiL
 		return error/numOutputs;
 	}
 	
+	/**
+	 * Merit of a binary split from statistics packed in arrays: the weights of
+	 * all the outputs, then their sums, then their sums of squares. Gives the
+	 * same merit as getMeritOfSplit, without building a vector per output.
+	 */
+	public double getMeritOfSplit(double[] preSplitDist, double[] leftDist, double[] rightDist, int numOutputs) {
+		double error=0;
+		int sums=numOutputs;
+		int squares=2*numOutputs;
+		for (int i=0; i<numOutputs; i++) {
+			double weightPreSplit=preSplitDist[i];
+			double weightLeft=leftDist[i];
+			double weightRight=rightDist[i];
+			double merit=0;
+			if (weightLeft>=0.05*weightPreSplit && weightRight>=0.05*weightPreSplit) {
+				double varPreSplit=computeVariance(weightPreSplit, preSplitDist[sums+i], preSplitDist[squares+i]);
+				double weightTotal=weightLeft+weightRight;
+				double sumVarPostSplit=0;
+				if (weightLeft>0)
+					sumVarPostSplit+=(weightLeft/weightTotal*computeVariance(weightLeft, leftDist[sums+i], leftDist[squares+i]));
+				if (weightRight>0)
+					sumVarPostSplit+=(weightRight/weightTotal*computeVariance(weightRight, rightDist[sums+i], rightDist[squares+i]));
+				merit=1 - sumVarPostSplit / varPreSplit;
+			}
+			error+=merit;
+		}
+		return error/numOutputs;
+	}
+
 	public double[] getBranchSplitVarianceOutput(DoubleVector[] postSplitDists) {
 		double[] variances = new double[postSplitDists.length];
 		for(int i = 0; i < postSplitDists.length; i++)
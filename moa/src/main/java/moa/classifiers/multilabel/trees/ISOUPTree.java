@@ -44,8 +44,8 @@ import moa.classifiers.MultiTargetRegressor;
 import moa.classifiers.multilabel.core.splitcriteria.ICVarianceReduction;
 import moa.classifiers.rules.core.Predicate;
 import moa.classifiers.rules.multilabel.attributeclassobservers.AttributeStatisticsObserver;
-import moa.classifiers.rules.multilabel.attributeclassobservers.MultiLabelBSTree;
 import moa.classifiers.rules.multilabel.attributeclassobservers.MultiLabelNominalAttributeObserver;
+import moa.classifiers.rules.multilabel.attributeclassobservers.MultiLabelPackedBSTree;
 import moa.classifiers.rules.multilabel.attributeclassobservers.NominalStatisticsObserver;
 import moa.classifiers.rules.multilabel.attributeclassobservers.NumericStatisticsObserver;
 import moa.classifiers.rules.multilabel.core.AttributeExpansionSuggestion;
@@ -325,6 +325,8 @@ public class ISOUPTree extends AbstractMultiLabelLearner implements MultiTargetR
 			}
 			if (tree.buildingModelTree()) learningModel.updatePerceptron(inst);
 
+			// the observers copy the statistics, so they are shared by all the attributes
+			DoubleVector[] observations = null;
 			for (int i = 0; i < inst.numInputAttributes(); i++) {
 				AttributeStatisticsObserver obs = attributeObservers.get(i);
 				if (obs == null) {
@@ -339,12 +341,14 @@ public class ISOUPTree extends AbstractMultiLabelLearner implements MultiTargetR
 
 				}
 				if (obs != null) {
-					DoubleVector[] observations = new DoubleVector[inst.numOutputAttributes()];
-					for (int j = 0; j < inst.numOutputAttributes(); j++) {
-						observations[j] = new DoubleVector();
-						observations[j].setValue(0, inst.weight());
-						observations[j].setValue(1, inst.weight() * inst.valueOutputAttribute(j));
-						observations[j].setValue(2, inst.weight() * inst.valueOutputAttribute(j) * inst.valueOutputAttribute(j));
+					if (observations == null) {
+						observations = new DoubleVector[inst.numOutputAttributes()];
+						for (int j = 0; j < inst.numOutputAttributes(); j++) {
+							observations[j] = new DoubleVector();
+							observations[j].setValue(0, inst.weight());
+							observations[j].setValue(1, inst.weight() * inst.valueOutputAttribute(j));
+							observations[j].setValue(2, inst.weight() * inst.valueOutputAttribute(j) * inst.valueOutputAttribute(j));
+						}
 					}
 					obs.observeAttribute(inst.valueInputAttribute(i), observations);
 
@@ -364,17 +368,18 @@ public class ISOUPTree extends AbstractMultiLabelLearner implements MultiTargetR
 
 			List<AttributeExpansionSuggestion> bestSuggestions = new LinkedList<AttributeExpansionSuggestion>();
 
+			// the observers do not modify the statistics, so they are shared by all the attributes
+			DoubleVector[] preSplitStatistics = new DoubleVector[tree.getModelContext().numOutputAttributes()];
+			for (int j = 0; j < tree.getModelContext().numOutputAttributes(); j++) {
+				preSplitStatistics[j] = new DoubleVector();
+				preSplitStatistics[j].setValue(0, examplesSeen);
+				preSplitStatistics[j].setValue(1, sumOfValues.getValue(j));
+				preSplitStatistics[j].setValue(2, sumOfSquares.getValue(j));
+			}
+
 			for (int i = 0; i < attributeObservers.size(); i++) {
 				AttributeStatisticsObserver obs = attributeObservers.get(i);
 				if (obs != null) {
-					DoubleVector[] preSplitStatistics = new DoubleVector[tree.getModelContext().numOutputAttributes()];
-					for (int j = 0; j < tree.getModelContext().numOutputAttributes(); j++) {
-						preSplitStatistics[j] = new DoubleVector();
-						preSplitStatistics[j].setValue(0, examplesSeen);
-						preSplitStatistics[j].setValue(1, sumOfValues.getValue(j));
-						preSplitStatistics[j].setValue(2, sumOfSquares.getValue(j));
-					}
-
 					AttributeExpansionSuggestion bestSuggestion = null;
 					bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion, preSplitStatistics, i);
 
@@ -991,7 +996,7 @@ public class ISOUPTree extends AbstractMultiLabelLearner implements MultiTargetR
 	//region --- Object instatiation methods
 
 	protected NumericStatisticsObserver newNumericClassObserver() {
-		return new MultiLabelBSTree();
+		return new MultiLabelPackedBSTree();
 	}
 
 	public NominalStatisticsObserver newNominalClassObserver() {
@@ -189,7 +189,14 @@ public class AMRulesRegressorOld extends AbstractAMRules implements Regressor{
 
 	@Override
 	public ErrorWeightedVote newErrorWeightedVote() {
-		return  (ErrorWeightedVote)((ErrorWeightedVote) votingTypeOption.getPreMaterializedObject()).copy();
+		// votes have no options, so a new vote is equivalent to a copy of the
+		// prototype, without serializing it for every prediction
+		ErrorWeightedVote prototype = (ErrorWeightedVote) votingTypeOption.getPreMaterializedObject();
+		try {
+			return prototype.getClass().getConstructor().newInstance();
+		} catch (Exception e) {
+			return (ErrorWeightedVote) prototype.copy();
+		}
 	}
 
 }
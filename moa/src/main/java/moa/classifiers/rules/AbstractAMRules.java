@@ -32,12 +32,13 @@ package moa.classifiers.rules;
  **/
 
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.BitSet;
 
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.rules.core.Rule;
 import moa.classifiers.rules.core.Rule.Builder;
 import moa.classifiers.rules.core.RuleActiveLearningNode;
+import moa.classifiers.rules.core.RuleCoverageIndex;
 import moa.classifiers.rules.core.RuleSet;
 import moa.classifiers.rules.core.attributeclassobservers.FIMTDDNumericAttributeClassLimitObserver;
 import moa.classifiers.rules.core.voting.ErrorWeightedVote;
@@ -57,6 +58,8 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 	private static final long serialVersionUID = 1L;
 	protected RuleSet ruleSet = new RuleSet();
 	protected Rule defaultRule;
+	// the rules of ruleSet, in the same order, indexed by their predicates
+	protected RuleCoverageIndex<Rule> ruleIndex;
 	protected int ruleNumberID;
 	protected double[] statistics;
 	public static final double NORMAL_CONSTANT = Math.sqrt(2 * Math.PI);
@@ -196,58 +199,70 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 		 */
 		numInstances+=instance.weight();
 		debug("Train",3);
-		debug("Nº instance "+numInstances + " - " + instance.toString(),3);
+		if (isDebugEnabled(3))
+			debug("Nº instance "+numInstances + " - " + instance.toString(),3);
 		boolean rulesCoveringInstance = false;
-		Iterator<Rule> ruleIterator= this.ruleSet.iterator();
-		while (ruleIterator.hasNext()) { 
-			Rule rule = ruleIterator.next();
-			if (rule.isCovering(instance) == true) {
-				rulesCoveringInstance = true;
-				if (isAnomaly(instance, rule) == false) {
-					//Update Change Detection Tests
-					double error = rule.computeError(instance); //Use adaptive mode error
-					boolean changeDetected = rule.getLearningNode().updateChangeDetection(error);
-					if (changeDetected == true) {
+		RuleCoverageIndex<Rule> index = getRuleIndex();
+		BitSet covering = index.getCovering(instance);
+		int shift = 0; //rules removed before the current one while training
+		for (int i = covering.nextSetBit(0); i >= 0; i = covering.nextSetBit(i + 1)) {
+			int pos = i + shift;
+			Rule rule = index.get(pos);
+			rulesCoveringInstance = true;
+			if (isAnomaly(instance, rule) == false) {
+				//Update Change Detection Tests
+				double error = rule.computeError(instance); //Use adaptive mode error
+				boolean changeDetected = rule.getLearningNode().updateChangeDetection(error);
+				if (changeDetected == true) {
+					if (isDebugEnabled(1))
 						debug("I) Drift Detected. Exa. : " +  this.numInstances + " (" + rule.getInstancesSeen() +") Remove Rule: " +rule.getRuleNumberID(),1);
 
-						ruleIterator.remove();
-						this.numChangesDetected+=instance.weight();  //Just for statistics 
-					} else {
-						rule.updateStatistics(instance);
-						if (rule.getInstancesSeen()  % this.gracePeriodOption.getValue() == 0.0) {
-							if (rule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) ) 
-							{
-								rule.split();
-								debug("Rule Expanded:",2);
+					ruleSet.remove(pos);
+					index.remove(pos);
+					shift--;
+					this.numChangesDetected+=instance.weight();  //Just for statistics 
+				} else {
+					rule.updateStatistics(instance);
+					if (rule.getInstancesSeen()  % this.gracePeriodOption.getValue() == 0.0) {
+						if (rule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) ) 
+						{
+							rule.split();
+							index.update(pos, rule.getPredicates());
+							debug("Rule Expanded:",2);
+							if (isDebugEnabled(2))
 								debug(rule.printRule(),2);
-							}	
-						}
+						}	
 					}
 				}
-				else {
+			}
+			else {
+				if (isDebugEnabled(1))
 					debug("Anomaly Detected: " + this.numInstances + " Rule: " +rule.getRuleNumberID() ,1);
-					this.numAnomaliesDetected+=instance.weight();//Just for statistics
-				}
-				if (!this.unorderedRulesOption.isSet()) 
-					break;
+				this.numAnomaliesDetected+=instance.weight();//Just for statistics
 			}
+			if (!this.unorderedRulesOption.isSet()) 
+				break;
 		}	
 
 		if (rulesCoveringInstance == false){ 
 			defaultRule.updateStatistics(instance);
 			if (defaultRule.getInstancesSeen() % this.gracePeriodOption.getValue() == 0.0) {
-				debug("Nr. examples "+defaultRule.getInstancesSeen(), 4);
+				if (isDebugEnabled(4))
+					debug("Nr. examples "+defaultRule.getInstancesSeen(), 4);
 
 				if (defaultRule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) == true) {
 					Rule newDefaultRule=newRule(defaultRule.getRuleNumberID(),defaultRule.getLearningNode(),defaultRule.getLearningNode().getStatisticsOtherBranchSplit()); //other branch
 					defaultRule.split();
 					defaultRule.setRuleNumberID(++ruleNumberID);
 					this.ruleSet.add(this.defaultRule);
+					index.add(this.defaultRule, this.defaultRule.getPredicates());
 
 					debug("Default rule expanded! New Rule:",2);
-					debug(defaultRule.printRule(),2);
+					if (isDebugEnabled(2))
+						debug(defaultRule.printRule(),2);
 					debug("New default rule:", 3);	
-					debug(newDefaultRule.printRule(),3);
+					if (isDebugEnabled(3))
+						debug(newDefaultRule.printRule(),3);
 					defaultRule=newDefaultRule;
 
 				}
@@ -330,12 +345,20 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 		StringUtils.appendNewline(out);		
 	}
 
+	/**
+	 * Checks the verbosity level before a debug message is built, so messages
+	 * that are not printed cost nothing.
+	 */
+	protected boolean isDebugEnabled(int level) {
+		return VerbosityOption.getValue()>=level;
+	}
+
 	/**
 	 * Print to console
 	 * @param string
 	 */
 	protected void debug(String string, int level) {
-		if (VerbosityOption.getValue()>=level){
+		if (isDebugEnabled(level)){
 			System.out.println(string); 
 		}
 	}
@@ -356,11 +379,13 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 	public void PrintRuleSet() {    	
 		debug("Rule in RuleSet:",2);
 		for (Rule rule: ruleSet) {
-			debug(rule.printRule(),2);
+			if (isDebugEnabled(2))
+				debug(rule.printRule(),2);
 		}
 
 		debug("Default rule :",2);
-		debug(this.defaultRule.printRule(),2);
+		if (isDebugEnabled(2))
+			debug(this.defaultRule.printRule(),2);
 	}
 
 	abstract public RuleActiveLearningNode newRuleActiveLearningNode(Builder builder);
@@ -373,8 +398,21 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 
 	@Override
 	public void resetLearningImpl() {
-		
+		ruleIndex = null;
+	}
 
+	/**
+	 * Returns the index of the rule set, rebuilding it if the rule set was
+	 * changed without it.
+	 */
+	protected RuleCoverageIndex<Rule> getRuleIndex() {
+		if (ruleIndex == null || ruleIndex.size() != ruleSet.size()) {
+			ruleIndex = new RuleCoverageIndex<Rule>();
+			for (Rule rule : ruleSet) {
+				ruleIndex.add(rule, rule.getPredicates());
+			}
+		}
+		return ruleIndex;
 	}
 
 	/**
@@ -407,18 +445,20 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 		int numberOfRulesCovering = 0;
 
 		VerboseToConsole(instance); // Verbose to console Dataset name.
-		for (Rule rule : ruleSet) {
-			if (rule.isCovering(instance) == true){
-				numberOfRulesCovering++;
-				//DoubleVector vote = new DoubleVector(rule.getPrediction(instance));
-				double [] vote=rule.getPrediction(instance);
-				double error= rule.getCurrentError();
+		RuleCoverageIndex<Rule> index = getRuleIndex();
+		BitSet covering = index.getCovering(instance);
+		for (int pos = covering.nextSetBit(0); pos >= 0; pos = covering.nextSetBit(pos + 1)) {
+			Rule rule = index.get(pos);
+			numberOfRulesCovering++;
+			//DoubleVector vote = new DoubleVector(rule.getPrediction(instance));
+			double [] vote=rule.getPrediction(instance);
+			double error= rule.getCurrentError();
+			if (isDebugEnabled(3))
 				debug("Rule No"+ rule.getRuleNumberID() + " Vote: " + Arrays.toString(vote) + " Error: " + error + " Y: " + instance.classValue(),3); //predictionValueForThisRule);
-				errorWeightedVote.addVote(vote,error);
-				//combinedVote.addValues(vote);
-				if (!this.unorderedRulesOption.isSet()) { // Ordered Rules Option.
-					break; // Only one rule cover the instance.
-				}
+			errorWeightedVote.addVote(vote,error);
+			//combinedVote.addValues(vote);
+			if (!this.unorderedRulesOption.isSet()) { // Ordered Rules Option.
+				break; // Only one rule cover the instance.
 			}
 		}
 
@@ -428,12 +468,14 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 			double error= defaultRule.getCurrentError();
 			errorWeightedVote.addVote(vote,error);
 			
-			debug("Default Rule Vote " + Arrays.toString(vote) + " Error " + error + "  Y: " + instance.classValue(),3);
+			if (isDebugEnabled(3))
+				debug("Default Rule Vote " + Arrays.toString(vote) + " Error " + error + "  Y: " + instance.classValue(),3);
 		} 	
 		double[] weightedVote=errorWeightedVote.computeWeightedVote();
 		double weightedError=errorWeightedVote.getWeightedError();
 		
-		debug("Weighted Rule - Vote: " + Arrays.toString(weightedVote) + " Weighted Error: " + weightedError + " Y:" + instance.classValue(),3);
+		if (isDebugEnabled(3))
+			debug("Weighted Rule - Vote: " + Arrays.toString(weightedVote) + " Weighted Error: " + weightedError + " Y:" + instance.classValue(),3);
 		return new Vote(weightedVote, weightedError);
 	}
 	
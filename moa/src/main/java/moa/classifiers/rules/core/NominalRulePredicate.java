@@ -108,5 +108,9 @@ public class NominalRulePredicate extends AbstractMOAObject implements Predicate
 		return isEqual;
 	}
 
+	public double getAttributeValue() {
+		return attributeValue;
+	}
+
 
 }
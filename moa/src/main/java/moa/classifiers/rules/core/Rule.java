@@ -33,6 +33,7 @@ package moa.classifiers.rules.core;
  *
  */
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -130,6 +131,14 @@ public class Rule extends AbstractMOAObject {
 		return isCovering;
 	}
 
+	public List<Predicate> getPredicates() {
+		List<Predicate> predicates = new ArrayList<Predicate>(nodeList.size());
+		for (RuleSplitNode node : nodeList) {
+			predicates.add((Predicate) node.getSplitTest());
+		}
+		return predicates;
+	}
+
 	/**
 	 * MOA GUI output
 	 */
@@ -121,8 +121,12 @@ public abstract class RuleActiveLearningNode extends ActiveLearningNode {
         return this.attributeObservers;
     }
 
+    protected boolean isDebugEnabled(int level) {
+        return this.amRules.VerbosityOption.getValue() >= level;
+    }
+
     protected void debug(String string,int level) {
-        if (this.amRules.VerbosityOption.getValue() >= level) {
+        if (isDebugEnabled(level)) {
             System.out.println(string);
         }
     }
@@ -155,9 +155,12 @@ public class RuleActiveRegressionNode extends RuleActiveLearningNode{
 		if (predictionMode == 0) {
 			double 	perceptronError= this.perceptron.getCurrentError();
 			double meanTargetError =this.targetMean.getCurrentError();
-			debug("\n Check P:" + perceptronError + " M:" + meanTargetError,5);
-			debug("Rule" + this.owner.ruleNumberID + " P:" + this.perceptron.getVotesForInstance(instance)[0] + " (" + perceptronError + ")" + " M:" + this.targetMean.getVotesForInstance(instance)[0]+ " (" + meanTargetError + ")",3) ; //Commented by JD
-			debug("Observed Value: " + instance.classValue(),5);
+			if (isDebugEnabled(5))
+				debug("\n Check P:" + perceptronError + " M:" + meanTargetError,5);
+			if (isDebugEnabled(3))
+				debug("Rule" + this.owner.ruleNumberID + " P:" + this.perceptron.getVotesForInstance(instance)[0] + " (" + perceptronError + ")" + " M:" + this.targetMean.getVotesForInstance(instance)[0]+ " (" + meanTargetError + ")",3) ; //Commented by JD
+			if (isDebugEnabled(5))
+				debug("Observed Value: " + instance.classValue(),5);
 			if (perceptronError < meanTargetError) {
 				predictionMode = 1; //PERCEPTRON
 			} else {
@@ -247,7 +250,8 @@ public class RuleActiveRegressionNode extends RuleActiveLearningNode{
 						anomaly);
 				return true;
 			}*/
-			System.out.println("Anomaly = " + anomaly); //TODO: JD remove commented code
+			if (isDebugEnabled(5))
+				debug("Anomaly = " + anomaly, 5); //TODO: JD remove commented code
 			/*try {
 			    PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter("/home/jduarte/fried_anomalies.txt", true)));
 			    out.println(anomaly);
@@ -337,13 +341,15 @@ public class RuleActiveRegressionNode extends RuleActiveLearningNode{
 			// Determine the hoeffding bound value, used to select how many instances should be used to make a test decision
 			// to feel reasonably confident that the test chosen by this sample is the same as what would be chosen using infinite examples
 			double hoeffdingBound = computeHoeffdingBound(1, splitConfidence, getWeightSeen());
-			debug("Hoeffding bound " + hoeffdingBound, 4);
+			if (isDebugEnabled(4))
+				debug("Hoeffding bound " + hoeffdingBound, 4);
 			// Determine the top two ranked splitting suggestions
 			bestSuggestion = bestSplitSuggestions[bestSplitSuggestions.length - 1];
 			AttributeSplitSuggestion secondBestSuggestion
 			= bestSplitSuggestions[bestSplitSuggestions.length - 2];
 
-			debug("Merits: " + secondBestSuggestion.merit + " " + bestSuggestion.merit, 4);
+			if (isDebugEnabled(4))
+				debug("Merits: " + secondBestSuggestion.merit + " " + bestSuggestion.merit, 4);
 
 			// If the upper bound of the sample mean for the ratio of SDR(best suggestion) to SDR(second best suggestion),
 			// as determined using the hoeffding bound, is less than 1, then the true mean is also less than 1, and thus at this
@@ -0,0 +1,340 @@
+/*
+ *    RuleCoverageIndex.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+package moa.classifiers.rules.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import moa.classifiers.rules.core.conditionaltests.NumericAttributeBinaryRulePredicate;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Index of the predicates of a rule set, to find the rules covering an
+ * instance without evaluating every predicate of every rule.
+ *
+ * <p>Rules are kept in the order of the rule set, by position. The numeric
+ * and nominal predicates on the same attribute and with the same comparison
+ * are grouped, sorted by threshold, so the predicates an instance fails are
+ * found with a binary search. The covering rules are the positions left
+ * after clearing the rules of the failed predicates from a bitset. Other
+ * predicates are evaluated directly, only for the rules left.</p>
+ *
+ * <p>The index is updated incrementally: the rule set must call
+ * {@link #add}, {@link #insert}, {@link #remove} and {@link #update} as its
+ * rules are added, removed or expanded.</p>
+ */
+public class RuleCoverageIndex<R> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	protected static final int LESS_OR_EQUAL = 0;
+	protected static final int GREATER = 1;
+	protected static final int EQUAL = 2;
+	protected static final int NOT_EQUAL = 3;
+
+	/**
+	 * Predicates on the same attribute with the same comparison. A predicate
+	 * passes if the attribute is not missing and the comparison holds.
+	 */
+	protected static class PredicateGroup implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		protected int attIndex;
+		// values are read with valueInputAttribute, or with value skipping the class
+		protected boolean inputAttribute;
+		protected int comparison;
+		protected double[] thresholds = new double[4];
+		protected int[] positions = new int[4];
+		protected int size;
+
+		protected PredicateGroup(int attIndex, boolean inputAttribute, int comparison) {
+			this.attIndex = attIndex;
+			this.inputAttribute = inputAttribute;
+			this.comparison = comparison;
+		}
+
+		protected void add(double threshold, int position) {
+			if (size == thresholds.length) {
+				thresholds = Arrays.copyOf(thresholds, size * 2);
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+			int i = firstGreater(threshold);
+			System.arraycopy(thresholds, i, thresholds, i + 1, size - i);
+			System.arraycopy(positions, i, positions, i + 1, size - i);
+			thresholds[i] = threshold;
+			positions[i] = position;
+			size++;
+		}
+
+		protected void remove(int position) {
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				if (positions[i] != position) {
+					thresholds[n] = thresholds[i];
+					positions[n] = positions[i];
+					n++;
+				}
+			}
+			size = n;
+		}
+
+		protected void shift(int fromPosition, int delta) {
+			for (int i = 0; i < size; i++) {
+				if (positions[i] >= fromPosition) {
+					positions[i] += delta;
+				}
+			}
+		}
+
+		// first entry whose threshold is >= value
+		protected int firstNotLess(double value) {
+			int lo = 0, hi = size;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (thresholds[mid] < value) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+
+		// first entry whose threshold is > value
+		protected int firstGreater(double value) {
+			int lo = 0, hi = size;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (thresholds[mid] <= value) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+
+		protected void clearFailed(Instance inst, BitSet covering) {
+			int index = attIndex;
+			if (!inputAttribute && index >= inst.classIndex()) {
+				index++;
+			}
+			if (inst.isMissing(index)) {
+				clear(0, size, covering);
+				return;
+			}
+			double value = inputAttribute ? inst.valueInputAttribute(index) : inst.value(index);
+			if (Double.isNaN(value)) {
+				// every comparison is false, so only the negated ones pass
+				if (comparison == LESS_OR_EQUAL || comparison == EQUAL) {
+					clear(0, size, covering);
+				}
+				return;
+			}
+			switch (comparison) {
+			case LESS_OR_EQUAL:
+				clear(0, firstNotLess(value), covering);
+				break;
+			case GREATER:
+				clear(firstNotLess(value), size, covering);
+				break;
+			case EQUAL:
+				clear(0, firstNotLess(value), covering);
+				clear(firstGreater(value), size, covering);
+				break;
+			default:
+				clear(firstNotLess(value), firstGreater(value), covering);
+			}
+		}
+
+		protected void clear(int from, int to, BitSet covering) {
+			for (int i = from; i < to; i++) {
+				covering.clear(positions[i]);
+			}
+		}
+	}
+
+	protected List<R> rules = new ArrayList<R>();
+
+	// predicates that are not indexed, null for rules without any
+	protected List<Predicate[]> otherPredicates = new ArrayList<Predicate[]>();
+
+	protected List<PredicateGroup> groups = new ArrayList<PredicateGroup>();
+
+	protected HashMap<Long, PredicateGroup> groupsByKey = new HashMap<Long, PredicateGroup>();
+
+	protected BitSet covering = new BitSet();
+
+	public int size() {
+		return rules.size();
+	}
+
+	public R get(int position) {
+		return rules.get(position);
+	}
+
+	public int indexOf(R rule) {
+		for (int i = 0; i < rules.size(); i++) {
+			if (rules.get(i) == rule) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public void add(R rule, List<Predicate> predicates) {
+		insert(rules.size(), rule, predicates);
+	}
+
+	public void insert(int position, R rule, List<Predicate> predicates) {
+		if (position < rules.size()) {
+			for (PredicateGroup group : groups) {
+				group.shift(position, 1);
+			}
+		}
+		rules.add(position, rule);
+		otherPredicates.add(position, null);
+		addPredicates(position, predicates);
+	}
+
+	public void remove(int position) {
+		removePredicates(position);
+		rules.remove(position);
+		otherPredicates.remove(position);
+		for (PredicateGroup group : groups) {
+			group.shift(position + 1, -1);
+		}
+	}
+
+	/**
+	 * Replaces the predicates of a rule, after it is expanded.
+	 */
+	public void update(int position, List<Predicate> predicates) {
+		removePredicates(position);
+		addPredicates(position, predicates);
+	}
+
+	public void clear() {
+		rules.clear();
+		otherPredicates.clear();
+		groups.clear();
+		groupsByKey.clear();
+	}
+
+	/**
+	 * Finds the rules covering an instance.
+	 *
+	 * @return the positions of the covering rules. The bitset is reused by
+	 * the next call.
+	 */
+	public BitSet getCovering(Instance inst) {
+		covering.clear();
+		covering.set(0, rules.size());
+		for (int i = 0; i < groups.size(); i++) {
+			PredicateGroup group = groups.get(i);
+			if (group.size > 0) {
+				group.clearFailed(inst, covering);
+			}
+		}
+		for (int pos = covering.nextSetBit(0); pos >= 0; pos = covering.nextSetBit(pos + 1)) {
+			Predicate[] predicates = otherPredicates.get(pos);
+			if (predicates != null) {
+				for (Predicate predicate : predicates) {
+					if (!predicate.evaluate(inst)) {
+						covering.clear(pos);
+						break;
+					}
+				}
+			}
+		}
+		return covering;
+	}
+
+	protected void addPredicates(int position, List<Predicate> predicates) {
+		List<Predicate> others = null;
+		for (Predicate predicate : predicates) {
+			if (!addToGroup(position, predicate)) {
+				if (others == null) {
+					others = new ArrayList<Predicate>();
+				}
+				others.add(predicate);
+			}
+		}
+		otherPredicates.set(position, others == null ? null : others.toArray(new Predicate[others.size()]));
+	}
+
+	protected void removePredicates(int position) {
+		for (PredicateGroup group : groups) {
+			group.remove(position);
+		}
+		otherPredicates.set(position, null);
+	}
+
+	protected boolean addToGroup(int position, Predicate predicate) {
+		double threshold;
+		int comparison;
+		boolean inputAttribute = true;
+		if (predicate instanceof NumericRulePredicate) {
+			threshold = ((NumericRulePredicate) predicate).getAttributeValue();
+			comparison = predicate.isEqualOrLess() ? LESS_OR_EQUAL : GREATER;
+		} else if (predicate instanceof NominalRulePredicate) {
+			threshold = ((NominalRulePredicate) predicate).getAttributeValue();
+			comparison = predicate.isEqualOrLess() ? EQUAL : NOT_EQUAL;
+		} else if (predicate instanceof NumericAttributeBinaryRulePredicate
+				&& predicate.isEqualOrLess()) {
+			// negated tests also pass on missing values, they are not indexed
+			NumericAttributeBinaryRulePredicate test = (NumericAttributeBinaryRulePredicate) predicate;
+			threshold = test.getSplitValue();
+			inputAttribute = false;
+			switch (test.getOperator()) {
+			case 0:
+				comparison = EQUAL;
+				break;
+			case 1:
+				comparison = LESS_OR_EQUAL;
+				break;
+			case 2:
+				comparison = GREATER;
+				break;
+			default:
+				return false;
+			}
+		} else {
+			return false;
+		}
+		if (Double.isNaN(threshold)) {
+			return false;
+		}
+		int attIndex = predicate.getAttributeIndex();
+		Long key = ((long) attIndex << 3) | (inputAttribute ? 4 : 0) | comparison;
+		PredicateGroup group = groupsByKey.get(key);
+		if (group == null) {
+			group = new PredicateGroup(attIndex, inputAttribute, comparison);
+			groupsByKey.put(key, group);
+			groups.add(group);
+		}
+		group.add(threshold, position);
+		return true;
+	}
+}
@@ -20,11 +20,12 @@
 
 package moa.classifiers.rules.multilabel;
 
-import java.util.ListIterator;
+import java.util.BitSet;
 
 import moa.classifiers.AbstractMultiLabelLearner;
 import moa.classifiers.MultiLabelLearner;
 import moa.classifiers.core.driftdetection.ChangeDetector;
+import moa.classifiers.rules.core.RuleCoverageIndex;
 import moa.classifiers.rules.core.anomalydetection.AnomalyDetector;
 import moa.classifiers.rules.core.anomalydetection.OddsRatioScore;
 import moa.classifiers.rules.featureranking.FeatureRanking;
@@ -73,6 +74,8 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 	private static final long serialVersionUID = 1L;
 	protected MultiLabelRuleSet ruleSet;
 	protected MultiLabelRule defaultRule;
+	// the rules of ruleSet, in the same order, indexed by their predicates
+	protected RuleCoverageIndex<MultiLabelRule> ruleIndex;
 	protected int ruleNumberID=1;
 	protected double[] statistics;
 	protected ObserverMOAObject observer;
@@ -202,20 +205,22 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 		//int numberOfRulesCovering = 0;
 
 		VerboseToConsole(instance); // Verbose to console Dataset name.
-		for (MultiLabelRule rule : ruleSet) {
-			if (rule.isCovering(instance) == true){
-				//numberOfRulesCovering++;
-				Prediction vote=rule.getPredictionForInstance(instance);
-				if (vote!=null){ //should only happen for first instance
-					double [] errors= rule.getCurrentErrors();
-					if(errors==null) //if errors==null, rule has seen no predictions since expansion: return maximum error, since prediction is not reliable
-						errors=defaultRuleErrors(vote);
+		RuleCoverageIndex<MultiLabelRule> index = getRuleIndex();
+		BitSet covering = index.getCovering(instance);
+		for (int pos = covering.nextSetBit(0); pos >= 0; pos = covering.nextSetBit(pos + 1)) {
+			MultiLabelRule rule = index.get(pos);
+			//numberOfRulesCovering++;
+			Prediction vote=rule.getPredictionForInstance(instance);
+			if (vote!=null){ //should only happen for first instance
+				double [] errors= rule.getCurrentErrors();
+				if(errors==null) //if errors==null, rule has seen no predictions since expansion: return maximum error, since prediction is not reliable
+					errors=defaultRuleErrors(vote);
+				if (isDebugEnabled(3))
 					debug("Rule No"+ rule.getRuleNumberID() + " Vote: " + vote.toString() + " Error: " + errors + " Y: " + instance.classValue(),3); //predictionValueForThisRule);
-					errorWeightedVote.addVote(vote,errors);
-				}
-				if (!this.unorderedRulesOption.isSet()) { // Ordered Rules Option.
-					break; // Only one rule cover the instance.
-				}
+				errorWeightedVote.addVote(vote,errors);
+			}
+			if (!this.unorderedRulesOption.isSet()) { // Ordered Rules Option.
+				break; // Only one rule cover the instance.
 			}
 		}
 
@@ -239,7 +244,8 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 					}
 				}
 				errorWeightedVote.addVote(fixVote,fixErrors);
-				debug("Default Rule Vote " + defaultVote.toString() + "\n Error " + defaultErrors + "  Y: " + instance,3);
+				if (isDebugEnabled(3))
+					debug("Default Rule Vote " + defaultVote.toString() + "\n Error " + defaultErrors + "  Y: " + instance,3);
 			}
 		} 	
 		errorWeightedVote.computeWeightedVote();
@@ -304,58 +310,69 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 			nAttributes=instance.numInputAttributes();
 		numInstances+=instance.weight();
 		debug("Train",3);
-		debug("Nº instance "+numInstances + " - " + instance.toString(),3);
+		if (isDebugEnabled(3))
+			debug("Nº instance "+numInstances + " - " + instance.toString(),3);
 		boolean rulesCoveringInstance = false;
-		ListIterator<MultiLabelRule> ruleIterator= this.ruleSet.listIterator();
-		while (ruleIterator.hasNext()) { 
-			MultiLabelRule rule = ruleIterator.next();
-			if (rule.isCovering(instance) == true) {
-				rulesCoveringInstance = true;
-				if (!rule.updateAnomalyDetection(instance)) {
-					if (rule.updateChangeDetection(instance)) {
+		RuleCoverageIndex<MultiLabelRule> index = getRuleIndex();
+		BitSet covering = index.getCovering(instance);
+		int shift = 0; //rules removed or added before the current one while training
+		for (int i = covering.nextSetBit(0); i >= 0; i = covering.nextSetBit(i + 1)) {
+			int pos = i + shift;
+			MultiLabelRule rule = index.get(pos);
+			rulesCoveringInstance = true;
+			if (!rule.updateAnomalyDetection(instance)) {
+				if (rule.updateChangeDetection(instance)) {
+					if (isDebugEnabled(1))
 						debug("I) Drift Detected. Exa. : " +  this.numInstances + " (" + rule.getWeightSeenSinceExpansion() +") Remove Rule: " +rule.getRuleNumberID(),1);
-						ruleIterator.remove();
-
-						//Rule expansion event
-						rule.notifyAll(new ChangeDetectedMessage());
-						
-						this.numChangesDetected+=instance.weight();  //Just for statistics 
-					} else {
-						rule.trainOnInstance(instance);
-						if (rule.getWeightSeenSinceExpansion()  % this.gracePeriodOption.getValue() == 0.0) {
-							if (rule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) ) 
-							{
-
-								MultiLabelRule otherMultiLabelRule=rule.getNewRuleFromOtherOutputs(); //Need to be outside to make sure other rules are cleaned
-								if(!dropOldRuleAfterExpansionOption.isSet() && rule.hasNewRuleFromOtherOutputs()){
-									rule.clearOtherOutputs();
-									otherMultiLabelRule.setRuleNumberID(++ruleNumberID);
-									setRuleOptions(otherMultiLabelRule);
-									ruleIterator.add(otherMultiLabelRule);
-									if(observer!=null)
-										otherMultiLabelRule.addObserver(observer);
-								}
-								setRuleOptions(rule);
-								debug("Rule Expanded:",2);
+					ruleSet.remove(pos);
+					index.remove(pos);
+					shift--;
+
+					//Rule expansion event
+					rule.notifyAll(new ChangeDetectedMessage());
+					
+					this.numChangesDetected+=instance.weight();  //Just for statistics 
+				} else {
+					rule.trainOnInstance(instance);
+					if (rule.getWeightSeenSinceExpansion()  % this.gracePeriodOption.getValue() == 0.0) {
+						if (rule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) ) 
+						{
+							index.update(pos, rule.getPredicates());
+
+							MultiLabelRule otherMultiLabelRule=rule.getNewRuleFromOtherOutputs(); //Need to be outside to make sure other rules are cleaned
+							if(!dropOldRuleAfterExpansionOption.isSet() && rule.hasNewRuleFromOtherOutputs()){
+								rule.clearOtherOutputs();
+								otherMultiLabelRule.setRuleNumberID(++ruleNumberID);
+								setRuleOptions(otherMultiLabelRule);
+								ruleSet.add(pos + 1, otherMultiLabelRule);
+								index.insert(pos + 1, otherMultiLabelRule, otherMultiLabelRule.getPredicates());
+								shift++;
+								if(observer!=null)
+									otherMultiLabelRule.addObserver(observer);
+							}
+							setRuleOptions(rule);
+							debug("Rule Expanded:",2);
+							if (isDebugEnabled(2))
 								debug(rule.toString(),2);
-							}	
-						}
+						}	
 					}
 				}
-				else {
+			}
+			else {
+				if (isDebugEnabled(1))
 					debug("Anomaly Detected: " + this.numInstances + " Rule: " +rule.getRuleNumberID() ,1);
-					this.numAnomaliesDetected+=instance.weight();//Just for statistics
-				}
-				if (!this.unorderedRulesOption.isSet()) 
-					break;
-
+				this.numAnomaliesDetected+=instance.weight();//Just for statistics
 			}
+			if (!this.unorderedRulesOption.isSet()) 
+				break;
+
 		}	
 
 		if (rulesCoveringInstance == false){ 
 			defaultRule.trainOnInstance(instance);
 			if (defaultRule.getWeightSeenSinceExpansion() % this.gracePeriodOption.getValue() == 0.0) {
-				debug("Nr. examples "+defaultRule.getWeightSeenSinceExpansion(), 4);
+				if (isDebugEnabled(4))
+					debug("Nr. examples "+defaultRule.getWeightSeenSinceExpansion(), 4);
 
 				if (defaultRule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) == true) {
 					
@@ -366,12 +383,15 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 					//Add expanded rule to ruleset
 					setRuleOptions(defaultRule);
 					ruleSet.add(this.defaultRule);
+					index.add(this.defaultRule, this.defaultRule.getPredicates());
 
 
 					debug("Default rule expanded! New Rule:",2);
-					debug(defaultRule.toString(),2);
+					if (isDebugEnabled(2))
+						debug(defaultRule.toString(),2);
 					debug("New default rule:", 3);	
-					debug(newDefaultRule.toString(),3);
+					if (isDebugEnabled(3))
+						debug(newDefaultRule.toString(),3);
 					defaultRule=newDefaultRule;
 					if(observer!=null)
 						defaultRule.addObserver(observer);
@@ -480,12 +500,20 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 		}
 	}
 
+	/**
+	 * Checks the verbosity level before a debug message is built, so messages
+	 * that are not printed cost nothing.
+	 */
+	protected boolean isDebugEnabled(int level) {
+		return VerbosityOption.getValue()>=level;
+	}
+
 	/**
 	 * Print to console
 	 * @param string
 	 */
 	protected void debug(String string, int level) {
-		if (VerbosityOption.getValue()>=level){
+		if (isDebugEnabled(level)){
 			System.out.println(string); 
 		}
 	}
@@ -505,11 +533,13 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 
 	public void PrintRuleSet() {    
 		debug("Default rule :",2);
-		debug(this.defaultRule.toString(),2);
+		if (isDebugEnabled(2))
+			debug(this.defaultRule.toString(),2);
 
 		debug("Rules in ruleSet:",2);
 		for (MultiLabelRule rule: ruleSet) {
-			debug(rule.toString(),2);
+			if (isDebugEnabled(2))
+				debug(rule.toString(),2);
 		}
 	}
 
@@ -525,6 +555,7 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 		defaultRule.setInstanceTransformer(new NoInstanceTransformation());
 		setRuleOptions(defaultRule);
 		ruleSet = new MultiLabelRuleSet();
+		ruleIndex = null;
 		ruleNumberID=1;
 		statistics=null;
 		this.featureRanking=(FeatureRanking) getPreparedClassOption(this.featureRankingOption);
@@ -532,6 +563,20 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 	}
 
 
+	/**
+	 * Returns the index of the rule set, rebuilding it if the rule set was
+	 * changed without it.
+	 */
+	protected RuleCoverageIndex<MultiLabelRule> getRuleIndex() {
+		if (ruleIndex == null || ruleIndex.size() != ruleSet.size()) {
+			ruleIndex = new RuleCoverageIndex<MultiLabelRule>();
+			for (MultiLabelRule rule : ruleSet) {
+				ruleIndex.add(rule, rule.getPredicates());
+			}
+		}
+		return ruleIndex;
+	}
+
 	protected void setRuleOptions(MultiLabelRule rule){
 		rule.setSplitCriterion((MultiLabelSplitCriterion)((MultiLabelSplitCriterion)getPreparedClassOption(splitCriterionOption)).copy());
 		rule.setChangeDetector((ChangeDetector)((ChangeDetector)getPreparedClassOption(changeDetector)).copy());
@@ -548,7 +593,14 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 	abstract protected MultiLabelRule newDefaultRule();
 
 	public ErrorWeightedVoteMultiLabel newErrorWeightedVote(){
-		return (ErrorWeightedVoteMultiLabel)((ErrorWeightedVoteMultiLabel) getPreparedClassOption(weightedVoteOption)).copy();
+		// votes have no options, so a new vote is equivalent to a copy of the
+		// prototype, without serializing it for every prediction
+		ErrorWeightedVoteMultiLabel prototype=(ErrorWeightedVoteMultiLabel) getPreparedClassOption(weightedVoteOption);
+		try {
+			return prototype.getClass().getConstructor().newInstance();
+		} catch (Exception e) {
+			return (ErrorWeightedVoteMultiLabel) prototype.copy();
+		}
 	}
 
 
@@ -205,7 +205,8 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
                     double [] errors= rule.getCurrentErrors();
                     if(errors==null) //if errors==null, rule has seen no predictions since expansion: return maximum error, since prediction is not reliable
                         errors=defaultRuleErrors(vote);
-                    debug("Rule No"+ rule.getRuleNumberID() + " Vote: " + vote.toString() + " Error: " + errors + " Y: " + instance.classValue(),3); //predictionValueForThisRule);
+                    if (isDebugEnabled(3))
+                        debug("Rule No"+ rule.getRuleNumberID() + " Vote: " + vote.toString() + " Error: " + errors + " Y: " + instance.classValue(),3); //predictionValueForThisRule);
                     errorWeightedVote.addVote(vote,errors);
                 }
                 
@@ -250,7 +251,8 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
                     }
                 }
                 errorWeightedVote.addVote(fixVote,fixErrors);
-                debug("Default Rule Vote " + defaultVote.toString() + "\n Error " + defaultErrors + "  Y: " + instance,3);
+                if (isDebugEnabled(3))
+                    debug("Default Rule Vote " + defaultVote.toString() + "\n Error " + defaultErrors + "  Y: " + instance,3);
             }
         } 	
         errorWeightedVote.computeWeightedVote();
@@ -301,7 +303,8 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
         
         numInstances+=instance.weight();
         debug("Train",3);
-        debug("NÃƒÆ’Ã†â€™Ãƒâ€ Ã¢â‚¬â„¢ÃƒÆ’Ã‚Â¢ÃƒÂ¢Ã¢â‚¬Å¡Ã‚Â¬Ãƒâ€¦Ã‚Â¡ÃƒÆ’Ã†â€™ÃƒÂ¢Ã¢â€šÂ¬Ã…Â¡ÃƒÆ’Ã¢â‚¬Å¡Ãƒâ€šÃ‚Âº instance "+numInstances + " - " + instance.toString(),3);
+        if (isDebugEnabled(3))
+            debug("NÃƒÆ’Ã†â€™Ãƒâ€ Ã¢â‚¬â„¢ÃƒÆ’Ã‚Â¢ÃƒÂ¢Ã¢â‚¬Å¡Ã‚Â¬Ãƒâ€¦Ã‚Â¡ÃƒÆ’Ã†â€™ÃƒÂ¢Ã¢â€šÂ¬Ã…Â¡ÃƒÆ’Ã¢â‚¬Å¡Ãƒâ€šÃ‚Âº instance "+numInstances + " - " + instance.toString(),3);
         
         boolean rulesCoveringInstance = false;
         ListIterator<MultiLabelRule> ruleIterator= this.ruleSet.listIterator();
@@ -343,7 +346,8 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
 
                     //----------------------------------------------------------
                     if (rule.updateChangeDetection(instance)) {
-                        debug("I) Drift Detected. Exa. : " +  numInstances + " (" + rule.getWeightSeenSinceExpansion() +") Remove Rule: " +rule.getRuleNumberID(),1);
+                        if (isDebugEnabled(1))
+                            debug("I) Drift Detected. Exa. : " +  numInstances + " (" + rule.getWeightSeenSinceExpansion() +") Remove Rule: " +rule.getRuleNumberID(),1);
                         ruleIterator.remove();                         //Remove a regra 
                         rule.notifyAll(new ChangeDetectedMessage());   //Rule expansion event			
                         this.numChangesDetected += instance.weight();  //Just for statistics 
@@ -365,13 +369,15 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
                                 }
                                 setRuleOptions(rule);
                                 debug("Rule Expanded:",2);
-                                debug(rule.toString(),2);
+                                if (isDebugEnabled(2))
+                                    debug(rule.toString(),2);
                             }	
                         }
                     }
                 }
                 else {
-                    debug("Anomaly Detected: " + numInstances + " Rule: " +rule.getRuleNumberID() ,1);
+                    if (isDebugEnabled(1))
+                        debug("Anomaly Detected: " + numInstances + " Rule: " +rule.getRuleNumberID() ,1);
                     numAnomaliesDetected+=instance.weight();//Just for statistics
                 }
   
@@ -403,7 +409,8 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
             defaultRule.trainOnInstance(instance);
 
             if (defaultRule.getWeightSeenSinceExpansion() % this.gracePeriodOption.getValue() == 0.0) {
-                debug("Nr. examples "+defaultRule.getWeightSeenSinceExpansion(), 4);
+                if (isDebugEnabled(4))
+                    debug("Nr. examples "+defaultRule.getWeightSeenSinceExpansion(), 4);
                 if ( defaultRule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) == true) {
                     MultiLabelRule newDefaultRule=defaultRule.getNewRuleFromOtherBranch();
                     newDefaultRule.setRuleNumberID(++ruleNumberID);
@@ -411,9 +418,11 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
                     setRuleOptions(defaultRule);
                     ruleSet.add(defaultRule);
                     debug("Default rule expanded! New Rule:",2);
-                    debug(defaultRule.toString(),2);
+                    if (isDebugEnabled(2))
+                        debug(defaultRule.toString(),2);
                     debug("New default rule:", 3);	
-                    debug(newDefaultRule.toString(),3);
+                    if (isDebugEnabled(3))
+                        debug(newDefaultRule.toString(),3);
                     defaultRule=newDefaultRule;
                     if(observer!=null)
                         defaultRule.addObserver(observer);
@@ -523,12 +532,20 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
 		}
 	}
 
+	/**
+	 * Checks the verbosity level before a debug message is built, so messages
+	 * that are not printed cost nothing.
+	 */
+	protected boolean isDebugEnabled(int level) {
+		return VerbosityOption.getValue()>=level;
+	}
+
 	/**
 	 * Print to console
 	 * @param string
 	 */
 	protected void debug(String string, int level) {
-		if (VerbosityOption.getValue()>=level){
+		if (isDebugEnabled(level)){
 			System.out.println(string); 
 		}
 	}
@@ -548,11 +565,13 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
 
 	public void PrintRuleSet() {    
 		debug("Default rule :",2);
-		debug(this.defaultRule.toString(),2);
+		if (isDebugEnabled(2))
+			debug(this.defaultRule.toString(),2);
 
 		debug("Rules in ruleSet:",2);
 		for (MultiLabelRule rule: ruleSet) {
-			debug(rule.toString(),2);
+			if (isDebugEnabled(2))
+				debug(rule.toString(),2);
 		}
 	}
 
@@ -595,7 +614,14 @@ public abstract class AMRulesMultiLabelLearnerSemiSuper extends AbstractMultiLab
 	abstract protected MultiLabelRule newDefaultRule();
 
 	public ErrorWeightedVoteMultiLabel newErrorWeightedVote(){
-		return (ErrorWeightedVoteMultiLabel)((ErrorWeightedVoteMultiLabel) getPreparedClassOption(weightedVoteOption)).copy();
+		// votes have no options, so a new vote is equivalent to a copy of the
+		// prototype, without serializing it for every prediction
+		ErrorWeightedVoteMultiLabel prototype=(ErrorWeightedVoteMultiLabel) getPreparedClassOption(weightedVoteOption);
+		try {
+			return prototype.getClass().getConstructor().newInstance();
+		} catch (Exception e) {
+			return (ErrorWeightedVoteMultiLabel) prototype.copy();
+		}
 	}
 
 
@@ -86,12 +86,6 @@ public class AMRulesMultiTargetRegressor extends AMRulesMultiLabelLearner implem
 					"PageHinkleyDM -d 0.05 -l 35.0");
 	}
 	
-	@Override
-	public ErrorWeightedVoteMultiLabel newErrorWeightedVote(){
-		return (ErrorWeightedVoteMultiLabel)((ErrorWeightedVoteMultiLabel) getPreparedClassOption(weightedVoteOption)).copy();
-		
-	}
-
 	@Override
 	protected MultiLabelRule newDefaultRule() {
 		return new MultiLabelRuleRegression(1);
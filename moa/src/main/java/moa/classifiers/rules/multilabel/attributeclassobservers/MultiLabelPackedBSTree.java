@@ -0,0 +1,282 @@
+/*
+ *    MultiLabelPackedBSTree.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.classifiers.rules.multilabel.attributeclassobservers;
+
+import java.util.Arrays;
+
+import moa.classifiers.multilabel.core.splitcriteria.ICVarianceReduction;
+import moa.classifiers.rules.core.NumericRulePredicate;
+import moa.classifiers.rules.multilabel.core.AttributeExpansionSuggestion;
+import moa.classifiers.rules.multilabel.core.splitcriteria.MultiLabelSplitCriterion;
+import moa.core.DoubleVector;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+import com.github.javacliparser.IntOption;
+
+/**
+ * Binary search tree for splitting points determination, with the statistics
+ * of all the outputs packed in arrays.
+ *
+ * <p>Builds the same tree as MultiLabelBSTree and finds the same splits, but
+ * the nodes are indexes in arrays and the left statistics of a node are one
+ * block of a single array: the weights of all the outputs, then their sums,
+ * then their sums of squares. No object is allocated per node and output, and
+ * the search for the best split runs over the blocks with flat loops. With
+ * ICVarianceReduction the merits are computed from the arrays directly, and
+ * vectors are only built for the best split.</p>
+ *
+ * <p>All the observations must have the same number of statistics per
+ * output.</p>
+ */
+public class MultiLabelPackedBSTree extends AbstractOptionHandler implements NumericStatisticsObserver {
+
+	private static final long serialVersionUID = 1L;
+
+	protected static final int NONE = -1;
+
+	public IntOption maxNodesOption = new IntOption("maxNodesOption", 'z', "Maximum number of nodes", 50, 0, Integer.MAX_VALUE);
+	protected int maxNodes;
+	protected int numNodes;
+
+	protected int numOutputs;
+	protected int numStatistics;
+	// size of the block of statistics of a node
+	protected int stride;
+
+	// nodes are indexes in these arrays, the root is 0
+	protected int size;
+	protected double[] cutPoints;
+	protected int[] left;
+	protected int[] right;
+	protected double[] leftStatistics;
+
+	// buffers of the search for the best split
+	protected transient double[] preSplit;
+	protected transient double[] leftSplit;
+	protected transient double[] rightSplit;
+	protected transient double[] bestLeftSplit;
+	protected transient double[] bestRightSplit;
+	protected transient DoubleVector[][] postSplitDists;
+
+	@Override
+	public void observeAttribute(double inputAttributeValue,
+			DoubleVector[] statistics) {
+		if (Double.isNaN(inputAttributeValue)) {
+			return;
+		}
+		if (this.size == 0) {
+			maxNodes=maxNodesOption.getValue();
+			numOutputs=statistics.length;
+			for (int i=0; i<numOutputs; i++) {
+				numStatistics=Math.max(numStatistics, statistics[i].numValues());
+			}
+			stride=numStatistics*numOutputs;
+			int capacity=Math.min(maxNodes, 15)+1;
+			cutPoints=new double[capacity];
+			left=new int[capacity];
+			right=new int[capacity];
+			leftStatistics=new double[capacity*stride];
+			newNode(inputAttributeValue, statistics);
+			return;
+		}
+		int node=0;
+		while (true) {
+			double cutPoint=cutPoints[node];
+			if (inputAttributeValue == cutPoint) {
+				addStatistics(node, statistics);
+				return;
+			}
+			if (inputAttributeValue < cutPoint) {
+				addStatistics(node, statistics);
+				if (left[node] == NONE) {
+					if (numNodes<maxNodes) {
+						// the arrays may grow, so the child is assigned after it is created
+						int child=newNode(inputAttributeValue, statistics);
+						left[node]=child;
+						++numNodes;
+					}
+					return;
+				}
+				node=left[node];
+			} else {
+				// the right statistics of a node are not needed by the search
+				if (right[node] == NONE) {
+					if (numNodes<maxNodes) {
+						// the arrays may grow, so the child is assigned after it is created
+						int child=newNode(inputAttributeValue, statistics);
+						right[node]=child;
+						++numNodes;
+					}
+					return;
+				}
+				node=right[node];
+			}
+		}
+	}
+
+	protected int newNode(double cutPoint, DoubleVector[] statistics) {
+		if (size == cutPoints.length) {
+			int capacity=size*2;
+			cutPoints=Arrays.copyOf(cutPoints, capacity);
+			left=Arrays.copyOf(left, capacity);
+			right=Arrays.copyOf(right, capacity);
+			leftStatistics=Arrays.copyOf(leftStatistics, capacity*stride);
+		}
+		int node=size++;
+		cutPoints[node]=cutPoint;
+		left[node]=NONE;
+		right[node]=NONE;
+		addStatistics(node, statistics);
+		return node;
+	}
+
+	protected void addStatistics(int node, DoubleVector[] statistics) {
+		int offset=node*stride;
+		for (int j=0; j<numStatistics; j++) {
+			for (int i=0; i<numOutputs; i++) {
+				leftStatistics[offset+i]+=statistics[i].getValue(j);
+			}
+			offset+=numOutputs;
+		}
+	}
+
+	@Override
+	public AttributeExpansionSuggestion getBestEvaluatedSplitSuggestion(
+			MultiLabelSplitCriterion criterion, DoubleVector[] preSplitStatistics, int inputAttributeIndex) {
+		if (this.size == 0) {
+			return null;
+		}
+		if (preSplit == null) {
+			preSplit=new double[stride];
+			leftSplit=new double[stride];
+			rightSplit=new double[stride];
+			bestLeftSplit=new double[stride];
+			bestRightSplit=new double[stride];
+		}
+		for (int j=0; j<numStatistics; j++) {
+			for (int i=0; i<numOutputs; i++) {
+				preSplit[j*numOutputs+i]=preSplitStatistics[i].getValue(j);
+			}
+		}
+		Arrays.fill(leftSplit, 0);
+		System.arraycopy(preSplit, 0, rightSplit, 0, stride);
+
+		Search search=new Search();
+		search.criterion=criterion;
+		search.preSplitStatistics=preSplitStatistics;
+		search.packedCriterion=(criterion instanceof ICVarianceReduction && numStatistics == 3) ? (ICVarianceReduction) criterion : null;
+		searchForBestSplitOption(0, search);
+
+		DoubleVector[][] bestPostSplitDists=new DoubleVector[numOutputs][2];
+		for (int i=0; i<numOutputs; i++) {
+			bestPostSplitDists[i][0]=newVector(bestLeftSplit, i);
+			bestPostSplitDists[i][1]=newVector(bestRightSplit, i);
+		}
+		return new AttributeExpansionSuggestion(new NumericRulePredicate(inputAttributeIndex, search.bestCutPoint, true), bestPostSplitDists, search.bestMerit);
+	}
+
+	protected static class Search {
+		protected MultiLabelSplitCriterion criterion;
+		protected ICVarianceReduction packedCriterion;
+		protected DoubleVector[] preSplitStatistics;
+		protected boolean found;
+		protected double bestMerit;
+		protected double bestCutPoint;
+	}
+
+	/**
+	 * Visits the nodes in order, keeping the statistics of the left and right
+	 * branches of the split at each node in leftSplit and rightSplit.
+	 */
+	protected void searchForBestSplitOption(int node, Search search) {
+		if (left[node] != NONE) {
+			searchForBestSplitOption(left[node], search);
+		}
+		int offset=node*stride;
+		for (int k=0; k<stride; k++) {
+			leftSplit[k]+=leftStatistics[offset+k];
+			rightSplit[k]-=leftStatistics[offset+k];
+		}
+
+		double merit;
+		if (search.packedCriterion != null) {
+			merit=search.packedCriterion.getMeritOfSplit(preSplit, leftSplit, rightSplit, numOutputs);
+		} else {
+			merit=search.criterion.getMeritOfSplit(search.preSplitStatistics, getPostSplitDists());
+		}
+		if (!search.found || merit > search.bestMerit) {
+			search.found=true;
+			search.bestMerit=merit;
+			search.bestCutPoint=cutPoints[node];
+			System.arraycopy(leftSplit, 0, bestLeftSplit, 0, stride);
+			System.arraycopy(rightSplit, 0, bestRightSplit, 0, stride);
+		}
+
+		if (right[node] != NONE) {
+			searchForBestSplitOption(right[node], search);
+		}
+		for (int k=0; k<stride; k++) {
+			leftSplit[k]-=leftStatistics[offset+k];
+			rightSplit[k]+=leftStatistics[offset+k];
+		}
+	}
+
+	// vectors of the current split, for criteria reading DoubleVectors
+	protected DoubleVector[][] getPostSplitDists() {
+		if (postSplitDists == null) {
+			postSplitDists=new DoubleVector[numOutputs][2];
+			for (int i=0; i<numOutputs; i++) {
+				postSplitDists[i][0]=new DoubleVector(new double[numStatistics]);
+				postSplitDists[i][1]=new DoubleVector(new double[numStatistics]);
+			}
+		}
+		for (int i=0; i<numOutputs; i++) {
+			for (int j=0; j<numStatistics; j++) {
+				postSplitDists[i][0].setValue(j, leftSplit[j*numOutputs+i]);
+				postSplitDists[i][1].setValue(j, rightSplit[j*numOutputs+i]);
+			}
+		}
+		return postSplitDists;
+	}
+
+	protected DoubleVector newVector(double[] packed, int output) {
+		double[] values=new double[numStatistics];
+		for (int j=0; j<numStatistics; j++) {
+			values[j]=packed[j*numOutputs+output];
+		}
+		return new DoubleVector(values);
+	}
+
+	@Override
+	public String getPurposeString() {
+		return "Stores statistics for all output attributes for a given input attribute, packed in arrays.";
+	}
+
+	@Override
+	public void getDescription(StringBuilder sb, int indent) {
+	}
+
+	@Override
+	protected void prepareForUseImpl(TaskMonitor monitor,
+			ObjectRepository repository) {
+
+	}
+}
@@ -21,6 +21,15 @@
 
 package moa.classifiers.rules.multilabel.meta;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 import moa.classifiers.AbstractMultiLabelLearner;
 import moa.classifiers.MultiTargetRegressor;
 import moa.classifiers.rules.featureranking.BasicFeatureRanking;
@@ -86,6 +95,13 @@ implements MultiTargetRegressor {
 
 	public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
 			"Seed for random behaviour of the classifier.", 1);
+
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Number of threads training the members (-1 = as many as processors, 0 or 1 = no multithreading). The members are trained sequentially with a feature ranking, which they all update.", 1, -1, Integer.MAX_VALUE);
+
+	public FlagOption shareInstanceOption = new FlagOption("shareInstance", 'i',
+			"Members trained with weight 1 share the instance instead of a copy of it. The base learner must not modify the instances.");
+
 	protected AMRulesMultiLabelLearner [] ensemble;
 
 	protected MultiLabelErrorMeasurer [] errorMeasurer;
@@ -103,11 +119,20 @@ implements MultiTargetRegressor {
 
 	protected boolean isRegression;
 	protected FeatureRanking featureRanking;
+
+	// weight of the instance for each member, drawn before training them
+	protected int[] memberWeights;
+
+	protected transient ExecutorService executor;
 	
 	
 	@Override
 	public void resetLearningImpl() {
 		this.classifierRandom.setSeed(this.randomSeedOption.getValue());
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
 		int n=this.ensembleSizeOption.getValue();
 		this.ensemble= new AMRulesMultiLabelLearner[n];
 		this.errorMeasurer= new MultiLabelErrorMeasurer[n];
@@ -122,6 +147,7 @@ implements MultiTargetRegressor {
 			this.ensemble[i].setRandomSeed(this.classifierRandom.nextInt());
 			this.errorMeasurer[i]=(MultiLabelErrorMeasurer)measurer.copy();
 		}
+		this.memberWeights = new int[n];
 		this.isRegression = (baseLearner instanceof MultiTargetRegressor);
                 featureRanking=  (FeatureRanking) getPreparedClassOption(this.featureRankingOption);
 	}
@@ -134,22 +160,104 @@ implements MultiTargetRegressor {
 			}
 			nAttributes=instance.numInputAttributes();
 		}
+		// the weights are drawn in the order of the members, so the members
+		// learn the same models whatever the number of threads
 		for (int i = 0; i < this.ensemble.length; i++) {
-			MultiLabelInstance inst=(MultiLabelInstance)instance.copy();
 			int k = 1;
 			if ( this.useBaggingOption.isSet()) {
 				k = MiscUtils.poisson(1.0, this.classifierRandom);
 			} 
-			if (k > 0) {
-				//Instance weightedInst = transformInstance(inst,i);
+			memberWeights[i] = k;
+		}
+		ExecutorService executor = getExecutor();
+		if (executor == null) {
+			for (int i = 0; i < this.ensemble.length; i++) {
+				trainMember(i, instance, memberWeights[i]);
+			}
+		} else {
+			List<MemberTrainer> trainers = new ArrayList<MemberTrainer>(this.ensemble.length);
+			for (int i = 0; i < this.ensemble.length; i++) {
+				if (memberWeights[i] > 0) {
+					trainers.add(new MemberTrainer(i, instance, memberWeights[i]));
+				}
+			}
+			try {
+				for (Future<Void> future : executor.invokeAll(trainers)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException("Interrupted while training the ensemble members.", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Could not train an ensemble member.", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Estimates the error of a member on the instance and trains it.
+	 * Members share the instance and the feature ranking, which they update
+	 * without locking, so they are only trained concurrently when there is
+	 * no feature ranking.
+	 */
+	protected void trainMember(int i, MultiLabelInstance instance, int k) {
+		if (k > 0) {
+			MultiLabelInstance inst = instance;
+			if (k != 1 || !this.shareInstanceOption.isSet()) {
+				inst=(MultiLabelInstance)instance.copy();
 				inst.setWeight(inst.weight() * k);
-				//estimate error
-				Prediction p=ensemble[i].getPredictionForInstance(inst);
-				if(p!=null)
-					errorMeasurer[i].addPrediction(p, inst);	
-				//train learner
-				this.ensemble[i].trainOnInstance(inst);
 			}
+			//estimate error
+			Prediction p=ensemble[i].getPredictionForInstance(inst);
+			if(p!=null)
+				errorMeasurer[i].addPrediction(p, inst);	
+			//train learner
+			this.ensemble[i].trainOnInstance(inst);
+		}
+	}
+
+	/**
+	 * Returns the pool of threads training the members, or null if they are
+	 * trained in the calling thread.
+	 */
+	protected ExecutorService getExecutor() {
+		if (!(this.featureRanking instanceof NoFeatureRanking)) {
+			return null;
+		}
+		if (this.executor == null) {
+			int numberOfJobs = this.numberOfJobsOption.getValue();
+			if (numberOfJobs == -1)
+				numberOfJobs = Runtime.getRuntime().availableProcessors();
+			numberOfJobs = Math.min(numberOfJobs, this.ensemble.length);
+			if (numberOfJobs > 1) {
+				this.executor = Executors.newFixedThreadPool(numberOfJobs, new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "RandomAMRules member trainer");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+		}
+		return this.executor;
+	}
+
+	protected class MemberTrainer implements Callable<Void> {
+
+		protected final int member;
+		protected final MultiLabelInstance instance;
+		protected final int weight;
+
+		public MemberTrainer(int member, MultiLabelInstance instance, int weight) {
+			this.member = member;
+			this.instance = instance;
+			this.weight = weight;
+		}
+
+		@Override
+		public Void call() {
+			trainMember(this.member, this.instance, this.weight);
+			return null;
 		}
 	}
 
@@ -95,6 +95,10 @@ public class ARFHoeffdingTree extends HoeffdingTree {
                 int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
                 AttributeClassObserver obs = this.attributeObservers.get(i);
                 if (obs == null) {
+                    if (inst.isMissing(instAttIndex)) {
+                        // created when the attribute has a value to observe
+                        continue;
+                    }
                     obs = inst.attribute(instAttIndex).isNominal() ? ht.newNominalClassObserver() : ht.newNumericClassObserver();
                     this.attributeObservers.set(i, obs);
                 }
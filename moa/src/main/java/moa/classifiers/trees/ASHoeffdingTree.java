@@ -98,6 +98,13 @@ public class ASHoeffdingTree extends HoeffdingTree {
         this.activeLeafByteSizeEstimate = 0.0;
         this.byteSizeEstimateOverheadFraction = 1.0;
         this.growthAllowed = true;
+        this.compiledTree = null;
+    }
+
+    @Override
+    public long getTrackedByteSize() {
+        // resizing drops subtrees outside of the tracked paths
+        return calcByteSize();
     }
 
     @Override
@@ -112,6 +119,7 @@ public class ASHoeffdingTree extends HoeffdingTree {
             leafNode = newLearningNode();
             foundNode.parent.setChild(foundNode.parentBranch, leafNode);
             this.activeLeafNodeCount++;
+            nodeReplaced(foundNode.parent, foundNode.parentBranch, leafNode);
         }
         if (leafNode instanceof LearningNode) {
             LearningNode learningNode = (LearningNode) leafNode;
@@ -130,6 +138,8 @@ public class ASHoeffdingTree extends HoeffdingTree {
                         if (this.resetTree == false) {
                             resizeTree(this.treeRoot, ((SplitNode) this.treeRoot).instanceChildIndex(inst));
                             this.treeRoot = ((SplitNode) this.treeRoot).getChild(((SplitNode) this.treeRoot).instanceChildIndex(inst));
+                            // resizing prunes whole subtrees, flatten again
+                            this.compiledTree = null;
                         } else {
                             resetLearningImpl();
                         }
@@ -0,0 +1,334 @@
+/*
+ *    CompiledHoeffdingTree.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.trees;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.trees.HoeffdingTree.LearningNodeNB;
+import moa.classifiers.trees.HoeffdingTree.LearningNodeNBAdaptive;
+import moa.classifiers.trees.HoeffdingTree.Node;
+import moa.classifiers.trees.HoeffdingTree.SplitNode;
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Flattened copy of the structure of a Hoeffding tree, used to sort instances
+ * to leaves without walking the node objects.
+ *
+ * <p>Nodes are stored in parallel arrays indexed by slot, the root being slot
+ * 0. Split tests of the standard types are evaluated inline from the attribute
+ * index and split value of the slot, and the children of a split are stored
+ * contiguously in a single array of slots. Leaves keep a reference to their
+ * node, since their class distributions change with every training instance,
+ * and votes are read from it without allocating.</p>
+ *
+ * <p>The structure is updated in place when a node of the tree is replaced,
+ * so a split only costs the slots of the new children.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class CompiledHoeffdingTree {
+
+    protected static final byte LEAF = 0;
+
+    protected static final byte NUMERIC_LESS = 1;
+
+    protected static final byte NUMERIC_LESS_OR_EQUAL = 2;
+
+    protected static final byte NOMINAL_BINARY = 3;
+
+    protected static final byte NOMINAL_MULTIWAY = 4;
+
+    protected static final byte OTHER_TEST = 5;
+
+    protected static final byte VOTES_DISTRIBUTION = 0;
+
+    protected static final byte VOTES_NB = 1;
+
+    protected static final byte VOTES_NB_ADAPTIVE = 2;
+
+    protected static final byte VOTES_NODE = 3;
+
+    protected int numSlots;
+
+    protected byte[] slotType;
+
+    protected byte[] slotVotes;
+
+    protected int[] slotAttribute;
+
+    protected double[] slotValue;
+
+    protected int[] slotFirstChild;
+
+    protected int[] slotNumChildren;
+
+    protected Node[] slotNode;
+
+    protected int numChildSlots;
+
+    protected int[] childSlots;
+
+    protected Map<Node, Integer> splitSlots = new IdentityHashMap<Node, Integer>();
+
+    public CompiledHoeffdingTree(Node root) {
+        int capacity = 16;
+        this.slotType = new byte[capacity];
+        this.slotVotes = new byte[capacity];
+        this.slotAttribute = new int[capacity];
+        this.slotValue = new double[capacity];
+        this.slotFirstChild = new int[capacity];
+        this.slotNumChildren = new int[capacity];
+        this.slotNode = new Node[capacity];
+        this.childSlots = new int[capacity];
+        compileNode(newSlot(), root);
+    }
+
+    public int numSlots() {
+        return this.numSlots;
+    }
+
+    /**
+     * Updates the structure after a node of the tree was replaced.
+     *
+     * @param parent	the parent of the node, null for the root
+     * @param parentBranch	the branch of the node in its parent
+     * @param newNode	the node now in the tree
+     * @return false if the node could not be located, in which case the
+     * structure has to be compiled again
+     */
+    public boolean replaceNode(SplitNode parent, int parentBranch, Node newNode) {
+        int slot = 0;
+        if (parent != null) {
+            Integer parentSlot = this.splitSlots.get(parent);
+            if ((parentSlot == null) || (parentBranch < 0)
+                    || (parentBranch >= this.slotNumChildren[parentSlot])) {
+                return false;
+            }
+            int childIndex = this.slotFirstChild[parentSlot] + parentBranch;
+            slot = this.childSlots[childIndex];
+            if (slot < 0) {
+                slot = newSlot();
+                this.childSlots[childIndex] = slot;
+            }
+        }
+        if (this.slotType[slot] != LEAF) {
+            // the children of the replaced split are left unused
+            this.splitSlots.remove(this.slotNode[slot]);
+        }
+        compileNode(slot, newNode);
+        return true;
+    }
+
+    /**
+     * Sorts an instance down the tree.
+     *
+     * @param inst	the instance
+     * @return the slot of the leaf reached, or of the last split if the
+     * instance has a missing value or reaches a missing child
+     */
+    public int sortInstance(Instance inst) {
+        int slot = 0;
+        while (true) {
+            int branch;
+            int att = this.slotAttribute[slot];
+            switch (this.slotType[slot]) {
+                case LEAF:
+                    return slot;
+                case NUMERIC_LESS:
+                    if (inst.isMissing(att)) {
+                        return slot;
+                    }
+                    branch = inst.valueInputAttribute(att) < this.slotValue[slot] ? 0 : 1;
+                    break;
+                case NUMERIC_LESS_OR_EQUAL:
+                    if (inst.isMissing(att)) {
+                        return slot;
+                    }
+                    branch = inst.valueInputAttribute(att) <= this.slotValue[slot] ? 0 : 1;
+                    break;
+                case NOMINAL_BINARY:
+                    if (att >= inst.classIndex()) {
+                        att++;
+                    }
+                    if (inst.isMissing(att)) {
+                        return slot;
+                    }
+                    branch = (int) inst.value(att) == (int) this.slotValue[slot] ? 0 : 1;
+                    break;
+                case NOMINAL_MULTIWAY:
+                    if (inst.isMissing(att)) {
+                        return slot;
+                    }
+                    branch = (int) inst.value(att);
+                    break;
+                default:
+                    branch = ((SplitNode) this.slotNode[slot]).instanceChildIndex(inst);
+            }
+            if ((branch < 0) || (branch >= this.slotNumChildren[slot])) {
+                return slot;
+            }
+            int child = this.childSlots[this.slotFirstChild[slot] + branch];
+            if (child < 0) {
+                return slot;
+            }
+            slot = child;
+        }
+    }
+
+    public Node getNode(int slot) {
+        return this.slotNode[slot];
+    }
+
+    /**
+     * Computes the votes of the tree for an instance into an array, without
+     * allocating for the leaves and prediction strategies of HoeffdingTree.
+     *
+     * @param inst	the instance
+     * @param ht	the tree the structure was compiled from
+     * @param votes	the array to fill, at least as long as the number of classes
+     * @return the array given
+     */
+    public double[] getVotesForInstance(Instance inst, HoeffdingTree ht,
+            double[] votes) {
+        int slot = sortInstance(inst);
+        Node node = this.slotNode[slot];
+        switch (this.slotVotes[slot]) {
+            case VOTES_NB_ADAPTIVE:
+                LearningNodeNBAdaptive nbaNode = (LearningNodeNBAdaptive) node;
+                if (nbaNode.mcCorrectWeight > nbaNode.nbCorrectWeight) {
+                    return copyDistribution(node, votes);
+                }
+                return NaiveBayes.doNaiveBayesPrediction(inst,
+                        node.observedClassDistribution,
+                        nbaNode.attributeObservers, votes);
+            case VOTES_NB:
+                LearningNodeNB nbNode = (LearningNodeNB) node;
+                if (nbNode.getWeightSeen() >= ht.nbThresholdOption.getValue()) {
+                    return NaiveBayes.doNaiveBayesPrediction(inst,
+                            node.observedClassDistribution,
+                            nbNode.attributeObservers, votes);
+                }
+                return copyDistribution(node, votes);
+            case VOTES_DISTRIBUTION:
+                return copyDistribution(node, votes);
+            default:
+                double[] nodeVotes = node.getClassVotes(inst, ht);
+                Arrays.fill(votes, 0.0);
+                System.arraycopy(nodeVotes, 0, votes, 0,
+                        Math.min(nodeVotes.length, votes.length));
+                return votes;
+        }
+    }
+
+    protected static double[] copyDistribution(Node node, double[] votes) {
+        double[] dist = node.observedClassDistribution.getArrayRef();
+        int length = Math.min(node.observedClassDistribution.numValues(), votes.length);
+        System.arraycopy(dist, 0, votes, 0, length);
+        Arrays.fill(votes, length, votes.length, 0.0);
+        return votes;
+    }
+
+    protected void compileNode(int slot, Node node) {
+        this.slotNode[slot] = node;
+        this.slotVotes[slot] = votesTypeOf(node);
+        if (!(node instanceof SplitNode)) {
+            this.slotType[slot] = LEAF;
+            this.slotNumChildren[slot] = 0;
+            return;
+        }
+        SplitNode split = (SplitNode) node;
+        InstanceConditionalTest test = split.splitTest;
+        if (test.getClass() == NumericAttributeBinaryTest.class) {
+            NumericAttributeBinaryTest numericTest = (NumericAttributeBinaryTest) test;
+            this.slotType[slot] = numericTest.isEqualsPassesTest()
+                    ? NUMERIC_LESS_OR_EQUAL : NUMERIC_LESS;
+            this.slotAttribute[slot] = numericTest.getAttsTestDependsOn()[0];
+            this.slotValue[slot] = numericTest.getSplitValue();
+        } else if (test.getClass() == NominalAttributeBinaryTest.class) {
+            this.slotType[slot] = NOMINAL_BINARY;
+            this.slotAttribute[slot] = test.getAttsTestDependsOn()[0];
+            this.slotValue[slot] = ((NominalAttributeBinaryTest) test).getAttValue();
+        } else if (test.getClass() == NominalAttributeMultiwayTest.class) {
+            this.slotType[slot] = NOMINAL_MULTIWAY;
+            this.slotAttribute[slot] = test.getAttsTestDependsOn()[0];
+        } else {
+            this.slotType[slot] = OTHER_TEST;
+        }
+        this.splitSlots.put(split, slot);
+        int numChildren = split.numChildren();
+        int firstChild = newChildSlots(numChildren);
+        this.slotFirstChild[slot] = firstChild;
+        this.slotNumChildren[slot] = numChildren;
+        for (int i = 0; i < numChildren; i++) {
+            Node child = split.getChild(i);
+            if (child != null) {
+                int childSlot = newSlot();
+                this.childSlots[firstChild + i] = childSlot;
+                compileNode(childSlot, child);
+            }
+        }
+    }
+
+    protected static byte votesTypeOf(Node node) {
+        Class<?> nodeClass = node.getClass();
+        if (nodeClass == LearningNodeNBAdaptive.class) {
+            return VOTES_NB_ADAPTIVE;
+        }
+        if (nodeClass == LearningNodeNB.class) {
+            return VOTES_NB;
+        }
+        if ((nodeClass == HoeffdingTree.ActiveLearningNode.class)
+                || (nodeClass == HoeffdingTree.InactiveLearningNode.class)
+                || (nodeClass == HoeffdingTree.SpilledLearningNode.class)
+                || (nodeClass == SplitNode.class)) {
+            return VOTES_DISTRIBUTION;
+        }
+        return VOTES_NODE;
+    }
+
+    protected int newSlot() {
+        if (this.numSlots == this.slotType.length) {
+            int capacity = 2 * this.numSlots;
+            this.slotType = Arrays.copyOf(this.slotType, capacity);
+            this.slotVotes = Arrays.copyOf(this.slotVotes, capacity);
+            this.slotAttribute = Arrays.copyOf(this.slotAttribute, capacity);
+            this.slotValue = Arrays.copyOf(this.slotValue, capacity);
+            this.slotFirstChild = Arrays.copyOf(this.slotFirstChild, capacity);
+            this.slotNumChildren = Arrays.copyOf(this.slotNumChildren, capacity);
+            this.slotNode = Arrays.copyOf(this.slotNode, capacity);
+        }
+        return this.numSlots++;
+    }
+
+    protected int newChildSlots(int count) {
+        if (this.numChildSlots + count > this.childSlots.length) {
+            this.childSlots = Arrays.copyOf(this.childSlots,
+                    Math.max(2 * this.childSlots.length, this.numChildSlots + count));
+        }
+        int first = this.numChildSlots;
+        Arrays.fill(this.childSlots, first, first + count, -1);
+        this.numChildSlots += count;
+        return first;
+    }
+}
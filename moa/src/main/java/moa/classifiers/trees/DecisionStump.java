@@ -101,6 +101,10 @@ public class DecisionStump extends AbstractClassifier implements MultiClassClass
             int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
             AttributeClassObserver obs = this.attributeObservers.get(i);
             if (obs == null) {
+                if (inst.isMissing(instAttIndex)) {
+                    // created when the attribute has a value to observe
+                    continue;
+                }
                 obs = inst.attribute(instAttIndex).isNominal() ? newNominalClassObserver()
                         : newNumericClassObserver();
                 this.attributeObservers.set(i, obs);
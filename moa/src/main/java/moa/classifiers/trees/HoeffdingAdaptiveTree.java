@@ -19,6 +19,7 @@
  */
 package moa.classifiers.trees;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -216,10 +217,12 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
                         killTreeChilds(ht);
                         if (parent != null) {
                             parent.setChild(parentBranch, this.alternateTree);
+                            ht.nodeReplaced(parent, parentBranch, this.alternateTree);
                             //((AdaSplitNode) parent.getChild(parentBranch)).alternateTree = null;
                         } else {
                             // Switch root tree
                             ht.treeRoot = ((AdaSplitNode) ht.treeRoot).alternateTree;
+                            ht.nodeReplaced(null, -1, ht.treeRoot);
                         }
                         ht.switchedAlternateTrees++;
                     } else if (Bound < altErrorRate - oldErrorRate) {
@@ -457,11 +460,18 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
         return new AdaSplitNode(splitTest, classObservations);
     }
 
+    @Override
+    public long getTrackedByteSize() {
+        // alternate trees grow and replace nodes outside of the tracked paths
+        return calcByteSize();
+    }
+
     @Override
     public void trainOnInstanceImpl(Instance inst) {
         if (this.treeRoot == null) {
             this.treeRoot = newLearningNode();
             this.activeLeafNodeCount = 1;
+            nodeReplaced(null, -1, this.treeRoot);
         }
         ((NewNode) this.treeRoot).learnFromInstance(inst, this, null, -1);
     }
@@ -505,4 +515,20 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
         }
         return new double[0];
     }
+
+    /**
+     * Computes the class votes for an instance into an array given by the
+     * caller. The votes are summed over all the prediction paths, as in
+     * getVotesForInstance(Instance), rather than read from the flattened tree.
+     */
+    @Override
+    public double[] getVotesForInstance(Instance inst, double[] votes) {
+        double[] result = getVotesForInstance(inst);
+        if (result.length > votes.length) {
+            return result;
+        }
+        Arrays.fill(votes, 0.0);
+        System.arraycopy(result, 0, votes, 0, result.length);
+        return votes;
+    }
 }
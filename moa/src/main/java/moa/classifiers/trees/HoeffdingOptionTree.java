@@ -39,6 +39,7 @@ import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserverFactory;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NumericAttributeClassObserver;
@@ -548,6 +549,10 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
                 int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
                 AttributeClassObserver obs = this.attributeObservers.get(i);
                 if (obs == null) {
+                    if (inst.isMissing(instAttIndex)) {
+                        // created when the attribute has a value to observe
+                        continue;
+                    }
                     obs = inst.attribute(instAttIndex).isNominal() ? ht.newNominalClassObserver() : ht.newNumericClassObserver();
                     this.attributeObservers.set(i, obs);
                 }
@@ -613,6 +618,10 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
 
     protected int maxPredictionPaths;
 
+    protected AttributeClassObserverFactory nominalObserverFactory;
+
+    protected AttributeClassObserverFactory numericObserverFactory;
+
     public int calcByteSize() {
         int size = (int) SizeOf.sizeOf(this);
         if (this.treeRoot != null) {
@@ -636,6 +645,8 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
         this.activeLeafByteSizeEstimate = 0.0;
         this.byteSizeEstimateOverheadFraction = 1.0;
         this.maxPredictionPaths = 0;
+        this.nominalObserverFactory = null;
+        this.numericObserverFactory = null;
         if (this.leafpredictionOption.getChosenIndex() > 0) {
             this.removePoorAttsOption = null;
         }
@@ -754,13 +765,19 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
     }
 
     protected AttributeClassObserver newNominalClassObserver() {
-        AttributeClassObserver nominalClassObserver = (AttributeClassObserver) getPreparedClassOption(this.nominalEstimatorOption);
-        return (AttributeClassObserver) nominalClassObserver.copy();
+        if (this.nominalObserverFactory == null) {
+            this.nominalObserverFactory = new AttributeClassObserverFactory(
+                    (AttributeClassObserver) getPreparedClassOption(this.nominalEstimatorOption));
+        }
+        return this.nominalObserverFactory.newObserver();
     }
 
     protected AttributeClassObserver newNumericClassObserver() {
-        AttributeClassObserver numericClassObserver = (AttributeClassObserver) getPreparedClassOption(this.numericEstimatorOption);
-        return (AttributeClassObserver) numericClassObserver.copy();
+        if (this.numericObserverFactory == null) {
+            this.numericObserverFactory = new AttributeClassObserverFactory(
+                    (AttributeClassObserver) getPreparedClassOption(this.numericEstimatorOption));
+        }
+        return this.numericObserverFactory.newObserver();
     }
 
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
@@ -19,6 +19,9 @@
  */
 package moa.classifiers.trees;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -35,15 +38,20 @@ import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserverFactory;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NumericAttributeClassObserver;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.AutoExpandVector;
+import moa.core.ByteSizeTracker;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.SerializeUtils;
 import moa.core.SizeOf;
+import moa.core.SpillFile;
+import moa.core.StageLatencies;
 import moa.core.StringUtils;
 import moa.core.Utils;
 import moa.options.ClassOption;
@@ -84,6 +92,12 @@ import com.yahoo.labs.samoa.instances.Instance;
  * ties</li> <li> -b : Only allow binary splits</li> <li> -z : Stop growing as
  * soon as memory limit is hit</li> <li> -r : Disable poor attributes</li> <li>
  * -p : Disable pre-pruning</li> 
+ *  <li> -y : Skip split attempts until the Hoeffding bound could separate the
+ * last observed merit gap</li>
+ *  <li> -o : Spill the statistics of leaves deactivated by memory management
+ * to a memory-mapped file and restore them when the leaves are reactivated</li>
+ *  <li> -f : Sort instances to be predicted through a flattened copy of the
+ * tree, kept up to date as the tree grows</li>
  *  <li> -l : Leaf prediction to use: MajorityClass (MC), Naive Bayes (NB) or NaiveBayes
  * adaptive (NBAdaptive).</li>
  *  <li> -q : The number of instances a leaf should observe before
@@ -93,7 +107,8 @@ import com.yahoo.labs.samoa.instances.Instance;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class HoeffdingTree extends AbstractClassifier implements MultiClassClassifier {
+public class HoeffdingTree extends AbstractClassifier implements MultiClassClassifier,
+        ByteSizeTracker {
 
     private static final long serialVersionUID = 1L;
 
@@ -163,6 +178,18 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
             "Disable pre-pruning.");
 
+    public FlagOption adaptiveGracePeriodOption = new FlagOption(
+            "adaptiveGracePeriod", 'y',
+            "Skip split attempts until the Hoeffding bound could separate the last observed merit gap.");
+
+    public FlagOption spillInactiveLeavesOption = new FlagOption(
+            "spillInactiveLeaves", 'o',
+            "Spill the statistics of leaves deactivated to save memory to disk instead of discarding them.");
+
+    public FlagOption compiledInferenceOption = new FlagOption(
+            "compiledInference", 'f',
+            "Predict with a flattened copy of the tree, updated when the tree changes.");
+
     public static class FoundNode {
 
         public Node node;
@@ -184,6 +211,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
         protected DoubleVector observedClassDistribution;
 
+        // size last added to the byte size tracked by the tree
+        protected long trackedByteSize;
+
         public Node(double[] classObservations) {
             this.observedClassDistribution = new DoubleVector(classObservations);
         }
@@ -192,6 +222,15 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             return (int) (SizeOf.sizeOf(this) + SizeOf.fullSizeOf(this.observedClassDistribution));
         }
 
+        /**
+         * Estimates the size of this node, without the SizeOf agent for the
+         * statistics that keep track of their own size.
+         */
+        public long estimateByteSize() {
+            return SizeOf.sizeOfObject(SizeOf.REFERENCE_BYTES + 8)
+                    + this.observedClassDistribution.getTrackedByteSize();
+        }
+
         public int calcByteSizeIncludingSubtree() {
             return calcByteSize();
         }
@@ -259,6 +298,13 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     + (int) (SizeOf.sizeOf(this.children) + SizeOf.fullSizeOf(this.splitTest));
         }
 
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize() + 2 * SizeOf.REFERENCE_BYTES
+                    + SizeOf.sizeOfArrayList(this.children.size())
+                    + SizeOf.trackedSizeOf(this.splitTest);
+        }
+
         @Override
         public int calcByteSizeIncludingSubtree() {
             int byteSize = calcByteSize();
@@ -381,12 +427,82 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         }
     }
 
+    /**
+     * Inactive leaf whose attribute observers were written to the spill file
+     * of the tree, so they can be restored when the leaf is reactivated.
+     */
+    public static class SpilledLearningNode extends InactiveLearningNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected transient SpillFile spillFile;
+
+        protected long spillHandle;
+
+        protected int spillLength;
+
+        // observers kept on the heap when the tree was copied or deserialized
+        protected transient byte[] spilledObservers;
+
+        public SpilledLearningNode(double[] initialClassObservations,
+                SpillFile spillFile, byte[] spilledObservers) throws IOException {
+            super(initialClassObservations);
+            this.spillFile = spillFile;
+            this.spillHandle = spillFile.write(spilledObservers);
+            this.spillLength = spilledObservers.length;
+        }
+
+        @Override
+        public long estimateByteSize() {
+            long byteSize = super.estimateByteSize() + 8 + 4 + 2 * SizeOf.REFERENCE_BYTES;
+            if (this.spilledObservers != null) {
+                byteSize += SizeOf.sizeOfArray(this.spilledObservers.length, 1);
+            }
+            return byteSize;
+        }
+
+        /**
+         * Reads the observers back and releases their space in the spill file.
+         */
+        @SuppressWarnings("unchecked")
+        public AutoExpandVector<AttributeClassObserver> restoreAttributeObservers() {
+            byte[] data = this.spilledObservers;
+            if (data == null) {
+                data = this.spillFile.read(this.spillHandle, this.spillLength);
+                this.spillFile.release(this.spillHandle);
+            }
+            this.spilledObservers = null;
+            try {
+                return (AutoExpandVector<AttributeClassObserver>) SerializeUtils.fromByteArray(data);
+            } catch (Exception e) {
+                throw new RuntimeException("Restoring spilled leaf failed.", e);
+            }
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            byte[] data = this.spilledObservers != null ? this.spilledObservers
+                    : this.spillFile.read(this.spillHandle, this.spillLength);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException,
+                ClassNotFoundException {
+            in.defaultReadObject();
+            this.spilledObservers = new byte[in.readInt()];
+            in.readFully(this.spilledObservers);
+        }
+    }
+
     public static class ActiveLearningNode extends LearningNode {
 
         private static final long serialVersionUID = 1L;
 
         protected double weightSeenAtLastSplitEvaluation;
 
+        protected double weightSeenAtNextSplitEvaluation;
+
         protected AutoExpandVector<AttributeClassObserver> attributeObservers = new AutoExpandVector<AttributeClassObserver>();
         
         protected boolean isInitialized;
@@ -403,6 +519,17 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     + (int) (SizeOf.fullSizeOf(this.attributeObservers));
         }
 
+        @Override
+        public long estimateByteSize() {
+            long byteSize = super.estimateByteSize() + 2 * 8
+                    + SizeOf.REFERENCE_BYTES
+                    + SizeOf.sizeOfArrayList(this.attributeObservers.size());
+            for (AttributeClassObserver obs : this.attributeObservers) {
+                byteSize += SizeOf.trackedSizeOf(obs);
+            }
+            return byteSize;
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
             if (this.isInitialized == false) {
@@ -415,6 +542,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
                 AttributeClassObserver obs = this.attributeObservers.get(i);
                 if (obs == null) {
+                    if (inst.isMissing(instAttIndex)) {
+                        // created when the attribute has a value to observe
+                        continue;
+                    }
                     obs = inst.attribute(instAttIndex).isNominal() ? ht.newNominalClassObserver() : ht.newNumericClassObserver();
                     this.attributeObservers.set(i, obs);
                 }
@@ -434,6 +565,14 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             this.weightSeenAtLastSplitEvaluation = weight;
         }
 
+        public double getWeightSeenAtNextSplitEvaluation() {
+            return this.weightSeenAtNextSplitEvaluation;
+        }
+
+        public void setWeightSeenAtNextSplitEvaluation(double weight) {
+            this.weightSeenAtNextSplitEvaluation = weight;
+        }
+
         public AttributeSplitSuggestion[] getBestSplitSuggestions(
                 SplitCriterion criterion, HoeffdingTree ht) {
             List<AttributeSplitSuggestion> bestSuggestions = new LinkedList<AttributeSplitSuggestion>();
@@ -462,6 +601,16 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             this.attributeObservers.set(attIndex,
                     new NullAttributeClassObserver());
         }
+
+        public AutoExpandVector<AttributeClassObserver> getAttributeObservers() {
+            return this.attributeObservers;
+        }
+
+        public void setAttributeObservers(
+                AutoExpandVector<AttributeClassObserver> attributeObservers) {
+            this.attributeObservers = attributeObservers;
+            this.isInitialized = true;
+        }
     }
 
     protected Node treeRoot;
@@ -480,6 +629,25 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     protected boolean growthAllowed;
 
+    protected long trackedNodesByteSize;
+
+    protected transient SpillFile spillFile;
+
+    protected transient CompiledHoeffdingTree compiledTree;
+
+    protected AttributeClassObserverFactory nominalObserverFactory;
+
+    protected AttributeClassObserverFactory numericObserverFactory;
+
+    // latency of split evaluations, kept when instrumentation is enabled
+    protected StageLatencies splitLatencies;
+
+    @Override
+    protected void resetLatencies() {
+        super.resetLatencies();
+        this.splitLatencies = null;
+    }
+
     public int calcByteSize() {
         int size = (int) SizeOf.sizeOf(this);
         if (this.treeRoot != null) {
@@ -490,7 +658,32 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     @Override
     public int measureByteSize() {
-        return calcByteSize();
+        return (int) getTrackedByteSize();
+    }
+
+    /**
+     * Gets the size of the nodes of the tree. The counter is updated when
+     * nodes are created, split, (de)activated, and refreshed for a leaf each
+     * time it reaches the grace period, so it may lag behind the statistics a
+     * leaf gathered since its last split attempt.
+     */
+    @Override
+    public long getTrackedByteSize() {
+        return this.trackedNodesByteSize;
+    }
+
+    protected void trackNodeAdded(Node node) {
+        node.trackedByteSize = node.estimateByteSize();
+        this.trackedNodesByteSize += node.trackedByteSize;
+    }
+
+    protected void trackNodeRemoved(Node node) {
+        this.trackedNodesByteSize -= node.trackedByteSize;
+    }
+
+    protected void trackNodeChanged(Node node) {
+        trackNodeRemoved(node);
+        trackNodeAdded(node);
     }
 
     @Override
@@ -503,6 +696,11 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         this.activeLeafByteSizeEstimate = 0.0;
         this.byteSizeEstimateOverheadFraction = 1.0;
         this.growthAllowed = true;
+        this.trackedNodesByteSize = 0;
+        closeSpillFile();
+        this.compiledTree = null;
+        this.nominalObserverFactory = null;
+        this.numericObserverFactory = null;
         if (this.leafpredictionOption.getChosenIndex()>0) { 
             this.removePoorAttsOption = null;
         }
@@ -513,6 +711,8 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         if (this.treeRoot == null) {
             this.treeRoot = newLearningNode();
             this.activeLeafNodeCount = 1;
+            trackNodeAdded(this.treeRoot);
+            nodeReplaced(null, -1, this.treeRoot);
         }
         FoundNode foundNode = this.treeRoot.filterInstanceToLeaf(inst, null, -1);
         Node leafNode = foundNode.node;
@@ -520,6 +720,8 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             leafNode = newLearningNode();
             foundNode.parent.setChild(foundNode.parentBranch, leafNode);
             this.activeLeafNodeCount++;
+            trackNodeAdded(leafNode);
+            nodeReplaced(foundNode.parent, foundNode.parentBranch, leafNode);
         }
         if (leafNode instanceof LearningNode) {
             LearningNode learningNode = (LearningNode) leafNode;
@@ -530,6 +732,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 double weightSeen = activeLearningNode.getWeightSeen();
                 if (weightSeen
                         - activeLearningNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriodOption.getValue()) {
+                    trackNodeChanged(activeLearningNode);
                     attemptToSplit(activeLearningNode, foundNode.parent,
                             foundNode.parentBranch);
                     activeLearningNode.setWeightSeenAtLastSplitEvaluation(weightSeen);
@@ -544,6 +747,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     @Override
     public double[] getVotesForInstance(Instance inst) {
+        if ((this.treeRoot != null) && this.compiledInferenceOption.isSet()) {
+            CompiledHoeffdingTree compiled = getCompiledTree();
+            return compiled.getNode(compiled.sortInstance(inst)).getClassVotes(inst, this);
+        }
         if (this.treeRoot != null) {
             FoundNode foundNode = this.treeRoot.filterInstanceToLeaf(inst,
                     null, -1);
@@ -558,9 +765,44 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
           }
     }
 
+    /**
+     * Computes the class votes for an instance into an array given by the
+     * caller, without allocating for the leaf prediction strategies of this
+     * class. Uses the flattened copy of the tree.
+     *
+     * @param inst	the instance to be classified
+     * @param votes	the array to fill, at least as long as the number of classes
+     * @return the array given
+     */
+    public double[] getVotesForInstance(Instance inst, double[] votes) {
+        if (this.treeRoot == null) {
+            Arrays.fill(votes, 0.0);
+            return votes;
+        }
+        return getCompiledTree().getVotesForInstance(inst, this, votes);
+    }
+
+    public CompiledHoeffdingTree getCompiledTree() {
+        if ((this.compiledTree == null) && (this.treeRoot != null)) {
+            this.compiledTree = new CompiledHoeffdingTree(this.treeRoot);
+        }
+        return this.compiledTree;
+    }
+
+    /**
+     * Keeps the flattened copy of the tree in line with a node that was
+     * replaced or added. Subclasses changing the tree must call it too.
+     */
+    protected void nodeReplaced(SplitNode parent, int parentBranch, Node newNode) {
+        if ((this.compiledTree != null)
+                && !this.compiledTree.replaceNode(parent, parentBranch, newNode)) {
+            this.compiledTree = null;
+        }
+    }
+
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return new Measurement[]{
+        Measurement[] measurements = new Measurement[]{
                     new Measurement("tree size (nodes)", this.decisionNodeCount
                     + this.activeLeafNodeCount + this.inactiveLeafNodeCount),
                     new Measurement("tree size (leaves)", this.activeLeafNodeCount
@@ -574,6 +816,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     this.inactiveLeafByteSizeEstimate),
                     new Measurement("byte size estimate overhead",
                     this.byteSizeEstimateOverheadFraction)};
+        if (this.splitLatencies != null) {
+            return this.splitLatencies.appendMeasurements(measurements);
+        }
+        return measurements;
     }
 
     public int measureTreeDepth() {
@@ -599,6 +845,37 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 / (2.0 * n));
     }
 
+    /**
+     * Inverse of computeHoeffdingBound: the number of observations needed for
+     * the Hoeffding bound to drop to the given value.
+     */
+    public static double computeHoeffdingBoundSampleSize(double range,
+            double confidence, double bound) {
+        if (bound <= 0.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return ((range * range) * Math.log(1.0 / confidence))
+                / (2.0 * bound * bound);
+    }
+
+    /**
+     * Predicts the earliest weight at which a split of the node could become
+     * decidable, assuming the merit gap between the two best suggestions stays
+     * as observed. The prediction never goes beyond the weight at which the
+     * tie threshold forces a split, so a growing gap is picked up at the
+     * latest by then.
+     */
+    protected double computeNextSplitEvaluationWeight(double range,
+            double meritGap) {
+        double confidence = this.splitConfidenceOption.getValue();
+        double tieWeight = computeHoeffdingBoundSampleSize(range, confidence,
+                this.tieThresholdOption.getValue());
+        double gapWeight = computeHoeffdingBoundSampleSize(range, confidence,
+                meritGap);
+        double nextWeight = Math.min(gapWeight, tieWeight);
+        return Double.isInfinite(nextWeight) ? 0.0 : nextWeight;
+    }
+
     //Procedure added for Hoeffding Adaptive Trees (ADWIN)
     protected SplitNode newSplitNode(InstanceConditionalTest splitTest,
             double[] classObservations, int size) {
@@ -612,32 +889,54 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     
 
     protected AttributeClassObserver newNominalClassObserver() {
-        AttributeClassObserver nominalClassObserver = (AttributeClassObserver) getPreparedClassOption(this.nominalEstimatorOption);
-        return (AttributeClassObserver) nominalClassObserver.copy();
+        if (this.nominalObserverFactory == null) {
+            this.nominalObserverFactory = new AttributeClassObserverFactory(
+                    (AttributeClassObserver) getPreparedClassOption(this.nominalEstimatorOption));
+        }
+        return this.nominalObserverFactory.newObserver();
     }
 
     protected AttributeClassObserver newNumericClassObserver() {
-        AttributeClassObserver numericClassObserver = (AttributeClassObserver) getPreparedClassOption(this.numericEstimatorOption);
-        return (AttributeClassObserver) numericClassObserver.copy();
+        if (this.numericObserverFactory == null) {
+            this.numericObserverFactory = new AttributeClassObserverFactory(
+                    (AttributeClassObserver) getPreparedClassOption(this.numericEstimatorOption));
+        }
+        return this.numericObserverFactory.newObserver();
     }
 
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
             int parentIndex) {
+        if (this.adaptiveGracePeriodOption.isSet()
+                && node.getWeightSeen() < node.getWeightSeenAtNextSplitEvaluation()) {
+            // the last observed merit gap cannot be resolved yet
+            return;
+        }
         if (!node.observedClassDistributionIsPure()) {
             SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
+            long start = StageLatencies.ENABLED ? System.nanoTime() : 0;
             AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this);
+            if (StageLatencies.ENABLED) {
+                if (this.splitLatencies == null) {
+                    this.splitLatencies = new StageLatencies("split evaluation");
+                }
+                this.splitLatencies.record(0, start);
+            }
             Arrays.sort(bestSplitSuggestions);
             boolean shouldSplit = false;
             if (bestSplitSuggestions.length < 2) {
                 shouldSplit = bestSplitSuggestions.length > 0;
             } else {
-                double hoeffdingBound = computeHoeffdingBound(splitCriterion.getRangeOfMerit(node.getObservedClassDistribution()),
+                double rangeOfMerit = splitCriterion.getRangeOfMerit(node.getObservedClassDistribution());
+                double hoeffdingBound = computeHoeffdingBound(rangeOfMerit,
                         this.splitConfidenceOption.getValue(), node.getWeightSeen());
                 AttributeSplitSuggestion bestSuggestion = bestSplitSuggestions[bestSplitSuggestions.length - 1];
                 AttributeSplitSuggestion secondBestSuggestion = bestSplitSuggestions[bestSplitSuggestions.length - 2];
                 if ((bestSuggestion.merit - secondBestSuggestion.merit > hoeffdingBound)
                         || (hoeffdingBound < this.tieThresholdOption.getValue())) {
                     shouldSplit = true;
+                } else if (this.adaptiveGracePeriodOption.isSet()) {
+                    node.setWeightSeenAtNextSplitEvaluation(computeNextSplitEvaluationWeight(
+                            rangeOfMerit, bestSuggestion.merit - secondBestSuggestion.merit));
                 }
                 // }
                 if ((this.removePoorAttsOption != null)
@@ -683,7 +982,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     for (int i = 0; i < splitDecision.numSplits(); i++) {
                         Node newChild = newLearningNode(splitDecision.resultingClassDistributionFromSplit(i));
                         newSplit.setChild(i, newChild);
+                        trackNodeAdded(newChild);
                     }
+                    trackNodeRemoved(node);
+                    trackNodeAdded(newSplit);
                     this.activeLeafNodeCount--;
                     this.decisionNodeCount++;
                     this.activeLeafNodeCount += splitDecision.numSplits();
@@ -692,6 +994,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     } else {
                         parent.setChild(parentIndex, newSplit);
                     }
+                    nodeReplaced(parent, parentIndex, newSplit);
                 }
                 // manage memory
                 enforceTrackerLimit();
@@ -729,10 +1032,17 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             int cutoff = learningNodes.length - maxActive;
             for (int i = 0; i < cutoff; i++) {
                 if (learningNodes[i].node instanceof ActiveLearningNode) {
-                    deactivateLearningNode(
-                            (ActiveLearningNode) learningNodes[i].node,
-                            learningNodes[i].parent,
-                            learningNodes[i].parentBranch);
+                    if (this.spillInactiveLeavesOption.isSet()) {
+                        spillLearningNode(
+                                (ActiveLearningNode) learningNodes[i].node,
+                                learningNodes[i].parent,
+                                learningNodes[i].parentBranch);
+                    } else {
+                        deactivateLearningNode(
+                                (ActiveLearningNode) learningNodes[i].node,
+                                learningNodes[i].parent,
+                                learningNodes[i].parentBranch);
+                    }
                 }
             }
             for (int i = cutoff; i < learningNodes.length; i++) {
@@ -753,6 +1063,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         for (FoundNode foundNode : learningNodes) {
             if (foundNode.node instanceof ActiveLearningNode) {
                 totalActiveSize += SizeOf.fullSizeOf(foundNode.node);
+            } else if (foundNode.node instanceof SpilledLearningNode) {
+                // do not walk into the spill file shared by all spilled leaves
+                totalInactiveSize += foundNode.node.estimateByteSize();
             } else {
                 totalInactiveSize += SizeOf.fullSizeOf(foundNode.node);
             }
@@ -795,18 +1108,69 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         } else {
             parent.setChild(parentBranch, newLeaf);
         }
+        nodeReplaced(parent, parentBranch, newLeaf);
+        trackNodeRemoved(toDeactivate);
+        trackNodeAdded(newLeaf);
+        this.activeLeafNodeCount--;
+        this.inactiveLeafNodeCount++;
+    }
+
+    /**
+     * Deactivates a leaf like deactivateLearningNode, but writes its attribute
+     * observers to the spill file instead of discarding them.
+     */
+    protected void spillLearningNode(ActiveLearningNode toSpill,
+            SplitNode parent, int parentBranch) {
+        Node newLeaf;
+        try {
+            if (this.spillFile == null) {
+                this.spillFile = new SpillFile();
+            }
+            newLeaf = new SpilledLearningNode(toSpill.getObservedClassDistribution(),
+                    this.spillFile, SerializeUtils.toByteArray(toSpill.getAttributeObservers()));
+        } catch (IOException e) {
+            throw new RuntimeException("Spilling leaf failed.", e);
+        }
+        if (parent == null) {
+            this.treeRoot = newLeaf;
+        } else {
+            parent.setChild(parentBranch, newLeaf);
+        }
+        nodeReplaced(parent, parentBranch, newLeaf);
+        trackNodeRemoved(toSpill);
+        trackNodeAdded(newLeaf);
         this.activeLeafNodeCount--;
         this.inactiveLeafNodeCount++;
     }
 
+    protected void closeSpillFile() {
+        if (this.spillFile != null) {
+            try {
+                this.spillFile.close();
+            } catch (IOException e) {
+                // the file is deleted on exit anyway
+            }
+            this.spillFile = null;
+        }
+    }
+
     protected void activateLearningNode(InactiveLearningNode toActivate,
             SplitNode parent, int parentBranch) {
         Node newLeaf = newLearningNode(toActivate.getObservedClassDistribution());
+        if (toActivate instanceof SpilledLearningNode) {
+            AutoExpandVector<AttributeClassObserver> observers = ((SpilledLearningNode) toActivate).restoreAttributeObservers();
+            if (newLeaf instanceof ActiveLearningNode) {
+                ((ActiveLearningNode) newLeaf).setAttributeObservers(observers);
+            }
+        }
         if (parent == null) {
             this.treeRoot = newLeaf;
         } else {
             parent.setChild(parentBranch, newLeaf);
         }
+        nodeReplaced(parent, parentBranch, newLeaf);
+        trackNodeRemoved(toActivate);
+        trackNodeAdded(newLeaf);
         this.activeLeafNodeCount++;
         this.inactiveLeafNodeCount--;
     }
@@ -882,6 +1246,11 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             super(initialClassObservations);
         }
 
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize() + 2 * 8;
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
             int trueClass = (int) inst.classValue();
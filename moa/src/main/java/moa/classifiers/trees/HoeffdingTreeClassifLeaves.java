@@ -104,6 +104,12 @@ public class HoeffdingTreeClassifLeaves extends HoeffdingTree {
         return new LearningNodeClassifier(initialClassObservations, cl, this);
     }
 
+    @Override
+    public long getTrackedByteSize() {
+        // leaf classifiers are not tracked
+        return calcByteSize();
+    }
+
     @Override
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
             int parentIndex) {
@@ -180,6 +186,7 @@ public class HoeffdingTreeClassifLeaves extends HoeffdingTree {
                     } else {
                         parent.setChild(parentIndex, newSplit);
                     }
+                    nodeReplaced(parent, parentIndex, newSplit);
                 }
                 // manage memory
                 enforceTrackerLimit();
@@ -187,6 +187,7 @@ public class IademGaussianNumericAttributeClassObserver
         this.attValDistPerClass = new AutoExpandVector<GaussianEstimator>();
         this.valueCount = 0;
         this.classDist = new DoubleVector();
+        invalidateSplitCache();
     }
 
     //***********************************************************************
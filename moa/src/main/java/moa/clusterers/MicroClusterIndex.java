@@ -0,0 +1,361 @@
+/*
+ *    MicroClusterIndex.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.clusterers;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the centers of micro-clusters, or of points, to find the
+ * nearest center and the centers within a distance without comparing with
+ * all of them.
+ *
+ * <p>Centers are identified by an id from 0 to the capacity of the index, as
+ * the slots of an array of micro-clusters. The grid covers the (at most) two
+ * dimensions where the centers are the most spread, and the cells are
+ * scanned in rings around the cell of the query point. As the distance on
+ * these dimensions is a lower bound of the Euclidean distance, the search
+ * stops as soon as no cell left can hold a closer center, and the results
+ * are the same as the ones of a linear scan: ties are broken by the lowest
+ * id.</p>
+ *
+ * <p>The centers are updated with {@link #set} when they move. The grid is
+ * rebuilt from the current centers after as many updates as there are
+ * centers, so it follows their drift.</p>
+ */
+public class MicroClusterIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	protected static final int GRID_DIMENSIONS = 2;
+
+	// average number of centers per cell
+	protected static final int CENTERS_PER_CELL = 2;
+
+	protected double[][] centers;
+	protected int size;
+
+	// the dimensions of the grid, -1 if the grid has a single cell on it
+	protected int[] gridAttributes = new int[GRID_DIMENSIONS];
+	protected double[] minValues = new double[GRID_DIMENSIONS];
+	protected double[] cellSizes = new double[GRID_DIMENSIONS];
+	protected int[] numCells = new int[GRID_DIMENSIONS];
+	protected double minCellSize;
+
+	protected int[][] cells;
+	protected int[] cellCounts;
+	protected int[] cellOf;
+	protected boolean built;
+	protected int updates;
+
+	protected int[] neighbourIds = new int[16];
+
+	// lower bound of the cell size, to search within a distance
+	protected double minimumCellSize;
+
+	public MicroClusterIndex(int capacity) {
+		this(capacity, 0);
+	}
+
+	/**
+	 * @param capacity the number of ids
+	 * @param minimumCellSize the smallest size of the cells. The distance of
+	 * the searches within a distance is a good choice.
+	 */
+	public MicroClusterIndex(int capacity, double minimumCellSize) {
+		this.centers = new double[capacity][];
+		this.cellOf = new int[capacity];
+		this.minimumCellSize = minimumCellSize;
+	}
+
+	public double[] getCenter(int id) {
+		return centers[id];
+	}
+
+	/**
+	 * Sets the center of an id, which is added to the index if it has none.
+	 * The array is kept by the index and must not be modified afterwards.
+	 */
+	public void set(int id, double[] center) {
+		boolean added = centers[id] == null;
+		if (added) {
+			size++;
+		}
+		centers[id] = center;
+		if (!built || ++updates > size) {
+			built = false;
+			return;
+		}
+		int cell = getCell(center);
+		if (added) {
+			addToCell(id, cell);
+		} else if (cell != cellOf[id]) {
+			removeFromCell(id, cellOf[id]);
+			addToCell(id, cell);
+		}
+	}
+
+	/**
+	 * Finds the nearest center to a point.
+	 *
+	 * @param exclude an id left out of the search, or -1
+	 * @return the id of the nearest center, the lowest one among centers at
+	 * the same distance, or -1 if no center is closer than Double.MAX_VALUE
+	 */
+	public int nearest(double[] point, int exclude) {
+		build();
+		if (!isIndexable(point)) {
+			return nearestByScan(point, exclude);
+		}
+		int cell0 = getCellIndex(point, 0);
+		int cell1 = getCellIndex(point, 1);
+		int maxRing = Math.max(numCells[0], numCells[1]);
+		int best = -1;
+		double bestDistance = Double.MAX_VALUE;
+		for (int ring = 0; ring < maxRing; ring++) {
+			// the centers left are more than ring - 1 cells away, and
+			// one cell is left as slack for the rounding of the indexes
+			if (best >= 0 && bestDistance <= (ring - 2) * minCellSize) {
+				break;
+			}
+			for (int i = cell0 - ring; i <= cell0 + ring; i++) {
+				if (i < 0 || i >= numCells[0]) {
+					continue;
+				}
+				boolean edge = i == cell0 - ring || i == cell0 + ring;
+				int step = edge ? 1 : 2 * ring;
+				for (int j = cell1 - ring; j <= cell1 + ring; j += Math.max(step, 1)) {
+					if (j < 0 || j >= numCells[1]) {
+						continue;
+					}
+					int cell = i * numCells[1] + j;
+					int[] ids = cells[cell];
+					for (int k = 0; k < cellCounts[cell]; k++) {
+						int id = ids[k];
+						if (id == exclude) {
+							continue;
+						}
+						double distance = distance(point, centers[id]);
+						if (distance < bestDistance || (distance == bestDistance && id < best)) {
+							best = id;
+							bestDistance = distance;
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the centers at a distance lower than the given one from a point.
+	 *
+	 * @return the number of centers found. Their ids are the first ones of
+	 * {@link #getNeighbours}, in increasing order.
+	 */
+	public int neighbours(double[] point, double maxDistance) {
+		build();
+		int count = 0;
+		if (!isIndexable(point)) {
+			for (int id = 0; id < centers.length; id++) {
+				if (centers[id] != null && distance(point, centers[id]) < maxDistance) {
+					count = addNeighbour(count, id);
+				}
+			}
+			return count;
+		}
+		// rings farther than maxDistance + one cell of slack cannot match
+		int rings = (int) Math.min(Math.ceil(maxDistance / minCellSize) + 2,
+				Math.max(numCells[0], numCells[1]));
+		int cell0 = getCellIndex(point, 0);
+		int cell1 = getCellIndex(point, 1);
+		for (int i = Math.max(cell0 - rings, 0); i <= Math.min(cell0 + rings, numCells[0] - 1); i++) {
+			for (int j = Math.max(cell1 - rings, 0); j <= Math.min(cell1 + rings, numCells[1] - 1); j++) {
+				int cell = i * numCells[1] + j;
+				int[] ids = cells[cell];
+				for (int k = 0; k < cellCounts[cell]; k++) {
+					if (distance(point, centers[ids[k]]) < maxDistance) {
+						count = addNeighbour(count, ids[k]);
+					}
+				}
+			}
+		}
+		Arrays.sort(neighbourIds, 0, count);
+		return count;
+	}
+
+	/**
+	 * @return the ids found by the last search within a distance. The array
+	 * is reused by the next search.
+	 */
+	public int[] getNeighbours() {
+		return neighbourIds;
+	}
+
+	protected int addNeighbour(int count, int id) {
+		if (count == neighbourIds.length) {
+			neighbourIds = Arrays.copyOf(neighbourIds, count * 2);
+		}
+		neighbourIds[count] = id;
+		return count + 1;
+	}
+
+	protected int nearestByScan(double[] point, int exclude) {
+		int best = -1;
+		double bestDistance = Double.MAX_VALUE;
+		for (int id = 0; id < centers.length; id++) {
+			if (centers[id] == null || id == exclude) {
+				continue;
+			}
+			double distance = distance(point, centers[id]);
+			if (distance < bestDistance) {
+				best = id;
+				bestDistance = distance;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Places all the centers in a new grid, sized after their current spread.
+	 */
+	protected void build() {
+		if (built) {
+			return;
+		}
+		int numAttributes = 0;
+		for (double[] center : centers) {
+			if (center != null) {
+				numAttributes = Math.max(numAttributes, center.length);
+			}
+		}
+		// spread of the centers on each attribute
+		double[] mins = new double[numAttributes];
+		double[] maxs = new double[numAttributes];
+		Arrays.fill(mins, Double.POSITIVE_INFINITY);
+		Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+		for (double[] center : centers) {
+			if (center != null) {
+				for (int a = 0; a < center.length; a++) {
+					if (center[a] < mins[a]) mins[a] = center[a];
+					if (center[a] > maxs[a]) maxs[a] = center[a];
+				}
+			}
+		}
+		int perDimension = Math.max(1, (int) Math.ceil(Math.pow(
+				(double) size / CENTERS_PER_CELL, 1.0 / GRID_DIMENSIONS)));
+		minCellSize = Double.POSITIVE_INFINITY;
+		for (int d = 0; d < GRID_DIMENSIONS; d++) {
+			int widest = -1;
+			double widestRange = 0;
+			for (int a = 0; a < numAttributes; a++) {
+				double range = maxs[a] - mins[a];
+				if (range > widestRange && range < Double.POSITIVE_INFINITY
+						&& (d == 0 || a != gridAttributes[0])) {
+					widest = a;
+					widestRange = range;
+				}
+			}
+			gridAttributes[d] = widest;
+			if (widest < 0) {
+				minValues[d] = 0;
+				cellSizes[d] = Double.POSITIVE_INFINITY;
+				numCells[d] = 1;
+				continue;
+			}
+			double cellSize = Math.max(widestRange / perDimension, minimumCellSize);
+			minValues[d] = mins[widest];
+			cellSizes[d] = cellSize;
+			numCells[d] = (int) Math.min(Math.floor(widestRange / cellSize) + 1, perDimension);
+			minCellSize = Math.min(minCellSize, cellSize);
+		}
+		int numGridCells = numCells[0] * numCells[1];
+		cells = new int[numGridCells][];
+		cellCounts = new int[numGridCells];
+		for (int id = 0; id < centers.length; id++) {
+			if (centers[id] != null) {
+				addToCell(id, getCell(centers[id]));
+			}
+		}
+		updates = 0;
+		built = true;
+	}
+
+	// points with missing values on the grid dimensions are searched by a scan
+	protected boolean isIndexable(double[] point) {
+		for (int d = 0; d < GRID_DIMENSIONS; d++) {
+			int a = gridAttributes[d];
+			if (a >= 0 && (a >= point.length || Double.isNaN(point[a]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected int getCell(double[] point) {
+		return getCellIndex(point, 0) * numCells[1] + getCellIndex(point, 1);
+	}
+
+	// cells are clamped to the grid, which keeps the distance between
+	// the cells a lower bound of the distance between the points
+	protected int getCellIndex(double[] point, int d) {
+		int a = gridAttributes[d];
+		if (a < 0 || a >= point.length) {
+			return 0;
+		}
+		double cell = Math.floor((point[a] - minValues[d]) / cellSizes[d]);
+		if (!(cell > 0)) {
+			return 0;
+		}
+		return (int) Math.min(cell, numCells[d] - 1);
+	}
+
+	protected void addToCell(int id, int cell) {
+		int[] ids = cells[cell];
+		if (ids == null) {
+			ids = cells[cell] = new int[4];
+		} else if (cellCounts[cell] == ids.length) {
+			ids = cells[cell] = Arrays.copyOf(ids, ids.length * 2);
+		}
+		ids[cellCounts[cell]++] = id;
+		cellOf[id] = cell;
+	}
+
+	protected void removeFromCell(int id, int cell) {
+		int[] ids = cells[cell];
+		for (int k = 0; k < cellCounts[cell]; k++) {
+			if (ids[k] == id) {
+				ids[k] = ids[--cellCounts[cell]];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Euclidean distance over the attributes of the first point.
+	 */
+	public static double distance(double[] pointA, double[] pointB) {
+		double distance = 0.0;
+		for (int i = 0; i < pointA.length; i++) {
+			double d = pointA[i] - pointB[i];
+			distance += d * d;
+		}
+		return Math.sqrt(distance);
+	}
+}
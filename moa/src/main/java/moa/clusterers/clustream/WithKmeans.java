@@ -37,6 +37,7 @@ import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.cluster.SphereCluster;
 import moa.clusterers.AbstractClusterer;
+import moa.clusterers.MicroClusterIndex;
 import moa.core.Measurement;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.DenseInstance;
@@ -64,6 +65,7 @@ public class WithKmeans extends AbstractClusterer {
 	private int timeWindow;
 	private long timestamp = -1;
 	private ClustreamKernel[] kernels;
+	private MicroClusterIndex index; // Index of the kernel centers
 	private boolean initialized;
 	private List<ClustreamKernel> buffer; // Buffer for initialization with kNN
 	private int bufferSize;
@@ -77,6 +79,7 @@ public class WithKmeans extends AbstractClusterer {
 	@Override
 	public void resetLearningImpl() {
 		this.kernels = new ClustreamKernel[maxNumKernelsOption.getValue()];
+		this.index = new MicroClusterIndex(kernels.length);
 		this.timeWindow = timeWindowOption.getValue();
 		this.initialized = false;
 		this.buffer = new LinkedList<ClustreamKernel>();
@@ -97,6 +100,7 @@ public class WithKmeans extends AbstractClusterer {
 			} else {
 				for (int i = 0; i < buffer.size(); i++) {
 					kernels[i] = new ClustreamKernel(new DenseInstance(1.0, buffer.get(i).getCenter()), dim, timestamp, t, m);
+					index.set(i, kernels[i].getCenter());
 				}
 	
 				buffer.clear();
@@ -107,16 +111,10 @@ public class WithKmeans extends AbstractClusterer {
 
 
 		// 1. Determine closest kernel
-		ClustreamKernel closestKernel = null;
-		double minDistance = Double.MAX_VALUE;
-		for ( int i = 0; i < kernels.length; i++ ) {
-			//System.out.println(i+" "+kernels[i].getWeight()+" "+kernels[i].getDeviation());
-			double distance = distance(instance.toDoubleArray(), kernels[i].getCenter());
-			if (distance < minDistance) {
-				closestKernel = kernels[i];
-				minDistance = distance;
-			}
-		}
+		double[] point = instance.toDoubleArray();
+		int closest = index.nearest( point, -1 );
+		ClustreamKernel closestKernel = kernels[closest];
+		double minDistance = distance( point, index.getCenter( closest ) );
 
 		// 2. Check whether instance fits into closestKernel
 		double radius = 0.0;
@@ -124,14 +122,10 @@ public class WithKmeans extends AbstractClusterer {
 			// Special case: estimate radius by determining the distance to the
 			// next closest cluster
 			radius = Double.MAX_VALUE;
-			double[] center = closestKernel.getCenter();
-			for ( int i = 0; i < kernels.length; i++ ) {
-				if ( kernels[i] == closestKernel ) {
-					continue;
-				}
-
-				double distance = distance(kernels[i].getCenter(), center );
-				radius = Math.min( distance, radius );
+			double[] center = index.getCenter( closest );
+			int next = index.nearest( center, closest );
+			if ( next >= 0 ) {
+				radius = distance( index.getCenter( next ), center );
 			}
 		} else {
 			radius = closestKernel.getRadius();
@@ -140,6 +134,7 @@ public class WithKmeans extends AbstractClusterer {
 		if ( minDistance < radius ) {
 			// Date fits, put into kernel and be happy
 			closestKernel.insert( instance, timestamp );
+			index.set( closest, closestKernel.getCenter() );
 			return;
 		}
 
@@ -151,29 +146,37 @@ public class WithKmeans extends AbstractClusterer {
 		for ( int i = 0; i < kernels.length; i++ ) {
 			if ( kernels[i].getRelevanceStamp() < threshold ) {
 				kernels[i] = new ClustreamKernel( instance, dim, timestamp, t, m );
+				index.set( i, kernels[i].getCenter() );
 				return;
 			}
 		}
 
 		// 3.2 Merge closest two kernels
+		// The first kernel whose nearest kernel is the closest one of all
+		// and that nearest kernel are the first closest pair, as the
+		// nearest kernel is the first one among kernels at the same distance
 		int closestA = 0;
 		int closestB = 0;
 		minDistance = Double.MAX_VALUE;
 		for ( int i = 0; i < kernels.length; i++ ) {
-			double[] centerA = kernels[i].getCenter();
-			for ( int j = i + 1; j < kernels.length; j++ ) {
-				double dist = distance( centerA, kernels[j].getCenter() );
-				if ( dist < minDistance ) {
-					minDistance = dist;
-					closestA = i;
-					closestB = j;
-				}
+			double[] centerA = index.getCenter( i );
+			int j = index.nearest( centerA, i );
+			if ( j < 0 ) {
+				continue;
+			}
+			double dist = distance( centerA, index.getCenter( j ) );
+			if ( dist < minDistance ) {
+				minDistance = dist;
+				closestA = i;
+				closestB = j;
 			}
 		}
 		assert (closestA != closestB);
 
 		kernels[closestA].add( kernels[closestB] );
 		kernels[closestB] = new ClustreamKernel( instance, dim, timestamp, t,  m );
+		index.set( closestA, kernels[closestA].getCenter() );
+		index.set( closestB, kernels[closestB].getCenter() );
 	}
 	
 	@Override
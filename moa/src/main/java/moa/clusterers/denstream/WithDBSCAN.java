@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.clusterers.AbstractClusterer;
+import moa.clusterers.MicroClusterIndex;
 import moa.clusterers.macro.dbscan.DBScan;
 import moa.core.Measurement;
 import com.github.javacliparser.FloatOption;
@@ -74,6 +75,8 @@ public class WithDBSCAN extends AbstractClusterer {
 	Clustering p_micro_cluster;
 	Clustering o_micro_cluster;
 	ArrayList<DenPoint> initBuffer;
+	// index of the points of initBuffer, during the initial DBSCAN
+	MicroClusterIndex initIndex;
 
 	boolean initialized;
 	private long timestamp = 0;
@@ -123,6 +126,10 @@ public class WithDBSCAN extends AbstractClusterer {
 	}
 
 	public void initialDBScan() {
+		initIndex = new MicroClusterIndex(initBuffer.size(), epsilon);
+		for (int p = 0; p < initBuffer.size(); p++) {
+			initIndex.set(p, initBuffer.get(p).toDoubleArray());
+		}
 		for (int p = 0; p < initBuffer.size(); p++) {
 			DenPoint point = initBuffer.get(p);
 			if (!point.covered) {
@@ -140,6 +147,7 @@ public class WithDBSCAN extends AbstractClusterer {
 				}
 			}
 		}
+		initIndex = null;
 	}
 
 	@Override
@@ -245,17 +253,15 @@ public class WithDBSCAN extends AbstractClusterer {
 		}
 	}
 
+	// points must be initBuffer, whose points are in initIndex
 	private ArrayList<Integer> getNeighbourhoodIDs(DenPoint point,
 			ArrayList<DenPoint> points, double eps) {
 		ArrayList<Integer> neighbourIDs = new ArrayList<Integer>();
-		for (int p = 0; p < points.size(); p++) {
-			DenPoint npoint = points.get(p);
-			if (!npoint.covered) {
-				double dist = distance(point.toDoubleArray(), points.get(p)
-						.toDoubleArray());
-				if (dist < eps) {
-					neighbourIDs.add(p);
-				}
+		int count = initIndex.neighbours(point.toDoubleArray(), eps);
+		int[] ids = initIndex.getNeighbours();
+		for (int i = 0; i < count; i++) {
+			if (!points.get(ids[i]).covered) {
+				neighbourIDs.add(ids[i]);
 			}
 		}
 		return neighbourIDs;
@@ -264,12 +270,13 @@ public class WithDBSCAN extends AbstractClusterer {
 	private MicroCluster nearestCluster(DenPoint p, Clustering cl) {
 		MicroCluster min = null;
 		double minDist = 0;
+		double[] point = p.toDoubleArray();
 		for (int c = 0; c < cl.size(); c++) {
 			MicroCluster x = (MicroCluster) cl.get(c);
 			if (min == null) {
 				min = x;
 			}
-			double dist = distance(p.toDoubleArray(), x.getCenter());
+			double dist = distance(point, x.getCenter());
 			dist -= x.getRadius(timestamp);
 			if (dist < minDist) {
 				minDist = dist;
@@ -0,0 +1,255 @@
+/**
+ *    DensityGridStore.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package moa.clusterers.dstream;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table of every density grid seen by D-Stream, keyed by the
+ * coordinates of the grid.
+ *
+ * A grid is either in grid_list, and the store keeps its characteristic vector,
+ * or it was removed as sporadic, and the store only keeps the time of its removal.
+ * The coordinates of all the grids are packed in a single array of ints, and each
+ * grid has a 64 bit key hashed from its coordinates, so a removed grid only costs
+ * a few primitive values and the grid of a record is found without creating a
+ * DensityGrid.
+ */
+public class DensityGridStore
+{
+	/**
+	 * The value of 'd' for the d-dimensional space S considered by D-Stream.
+	 */
+	private int dimensions;
+
+	/**
+	 * The number of grids in the store. Grids are numbered in the order in which they are added.
+	 */
+	private int size;
+
+	/**
+	 * The coordinates of grid i, from i * dimensions.
+	 */
+	private int[] coordinates;
+
+	/**
+	 * The key of each grid, hashed from its coordinates.
+	 */
+	private long[] keys;
+
+	/**
+	 * The key of each grid in grid_list, null for the removed grids.
+	 */
+	private DensityGrid[] grids;
+
+	/**
+	 * The characteristic vector of each grid in grid_list, null for the removed grids.
+	 */
+	private CharacteristicVector[] vectors;
+
+	/**
+	 * The time at which each grid was last removed from grid_list, -1 if it never was.
+	 */
+	private int[] removeTimes;
+
+	/**
+	 * The open addressing table, holding 1 + the number of a grid, or 0 for an empty slot.
+	 */
+	private int[] table;
+
+	/**
+	 * A constructor method for a store of density grids
+	 *
+	 * @param dimensions the number of coordinates of the density grids
+	 */
+	public DensityGridStore(int dimensions)
+	{
+		int capacity = 16;
+		this.dimensions = dimensions;
+		this.size = 0;
+		this.coordinates = new int[capacity * dimensions];
+		this.keys = new long[capacity];
+		this.grids = new DensityGrid[capacity];
+		this.vectors = new CharacteristicVector[capacity];
+		this.removeTimes = new int[capacity];
+		this.table = new int[2 * capacity];
+	}
+
+	/**
+	 * @param c the coordinates of a density grid
+	 *
+	 * @return the number of the grid, or -1 if it is not in the store
+	 */
+	public int find(int[] c)
+	{
+		long key = key(c);
+		int mask = this.table.length - 1;
+
+		for (int slot = (int) key & mask ; this.table[slot] != 0 ; slot = (slot + 1) & mask)
+		{
+			int grid = this.table[slot] - 1;
+
+			if (this.keys[grid] == key && hasCoordinates(grid, c))
+				return grid;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Adds a density grid which is not in the store yet.
+	 *
+	 * @param c the coordinates of the density grid
+	 *
+	 * @return the number of the grid
+	 */
+	public int add(int[] c)
+	{
+		if (this.size == this.keys.length)
+			grow();
+
+		int grid = this.size++;
+		long key = key(c);
+		System.arraycopy(c, 0, this.coordinates, grid * this.dimensions, this.dimensions);
+		this.keys[grid] = key;
+		this.removeTimes[grid] = -1;
+		insert(grid, key);
+
+		return grid;
+	}
+
+	/**
+	 * @return the key of the grid in grid_list, null if it is not in grid_list
+	 */
+	public DensityGrid getGrid(int grid)
+	{
+		return this.grids[grid];
+	}
+
+	/**
+	 * @return the characteristic vector of the grid if it is in grid_list, null otherwise
+	 */
+	public CharacteristicVector getVector(int grid)
+	{
+		return this.vectors[grid];
+	}
+
+	/**
+	 * Records a grid which is put in grid_list.
+	 *
+	 * @param grid the number of the grid
+	 * @param dg the key of the grid in grid_list
+	 * @param cv the characteristic vector of the grid
+	 */
+	public void put(int grid, DensityGrid dg, CharacteristicVector cv)
+	{
+		this.grids[grid] = dg;
+		this.vectors[grid] = cv;
+	}
+
+	/**
+	 * Sets the characteristic vector of a grid in grid_list.
+	 */
+	public void setVector(int grid, CharacteristicVector cv)
+	{
+		this.vectors[grid] = cv;
+	}
+
+	/**
+	 * @return the last time at which the grid was removed from grid_list, -1 if it never was
+	 */
+	public int getRemoveTime(int grid)
+	{
+		return this.removeTimes[grid];
+	}
+
+	/**
+	 * Marks a grid as removed from grid_list.
+	 *
+	 * @param grid the number of the grid
+	 * @param removeTime the time of the removal
+	 */
+	public void remove(int grid, int removeTime)
+	{
+		this.grids[grid] = null;
+		this.vectors[grid] = null;
+		this.removeTimes[grid] = removeTime;
+	}
+
+	/**
+	 * @return the number of grids in the store, removed ones included. The grids
+	 * are numbered from 0 to size() - 1.
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	private boolean hasCoordinates(int grid, int[] c)
+	{
+		int offset = grid * this.dimensions;
+
+		for (int i = 0 ; i < this.dimensions ; i++)
+		{
+			if (this.coordinates[offset + i] != c[i])
+				return false;
+		}
+
+		return true;
+	}
+
+	private void insert(int grid, long key)
+	{
+		int mask = this.table.length - 1;
+		int slot = (int) key & mask;
+
+		while (this.table[slot] != 0)
+			slot = (slot + 1) & mask;
+
+		this.table[slot] = grid + 1;
+	}
+
+	/**
+	 * Doubles the capacity of the store, keeping the table at most half full.
+	 */
+	private void grow()
+	{
+		int capacity = 2 * this.keys.length;
+		this.coordinates = Arrays.copyOf(this.coordinates, capacity * this.dimensions);
+		this.keys = Arrays.copyOf(this.keys, capacity);
+		this.grids = Arrays.copyOf(this.grids, capacity);
+		this.vectors = Arrays.copyOf(this.vectors, capacity);
+		this.removeTimes = Arrays.copyOf(this.removeTimes, capacity);
+		this.table = new int[2 * capacity];
+
+		for (int grid = 0 ; grid < this.size ; grid++)
+			insert(grid, this.keys[grid]);
+	}
+
+	/**
+	 * Hashes the coordinates of a grid into a 64 bit key whose low bits are well mixed.
+	 */
+	private long key(int[] c)
+	{
+		long key = 1;
+
+		for (int i = 0 ; i < this.dimensions ; i++)
+			key = (key ^ c[i]) * 0x9E3779B97F4A7C15L;
+
+		return key ^ (key >>> 29) ^ (key >>> 47);
+	}
+}
@@ -124,11 +124,12 @@ public class Dstream extends AbstractClusterer {
 	private HashMap<DensityGrid,CharacteristicVector> grid_list;
 	
 	/**
-	 * A list of all density grids which have been deleted;
-	 * allows the recording of tm - the last time when the 
-	 * grid is removed from grid list as a sporadic grid (if ever).
+	 * All density grids which have been seen, by coordinates: the characteristic
+	 * vectors of the grids in grid_list, so the grid of a record is found without
+	 * creating a DensityGrid, and the deleted grids, which allows the recording of 
+	 * tm - the last time when the grid is removed from grid list as a sporadic grid (if ever).
 	 */
-	private HashMap<DensityGrid,Integer> deleted_grids;
+	private DensityGridStore grid_store;
 	
 	
 	/**
@@ -204,7 +205,7 @@ public class Dstream extends AbstractClusterer {
 
 		this.initialized = false;
 		this.grid_list = new HashMap<DensityGrid, CharacteristicVector>();
-		this.deleted_grids = new HashMap<DensityGrid, Integer>();
+		this.grid_store = null;
 		this.cluster_list = new ArrayList<GridCluster>();
 		//System.out.println("Data structures initialized...");
 
@@ -244,6 +245,7 @@ public class Dstream extends AbstractClusterer {
 			//System.out.println("d = "+this.d);
 			this.minVals = new int[this.d];
 			this.maxVals = new int[this.d];
+			this.grid_store = new DensityGridStore(this.d);
 			//System.out.println("...data initialized");
 			
 			for(int i = 0 ; i < this.d ; i++)
@@ -319,24 +321,28 @@ public class Dstream extends AbstractClusterer {
 			//System.out.println(" A is "+optionA+", B is "+optionB+" and gap = "+gap);
 		}
 
-		dg = new DensityGrid(g);
-		//System.out.println(dg.toString());
+		int gridIndex = this.grid_store.find(g);
 		
 		// 3. If (g not in grid_list) insert dg to grid_list
 		//System.out.println(" & Step 3 or 4");
 		
-		if(!this.grid_list.containsKey(dg))
+		if(gridIndex == -1 || this.grid_store.getVector(gridIndex) == null)
 		{
 			//System.out.print("3 - dg wasn't in grid_list!");
-			if(this.deleted_grids.containsKey(dg))
+			dg = new DensityGrid(g);
+			//System.out.println(dg.toString());
+			if(gridIndex != -1)
 			{
-				//System.out.print(" but it was in deleted_grids!");
-				cv = new CharacteristicVector(this.getCurrTime(), this.deleted_grids.get(dg).intValue(), 1.0, -1, false, this.getDL(), this.getDM());
-				this.deleted_grids.remove(dg);
+				//System.out.print(" but it was deleted!");
+				cv = new CharacteristicVector(this.getCurrTime(), this.grid_store.getRemoveTime(gridIndex), 1.0, -1, false, this.getDL(), this.getDM());
 			}
 			else
+			{
 				cv = new CharacteristicVector(this.getCurrTime(), -1, 1.0, -1, false, this.getDL(), this.getDM());
+				gridIndex = this.grid_store.add(g);
+			}
 			
+			this.grid_store.put(gridIndex, dg, cv);
 			this.grid_list.put(dg, cv);
 			//System.out.print(" "+dg.toString()+" "+cv.toString());
 			//System.out.println(" The size of grid_list is now "+grid_list.size());
@@ -345,15 +351,11 @@ public class Dstream extends AbstractClusterer {
 		else
 		{
 			//System.out.print("4 - dg was in grid_list!");
-			cv = this.grid_list.get(dg);
+			cv = this.grid_store.getVector(gridIndex);
 				
 			cv.densityWithNew(this.getCurrTime(), this.getDecayFactor());
 				
 			cv.setUpdateTime(this.getCurrTime());
-		
-			//System.out.println(" "+dg.toString()+" "+cv.toString());
-		
-			grid_list.put(dg, cv);
 		}
 
 		// 5. If tc == gap, then initial clustering
@@ -534,6 +536,7 @@ public class Dstream extends AbstractClusterer {
 									c.addGrid(dgprime);
 									this.cluster_list.set(class1, c);
 									this.grid_list.put(dg, cv2);
+									this.grid_store.setVector(this.grid_store.find(dg.getCoordinates()), cv2);
 									return true;
 								}
 							}
@@ -565,10 +568,16 @@ public class Dstream extends AbstractClusterer {
 		//    a. If dg is sparse
 		//    b. If dg is dense
 		//    c. If dg is transitional
+		// The grids before the last changed one have been inspected already, and the changes
+		// do not add grids to grid_list, so the inspection resumes where it stopped
 		boolean changesMade = false;
+		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> gridIter = this.grid_list.entrySet().iterator();
 		
 		do{
-			changesMade=inspectChangedGrids();
+			int size = this.grid_list.size();
+			changesMade=inspectChangedGrids(gridIter);
+			if (this.grid_list.size() != size)
+				gridIter = this.grid_list.entrySet().iterator();
 		}while(changesMade);
 
 		//printGridList();
@@ -588,12 +597,13 @@ public class Dstream extends AbstractClusterer {
 	 * call to adjustClustering. Implements lines 3/4/7/19 of the procedure given in Figure 
 	 * 4 of Chen and Tu 2007.
 	 * 
+	 * @param gridIter the iterator over grid_list from which the inspection continues
+	 * 
 	 * @return TRUE if any grids are updated; FALSE otherwise.
 	 */
-	private boolean inspectChangedGrids()
+	private boolean inspectChangedGrids(Iterator<Map.Entry<DensityGrid, CharacteristicVector>> gridIter)
 	{
 		HashMap<DensityGrid, CharacteristicVector> glNew = new HashMap<DensityGrid, CharacteristicVector>();
-		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> gridIter = this.grid_list.entrySet().iterator();
 		
 		while (gridIter.hasNext() && glNew.isEmpty())
 		{
@@ -1157,8 +1167,8 @@ public class Dstream extends AbstractClusterer {
 		//       i. If (S1 && S2), mark as sporadic
 		
 		// For each grid g in grid_list
+		// The sporadic flags are updated in place, grid_list only changes when the sporadic grids are removed
 		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> glIter = this.grid_list.entrySet().iterator();
-		HashMap<DensityGrid, CharacteristicVector> newGL = new HashMap<DensityGrid, CharacteristicVector>();
 		ArrayList<DensityGrid> remGL = new ArrayList<DensityGrid>();
 				
 		while(glIter.hasNext())
@@ -1186,7 +1196,6 @@ public class Dstream extends AbstractClusterer {
 				{
 					cv.setSporadic(checkIfSporadic(cv));
 					//System.out.println("within gap" + dg.toString() + " sporadicity assessed "+cv.isSporadic());
-					newGL.put(dg, cv);
 				}
 				
 			}
@@ -1195,12 +1204,9 @@ public class Dstream extends AbstractClusterer {
 			{
 				cv.setSporadic(checkIfSporadic(cv));
 				//System.out.println(dg.toString() + " sporadicity assessed "+cv.isSporadic());
-				newGL.put(dg, cv);
 			}
 		}
 		
-		this.grid_list.putAll(newGL);
-		
 		//System.out.println(" - Removed "+remGL.size()+" grids from grid_list.");
 		Iterator<DensityGrid> remIter = remGL.iterator();
 		
@@ -1208,7 +1214,7 @@ public class Dstream extends AbstractClusterer {
 		{
 			DensityGrid sporadicDG = remIter.next();
 			//System.out.println("Removing sporadic grid "+sporadicDG.toString()+" at time "+this.getCurrTime()+".");
-			this.deleted_grids.put(sporadicDG, new Integer(this.getCurrTime()));
+			this.grid_store.remove(this.grid_store.find(sporadicDG.getCoordinates()), this.getCurrTime());
 			this.grid_list.remove(sporadicDG);
 		}
 		
@@ -1282,18 +1288,21 @@ public class Dstream extends AbstractClusterer {
 	/**
 	 * Iterates through grid_list and updates the density for each density grid therein.
 	 * Also marks each density grid as unvisited for this call to adjustClustering.
+	 * The grids are independent, so they are visited in the order of grid_store, 
+	 * which holds the same grids as grid_list in arrays.
 	 */
 	private void updateGridListDensity()
 	{
-		for (Map.Entry<DensityGrid, CharacteristicVector> grid : grid_list.entrySet())
+		for (int grid = 0 ; grid < this.grid_store.size() ; grid++)
 		{
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cvOfG = grid.getValue();
+			DensityGrid dg = this.grid_store.getGrid(grid);
+			CharacteristicVector cvOfG = this.grid_store.getVector(grid);
+
+			if (dg == null)
+				continue;
 
 			dg.setVisited(false);
 			cvOfG.updateGridDensity(this.getCurrTime(), this.getDecayFactor(), this.getDL(), this.getDM());
-
-			this.grid_list.put(dg, cvOfG);
 		}
 	}
 
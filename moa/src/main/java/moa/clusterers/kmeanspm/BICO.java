@@ -25,7 +25,13 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -65,6 +71,14 @@ public class BICO extends AbstractClusterer {
 			"Number of random projections used for the nearest neighbour search.",
 			10, 1, Integer.MAX_VALUE);
 
+	public FlagOption backgroundReductionOption = new FlagOption(
+			"BackgroundReduction", 'b',
+			"Rebuild the tree in a background thread while the next points are buffered.");
+
+	public IntOption numberOfJobsOption = new IntOption("NumberOfJobs", 'j',
+			"Number of threads computing the distances of k-means++ (-1 = as many as processors, 0 or 1 = no multithreading).",
+			1, -1, Integer.MAX_VALUE);
+
 	protected int numClusters;
 	protected int numDimensions;
 	protected int maxNumClusterFeatures;
@@ -79,6 +93,17 @@ public class BICO extends AbstractClusterer {
 	private int rootCount;
 	private double T;
 
+	// Thread rebuilding the tree, null if it is rebuilt on insertion
+	private transient ExecutorService reducer;
+	private transient Future<?> reduction;
+	// Points inserted while the tree is rebuilt, and the second buffer
+	// replacing them when they are added to the tree
+	private List<double[]> pending;
+	private List<double[]> spare;
+
+	private transient ExecutorService executor;
+	private int numberOfJobs;
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -106,6 +131,7 @@ public class BICO extends AbstractClusterer {
 	 */
 	@Override
 	public Clustering getMicroClusteringResult() {
+		waitForReduction();
 		return this.root.addToClustering(new Clustering(
 				new AutoExpandVector<Cluster>(this.rootCount)));
 	}
@@ -119,6 +145,7 @@ public class BICO extends AbstractClusterer {
 	 *            If an I/O error occurs
 	 */
 	public void printMicroClusteringResult(Writer stream) throws IOException {
+		waitForReduction();
 		this.root.printClusteringCenters(stream);
 	}
 
@@ -128,6 +155,7 @@ public class BICO extends AbstractClusterer {
 	 * @return The size of the micro clustering
 	 */
 	public int getMicroClusteringSize() {
+		waitForReduction();
 		return this.rootCount;
 	}
 
@@ -180,6 +208,7 @@ public class BICO extends AbstractClusterer {
 				}
 			}
 		} else {
+			waitForReduction();
 			// Collects all nodes as arrays with the weight in the first element
 			microClustering = this.root
 					.addToClusteringCenters(new ArrayList<double[]>(this.rootCount));
@@ -191,9 +220,11 @@ public class BICO extends AbstractClusterer {
 			// Creates the starting centroids
 			List<double[]> newResult = CoresetKMeans
 					.generatekMeansPlusPlusCentroids(this.numClusters,
-							microClustering, this.clustererRandom);
+							microClustering, this.clustererRandom, getExecutor(),
+							this.numberOfJobs);
 			// Runs the k-means algorithm with changing the starting centroids
-			double newValue = CoresetKMeans.kMeans(newResult, microClustering);
+			double newValue = CoresetKMeans.kMeans(newResult, microClustering,
+					getExecutor(), this.numberOfJobs);
 			// Selects the result with minimum costs
 			if (newValue < minValue) {
 				result = newResult;
@@ -217,6 +248,15 @@ public class BICO extends AbstractClusterer {
 	 */
 	@Override
 	public void resetLearningImpl() {
+		if (this.reducer != null) {
+			this.reducer.shutdown();
+			this.reducer = null;
+			this.reduction = null;
+		}
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
 		this.numClusters = this.numClustersOption.getValue();
 		this.numDimensions = this.numDimensionsOption.getValue();
 		this.maxNumClusterFeatures = this.maxNumClusterFeaturesOption.getValue();
@@ -235,6 +275,25 @@ public class BICO extends AbstractClusterer {
 				this.numProjectionsOption.getValue(), Math.min(hashSize, 30),
 				this.clustererRandom);
 		this.rootCount = 0;
+
+		if (this.backgroundReductionOption.isSet()) {
+			this.pending = new ArrayList<double[]>(this.maxNumClusterFeatures);
+			this.spare = new ArrayList<double[]>(this.maxNumClusterFeatures);
+			this.reducer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "BICO tree rebuild");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		} else {
+			this.pending = null;
+			this.spare = null;
+		}
+		this.numberOfJobs = this.numberOfJobsOption.getValue() == -1 ? Runtime
+				.getRuntime().availableProcessors() : Math.max(
+				this.numberOfJobsOption.getValue(), 1);
 	}
 
 	/*
@@ -274,17 +333,97 @@ public class BICO extends AbstractClusterer {
 				this.bufferPhase = false;
 				// Adds all points to the ClusteringFeature tree
 				for (double[] point : this.buffer) {
-					bicoUpdate(point);
+					insert(point);
 				}
 				this.buffer.clear();
 				this.buffer = null;
 			}
 		} else {
 			// Adds the point directly to the ClusteringFeature tree
+			insert(x);
+		}
+	}
+
+	/**
+	 * Inserts a new point into the ClusteringFeature tree, or buffers it if
+	 * the tree is being rebuilt in the background. The buffered points are
+	 * inserted in the same order after the rebuild, so the tree is the same
+	 * as without background reduction.
+	 *
+	 * @param x
+	 *            the point
+	 */
+	protected void insert(double[] x) {
+		if (this.reduction != null
+				&& (this.reduction.isDone() || this.pending.size() >= this.maxNumClusterFeatures)) {
+			finishReduction();
+		}
+		if (this.reduction != null) {
+			this.pending.add(x);
+		} else {
 			bicoUpdate(x);
 		}
 	}
 
+	/**
+	 * Waits for the end of the background rebuild and inserts the points
+	 * buffered meanwhile. If they cause another rebuild, the remaining points
+	 * are buffered again.
+	 */
+	protected void finishReduction() {
+		try {
+			this.reduction.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Interrupted while rebuilding the tree.", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not rebuild the tree.", e.getCause());
+		} finally {
+			this.reduction = null;
+		}
+		List<double[]> points = this.pending;
+		this.pending = this.spare;
+		this.spare = points;
+		for (double[] point : points) {
+			if (this.reduction != null) {
+				this.pending.add(point);
+			} else {
+				bicoUpdate(point);
+			}
+		}
+		points.clear();
+	}
+
+	/**
+	 * Waits until the tree is not rebuilt in the background anymore and
+	 * contains all inserted points.
+	 */
+	protected void waitForReduction() {
+		while (this.reduction != null) {
+			finishReduction();
+		}
+	}
+
+	/**
+	 * Returns the pool of threads computing the distances of the k-means
+	 * algorithm, or null if they are computed in the calling thread.
+	 *
+	 * @return the pool of threads
+	 */
+	protected ExecutorService getExecutor() {
+		if (this.executor == null && this.numberOfJobs > 1) {
+			this.executor = Executors.newFixedThreadPool(this.numberOfJobs,
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "BICO k-means++");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return this.executor;
+	}
+
 	/**
 	 * Inserts a new point into the ClusteringFeature tree.
 	 *
@@ -323,7 +462,16 @@ public class BICO extends AbstractClusterer {
 		}
 		// Checks if the number of nodes in the tree exceeds the maximum number
 		if (this.rootCount > this.maxNumClusterFeatures) {
-			rebuild();
+			if (this.reducer == null) {
+				rebuild();
+			} else {
+				this.reduction = this.reducer.submit(new Runnable() {
+					@Override
+					public void run() {
+						rebuild();
+					}
+				});
+			}
 		}
 	}
 
@@ -23,6 +23,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Provides methods to execute the k-means and k-means++ algorithm with a
@@ -48,34 +52,63 @@ public class CoresetKMeans {
 	 */
 	public static List<double[]> generatekMeansPlusPlusCentroids(int k,
 			List<double[]> input, Random random) {
+		return generatekMeansPlusPlusCentroids(k, input, random, null, 1);
+	}
+
+	/**
+	 * Generates the initial centroids like the k-means++ algorithm. The
+	 * distances of the points to the last selected centroid are updated in
+	 * chunks by the given threads, the generated centroids do not depend on
+	 * the number of chunks.
+	 *
+	 * @param k
+	 *            number of centroids
+	 * @param input
+	 *            input clustering
+	 * @param random
+	 *            instance to generate a stream of pseudorandom numbers
+	 * @param executor
+	 *            threads updating the distances, or null to update them in
+	 *            the calling thread
+	 * @param numberOfChunks
+	 *            number of chunks the points are split into
+	 * @return the generated centroids
+	 */
+	public static List<double[]> generatekMeansPlusPlusCentroids(int k,
+			List<double[]> input, Random random, ExecutorService executor,
+			int numberOfChunks) {
 		int n = input.size();
 		assert (n > 0);
 		int d = input.get(0).length - 1;
 		assert (k <= n);
+		final double[][] points = input.toArray(new double[n][]);
 
 		List<double[]> centerValue = new ArrayList<double[]>(k);
 		// Selects and copies the first centroid
 		double[] lastCenter = new double[d];
-		System.arraycopy(input.get(random.nextInt(n)), 1, lastCenter, 0, d);
+		System.arraycopy(points[random.nextInt(n)], 1, lastCenter, 0, d);
 		centerValue.add(lastCenter);
 
-		double[] distance = new double[n];
+		final double[] distance = new double[n];
 		for (int j = 0; j < n; j++) {
 			distance[j] = Double.POSITIVE_INFINITY;
 		}
 		for (int i = 1; i < k; i++) {
+			// Updates the distances to the last centroid
+			final double[] center = lastCenter;
+			forEachChunk(n, executor, numberOfChunks, new Chunk() {
+				@Override
+				public void run(int from, int to) {
+					for (int j = from; j < to; j++) {
+						distance[j] = Math.min(distance[j], points[j][0]
+								* Metric.distanceSquared(center, points[j], 1));
+					}
+				}
+			});
 			// Selects the next centroid
 			double sum = 0.0;
-			Iterator<double[]> jIter = input.iterator();
 			for (int j = 0; j < n; j++) {
-				double[] point = jIter.next();
-				distance[j] = Math
-						.min(distance[j],
-								point[0]
-										* Metric.distanceSquared(lastCenter,
-												point, 1));
 				sum += distance[j];
-
 			}
 			int candidate = 0;
 			if (sum > 0) {
@@ -87,7 +120,7 @@ public class CoresetKMeans {
 			}
 			// Copies the selected centroid
 			lastCenter = new double[d];
-			System.arraycopy(input.get(candidate), 1, lastCenter, 0, d);
+			System.arraycopy(points[candidate], 1, lastCenter, 0, d);
 			centerValue.add(lastCenter);
 		}
 
@@ -105,12 +138,35 @@ public class CoresetKMeans {
 	 * @return the k-means costs
 	 */
 	public static double kMeans(List<double[]> centroids, List<double[]> input) {
-		int k = centroids.size();
+		return kMeans(centroids, input, null, 1);
+	}
+
+	/**
+	 * Executes the k-means algorithm with the given initial centroids until the
+	 * costs converges. The nearest centroids and the costs of the points are
+	 * computed in chunks by the given threads, the results do not depend on
+	 * the number of chunks.
+	 *
+	 * @param centroids
+	 *            initial centroids
+	 * @param input
+	 *            input clustering
+	 * @param executor
+	 *            threads computing the distances, or null to compute them in
+	 *            the calling thread
+	 * @param numberOfChunks
+	 *            number of chunks the points are split into
+	 * @return the k-means costs
+	 */
+	public static double kMeans(List<double[]> centroids, List<double[]> input,
+			ExecutorService executor, int numberOfChunks) {
+		final int k = centroids.size();
 		assert (k > 0);
-		int d = centroids.get(0).length;
+		final int d = centroids.get(0).length;
 		int size = input.size();
+		final double[][] points = input.toArray(new double[size][]);
 
-		double[][] center = new double[k][];
+		final double[][] center = new double[k][];
 		Iterator<double[]> iIter = centroids.iterator();
 		for (int i = 0; i < k; i++) {
 			center[i] = iIter.next();
@@ -118,7 +174,27 @@ public class CoresetKMeans {
 
 		double[][] newCenter = new double[k][d];
 		double[] newCenterWeight = new double[k];
-		int[] nearestCluster = new int[size];
+		final int[] nearestCluster = new int[size];
+		Chunk assignment = new Chunk() {
+			@Override
+			public void run(int from, int to) {
+				for (int l = from; l < to; l++) {
+					// Calculates the distance from the point to all centroids
+					double[] point = points[l];
+					assert (d == point.length - 1);
+					double minDistance = Double.POSITIVE_INFINITY;
+					int closestCluster = -1;
+					for (int i = 0; i < k; i++) {
+						double distance = Metric.distance(center[i], point, 1);
+						if (distance < minDistance) {
+							closestCluster = i;
+							minDistance = distance;
+						}
+					}
+					nearestCluster[l] = closestCluster;
+				}
+			}
+		};
 		boolean converged;
 		do {
 			for (int i = 0; i < k; i++) {
@@ -127,28 +203,16 @@ public class CoresetKMeans {
 				}
 				newCenterWeight[i] = 0.0;
 			}
-			Iterator<double[]> lIter = input.iterator();
+			forEachChunk(size, executor, numberOfChunks, assignment);
 			for (int l = 0; l < size; l++) {
-				// Calculates the distance from all points to all centroids
-				double[] point = lIter.next();
-				assert (d == point.length - 1);
-				double minDistance = Double.POSITIVE_INFINITY;
-				int closestCluster = -1;
-				for (int i = 0; i < k; i++) {
-					double distance = Metric.distance(center[i], point, 1);
-					if (distance < minDistance) {
-						closestCluster = i;
-						minDistance = distance;
-					}
-				}
-
 				// Sums up all points for the new centroids
+				double[] point = points[l];
+				int closestCluster = nearestCluster[l];
 				assert (closestCluster >= 0 && closestCluster < k);
 				for (int j = 0; j < d; j++) {
 					newCenter[closestCluster][j] += point[0] * point[j + 1];
 				}
 				newCenterWeight[closestCluster] += point[0];
-				nearestCluster[l] = closestCluster;
 			}
 
 			// Calculates the new centroids
@@ -171,15 +235,75 @@ public class CoresetKMeans {
 		}
 
 		// Calculates the costs of the solution
+		final double[] pointCosts = new double[size];
+		forEachChunk(size, executor, numberOfChunks, new Chunk() {
+			@Override
+			public void run(int from, int to) {
+				for (int l = from; l < to; l++) {
+					pointCosts[l] = points[l][0]
+							* Metric.distanceSquared(center[nearestCluster[l]],
+									points[l], 1);
+				}
+			}
+		});
 		double costs = 0.0;
-		Iterator<double[]> lIter = input.iterator();
 		for (int l = 0; l < size; l++) {
-			double[] point = lIter.next();
-			costs += point[0]
-					* Metric.distanceSquared(center[nearestCluster[l]], point,
-							1);
+			costs += pointCosts[l];
 		}
 		return costs;
 	}
 
+	/**
+	 * A loop over a range of points, which only writes the values of these
+	 * points.
+	 */
+	protected interface Chunk {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Runs a chunk over the points 0 to n-1, split among the threads if there
+	 * are any.
+	 *
+	 * @param n
+	 *            number of points
+	 * @param executor
+	 *            threads running the chunks, or null to run them in the
+	 *            calling thread
+	 * @param numberOfChunks
+	 *            number of chunks the points are split into
+	 * @param chunk
+	 *            the loop over the points
+	 */
+	protected static void forEachChunk(int n, ExecutorService executor,
+			int numberOfChunks, final Chunk chunk) {
+		numberOfChunks = Math.min(numberOfChunks, n);
+		if (executor == null || numberOfChunks <= 1) {
+			chunk.run(0, n);
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+				numberOfChunks);
+		for (int c = 0; c < numberOfChunks; c++) {
+			final int from = (int) ((long) n * c / numberOfChunks);
+			final int to = (int) ((long) n * (c + 1) / numberOfChunks);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					chunk.run(from, to);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Interrupted while computing the distances.", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not compute the distances.", e.getCause());
+		}
+	}
+
 }
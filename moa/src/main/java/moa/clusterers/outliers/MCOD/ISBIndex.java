@@ -157,6 +157,11 @@ public class ISBIndex {
         m_k = k;
     }
     
+    public boolean Contains(ISBNode node) {
+        Set<ISBNode> s = mapNodes.get(node.obj.hashCode());
+        return (s != null) && s.contains(node);
+    }
+    
     Vector<ISBNode> GetAllNodes() {
         Vector<ISBNode> v = new Vector<ISBNode>(); 
         Iterator it = mapNodes.entrySet().iterator();
@@ -21,14 +21,25 @@
 package moa.clusterers.outliers.MCOD;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import moa.clusterers.outliers.utils.mtree.DistanceFunctions;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBNode;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBNode.NodeType;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBSearchResult;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
+import moa.cluster.Clustering;
 
 
 //The algorithm is described in 
@@ -40,6 +51,49 @@ import com.yahoo.labs.samoa.instances.Instance;
 public class MCOD extends MCODBase {
     public FloatOption radiusOption = new FloatOption("radius", 'r', "Search radius.", 0.1);
     public IntOption kOption = new IntOption("k", 't', "Parameter k.", 50);
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+            "Number of arriving objects whose range queries are run in parallel (1 processes each object on arrival).",
+            1, 1, Integer.MAX_VALUE);
+    public IntOption numThreadsOption = new IntOption("numThreads", 'n',
+            "Number of threads running the range queries of a batch (0 for the number of processors).",
+            0, 0, Integer.MAX_VALUE);
+    
+    // range queries of an object of a batch, run against the state before the
+    // batch; the query to PD is skipped when the object falls in a micro-cluster
+    protected class BatchQuery {
+        ISBNode node;
+        Vector<SearchResultMC> resultsMC;
+        Vector<ISBSearchResult> resultsPD;
+
+        BatchQuery(ISBNode node) {
+            this.node = node;
+        }
+    }
+    
+    protected static final Comparator<SearchResultMC> MC_DISTANCE_ORDER = new Comparator<SearchResultMC>() {
+        @Override
+        public int compare(SearchResultMC r1, SearchResultMC r2) {
+            return Double.compare(r1.distance, r2.distance);
+        }
+    };
+    
+    protected static final Comparator<ISBSearchResult> PD_DISTANCE_ORDER = new Comparator<ISBSearchResult>() {
+        @Override
+        public int compare(ISBSearchResult r1, ISBSearchResult r2) {
+            return Double.compare(r1.distance, r2.distance);
+        }
+    };
+    
+    protected int m_batchSize;
+    // objects waiting for their batch
+    protected ArrayList<Instance> pendingObjects;
+    protected transient ForkJoinPool batchPool;
+    // changes since the range queries of the current batch were run, null
+    // outside of a batch
+    protected Set<MicroCluster> batchAddedMC;
+    protected Set<MicroCluster> batchRemovedMC;
+    protected List<ISBNode> batchInsertedPD;
+    protected Set<ISBNode> batchInsertedPDSet;
     
     public MCOD()
     {
@@ -49,15 +103,21 @@ public class MCOD extends MCODBase {
     @Override
     public void Init() {   
         super.Init();
+        if (batchPool != null) {
+            batchPool.shutdown();
+            batchPool = null;
+        }
         
         m_WindowSize = windowSizeOption.getValue();
         m_radius = radiusOption.getValue();
         m_k = kOption.getValue();
+        m_batchSize = batchSizeOption.getValue();
                 
         Println("Init MCOD:");
         Println("   window_size: " + m_WindowSize);
         Println("   radius: " + m_radius);
         Println("   k: " + m_k);
+        Println("   batch_size: " + m_batchSize);
         
         //bTrace = true;
         //bWarning = true;
@@ -73,6 +133,7 @@ public class MCOD extends MCODBase {
         mtreeMC = new MTreeMicroClusters();
         // create event queue
         eventQueue = new EventQueue();
+        pendingObjects = new ArrayList<Instance>();
         
         // init statistics
         m_nBothInlierOutlier = 0;
@@ -121,12 +182,20 @@ public class MCOD extends MCODBase {
     }
     
     void ProcessNewNode(ISBNode nodeNew, boolean bNewNode) {
+        ProcessNewNode(nodeNew, bNewNode, null);
+    }
+    
+    void ProcessNewNode(ISBNode nodeNew, boolean bNewNode, BatchQuery query) {
         if (bTrace) { Print("ProcessNewNode: "); PrintNode(nodeNew); }
         
         if (bTrace) Println("Perform 3R/2 range query to cluster centers w.r.t new node"); 
         Vector<SearchResultMC> resultsMC;
         // results are sorted ascenting by distance
-        resultsMC = RangeSearchMC(nodeNew, 1.5 * m_radius); 
+        if (query != null) {
+            resultsMC = UpdateBatchResultsMC(nodeNew, query.resultsMC);
+        } else {
+            resultsMC = RangeSearchMC(nodeNew, 1.5 * m_radius); 
+        }
         if (bTrace) {
             Println("MC query found: "); 
             for (SearchResultMC sr : resultsMC) {
@@ -161,7 +230,15 @@ public class MCOD extends MCODBase {
             
             if (bTrace) Println("Update neighbors of set PD"); 
             Vector<ISBNode> nodes;
-            nodes = ISB_PD.GetAllNodes();
+            if ((query != null) && (query.resultsPD != null)) {
+                // nodes within R are within the 3R/2 of the batch query
+                nodes = new Vector<ISBNode>();
+                for (ISBSearchResult sr : UpdateBatchResultsPD(nodeNew, query.resultsPD)) {
+                    nodes.add(sr.node);
+                }
+            } else {
+                nodes = ISB_PD.GetAllNodes();
+            }
             for (ISBNode q : nodes) {
                 if (q.Rmc.contains(mcClosest)) {
                     if (GetEuclideanDist(q, nodeNew) <= m_radius) {
@@ -188,7 +265,11 @@ public class MCOD extends MCODBase {
             ArrayList<ISBNode> setNC = new ArrayList<ISBNode>();
             ArrayList<ISBNode> setNNC = new ArrayList<ISBNode>();
             Vector<ISBSearchResult> resultNodes;
-            resultNodes = ISB_PD.RangeSearch(nodeNew, 1.5 * m_radius); // 1.5 ###
+            if ((query != null) && (query.resultsPD != null)) {
+                resultNodes = UpdateBatchResultsPD(nodeNew, query.resultsPD);
+            } else {
+                resultNodes = ISB_PD.RangeSearch(nodeNew, 1.5 * m_radius); // 1.5 ###
+            }
             for (ISBSearchResult sr : resultNodes) {
                 ISBNode q = sr.node;
                 if (sr.distance <= m_radius) {                    
@@ -263,6 +344,9 @@ public class MCOD extends MCODBase {
                 
                 if (bTrace) Println("Insert nodeNew to index of nodes of PD"); 
                 ISB_PD.Insert(nodeNew); 
+                if ((batchInsertedPDSet != null) && batchInsertedPDSet.add(nodeNew)) {
+                    batchInsertedPD.add(nodeNew);
+                }
                 if (bTrace) PrintPD();
                 
                 // check if nodeNew is an inlier or outlier
@@ -374,9 +458,205 @@ public class MCOD extends MCODBase {
         }
     }
     
+    @Override
+    void AddMicroCluster(MicroCluster mc) {
+        super.AddMicroCluster(mc);
+        if (batchAddedMC != null) {
+            batchAddedMC.add(mc);
+        }
+    }
+    
+    @Override
+    void RemoveMicroCluster(MicroCluster mc) {
+        super.RemoveMicroCluster(mc);
+        if (batchRemovedMC != null) {
+            batchRemovedMC.add(mc);
+        }
+    }
+    
+    // results of a batch query to micro-clusters, brought up to date
+    Vector<SearchResultMC> UpdateBatchResultsMC(ISBNode nodeNew, Vector<SearchResultMC> batchResults) {
+        Vector<SearchResultMC> results = new Vector<SearchResultMC>();
+        for (SearchResultMC sr : batchResults) {
+            if (!batchRemovedMC.contains(sr.mc)) {
+                results.add(sr);
+            }
+        }
+        boolean bAdded = false;
+        for (MicroCluster mc : batchAddedMC) {
+            if (!batchRemovedMC.contains(mc)) {
+                // same distance as the M-tree query
+                double d = DistanceFunctions.euclidean(nodeNew.obj, mc);
+                if (d <= 1.5 * m_radius) {
+                    results.add(new SearchResultMC(mc, d));
+                    bAdded = true;
+                }
+            }
+        }
+        if (bAdded) {
+            Collections.sort(results, MC_DISTANCE_ORDER);
+        }
+        return results;
+    }
+    
+    // results of a batch query to the nodes of PD, brought up to date
+    Vector<ISBSearchResult> UpdateBatchResultsPD(ISBNode nodeNew, Vector<ISBSearchResult> batchResults) {
+        Vector<ISBSearchResult> results = new Vector<ISBSearchResult>();
+        for (ISBSearchResult sr : batchResults) {
+            if (ISB_PD.Contains(sr.node) && !batchInsertedPDSet.contains(sr.node)) {
+                results.add(sr);
+            }
+        }
+        boolean bAdded = false;
+        for (ISBNode q : batchInsertedPD) {
+            if (ISB_PD.Contains(q)) {
+                double d = DistanceFunctions.euclidean(nodeNew.obj, q.obj);
+                if (d <= 1.5 * m_radius) {
+                    results.add(new ISBSearchResult(q, d));
+                    bAdded = true;
+                }
+            }
+        }
+        if (bAdded) {
+            Collections.sort(results, PD_DISTANCE_ORDER);
+        }
+        return results;
+    }
+    
+    /**
+     * Processes a slide of objects. The range queries of all the objects are
+     * run in parallel against the state before the slide, then the objects
+     * are inserted and the expired ones removed one at a time, in arrival
+     * order, with the query results corrected for the changes made by the
+     * objects before them. The outliers found are the same as when
+     * processing the objects one by one.
+     */
+    public void ProcessBatch(List<Instance> slide) {
+        ArrayList<BatchQuery> queries = new ArrayList<BatchQuery>(slide.size());
+        // nodes get the identifiers they would get one by one
+        long id = objId;
+        for (Instance inst : slide) {
+            StreamObj obj = new StreamObj(getInstanceValues(inst));
+            queries.add(new BatchQuery(new ISBNode(inst, obj, id++)));
+        }
+        RunBatchQueries(queries);
+        
+        batchAddedMC = Collections.newSetFromMap(new IdentityHashMap<MicroCluster, Boolean>());
+        batchRemovedMC = Collections.newSetFromMap(new IdentityHashMap<MicroCluster, Boolean>());
+        batchInsertedPD = new ArrayList<ISBNode>();
+        batchInsertedPDSet = Collections.newSetFromMap(new IdentityHashMap<ISBNode, Boolean>());
+        try {
+            for (BatchQuery query : queries) {
+                if (bTrace) Println("\n- - - - - - - - - - - -\n");
+                objId++;
+                AddNode(query.node);
+                ProcessNewNode(query.node, true, query);
+                ProcessExpiredNode(GetExpiredNode());
+            }
+        } finally {
+            batchAddedMC = null;
+            batchRemovedMC = null;
+            batchInsertedPD = null;
+            batchInsertedPDSet = null;
+        }
+    }
+    
+    /**
+     * Processes the objects waiting for their batch to be full.
+     */
+    public void ProcessPendingObjects() {
+        if ((pendingObjects != null) && (pendingObjects.size() > 0)) {
+            ArrayList<Instance> slide = pendingObjects;
+            pendingObjects = new ArrayList<Instance>();
+            ProcessBatch(slide);
+        }
+    }
+    
+    void RunBatchQueries(List<BatchQuery> queries) {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(queries.size());
+        for (final BatchQuery query : queries) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    // only reads the indexes, nothing is modified until all
+                    // the queries are done
+                    query.resultsMC = RangeSearchMC(query.node, 1.5 * m_radius);
+                    if ((query.resultsMC.size() == 0)
+                            || (GetEuclideanDist(query.node, query.resultsMC.get(0).mc.mcc) > m_radius / 2)) {
+                        query.resultsPD = ISB_PD.RangeSearch(query.node, 1.5 * m_radius);
+                    }
+                    return null;
+                }
+            });
+        }
+        int numThreads = numThreadsOption.getValue() > 0 ? numThreadsOption.getValue()
+                : Runtime.getRuntime().availableProcessors();
+        if ((batchPool != null) && (batchPool.getParallelism() != numThreads)) {
+            batchPool.shutdown();
+            batchPool = null;
+        }
+        if (batchPool == null) {
+            batchPool = new ForkJoinPool(numThreads);
+        }
+        try {
+            for (Future<Void> f : batchPool.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running range queries", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Range query failed", e.getCause());
+        }
+    }
+    
+    @Override
+    public Vector<Outlier> getOutliersResult() {
+        ProcessPendingObjects();
+        return super.getOutliersResult();
+    }
+    
+    @Override
+    public Clustering getClusteringResult() {
+        ProcessPendingObjects();
+        return super.getClusteringResult();
+    }
+    
+    @Override
+    public Clustering getMicroClusteringResult() {
+        ProcessPendingObjects();
+        return super.getMicroClusteringResult();
+    }
+    
+    @Override
+    public Set<Outlier> GetOutliersFound() {
+        ProcessPendingObjects();
+        return super.GetOutliersFound();
+    }
+    
+    @Override
+    public void PrintOutliers() {
+        ProcessPendingObjects();
+        super.PrintOutliers();
+    }
+    
+    @Override
+    public String getStatistics() {
+        ProcessPendingObjects();
+        return super.getStatistics();
+    }
+    
     @Override
     protected void ProcessNewStreamObj(Instance inst)
     {                
+        if (m_batchSize > 1) {
+            pendingObjects.add(inst);
+            if (pendingObjects.size() >= m_batchSize) {
+                if (bShowProgress) ShowProgress("Processed " + (objId-1) + " stream objects.");
+                ProcessPendingObjects();
+            }
+            return;
+        }
         if (bShowProgress) ShowProgress("Processed " + (objId-1) + " stream objects.");       
         // PrintInstance(inst);
         
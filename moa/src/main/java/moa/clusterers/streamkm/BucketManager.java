@@ -1,5 +1,10 @@
 package moa.clusterers.streamkm;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  *
@@ -32,12 +37,28 @@ public class BucketManager  {
 	protected Bucket[] buckets;
 	protected MTRandom clustererRandom;
 	protected TreeCoreset treeCoreset;
+
+	//thread reducing the full first buckets, null if they are reduced on insertion
+	protected ExecutorService reducer;
+	protected Future<?> reduction;
+	//second buffer of the first bucket, filled while the other one is reduced
+	protected Point[] spareBuffer;
 	
 	
 	/**
 	initializes a bucketmanager for n points with bucketsize maxsize and dimension d
 	**/
 	public BucketManager(int n,int d,int maxsize, MTRandom random){
+		this(n, d, maxsize, random, false);
+	}
+
+	/**
+	initializes a bucketmanager which, if backgroundReduction is true, merges the buckets
+	in a background thread while the points keep being inserted in a second first bucket.
+	The random generator is only used by that thread until the next coreset is extracted,
+	so the coresets are the same as the ones of a manager without background reduction.
+	**/
+	public BucketManager(int n,int d,int maxsize, MTRandom random, boolean backgroundReduction){
 		this.clustererRandom = random;
 		this.numberOfBuckets = (int) Math.ceil(Math.log((double)n/(double)maxsize) / Math.log(2) )+2;
 		this.maxBucketsize = maxsize;
@@ -46,6 +67,17 @@ public class BucketManager  {
 			this.buckets[i] = new Bucket(d,maxsize);
 		}
 		this.treeCoreset = new TreeCoreset();
+		if(backgroundReduction){
+			this.spareBuffer = new Point[maxsize];
+			this.reducer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "StreamKM bucket reducer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
 		//printf("Created manager with %d buckets of dimension %d \n",this.numberOfBuckets,d);
 	}
 
@@ -58,56 +90,28 @@ public class BucketManager  {
 		int cursize = this.buckets[0].cursize;	
 		if(cursize >= this.maxBucketsize) {
 			//printf("Bucket 0 full \n");
-			//start spillover process
-			int curbucket  = 0;
-			int nextbucket = 1;
-
-			//check if the next bucket is empty
-			if(this.buckets[nextbucket].cursize == 0){
-				//copy the bucket	
-				int i;
-				for(i=0; i<this.maxBucketsize; i++){
-					this.buckets[nextbucket].points[i] = this.buckets[curbucket].points[i].clone();
-					//copyPointWithoutInit: we should not copy coordinates? 
-				}
-				//bucket is now full
-				this.buckets[nextbucket].cursize = this.maxBucketsize;
-				//first bucket is now empty
-				this.buckets[curbucket].cursize = 0;
-				cursize = 0;
+			if(this.reducer == null){
+				spillover(this.buckets[0].points, p.dimension);
 			} else {
-				//printf("Bucket %d full \n",nextbucket);
-				//copy bucket to spillover and continue
-				int i;
-				for(i=0;i<this.maxBucketsize;i++){
-					this.buckets[nextbucket].spillover[i] = this.buckets[curbucket].points[i].clone();
-					//copyPointWithoutInit: we should not copy coordinates? 
-				}
-				this.buckets[0].cursize=0;
-				cursize = 0;
-				curbucket++;
-				nextbucket++;
-				/*
-				as long as the next bucket is full output the coreset to the spillover of the next bucket
-				*/
-				while(this.buckets[nextbucket].cursize == this.maxBucketsize){
-					//printf("Bucket %d full \n",nextbucket);
-					this.treeCoreset.unionTreeCoreset(this.maxBucketsize,this.maxBucketsize,
-						this.maxBucketsize,p.dimension, 
-						this.buckets[curbucket].points,this.buckets[curbucket].spillover,
-						this.buckets[nextbucket].spillover, this.clustererRandom);
-					//bucket now empty
-					this.buckets[curbucket].cursize = 0;
-					curbucket++;
-					nextbucket++;
-				}
-				this.treeCoreset.unionTreeCoreset(this.maxBucketsize,this.maxBucketsize,
-						this.maxBucketsize,p.dimension, 
-						this.buckets[curbucket].points,this.buckets[curbucket].spillover,
-						this.buckets[nextbucket].points, this.clustererRandom);
-				this.buckets[curbucket].cursize = 0;
-				this.buckets[nextbucket].cursize = this.maxBucketsize;
+				//the previous reduction must be over before its buffer is filled again
+				waitForReduction();
+				final Point[] full = this.buckets[0].points;
+				final int d = p.dimension;
+				//the points of the full bucket stay in the first bucket until they are
+				//overwritten, as when there is a single buffer
+				System.arraycopy(full, 0, this.spareBuffer, 0, this.maxBucketsize);
+				this.buckets[0].points = this.spareBuffer;
+				this.spareBuffer = full;
+				this.reduction = this.reducer.submit(new Runnable() {
+					@Override
+					public void run() {
+						spillover(full, d);
+					}
+				});
 			}
+			//first bucket is now empty
+			this.buckets[0].cursize = 0;
+			cursize = 0;
 		}
 		//insert point into the first bucket
 		this.buckets[0].points[cursize] = p.clone();
@@ -115,6 +119,85 @@ public class BucketManager  {
 		this.buckets[0].cursize++;
 	}
 
+	/**
+	moves the points of a full first bucket into the next buckets, merging the full ones
+	**/
+	protected void spillover(Point[] firstBucket, int d){
+		//start spillover process
+		int curbucket  = 0;
+		int nextbucket = 1;
+
+		//check if the next bucket is empty
+		if(this.buckets[nextbucket].cursize == 0){
+			//copy the bucket	
+			int i;
+			for(i=0; i<this.maxBucketsize; i++){
+				this.buckets[nextbucket].points[i] = firstBucket[i].clone();
+				//copyPointWithoutInit: we should not copy coordinates? 
+			}
+			//bucket is now full
+			this.buckets[nextbucket].cursize = this.maxBucketsize;
+		} else {
+			//printf("Bucket %d full \n",nextbucket);
+			//copy bucket to spillover and continue
+			int i;
+			for(i=0;i<this.maxBucketsize;i++){
+				this.buckets[nextbucket].spillover[i] = firstBucket[i].clone();
+				//copyPointWithoutInit: we should not copy coordinates? 
+			}
+			curbucket++;
+			nextbucket++;
+			/*
+			as long as the next bucket is full output the coreset to the spillover of the next bucket
+			*/
+			while(this.buckets[nextbucket].cursize == this.maxBucketsize){
+				//printf("Bucket %d full \n",nextbucket);
+				this.treeCoreset.unionTreeCoreset(this.maxBucketsize,this.maxBucketsize,
+					this.maxBucketsize,d, 
+					this.buckets[curbucket].points,this.buckets[curbucket].spillover,
+					this.buckets[nextbucket].spillover, this.clustererRandom);
+				//bucket now empty
+				this.buckets[curbucket].cursize = 0;
+				curbucket++;
+				nextbucket++;
+			}
+			this.treeCoreset.unionTreeCoreset(this.maxBucketsize,this.maxBucketsize,
+					this.maxBucketsize,d, 
+					this.buckets[curbucket].points,this.buckets[curbucket].spillover,
+					this.buckets[nextbucket].points, this.clustererRandom);
+			this.buckets[curbucket].cursize = 0;
+			this.buckets[nextbucket].cursize = this.maxBucketsize;
+		}
+	}
+
+	/**
+	waits for the end of the background reduction, if any
+	**/
+	protected void waitForReduction(){
+		if(this.reduction != null){
+			try {
+				this.reduction.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException("Interrupted while reducing the buckets.", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Could not reduce the buckets.", e.getCause());
+			} finally {
+				this.reduction = null;
+			}
+		}
+	}
+
+	/**
+	stops the background reduction thread
+	**/
+	void shutdown(){
+		if(this.reducer != null){
+			this.reducer.shutdown();
+			this.reducer = null;
+			this.reduction = null;
+		}
+	}
+
 	/**
 	It may happen that the manager is not full (since n is not always a power of 2). In this case we extract the coreset
 	from the manager by computing a coreset of all nonempty buckets
@@ -128,6 +211,7 @@ public class BucketManager  {
 	this operation should only be called after the streaming process is finished
 	**/
 	Point[] getCoresetFromManager(int d){
+		waitForReduction();
 		Point[] coreset = new Point[d];
 		int i = 0;
 		//if(this.buckets[this.numberOfBuckets-1].cursize == this.maxBucketsize){
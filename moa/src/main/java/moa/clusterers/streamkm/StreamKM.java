@@ -1,5 +1,14 @@
 package moa.clusterers.streamkm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.cluster.Clustering;
@@ -37,6 +46,12 @@ public class StreamKM extends AbstractClusterer {
 	public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
 			"Seed for random behaviour of the classifier.", 1);	
 
+	public FlagOption backgroundReductionOption = new FlagOption("backgroundReduction",
+			'b', "Merge the buckets in a background thread while the next points are inserted.");
+
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Number of threads computing the distances of kMeans++ (-1 = as many as processors, 0 or 1 = no multithreading).", 1, -1, Integer.MAX_VALUE);
+
 	protected MTRandom clustererRandom;
 	protected Point[] centresStreamingCoreset;
 
@@ -51,10 +66,20 @@ public class StreamKM extends AbstractClusterer {
 
 	protected boolean initialized = false;	
 
+	protected transient ExecutorService executor;
+
 	private final static double THRESHOLD = 1.000;
 
 	@Override
 	public void resetLearningImpl() {
+		if (this.manager != null) {
+			this.manager.shutdown();
+			this.manager = null;
+		}
+		if (this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
 		this.initialized = false;
 		this.coresetsize = sizeCoresetOption.getValue();
 		this.numberOfCentres = numClustersOption.getValue();
@@ -70,7 +95,8 @@ public class StreamKM extends AbstractClusterer {
 
 		if (this.initialized == false) {
 			this.dimension =  inst.numAttributes();
-			manager = new BucketManager(this.length, this.dimension, this.coresetsize, this.clustererRandom);
+			manager = new BucketManager(this.length, this.dimension, this.coresetsize, this.clustererRandom,
+					this.backgroundReductionOption.isSet());
 			this.initialized = true;
 		}
 
@@ -190,6 +216,7 @@ public class StreamKM extends AbstractClusterer {
 
 		Point[] massCentres = new Point[k];
 		double[] numberOfPoints = new double[k];
+		int[] nearestCentres = new int[n];
 
 		do{
 			cost = newCost;
@@ -200,8 +227,9 @@ public class StreamKM extends AbstractClusterer {
 				numberOfPoints[i] = 0.0;
 			}
 			//compute centres of mass
+			determineClusterCentres(k, n, centres, points, nearestCentres);
 			for(i = 0; i < n; i++){
-				int centre = points[i].determineClusterCentreKMeans(k,centres);
+				int centre = nearestCentres[i];
 				for(int l = 0; l < massCentres[centre].dimension; l++){
 					if(points[i].weight != 0.0)
 						massCentres[centre].coordinates[l] += points[i].coordinates[l];
@@ -224,9 +252,10 @@ public class StreamKM extends AbstractClusterer {
 		} while (newCost < THRESHOLD * cost);
 
 		//compute radii
+		determineClusterCentres(k, n, centres, points, nearestCentres);
 		for (int i = 0 ; i < n ; i++)
 		{
-			int centre = points[i].determineClusterCentreKMeans(k,centres);
+			int centre = nearestCentres[i];
 			double radius = 0.0;
 			double distance;
 
@@ -261,7 +290,7 @@ public class StreamKM extends AbstractClusterer {
 		return triple; 
 	}
 
-	private Point[] chooseRandomCentres(int k, int n, int d, Point points[]){
+	private Point[] chooseRandomCentres(int k, int n, int d, final Point points[]){
 
 		//array to store the choosen centres
 		Point[] centres = new Point[k]; 
@@ -283,11 +312,16 @@ public class StreamKM extends AbstractClusterer {
 		centres[i] = points[j].clone();
 
 		//set the current centre for all points to the choosen centre
-		for(i = 0; i < n; i++){
-			points[i].centreIndex = 0;
-			points[i].curCost = points[i].costOfPointToCenter(centres[0]);
-
-		}
+		final Point firstCentre = centres[0];
+		forEachChunk(n, new Chunk() {
+			@Override
+			public void run(int from, int to) {
+				for(int j = from; j < to; j++){
+					points[j].centreIndex = 0;
+					points[j].curCost = points[j].costOfPointToCenter(firstCentre);
+				}
+			}
+		});
 		//choose centre 1 to k-1 with the kMeans++ distribution
 		for(i = 1; i < k; i++){
 
@@ -317,13 +351,20 @@ public class StreamKM extends AbstractClusterer {
 			//copy the choosen centre
 			centres[i] = points[pos].clone();
 			//check which points are closest to the new centre
-			for(j = 0; j < n; j++){
-				double newCost = points[j].costOfPointToCenter(centres[i]);
-				if(points[j].curCost > newCost){
-					points[j].curCost = newCost;
-					points[j].centreIndex = i;
+			final Point newCentre = centres[i];
+			final int newCentreIndex = i;
+			forEachChunk(n, new Chunk() {
+				@Override
+				public void run(int from, int to) {
+					for(int j = from; j < to; j++){
+						double newCost = points[j].costOfPointToCenter(newCentre);
+						if(points[j].curCost > newCost){
+							points[j].curCost = newCost;
+							points[j].centreIndex = newCentreIndex;
+						}
+					}
 				}
-			}
+			});
 
 		}
 
@@ -343,42 +384,130 @@ public class StreamKM extends AbstractClusterer {
 	/**
 	computes the target function for the given pointarray points[] (of size n) with the given array of
 	centres centres[] (of size k)
-	 **/
-	public double targetFunctionValue(int k, int n, Point[] centres, Point[] points){
-		int i=0;
-		double sum = 0.0;
-		for(i=0;i<n;i++){
-			double nearestCost = -1.0;
-			int j=0;
-			for(j=0;j<k;j++){
-				double distance = 0.0;
-				int l = 0;
-				for(l=0;l<points[i].dimension;l++){
-					//Centroid coordinate of the point
-					double centroidCoordinatePoint;
-					if(points[i].weight != 0.0){
-						centroidCoordinatePoint = points[i].coordinates[l] / points[i].weight;
-					} else {
-						centroidCoordinatePoint = points[i].coordinates[l];
+	**/
+	public double targetFunctionValue(final int k, int n, final Point[] centres, final Point[] points){
+		//the costs of the points are computed in chunks, and summed in order
+		final double[] costs = new double[n];
+		forEachChunk(n, new Chunk() {
+			@Override
+			public void run(int from, int to) {
+				for(int i=from;i<to;i++){
+					double nearestCost = -1.0;
+					int j=0;
+					for(j=0;j<k;j++){
+						double distance = 0.0;
+						int l = 0;
+						for(l=0;l<points[i].dimension;l++){
+							//Centroid coordinate of the point
+							double centroidCoordinatePoint;
+							if(points[i].weight != 0.0){
+								centroidCoordinatePoint = points[i].coordinates[l] / points[i].weight;
+							} else {
+								centroidCoordinatePoint = points[i].coordinates[l];
+							}
+							//Centroid coordinate of the centre
+							double centroidCoordinateCentre;
+							if(centres[j].weight != 0.0){
+								centroidCoordinateCentre = centres[j].coordinates[l] / centres[j].weight;
+							} else {
+								centroidCoordinateCentre = centres[j].coordinates[l];
+							}
+							distance += (centroidCoordinatePoint-centroidCoordinateCentre) * 
+									(centroidCoordinatePoint-centroidCoordinateCentre) ;
+
+						}
+						if(nearestCost <0 || distance < nearestCost) {
+							nearestCost = distance;
+						} 
 					}
-					//Centroid coordinate of the centre
-					double centroidCoordinateCentre;
-					if(centres[j].weight != 0.0){
-						centroidCoordinateCentre = centres[j].coordinates[l] / centres[j].weight;
-					} else {
-						centroidCoordinateCentre = centres[j].coordinates[l];
-					}
-					distance += (centroidCoordinatePoint-centroidCoordinateCentre) * 
-							(centroidCoordinatePoint-centroidCoordinateCentre) ;
-
+					costs[i] = nearestCost * points[i].weight;
 				}
-				if(nearestCost <0 || distance < nearestCost) {
-					nearestCost = distance;
-				} 
 			}
-			sum += nearestCost * points[i].weight;
+		});
+		double sum = 0.0;
+		for(int i=0;i<n;i++){
+			sum += costs[i];
 		}
 		return sum;
 	}
 
+	/**
+	stores in nearestCentres[i] the index of the centre nearest to points[i]
+	**/
+	protected void determineClusterCentres(final int k, int n, final Point[] centres, final Point[] points,
+			final int[] nearestCentres){
+		forEachChunk(n, new Chunk() {
+			@Override
+			public void run(int from, int to) {
+				for(int i = from; i < to; i++){
+					nearestCentres[i] = points[i].determineClusterCentreKMeans(k,centres);
+				}
+			}
+		});
+	}
+
+	/**
+	a loop over a range of points, which only writes to these points
+	**/
+	protected interface Chunk {
+		void run(int from, int to);
+	}
+
+	/**
+	runs the chunk over the points 0 to n-1, split among the threads if there are several
+	**/
+	protected void forEachChunk(int n, final Chunk chunk){
+		ExecutorService executor = getExecutor();
+		if(executor == null){
+			chunk.run(0, n);
+			return;
+		}
+		int numberOfJobs = this.numberOfJobsOption.getValue() == -1 ?
+				Runtime.getRuntime().availableProcessors() : this.numberOfJobsOption.getValue();
+		int numberOfChunks = Math.min(numberOfJobs, n);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numberOfChunks);
+		for(int c = 0; c < numberOfChunks; c++){
+			final int from = (int) ((long) n * c / numberOfChunks);
+			final int to = (int) ((long) n * (c + 1) / numberOfChunks);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					chunk.run(from, to);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Interrupted while computing the distances.", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not compute the distances.", e.getCause());
+		}
+	}
+
+	/**
+	returns the pool of threads computing the distances, or null if they are computed in the calling thread
+	**/
+	protected ExecutorService getExecutor() {
+		if (this.executor == null) {
+			int numberOfJobs = this.numberOfJobsOption.getValue();
+			if (numberOfJobs == -1)
+				numberOfJobs = Runtime.getRuntime().availableProcessors();
+			if (numberOfJobs > 1) {
+				this.executor = Executors.newFixedThreadPool(numberOfJobs, new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "StreamKM kMeans++");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+		}
+		return this.executor;
+	}
+
 }
@@ -0,0 +1,137 @@
+/*
+ *    BoundedSPSCQueue.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for exactly one producer thread and one consumer thread.
+ *
+ * <p>Elements are kept in a ring whose capacity is a power of two. The
+ * producer only writes the tail position and the consumer only writes the
+ * head position, so no locks are needed. A thread that finds the queue full
+ * (or empty) spins for a while and then parks for short periods until the
+ * other side catches up.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class BoundedSPSCQueue<E> {
+
+    protected static final int SPINS_BEFORE_PARKING = 100;
+
+    protected static final long PARK_NANOS = 10000;
+
+    /** largest capacity, the largest power of two an int can hold */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    protected final Object[] buffer;
+
+    protected final int mask;
+
+    // next position to read, written by the consumer only
+    protected final AtomicLong head = new AtomicLong();
+
+    // next position to write, written by the producer only
+    protected final AtomicLong tail = new AtomicLong();
+
+    public BoundedSPSCQueue(int minCapacity) {
+        if (minCapacity < 1 || minCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Queue capacity must be between 1 and "
+                    + MAX_CAPACITY + ": " + minCapacity);
+        }
+        int capacity = Integer.highestOneBit(Math.max(minCapacity, 2) - 1) << 1;
+        this.buffer = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    public int size() {
+        return (int) (this.tail.get() - this.head.get());
+    }
+
+    /**
+     * Adds an element if there is room for it. Producer thread only.
+     *
+     * @return false if the queue is full
+     */
+    public boolean offer(E element) {
+        long position = this.tail.get();
+        if (position - this.head.get() == this.buffer.length) {
+            return false;
+        }
+        this.buffer[(int) position & this.mask] = element;
+        this.tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element. Consumer thread only.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = this.head.get();
+        if (position == this.tail.get()) {
+            return null;
+        }
+        int index = (int) position & this.mask;
+        E element = (E) this.buffer[index];
+        this.buffer[index] = null;
+        this.head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * Adds an element, waiting while the queue is full.
+     */
+    public void put(E element) throws InterruptedException {
+        int spins = 0;
+        while (!offer(element)) {
+            spins = idle(spins);
+        }
+    }
+
+    /**
+     * Removes the oldest element, waiting while the queue is empty.
+     */
+    public E take() throws InterruptedException {
+        int spins = 0;
+        E element;
+        while ((element = poll()) == null) {
+            spins = idle(spins);
+        }
+        return element;
+    }
+
+    protected static int idle(int spins) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (spins < SPINS_BEFORE_PARKING) {
+            Thread.yield();
+            return spins + 1;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        return spins;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *    ByteSizeTracker.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+/**
+ * Interface implemented by objects that keep a running count of their memory
+ * size, updated as their parts (nodes, observers, layers, stored instances)
+ * are added or removed. Reading the count must not walk the object graph, so
+ * evaluation tasks can ask for the model size at every sample point.
+ *
+ * <p>Objects that do not implement this interface are measured with the
+ * SizeOf agent, see {@link moa.AbstractMOAObject#measureByteSize(moa.MOAObject)}.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public interface ByteSizeTracker {
+
+    /**
+     * Gets the memory size of this object as kept up to date by the object
+     * itself.
+     *
+     * @return the tracked memory size in bytes
+     */
+    public long getTrackedByteSize();
+}
@@ -27,7 +27,7 @@ import moa.AbstractMOAObject;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class DoubleVector extends AbstractMOAObject {
+public class DoubleVector extends AbstractMOAObject implements ByteSizeTracker {
 
     private static final long serialVersionUID = 1L;
 
@@ -170,6 +170,12 @@ public class DoubleVector extends AbstractMOAObject {
         return this.array;
     }
 
+    @Override
+    public long getTrackedByteSize() {
+        return SizeOf.sizeOfObject(SizeOf.REFERENCE_BYTES)
+                + SizeOf.sizeOfArray(this.array.length, 8);
+    }
+
     protected void setArrayLength(int l) {
         double[] newArray = new double[l];
         int numToCopy = this.array.length;
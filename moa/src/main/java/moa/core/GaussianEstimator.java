@@ -28,7 +28,7 @@ import moa.AbstractMOAObject;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class GaussianEstimator extends AbstractMOAObject {
+public class GaussianEstimator extends AbstractMOAObject implements ByteSizeTracker {
 
     private static final long serialVersionUID = 1L;
 
@@ -115,6 +115,11 @@ public class GaussianEstimator extends AbstractMOAObject {
         return new double[]{lessThanWeight, equalToWeight, greaterThanWeight};
     }
 
+    @Override
+    public long getTrackedByteSize() {
+        return SizeOf.sizeOfObject(3 * 8);
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
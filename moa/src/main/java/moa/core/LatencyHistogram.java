@@ -0,0 +1,144 @@
+/*
+ *    LatencyHistogram.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+
+/**
+ * Histogram of durations in nanoseconds with a fixed relative precision, in
+ * the manner of HdrHistogram.
+ *
+ * <p>Values below 64 are counted exactly. Larger values are counted in 32
+ * buckets per power of two, so any percentile is known within about 3% of
+ * its true value. Values above 2^40 nanoseconds (about 18 minutes) are
+ * counted in the last bucket. Recording a value only increments a counter,
+ * and the memory used does not depend on the number of values.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int SUB_BUCKET_BITS = 5;
+
+    protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // values up to this one are counted exactly
+    protected static final int EXACT_LIMIT = 2 * SUB_BUCKET_COUNT;
+
+    protected static final int MAX_EXPONENT = 40;
+
+    protected long[] counts = new long[EXACT_LIMIT
+            + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT];
+
+    protected long totalCount;
+
+    protected long totalValue;
+
+    protected long maxValue;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts[bucketIndex(value)]++;
+        this.totalCount++;
+        this.totalValue += value;
+        if (value > this.maxValue) {
+            this.maxValue = value;
+        }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.totalCount += other.totalCount;
+        this.totalValue += other.totalValue;
+        this.maxValue = Math.max(this.maxValue, other.maxValue);
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(this.counts, 0);
+        this.totalCount = 0;
+        this.totalValue = 0;
+        this.maxValue = 0;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public long getTotalValue() {
+        return this.totalValue;
+    }
+
+    public long getMaxValue() {
+        return this.maxValue;
+    }
+
+    public double getMean() {
+        return this.totalCount > 0 ? (double) this.totalValue / this.totalCount : 0.0;
+    }
+
+    /**
+     * Gets the smallest value that at least a percentage of the recorded
+     * values do not exceed, rounded up to the end of its bucket.
+     *
+     * @param percentile the percentage, between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (this.totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * this.totalCount);
+        rank = Math.max(1, Math.min(rank, this.totalCount));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), this.maxValue);
+            }
+        }
+        return this.maxValue;
+    }
+
+    protected static int bucketIndex(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return EXACT_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT
+                    + SUB_BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return EXACT_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    protected static long bucketUpperBound(int index) {
+        if (index < EXACT_LIMIT) {
+            return index;
+        }
+        int shift = (index - EXACT_LIMIT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - EXACT_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
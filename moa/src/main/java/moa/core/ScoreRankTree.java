@@ -0,0 +1,338 @@
+/*
+ *    ScoreRankTree.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Order-statistic tree over the scores of positive and negative examples,
+ * answering how many examples of each label score above, at, or below a
+ * value in logarithmic time.
+ *
+ * <p>The tree is a treap stored in parallel arrays, with one node per
+ * distinct score holding the number of positive and negative examples with
+ * that score, and the totals of its subtree. Nodes of scores no longer
+ * present are recycled, so no allocation happens once the tree reached the
+ * number of distinct scores it has to hold.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class ScoreRankTree implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int NIL = -1;
+
+    protected double[] score;
+
+    protected int[] positives;
+
+    protected int[] negatives;
+
+    protected int[] subtreePositives;
+
+    protected int[] subtreeNegatives;
+
+    protected int[] left;
+
+    protected int[] right;
+
+    protected int[] priority;
+
+    protected int root = NIL;
+
+    protected int numNodes;
+
+    protected int freeList = NIL;
+
+    protected int randomState = 0x2545F491;
+
+    protected int[] stack = new int[64];
+
+    public ScoreRankTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 4);
+        this.score = new double[capacity];
+        this.positives = new int[capacity];
+        this.negatives = new int[capacity];
+        this.subtreePositives = new int[capacity];
+        this.subtreeNegatives = new int[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.priority = new int[capacity];
+    }
+
+    public int numPositives() {
+        return this.root == NIL ? 0 : this.subtreePositives[this.root];
+    }
+
+    public int numNegatives() {
+        return this.root == NIL ? 0 : this.subtreeNegatives[this.root];
+    }
+
+    public void add(double value, boolean isPositive) {
+        this.root = insert(this.root, value, isPositive);
+    }
+
+    public void remove(double value, boolean isPositive) {
+        this.root = delete(this.root, value, isPositive);
+    }
+
+    /**
+     * Counts the examples of a label with a score greater than a value.
+     */
+    public int countGreater(double value, boolean isPositive) {
+        int count = 0;
+        int node = this.root;
+        while (node != NIL) {
+            if (value < this.score[node]) {
+                count += (isPositive ? this.positives[node] : this.negatives[node])
+                        + subtreeCount(this.right[node], isPositive);
+                node = this.left[node];
+            } else if (value > this.score[node]) {
+                node = this.right[node];
+            } else {
+                return count + subtreeCount(this.right[node], isPositive);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the examples of a label with a score equal to a value.
+     */
+    public int countEqual(double value, boolean isPositive) {
+        int node = find(value);
+        if (node == NIL) {
+            return 0;
+        }
+        return isPositive ? this.positives[node] : this.negatives[node];
+    }
+
+    /**
+     * Counts the examples of a label with a score less than a value.
+     */
+    public int countLess(double value, boolean isPositive) {
+        int total = isPositive ? numPositives() : numNegatives();
+        return total - countGreater(value, isPositive) - countEqual(value, isPositive);
+    }
+
+    /**
+     * Writes the distinct scores in descending order, with the number of
+     * positive and negative examples for each, into arrays given by the
+     * caller.
+     *
+     * @return the number of distinct scores written
+     */
+    public int getDescending(double[] scores, int[] numPositives,
+            int[] numNegatives) {
+        int count = 0;
+        int[] stack = this.stack;
+        int depth = 0;
+        int node = this.root;
+        while ((node != NIL) || (depth > 0)) {
+            while (node != NIL) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                    this.stack = stack;
+                }
+                stack[depth++] = node;
+                node = this.right[node];
+            }
+            node = stack[--depth];
+            scores[count] = this.score[node];
+            numPositives[count] = this.positives[node];
+            numNegatives[count] = this.negatives[node];
+            count++;
+            node = this.left[node];
+        }
+        return count;
+    }
+
+    public int numDistinctScores() {
+        return this.numNodes;
+    }
+
+    protected int find(double value) {
+        int node = this.root;
+        while (node != NIL) {
+            if (value < this.score[node]) {
+                node = this.left[node];
+            } else if (value > this.score[node]) {
+                node = this.right[node];
+            } else {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    protected int subtreeCount(int node, boolean isPositive) {
+        if (node == NIL) {
+            return 0;
+        }
+        return isPositive ? this.subtreePositives[node] : this.subtreeNegatives[node];
+    }
+
+    protected void update(int node) {
+        this.subtreePositives[node] = this.positives[node]
+                + subtreeCount(this.left[node], true)
+                + subtreeCount(this.right[node], true);
+        this.subtreeNegatives[node] = this.negatives[node]
+                + subtreeCount(this.left[node], false)
+                + subtreeCount(this.right[node], false);
+    }
+
+    protected int insert(int node, double value, boolean isPositive) {
+        if (node == NIL) {
+            node = newNode(value);
+            increment(node, isPositive, 1);
+            return node;
+        }
+        if (value < this.score[node]) {
+            int child = insert(this.left[node], value, isPositive);
+            this.left[node] = child;
+            if (this.priority[child] > this.priority[node]) {
+                return rotateRight(node);
+            }
+        } else if (value > this.score[node]) {
+            int child = insert(this.right[node], value, isPositive);
+            this.right[node] = child;
+            if (this.priority[child] > this.priority[node]) {
+                return rotateLeft(node);
+            }
+        } else {
+            increment(node, isPositive, 1);
+            return node;
+        }
+        update(node);
+        return node;
+    }
+
+    protected int delete(int node, double value, boolean isPositive) {
+        if (node == NIL) {
+            throw new IllegalArgumentException("Score not in tree: " + value);
+        }
+        if (value < this.score[node]) {
+            this.left[node] = delete(this.left[node], value, isPositive);
+        } else if (value > this.score[node]) {
+            this.right[node] = delete(this.right[node], value, isPositive);
+        } else {
+            increment(node, isPositive, -1);
+            if (this.positives[node] + this.negatives[node] == 0) {
+                return unlink(node);
+            }
+            return node;
+        }
+        update(node);
+        return node;
+    }
+
+    // rotates an emptied node down to a leaf and frees it
+    protected int unlink(int node) {
+        int l = this.left[node];
+        int r = this.right[node];
+        if ((l == NIL) && (r == NIL)) {
+            freeNode(node);
+            return NIL;
+        }
+        int top;
+        if ((r == NIL) || ((l != NIL) && (this.priority[l] > this.priority[r]))) {
+            top = rotateRight(node);
+            this.right[top] = unlink(node);
+        } else {
+            top = rotateLeft(node);
+            this.left[top] = unlink(node);
+        }
+        update(top);
+        return top;
+    }
+
+    protected int rotateRight(int node) {
+        int top = this.left[node];
+        this.left[node] = this.right[top];
+        this.right[top] = node;
+        update(node);
+        update(top);
+        return top;
+    }
+
+    protected int rotateLeft(int node) {
+        int top = this.right[node];
+        this.right[node] = this.left[top];
+        this.left[top] = node;
+        update(node);
+        update(top);
+        return top;
+    }
+
+    protected void increment(int node, boolean isPositive, int amount) {
+        if (isPositive) {
+            this.positives[node] += amount;
+            this.subtreePositives[node] += amount;
+        } else {
+            this.negatives[node] += amount;
+            this.subtreeNegatives[node] += amount;
+        }
+    }
+
+    protected int newNode(double value) {
+        int node;
+        if (this.freeList != NIL) {
+            node = this.freeList;
+            this.freeList = this.left[node];
+        } else {
+            if (this.numNodes == this.score.length) {
+                grow();
+            }
+            node = this.numNodes;
+        }
+        this.numNodes++;
+        this.score[node] = value;
+        this.positives[node] = 0;
+        this.negatives[node] = 0;
+        this.subtreePositives[node] = 0;
+        this.subtreeNegatives[node] = 0;
+        this.left[node] = NIL;
+        this.right[node] = NIL;
+        // xorshift, so that the shape does not depend on the score order
+        this.randomState ^= this.randomState << 13;
+        this.randomState ^= this.randomState >>> 17;
+        this.randomState ^= this.randomState << 5;
+        this.priority[node] = this.randomState;
+        return node;
+    }
+
+    protected void freeNode(int node) {
+        this.left[node] = this.freeList;
+        this.freeList = node;
+        this.numNodes--;
+    }
+
+    protected void grow() {
+        int capacity = 2 * this.score.length;
+        this.score = Arrays.copyOf(this.score, capacity);
+        this.positives = Arrays.copyOf(this.positives, capacity);
+        this.negatives = Arrays.copyOf(this.negatives, capacity);
+        this.subtreePositives = Arrays.copyOf(this.subtreePositives, capacity);
+        this.subtreeNegatives = Arrays.copyOf(this.subtreeNegatives, capacity);
+        this.left = Arrays.copyOf(this.left, capacity);
+        this.right = Arrays.copyOf(this.right, capacity);
+        this.priority = Arrays.copyOf(this.priority, capacity);
+    }
+}
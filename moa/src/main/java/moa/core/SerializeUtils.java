@@ -85,18 +85,26 @@ public class SerializeUtils {
     }
 
     public static Object copyObject(Serializable obj) throws Exception {
+        return fromByteArray(toByteArray(obj));
+    }
+
+    public static byte[] toByteArray(Serializable obj) throws IOException {
         ByteArrayOutputStream baoStream = new ByteArrayOutputStream();
         ObjectOutputStream out = new ObjectOutputStream(
                 new BufferedOutputStream(baoStream));
         out.writeObject(obj);
         out.flush();
         out.close();
-        byte[] byteArray = baoStream.toByteArray();
+        return baoStream.toByteArray();
+    }
+
+    public static Object fromByteArray(byte[] byteArray) throws IOException,
+            ClassNotFoundException {
         ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
                 new ByteArrayInputStream(byteArray)));
-        Object copy = in.readObject();
+        Object obj = in.readObject();
         in.close();
-        return copy;
+        return obj;
     }
 
     public static int measureObjectByteSize(Serializable obj) throws Exception {
@@ -20,16 +20,29 @@
  */
 package moa.core;
 
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.SparseInstance;
 import sizeof.agent.SizeOfAgent;
 
 /**
  * Helper class for <a href="http://www.jroller.com/maxim/entry/again_about_determining_size_of" target="_blank">Maxim Zakharenkov's SizeOf agent</a>.
+ * Also offers agent-free estimates for the building blocks used by objects
+ * implementing {@link ByteSizeTracker}, which assume a 64-bit JVM.
  *
  * @author  fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision$
  */
 public class SizeOf {
 
+    /** the size of an object header. */
+    public static final int OBJECT_HEADER_BYTES = 16;
+
+    /** the size of an array header. */
+    public static final int ARRAY_HEADER_BYTES = 16;
+
+    /** the size of a reference. */
+    public static final int REFERENCE_BYTES = 8;
+
     /** whether the agent is present. */
     protected static Boolean m_Present;
 
@@ -78,4 +91,86 @@ public class SizeOf {
             return -1;
         }
     }
+
+    /**
+     * Rounds a size up to the 8 byte alignment of the JVM.
+     *
+     * @param size	the unaligned size
+     * @return the aligned size
+     */
+    public static long align(long size) {
+        return (size + 7L) & ~7L;
+    }
+
+    /**
+     * Estimates the size of an object, without the agent.
+     *
+     * @param fieldBytes	the bytes taken by the fields of the object
+     * @return the estimated size of the object
+     */
+    public static long sizeOfObject(long fieldBytes) {
+        return align(OBJECT_HEADER_BYTES + fieldBytes);
+    }
+
+    /**
+     * Estimates the size of an array, without the agent.
+     *
+     * @param length	the length of the array
+     * @param elementBytes	the size of an element, REFERENCE_BYTES for objects
+     * @return the estimated size of the array
+     */
+    public static long sizeOfArray(int length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + (long) length * elementBytes);
+    }
+
+    /**
+     * Estimates the size of an ArrayList (or AutoExpandVector), without the
+     * agent and without its elements.
+     *
+     * @param size	the number of elements in the list
+     * @return the estimated size of the list
+     */
+    public static long sizeOfArrayList(int size) {
+        // elementData reference, size and modCount
+        return sizeOfObject(REFERENCE_BYTES + 8) + sizeOfArray(size, REFERENCE_BYTES);
+    }
+
+    /**
+     * Estimates the size of an instance, without the agent. The header is
+     * shared between instances and is not included.
+     *
+     * @param inst	the instance
+     * @return the estimated size of the instance
+     */
+    public static long sizeOfInstance(Instance inst) {
+        // weight, data and header references of the instance
+        long size = sizeOfObject(8 + 2 * REFERENCE_BYTES);
+        if (inst instanceof SparseInstance) {
+            size += sizeOfObject(2 * REFERENCE_BYTES + 4)
+                    + sizeOfArray(inst.numValues(), 8)
+                    + sizeOfArray(inst.numValues(), 4);
+        } else {
+            size += sizeOfObject(REFERENCE_BYTES)
+                    + sizeOfArray(inst.numValues(), 8);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the size the object keeps track of if it implements
+     * {@link ByteSizeTracker}, otherwise the full size from the agent.
+     *
+     * @param o	the object to get the size for
+     * @return the size of the object, or 0 if it is null or neither tracked nor
+     * measurable by the agent
+     */
+    public static long trackedSizeOf(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        if (o instanceof ByteSizeTracker) {
+            return ((ByteSizeTracker) o).getTrackedByteSize();
+        }
+        return Math.max(0, fullSizeOf(o));
+    }
 }
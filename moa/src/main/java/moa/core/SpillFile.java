@@ -0,0 +1,169 @@
+/*
+ *    SpillFile.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Store of byte records in a temporary memory-mapped file, used to move
+ * statistics that are not currently needed out of the heap.
+ *
+ * <p>The file is made of segments that records are appended to. A record is
+ * identified by the handle returned when writing it, and has to be released
+ * once it is read back for the last time. A segment whose records have all
+ * been released is reused for new records, so the file only grows with the
+ * amount of data spilled at the same time.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class SpillFile implements Closeable {
+
+    /** the default size of a segment, 64MB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+    protected int segmentSize;
+
+    protected File file;
+
+    protected RandomAccessFile randomAccessFile;
+
+    protected FileChannel channel;
+
+    protected long fileSize;
+
+    protected List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    protected List<Integer> liveRecordsPerSegment = new ArrayList<Integer>();
+
+    protected List<Integer> freeSegments = new LinkedList<Integer>();
+
+    protected int currentSegment = -1;
+
+    protected int numLiveRecords;
+
+    public SpillFile() throws IOException {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SpillFile(int segmentSize) throws IOException {
+        this.segmentSize = segmentSize;
+        this.file = File.createTempFile("moa-spill", ".bin");
+        this.file.deleteOnExit();
+        this.randomAccessFile = new RandomAccessFile(this.file, "rw");
+        this.channel = this.randomAccessFile.getChannel();
+    }
+
+    /**
+     * Appends a record to the file.
+     *
+     * @param data	the record
+     * @return the handle of the record
+     */
+    public long write(byte[] data) throws IOException {
+        int segment = this.currentSegment;
+        if ((segment < 0) || (this.segments.get(segment).remaining() < data.length)) {
+            if ((segment >= 0) && (this.liveRecordsPerSegment.get(segment) == 0)) {
+                this.freeSegments.add(segment);
+            }
+            segment = obtainSegment(data.length);
+            this.currentSegment = segment;
+        }
+        MappedByteBuffer buffer = this.segments.get(segment);
+        int position = buffer.position();
+        buffer.put(data);
+        this.liveRecordsPerSegment.set(segment, this.liveRecordsPerSegment.get(segment) + 1);
+        this.numLiveRecords++;
+        return ((long) segment << 32) | position;
+    }
+
+    /**
+     * Reads a record back, without releasing it.
+     *
+     * @param handle	the handle returned by write
+     * @param length	the length of the record
+     * @return the record
+     */
+    public byte[] read(long handle, int length) {
+        ByteBuffer buffer = this.segments.get((int) (handle >>> 32)).duplicate();
+        buffer.position((int) handle);
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Releases a record, making its space available once the rest of its
+     * segment is released too.
+     *
+     * @param handle	the handle returned by write
+     */
+    public void release(long handle) {
+        int segment = (int) (handle >>> 32);
+        int liveRecords = this.liveRecordsPerSegment.get(segment) - 1;
+        this.liveRecordsPerSegment.set(segment, liveRecords);
+        this.numLiveRecords--;
+        if (liveRecords == 0) {
+            this.segments.get(segment).clear();
+            if (segment != this.currentSegment) {
+                this.freeSegments.add(segment);
+            }
+        }
+    }
+
+    public int numLiveRecords() {
+        return this.numLiveRecords;
+    }
+
+    public long getFileSize() {
+        return this.fileSize;
+    }
+
+    protected int obtainSegment(int minSize) throws IOException {
+        for (int i = 0; i < this.freeSegments.size(); i++) {
+            int segment = this.freeSegments.get(i);
+            if (this.segments.get(segment).capacity() >= minSize) {
+                this.freeSegments.remove(i);
+                return segment;
+            }
+        }
+        int size = Math.max(this.segmentSize, minSize);
+        MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_WRITE,
+                this.fileSize, size);
+        this.fileSize += size;
+        this.segments.add(buffer);
+        this.liveRecordsPerSegment.add(0);
+        return this.segments.size() - 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.segments.clear();
+        this.channel.close();
+        this.randomAccessFile.close();
+        this.file.delete();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *    StageLatencies.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Latency histograms of the stages of a component, such as training and
+ * prediction of a classifier, reported as model measurements.
+ *
+ * <p>Instrumentation is off unless the JVM is started with
+ * -Dmoa.instrumentation=true. Since ENABLED is a constant, the JIT removes
+ * the guarded timing code when it is off, so it costs nothing. Each
+ * component keeps its own histograms, which must only be updated by the
+ * thread running the component.</p>
+ *
+ * <pre>
+ * long start = StageLatencies.ENABLED ? System.nanoTime() : 0;
+ * ...
+ * if (StageLatencies.ENABLED) {
+ *     latencies.record(STAGE, start);
+ * }
+ * </pre>
+ *
+ * @version $Revision: 7 $
+ */
+public class StageLatencies implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final boolean ENABLED = Boolean.getBoolean("moa.instrumentation");
+
+    protected String[] stageNames;
+
+    protected LatencyHistogram[] histograms;
+
+    public StageLatencies(String... stageNames) {
+        this.stageNames = stageNames.clone();
+        this.histograms = new LatencyHistogram[stageNames.length];
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the time elapsed in a stage.
+     *
+     * @param stage the index of the stage in the names given at creation
+     * @param startNanos the value of System.nanoTime() when the stage began
+     */
+    public void record(int stage, long startNanos) {
+        this.histograms[stage].record(System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return this.histograms[stage];
+    }
+
+    /**
+     * Adds the latencies of another component with the same stages.
+     */
+    public void add(StageLatencies other) {
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i].add(other.histograms[i]);
+        }
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : this.histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Adds the count, throughput, median, 99th percentile and maximum
+     * latency of every stage that was entered.
+     */
+    public void getMeasurements(List<Measurement> measurements) {
+        for (int i = 0; i < this.histograms.length; i++) {
+            LatencyHistogram histogram = this.histograms[i];
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            String name = this.stageNames[i];
+            measurements.add(new Measurement(name + " count",
+                    histogram.getTotalCount()));
+            measurements.add(new Measurement(name + " throughput (per second)",
+                    histogram.getTotalCount()
+                    / TimingUtils.nanoTimeToSeconds(Math.max(1, histogram.getTotalValue()))));
+            measurements.add(new Measurement(name + " p50 latency (ns)",
+                    histogram.getValueAtPercentile(50.0)));
+            measurements.add(new Measurement(name + " p99 latency (ns)",
+                    histogram.getValueAtPercentile(99.0)));
+            measurements.add(new Measurement(name + " max latency (ns)",
+                    histogram.getMaxValue()));
+        }
+    }
+
+    /**
+     * Returns the measurements followed by the ones of the stages.
+     */
+    public Measurement[] appendMeasurements(Measurement[] measurements) {
+        List<Measurement> list = new ArrayList<Measurement>();
+        if (measurements != null) {
+            list.addAll(Arrays.asList(measurements));
+        }
+        getMeasurements(list);
+        return list.toArray(new Measurement[list.size()]);
+    }
+}
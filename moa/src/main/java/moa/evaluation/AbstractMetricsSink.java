@@ -0,0 +1,227 @@
+/*
+ *    AbstractMetricsSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.github.javacliparser.IntOption;
+
+import moa.core.BoundedSPSCQueue;
+import moa.core.ObjectRepository;
+import moa.evaluation.preview.LearningCurve;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Base class for metrics sinks that write on a thread of their own.
+ *
+ * <p>The entries are copied into rows allocated when the sink is opened and
+ * handed to the writer thread, which gives them back once written. The task
+ * only waits for the disk when all the rows are waiting to be written. The
+ * file is flushed whenever the writer thread runs out of rows.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public abstract class AbstractMetricsSink extends AbstractOptionHandler
+        implements MetricsSink {
+
+    private static final long serialVersionUID = 1L;
+
+    public IntOption bufferSizeOption = new IntOption("bufferSize", 'b',
+            "Number of entries that can wait to be written.", 1024, 1,
+            BoundedSPSCQueue.MAX_CAPACITY - 1);
+
+    protected static class Row {
+
+        // set when the measurement names changed since the previous row
+        protected String[] names;
+
+        protected double[] values = new double[16];
+
+        protected int numValues;
+    }
+
+    // tells the writer thread to stop
+    protected static final Row END_OF_ENTRIES = new Row();
+
+    protected transient BoundedSPSCQueue<Row> pendingRows;
+
+    protected transient BoundedSPSCQueue<Row> freeRows;
+
+    protected transient Thread writerThread;
+
+    protected transient volatile Throwable writerError;
+
+    protected transient int numNamesWritten;
+
+    protected String headerPrefix;
+
+    protected String rowPrefix;
+
+    /**
+     * Opens the file, appending to it if it exists.
+     */
+    protected abstract void openFile(File file) throws IOException;
+
+    protected abstract void writeHeader(String[] names) throws IOException;
+
+    protected abstract void writeRow(double[] values, int numValues)
+            throws IOException;
+
+    protected abstract void flushFile() throws IOException;
+
+    protected abstract void closeFile() throws IOException;
+
+    @Override
+    public void open(File file, String headerPrefix, String rowPrefix) {
+        this.headerPrefix = headerPrefix;
+        this.rowPrefix = rowPrefix;
+        this.numNamesWritten = 0;
+        this.writerError = null;
+        try {
+            openFile(file);
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to open immediate result file: "
+                    + file, ex);
+        }
+        int bufferSize = this.bufferSizeOption.getValue();
+        // one more slot, so that the end of entries always fits
+        this.pendingRows = new BoundedSPSCQueue<Row>(bufferSize + 1);
+        this.freeRows = new BoundedSPSCQueue<Row>(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            this.freeRows.offer(new Row());
+        }
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRows();
+            }
+        }, "metrics sink " + file.getName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void addEntry(LearningCurve learningCurve) {
+        checkWriterError();
+        Row row;
+        try {
+            row = this.freeRows.take();
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        int numNames = learningCurve.getMeasurementNameCount();
+        if (numNames != this.numNamesWritten) {
+            row.names = new String[numNames];
+            for (int i = 0; i < numNames; i++) {
+                row.names[i] = learningCurve.getMeasurementName(i);
+            }
+            this.numNamesWritten = numNames;
+        } else {
+            row.names = null;
+        }
+        if (row.values.length < numNames) {
+            row.values = new double[numNames];
+        }
+        int entry = learningCurve.numEntries() - 1;
+        int numValues = learningCurve.getEntryMeasurementCount(entry);
+        for (int i = 0; i < numNames; i++) {
+            row.values[i] = i < numValues
+                    ? learningCurve.getMeasurement(entry, i) : Double.NaN;
+        }
+        row.numValues = numNames;
+        try {
+            this.pendingRows.put(row);
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.writerThread == null) {
+            return;
+        }
+        try {
+            this.pendingRows.put(END_OF_ENTRIES);
+            this.writerThread.join();
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            this.writerThread = null;
+            this.pendingRows = null;
+            this.freeRows = null;
+        }
+        checkWriterError();
+    }
+
+    protected void writeRows() {
+        boolean ended = false;
+        try {
+            try {
+                while (true) {
+                    Row row = this.pendingRows.poll();
+                    if (row == null) {
+                        flushFile();
+                        row = this.pendingRows.take();
+                    }
+                    if (row == END_OF_ENTRIES) {
+                        ended = true;
+                        break;
+                    }
+                    if (row.names != null) {
+                        writeHeader(row.names);
+                    }
+                    writeRow(row.values, row.numValues);
+                    this.freeRows.offer(row);
+                }
+            } finally {
+                closeFile();
+            }
+        } catch (Throwable t) {
+            this.writerError = t;
+            // keep giving the rows back, so that the task is not blocked
+            try {
+                while (!ended) {
+                    Row row = this.pendingRows.take();
+                    ended = row == END_OF_ENTRIES;
+                    this.freeRows.offer(row);
+                }
+            } catch (InterruptedException ex) {
+                // the task is gone
+            }
+        }
+    }
+
+    protected void checkWriterError() {
+        Throwable error = this.writerError;
+        if (error != null) {
+            throw new RuntimeException("Unable to write immediate results", error);
+        }
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *    BinaryMetricsSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import moa.evaluation.preview.LearningCurve;
+
+/**
+ * Metrics sink writing the values as raw doubles, which is much cheaper
+ * than formatting them and does not lose precision.
+ *
+ * <p>The file is a sequence of records, each starting with its type: the
+ * prefixes given when opening the sink, the measurement names whenever
+ * they change, and the values of each entry. Use readLearningCurve to load
+ * it back.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class BinaryMetricsSink extends AbstractMetricsSink {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final byte PREFIX_RECORD = 1;
+
+    public static final byte HEADER_RECORD = 2;
+
+    public static final byte ROW_RECORD = 3;
+
+    protected transient DataOutputStream out;
+
+    @Override
+    public String getPurposeString() {
+        return "Writes the intermediate results as binary records.";
+    }
+
+    @Override
+    protected void openFile(File file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, true)));
+        if ((this.headerPrefix != null) || (this.rowPrefix != null)) {
+            this.out.writeByte(PREFIX_RECORD);
+            this.out.writeUTF(this.headerPrefix == null ? "" : this.headerPrefix);
+            this.out.writeUTF(this.rowPrefix == null ? "" : this.rowPrefix);
+        }
+    }
+
+    @Override
+    protected void writeHeader(String[] names) throws IOException {
+        this.out.writeByte(HEADER_RECORD);
+        this.out.writeInt(names.length);
+        for (String name : names) {
+            this.out.writeUTF(name);
+        }
+    }
+
+    @Override
+    protected void writeRow(double[] values, int numValues) throws IOException {
+        this.out.writeByte(ROW_RECORD);
+        this.out.writeInt(numValues);
+        for (int i = 0; i < numValues; i++) {
+            this.out.writeDouble(values[i]);
+        }
+    }
+
+    @Override
+    protected void flushFile() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    protected void closeFile() throws IOException {
+        if (this.out != null) {
+            this.out.close();
+            this.out = null;
+        }
+    }
+
+    /**
+     * Reads all the entries of a file written by this sink, ignoring the
+     * prefixes.
+     */
+    public static LearningCurve readLearningCurve(File file) throws IOException {
+        List<String> names = new ArrayList<String>();
+        List<double[]> values = new ArrayList<double[]>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            while (true) {
+                int type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException ex) {
+                    break;
+                }
+                if (type == PREFIX_RECORD) {
+                    in.readUTF();
+                    in.readUTF();
+                } else if (type == HEADER_RECORD) {
+                    String[] header = new String[in.readInt()];
+                    for (int i = 0; i < header.length; i++) {
+                        header[i] = in.readUTF();
+                    }
+                    if (header.length > names.size()) {
+                        names = Arrays.asList(header);
+                    }
+                } else if (type == ROW_RECORD) {
+                    double[] row = new double[in.readInt()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = in.readDouble();
+                    }
+                    values.add(row);
+                } else {
+                    throw new IOException("Unknown record type " + type
+                            + " in " + file);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        LearningCurve learningCurve = new LearningCurve(names.isEmpty()
+                ? "learning evaluation instances" : names.get(0));
+        if (!names.isEmpty()) {
+            learningCurve.setData(names, values);
+        }
+        return learningCurve;
+    }
+}
@@ -103,6 +103,24 @@ public class CMM extends MeasureCollection{
      * when enabled errors that are caused by the underling cluster model will not be counted
      */
     public boolean enableModelError = true;
+
+    /**
+     * enable/disable incremental knn
+     * when enabled the knn distances of the points are kept between evaluations
+     * and only updated for the points that entered or left the horizon
+     */
+    public boolean incrementalKnn = true;
+
+    /**
+     * number of threads updating the knn distances and analysing the ground truth clusters,
+     * set by the moa.cmm.threads system property (e.g. -Dmoa.cmm.threads=4), 1 by default
+     */
+    public int numThreads = Integer.getInteger("moa.cmm.threads", 1);
+
+    /**
+     * knn distances of the points of the last evaluation
+     */
+    private transient CMM_KnnCache knnCache;
     
 
     @Override
@@ -126,7 +144,16 @@ public class CMM extends MeasureCollection{
         numPoints = points.size();
         numFClusters = clustering.size();
 
-        gtAnalysis = new CMM_GTAnalysis(trueClustering, points, enableClassMerge);
+        if(knnCache == null || knnCache.getNumThreads() != Math.max(numThreads, 1)){
+            if(knnCache != null){
+                knnCache.shutdown();
+            }
+            knnCache = new CMM_KnnCache(numThreads);
+        }
+        else if(!incrementalKnn){
+            knnCache.clear();
+        }
+        gtAnalysis = new CMM_GTAnalysis(trueClustering, points, enableClassMerge, knnCache);
 
         numGT0Classes = gtAnalysis.getNumberOfGT0Classes();
 
@@ -36,10 +36,11 @@ package moa.evaluation;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
 import moa.cluster.Clustering;
 import moa.core.AutoExpandVector;
 import moa.gui.visualization.DataPoint;
-import com.yahoo.labs.samoa.instances.Instance;
 
 public class CMM_GTAnalysis{
 	
@@ -58,6 +59,11 @@ public class CMM_GTAnalysis{
      */
     private ArrayList<GTCluster> gt0Clusters;
 
+    /**
+     * k nearest neighbour distances of the points, by class label
+     */
+    private CMM_KnnCache knnCache;
+
     /**
      * IDs of noise points
      */
@@ -243,6 +249,9 @@ public class CMM_GTAnalysis{
         
         /** original class label*/
         private final int label;
+
+        /** class labels of the points in the cluster, including the ones of merged clusters */
+        private ArrayList<Integer> labels = new ArrayList<Integer>();
         
         /** clusters that have been merged into this cluster (debugging)*/
         private ArrayList<Integer> mergedWorkLabels = null;
@@ -261,6 +270,7 @@ public class CMM_GTAnalysis{
            this.orgWorkClass = workclass;
            this.workclass = workclass;
            this.label = label;
+           this.labels.add(label);
            this.clusterRepresentations.add(gtClusteringID);
         }
 
@@ -301,7 +311,7 @@ public class CMM_GTAnalysis{
                     AutoExpandVector<Integer> knnPointIndex = new AutoExpandVector<Integer>();
                     
                     //calculate nearest neighbours 
-                    getKnnInCluster(cmdp, knnNeighbourhood, points, knnDist,knnPointIndex);
+                    getKnnInCluster(cmdp, this, knnDist,knnPointIndex);
 
                     //TODO: What to do if we have less then k neighbours?
                     double avgKnn = 0;
@@ -418,6 +428,7 @@ public class CMM_GTAnalysis{
 
                 //merge points from B into A
                 points.addAll(gtcMerge.points);
+                labels.addAll(gtcMerge.labels);
                 clusterRepresentations.addAll(gtcMerge.clusterRepresentations);
                 if(mergedWorkLabels==null){
                     mergedWorkLabels = new ArrayList<Integer>();
@@ -457,6 +468,17 @@ public class CMM_GTAnalysis{
      * @param enableClassMerge allow class merging (should be set to true on default)
      */
     public CMM_GTAnalysis(Clustering trueClustering, ArrayList<DataPoint> points, boolean enableClassMerge){
+        this(trueClustering, points, enableClassMerge, new CMM_KnnCache(1));
+    }
+
+    /**
+     * @param trueClustering the ground truth clustering
+     * @param points data points
+     * @param enableClassMerge allow class merging (should be set to true on default)
+     * @param knnCache nearest neighbours of the points of the previous evaluation,
+     * updated for the given points
+     */
+    public CMM_GTAnalysis(Clustering trueClustering, ArrayList<DataPoint> points, boolean enableClassMerge, CMM_KnnCache knnCache){
         if(debug)
             System.out.println("GT Analysis Debug Output");
 
@@ -474,6 +496,9 @@ public class CMM_GTAnalysis{
         numDims = points.get(0).numAttributes()-1;
         numGTClusters = gtClustering.size();
 
+        this.knnCache = knnCache;
+        knnCache.update(points, knnNeighbourhood, numDims);
+
         //init mappings between work and true labels
         mapTrueLabelToWorkLabel = new HashMap<Integer, Integer>();
         
@@ -519,9 +544,16 @@ public class CMM_GTAnalysis{
         }
 
         //calculate initial knnMean and knnDev
-        for (GTCluster gtc : gt0Clusters) {
-            gtc.calculateKnn();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final GTCluster gtc : gt0Clusters) {
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    gtc.calculateKnn();
+                    return null;
+                }
+            });
         }
+        knnCache.invokeAll(tasks);
 
         //calculate cluster connections
         calculateGTClusterConnections();
@@ -547,7 +579,7 @@ public class CMM_GTAnalysis{
         AutoExpandVector<Integer> knnPointIndex = new AutoExpandVector<Integer>();
         
         //calculate the knn distance of the point to the cluster
-        getKnnInCluster(cmmp, knnNeighbourhood, gt0Clusters.get(clusterID).points, knnDist, knnPointIndex);
+        getKnnInCluster(cmmp, gt0Clusters.get(clusterID), knnDist, knnPointIndex);
 
         //TODO: What to do if we have less then k neighbors?
         double avgDist = 0;
@@ -587,34 +619,15 @@ public class CMM_GTAnalysis{
     
     /**
      * @param cmmp point to calculate knn distance for
-     * @param k number of nearest neighbors to look for
-     * @param pointIDs list of point IDs to check
-     * @param knnDist sorted list of smallest knn distances (can already be filled to make updates possible)  
+     * @param cluster cluster whose points are checked
+     * @param knnDist sorted list of smallest knn distances
      * @param knnPointIndex list of corresponding knn indices
      */
-    private void getKnnInCluster(CMMPoint cmmp, int k,
-                                 ArrayList<Integer> pointIDs,
+    private void getKnnInCluster(CMMPoint cmmp, GTCluster cluster,
                                  AutoExpandVector<Double> knnDist,
                                  AutoExpandVector<Integer> knnPointIndex) {
-
-        //iterate over every point in the choosen cluster, cal distance and insert into list
-        for (int p1 = 0; p1 < pointIDs.size(); p1++) {
-            int pid = pointIDs.get(p1);
-            if(cmmp.pID == pid) continue;
-            double dist = distance(cmmp,cmmpoints.get(pid));
-            if(knnDist.size() < k || dist < knnDist.get(knnDist.size()-1)){
-                int index = 0;
-                while(index < knnDist.size() && dist > knnDist.get(index)) {
-                    index++;
-                }
-                knnDist.add(index, dist);
-                knnPointIndex.add(index,pid);
-                if(knnDist.size() > k){
-                    knnDist.remove(knnDist.size()-1);
-                    knnPointIndex.remove(knnPointIndex.size()-1);
-                }
-            }
-        }
+        //the nearest points of the cluster are the nearest ones of its labels
+        knnCache.getKnn(cmmp.pID, cluster.labels, knnDist, knnPointIndex);
     }
 
 
@@ -639,11 +652,20 @@ public class CMM_GTAnalysis{
      * long as connections exceed threshold 
      */
     private void calculateGTClusterConnections(){
+        //each cluster only updates its own connections and points
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
         for (int c0 = 0; c0 < gt0Clusters.size(); c0++) {
-            for (int c1 = 0; c1 < gt0Clusters.size(); c1++) {
-                    gt0Clusters.get(c0).calculateClusterConnection(c1, true);
-            }
+            final GTCluster gtc = gt0Clusters.get(c0);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    for (int c1 = 0; c1 < gt0Clusters.size(); c1++) {
+                        gtc.calculateClusterConnection(c1, true);
+                    }
+                    return null;
+                }
+            });
         }
+        knnCache.invokeAll(tasks);
 
         boolean changedConnection = true;
         while(changedConnection){
@@ -790,32 +812,6 @@ public class CMM_GTAnalysis{
         return numGT0Classes;
     }
     
-    /**
-     * Calculates Euclidian distance 
-     * @param inst1 point as double array
-     * @param inst2 point as double array
-     * @return euclidian distance
-     */
-    private double distance(Instance inst1, Instance inst2){
-          return distance(inst1, inst2.toDoubleArray());
-
-    }
-    
-    /**
-     * Calculates Euclidian distance 
-     * @param inst1 point as an instance
-     * @param inst2 point as double array
-     * @return euclidian distance
-     */
-    private double distance(Instance inst1, double[] inst2){
-        double distance = 0.0;
-        for (int i = 0; i < numDims; i++) {
-            double d = inst1.value(i) - inst2[i];
-            distance += d * d;
-        }
-        return Math.sqrt(distance);
-    }
-    
     /**
      * String with main CMM parameters
      * @return main CMM parameter
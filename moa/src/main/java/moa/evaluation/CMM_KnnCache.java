@@ -0,0 +1,383 @@
+/**
+ * [CMM_KnnCache.java]
+ *
+ * CMM: k nearest neighbour distances of the points within the horizon
+ *
+ * Reference: Kremer et al., "An Effective Evaluation Measure for Clustering on Evolving Data Streams", KDD, 2011
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.evaluation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import moa.gui.visualization.DataPoint;
+
+/**
+ * Keeps, for every point within the horizon and every class label, the
+ * distances to its k nearest points of that class. The k nearest neighbours
+ * of a point in a ground truth cluster are the k nearest ones among the
+ * lists of the labels of the cluster, so the ground truth analysis does not
+ * need to compare the point with all the points of the cluster, even after
+ * clusters are merged.
+ *
+ * The lists are kept between evaluations: points are recognized by
+ * reference, the lists of new points are computed, the new points are
+ * inserted in the lists of the others, and only the lists that contained a
+ * point that left the horizon are computed again. Every point updates its
+ * own lists, so the updates run in parallel when more than one thread is
+ * given.
+ */
+public class CMM_KnnCache {
+
+    /**
+     * A point within the horizon with its nearest neighbours
+     */
+    protected static class Entry {
+        /** attribute values, without the class */
+        protected double[] values;
+
+        /** true class label, or -1 for noise */
+        protected int label;
+
+        /** position of the point in the points of the last update */
+        protected int index;
+
+        /** the last update that contained the point */
+        protected int generation;
+
+        protected boolean isNew;
+
+        /** sorted distances to the nearest points of each label */
+        protected double[][] knnDist;
+
+        /** the nearest points of each label */
+        protected Entry[][] knnPoints;
+
+        protected int[] knnCount;
+    }
+
+    private final int numThreads;
+
+    private transient ExecutorService executor;
+
+    private IdentityHashMap<DataPoint, Entry> entries = new IdentityHashMap<DataPoint, Entry>();
+
+    /** entries of the points of the last update, by position */
+    private Entry[] points = new Entry[0];
+
+    /** non noise entries of the last update, by label */
+    private List<List<Entry>> pointsByLabel = new ArrayList<List<Entry>>();
+
+    private List<Entry> newPoints = new ArrayList<Entry>();
+
+    private int generation;
+
+    private int k = -1;
+
+    private int numDims = -1;
+
+    private int numLabels;
+
+    /**
+     * @param numThreads number of threads updating the lists
+     */
+    public CMM_KnnCache(int numThreads) {
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    /**
+     * @return the number of threads updating the lists
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Forgets the points of the previous evaluations, so the lists of all
+     * the points are computed again by the next update. The threads are kept.
+     */
+    public void clear() {
+        entries.clear();
+        points = new Entry[0];
+        pointsByLabel.clear();
+        newPoints.clear();
+        k = -1;
+        numDims = -1;
+        numLabels = 0;
+    }
+
+    /**
+     * Stops the threads updating the lists. The cache can still be used, new
+     * threads are started when needed.
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Updates the lists for the points of a new evaluation.
+     *
+     * @param dataPoints the points within the horizon
+     * @param k number of nearest neighbours
+     * @param numDims number of attributes, without the class
+     */
+    public void update(ArrayList<DataPoint> dataPoints, int k, int numDims) {
+        if (k != this.k || numDims != this.numDims) {
+            entries.clear();
+            this.k = k;
+            this.numDims = numDims;
+            this.numLabels = 0;
+        }
+        generation++;
+
+        // streams can add labels to the class attribute as new clusters appear
+        for (DataPoint point : dataPoints) {
+            if (!point.isNoise()) {
+                numLabels = Math.max(numLabels, (int) point.classValue() + 1);
+            }
+        }
+
+        pointsByLabel.clear();
+        for (int l = 0; l < numLabels; l++) {
+            pointsByLabel.add(new ArrayList<Entry>());
+        }
+        newPoints.clear();
+        points = new Entry[dataPoints.size()];
+        for (int p = 0; p < points.length; p++) {
+            DataPoint point = dataPoints.get(p);
+            Entry entry = entries.get(point);
+            if (entry == null || entry.generation == generation) {
+                entry = newEntry(point);
+                // a point given twice is kept as two distinct points
+                if (!entries.containsKey(point)) {
+                    entries.put(point, entry);
+                }
+            } else {
+                entry.isNew = false;
+            }
+            entry.generation = generation;
+            entry.index = p;
+            points[p] = entry;
+            if (entry.isNew) {
+                newPoints.add(entry);
+            }
+            if (entry.label >= 0) {
+                pointsByLabel.get(entry.label).add(entry);
+            }
+        }
+        // forget the points that left the horizon
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().generation != generation) {
+                it.remove();
+            }
+        }
+
+        // every task only writes the lists of its own points
+        int numTasks = Math.min(numThreads, points.length);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numTasks);
+        for (int t = 0; t < numTasks; t++) {
+            final int from = (int) ((long) points.length * t / numTasks);
+            final int to = (int) ((long) points.length * (t + 1) / numTasks);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    for (int p = from; p < to; p++) {
+                        updateEntry(points[p]);
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    private Entry newEntry(DataPoint point) {
+        Entry entry = new Entry();
+        entry.values = new double[numDims];
+        for (int i = 0; i < numDims; i++) {
+            entry.values[i] = point.value(i);
+        }
+        entry.label = point.isNoise() ? -1 : (int) point.classValue();
+        entry.isNew = true;
+        entry.knnDist = new double[numLabels][k];
+        entry.knnPoints = new Entry[numLabels][k];
+        entry.knnCount = new int[numLabels];
+        return entry;
+    }
+
+    private void updateEntry(Entry entry) {
+        if (entry.knnCount.length < numLabels) {
+            entry.knnDist = Arrays.copyOf(entry.knnDist, numLabels);
+            entry.knnPoints = Arrays.copyOf(entry.knnPoints, numLabels);
+            entry.knnCount = Arrays.copyOf(entry.knnCount, numLabels);
+            for (int l = 0; l < numLabels; l++) {
+                if (entry.knnDist[l] == null) {
+                    entry.knnDist[l] = new double[k];
+                    entry.knnPoints[l] = new Entry[k];
+                }
+            }
+        }
+        for (int l = 0; l < numLabels; l++) {
+            if (entry.isNew || containsRemoved(entry, l)) {
+                entry.knnCount[l] = 0;
+                for (Entry other : pointsByLabel.get(l)) {
+                    if (other != entry) {
+                        insert(entry, l, other);
+                    }
+                }
+            } else {
+                for (Entry other : newPoints) {
+                    if (other.label == l && other != entry) {
+                        insert(entry, l, other);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean containsRemoved(Entry entry, int label) {
+        for (int i = 0; i < entry.knnCount[label]; i++) {
+            if (entry.knnPoints[label][i].generation != generation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(Entry entry, int label, Entry other) {
+        double dist = distance(entry.values, other.values);
+        double[] knnDist = entry.knnDist[label];
+        Entry[] knnPoints = entry.knnPoints[label];
+        int count = entry.knnCount[label];
+        if (count < k || dist < knnDist[count - 1]) {
+            int index = count < k ? count : count - 1;
+            while (index > 0 && dist < knnDist[index - 1]) {
+                knnDist[index] = knnDist[index - 1];
+                knnPoints[index] = knnPoints[index - 1];
+                index--;
+            }
+            knnDist[index] = dist;
+            knnPoints[index] = other;
+            if (count < k) {
+                entry.knnCount[label]++;
+            }
+        }
+    }
+
+    /**
+     * Gets the k nearest neighbours of a point among the points of some labels.
+     *
+     * @param point position of the point in the points of the last update
+     * @param labels the class labels
+     * @param knnDist receives the sorted distances
+     * @param knnPointIndex receives the positions of the neighbours
+     */
+    public void getKnn(int point, List<Integer> labels, List<Double> knnDist, List<Integer> knnPointIndex) {
+        Entry entry = points[point];
+        for (int label : labels) {
+            if (label < 0 || label >= numLabels) {
+                continue;
+            }
+            for (int i = 0; i < entry.knnCount[label]; i++) {
+                double dist = entry.knnDist[label][i];
+                if (knnDist.size() < k || dist < knnDist.get(knnDist.size() - 1)) {
+                    int index = 0;
+                    while (index < knnDist.size() && dist > knnDist.get(index)) {
+                        index++;
+                    }
+                    knnDist.add(index, dist);
+                    knnPointIndex.add(index, entry.knnPoints[label][i].index);
+                    if (knnDist.size() > k) {
+                        knnDist.remove(knnDist.size() - 1);
+                        knnPointIndex.remove(knnPointIndex.size() - 1);
+                    }
+                } else {
+                    // the lists are sorted
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs tasks, in parallel when more than one thread is given.
+     */
+    public void invokeAll(List<Callable<Void>> tasks) {
+        if (numThreads == 1 || tasks.size() <= 1) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+        try {
+            for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            // idle threads stop, so a cache that is dropped without being
+            // shut down does not keep its threads
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CMM");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    private double distance(double[] point1, double[] point2) {
+        double distance = 0.0;
+        for (int i = 0; i < numDims; i++) {
+            double d = point1[i] - point2[i];
+            distance += d * d;
+        }
+        return Math.sqrt(distance);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *    CSVMetricsSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Metrics sink writing comma separated values, in the same format as
+ * LearningCurve. The measurement names are written before the first entry
+ * only.
+ *
+ * @version $Revision: 7 $
+ */
+public class CSVMetricsSink extends AbstractMetricsSink {
+
+    private static final long serialVersionUID = 1L;
+
+    protected transient Writer writer;
+
+    protected transient StringBuilder line;
+
+    protected transient boolean headerWritten;
+
+    @Override
+    public String getPurposeString() {
+        return "Writes the intermediate results as comma separated values.";
+    }
+
+    @Override
+    protected void openFile(File file) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true)));
+        this.line = new StringBuilder();
+        this.headerWritten = false;
+    }
+
+    @Override
+    protected void writeHeader(String[] names) throws IOException {
+        if (this.headerWritten) {
+            // like LearningCurve dumps, later measurements just add columns
+            return;
+        }
+        StringBuilder sb = this.line;
+        sb.setLength(0);
+        if (this.headerPrefix != null) {
+            sb.append(this.headerPrefix);
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(names[i]);
+        }
+        sb.append(System.lineSeparator());
+        this.writer.append(sb);
+        this.headerWritten = true;
+    }
+
+    @Override
+    protected void writeRow(double[] values, int numValues) throws IOException {
+        StringBuilder sb = this.line;
+        sb.setLength(0);
+        if (this.rowPrefix != null) {
+            sb.append(this.rowPrefix);
+        }
+        for (int i = 0; i < numValues; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (Double.isNaN(values[i])) {
+                sb.append('?');
+            } else {
+                sb.append(values[i]);
+            }
+        }
+        sb.append(System.lineSeparator());
+        this.writer.append(sb);
+    }
+
+    @Override
+    protected void flushFile() throws IOException {
+        this.writer.flush();
+    }
+
+    @Override
+    protected void closeFile() throws IOException {
+        if (this.writer != null) {
+            this.writer.close();
+            this.writer = null;
+        }
+    }
+}
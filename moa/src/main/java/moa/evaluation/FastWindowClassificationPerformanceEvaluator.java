@@ -0,0 +1,379 @@
+/*
+ *    FastWindowClassificationPerformanceEvaluator.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.util.ArrayList;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.core.Utils;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Prediction;
+
+/**
+ * Classification evaluator that updates evaluation results using a sliding
+ * window, giving the same results as WindowClassificationPerformanceEvaluator.
+ *
+ * <p>Instead of one windowed estimator per statistic and per class, the
+ * window is a single ring of (true class, predicted class, weight) entries,
+ * and the per-class sums needed by accuracy, kappa, kappa-temporal, kappa-M,
+ * precision and recall are updated from the entry that enters and the one
+ * that leaves the window. Adding a result allocates nothing, and only the
+ * majority class baseline of kappa-M still looks at every class.</p>
+ *
+ * <p>A predicted class beyond the classes of the stream counts as a wrong
+ * prediction, and is left out of the per-class sums.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class FastWindowClassificationPerformanceEvaluator extends AbstractOptionHandler
+        implements ClassificationPerformanceEvaluator {
+
+    private static final long serialVersionUID = 1L;
+
+    public IntOption widthOption = new IntOption("width",
+            'w', "Size of Window", 1000);
+
+    public FlagOption precisionRecallOutputOption = new FlagOption("precisionRecallOutput",
+            'o',
+            "Outputs average precision, recall and F1 scores.");
+
+    public FlagOption precisionPerClassOption = new FlagOption("precisionPerClass",
+            'p',
+            "Report precision per class.");
+
+    public FlagOption recallPerClassOption = new FlagOption("recallPerClass",
+            'r',
+            "Report recall per class.");
+
+    public FlagOption f1PerClassOption = new FlagOption("f1PerClass", 'f',
+            "Report F1 per class.");
+
+    protected int numClasses;
+
+    protected int windowSize;
+
+    // window of the results with positive weight
+    protected int[] windowTrueClass;
+
+    protected int[] windowPredictedClass;
+
+    protected double[] windowWeight;
+
+    protected int windowPosition;
+
+    protected int windowLength;
+
+    // window of the no-change and majority class baselines
+    protected double[] windowNoChangeCorrect;
+
+    protected double[] windowMajorityCorrect;
+
+    protected int baselinePosition;
+
+    protected int baselineLength;
+
+    protected double weightCorrect;
+
+    // weight predicted as each class, the rows of the confusion matrix
+    protected double[] rowWeight;
+
+    // weight of each true class, the columns of the confusion matrix
+    protected double[] columnWeight;
+
+    // weight correctly predicted as each class
+    protected double[] correctWeight;
+
+    protected int[] numPredicted;
+
+    protected int[] numTrue;
+
+    protected double weightCorrectNoChangeClassifier;
+
+    protected double weightMajorityClassifier;
+
+    protected int lastSeenClass;
+
+    protected double totalWeightObserved;
+
+    @Override
+    public void reset() {
+        reset(this.numClasses);
+    }
+
+    public void reset(int numClasses) {
+        this.numClasses = numClasses;
+        this.windowSize = this.widthOption.getValue();
+        this.windowTrueClass = new int[this.windowSize];
+        this.windowPredictedClass = new int[this.windowSize];
+        this.windowWeight = new double[this.windowSize];
+        this.windowPosition = 0;
+        this.windowLength = 0;
+        this.windowNoChangeCorrect = new double[this.windowSize];
+        this.windowMajorityCorrect = new double[this.windowSize];
+        this.baselinePosition = 0;
+        this.baselineLength = 0;
+        this.weightCorrect = 0.0;
+        this.rowWeight = new double[numClasses];
+        this.columnWeight = new double[numClasses];
+        this.correctWeight = new double[numClasses];
+        this.numPredicted = new int[numClasses];
+        this.numTrue = new int[numClasses];
+        this.weightCorrectNoChangeClassifier = 0.0;
+        this.weightMajorityClassifier = 0.0;
+        this.lastSeenClass = 0;
+        this.totalWeightObserved = 0;
+    }
+
+    @Override
+    public void addResult(Example<Instance> example, double[] classVotes) {
+        Instance inst = example.getData();
+        if (inst.classIsMissing() == false) {
+            addResult((int) inst.classValue(), Utils.maxIndex(classVotes),
+                    inst.weight(), inst.dataset().numClasses());
+        }
+    }
+
+    /**
+     * Adds the result of a prediction, without going through an Example.
+     *
+     * @param trueClass	the true class of the instance
+     * @param predictedClass	the class predicted
+     * @param weight	the weight of the instance
+     * @param numClasses	the number of classes of the stream
+     */
+    public void addResult(int trueClass, int predictedClass, double weight,
+            int numClasses) {
+        if (weight > 0.0) {
+            if (this.totalWeightObserved == 0) {
+                reset(numClasses);
+            }
+            this.totalWeightObserved += weight;
+            if (this.windowLength == this.windowSize) {
+                forgetResult(this.windowPosition);
+            } else {
+                this.windowLength++;
+            }
+            this.windowTrueClass[this.windowPosition] = trueClass;
+            this.windowPredictedClass[this.windowPosition] = predictedClass;
+            this.windowWeight[this.windowPosition] = weight;
+            if (predictedClass < this.numClasses) {
+                if (predictedClass == trueClass) {
+                    this.weightCorrect += weight;
+                    this.correctWeight[predictedClass] += weight;
+                }
+                this.rowWeight[predictedClass] += weight;
+                this.numPredicted[predictedClass]++;
+            }
+            this.columnWeight[trueClass] += weight;
+            this.numTrue[trueClass]++;
+            this.windowPosition++;
+            if (this.windowPosition == this.windowSize) {
+                this.windowPosition = 0;
+            }
+        }
+        double noChangeCorrect = this.lastSeenClass == trueClass ? weight : 0;
+        double majorityCorrect = getMajorityClass() == trueClass ? weight : 0;
+        if (this.baselineLength == this.windowSize) {
+            this.weightCorrectNoChangeClassifier -= this.windowNoChangeCorrect[this.baselinePosition];
+            this.weightMajorityClassifier -= this.windowMajorityCorrect[this.baselinePosition];
+        } else {
+            this.baselineLength++;
+        }
+        this.weightCorrectNoChangeClassifier += noChangeCorrect;
+        this.weightMajorityClassifier += majorityCorrect;
+        this.windowNoChangeCorrect[this.baselinePosition] = noChangeCorrect;
+        this.windowMajorityCorrect[this.baselinePosition] = majorityCorrect;
+        this.baselinePosition++;
+        if (this.baselinePosition == this.windowSize) {
+            this.baselinePosition = 0;
+        }
+        this.lastSeenClass = trueClass;
+    }
+
+    protected void forgetResult(int position) {
+        int trueClass = this.windowTrueClass[position];
+        int predictedClass = this.windowPredictedClass[position];
+        double weight = this.windowWeight[position];
+        if (predictedClass < this.numClasses) {
+            if (predictedClass == trueClass) {
+                this.weightCorrect -= weight;
+                this.correctWeight[predictedClass] -= weight;
+            }
+            this.rowWeight[predictedClass] -= weight;
+            this.numPredicted[predictedClass]--;
+        }
+        this.columnWeight[trueClass] -= weight;
+        this.numTrue[trueClass]--;
+    }
+
+    protected int getMajorityClass() {
+        int majorityClass = 0;
+        double maxProbClass = 0.0;
+        for (int i = 0; i < this.numClasses; i++) {
+            double probClass = this.columnWeight[i] / this.windowLength;
+            if (probClass > maxProbClass) {
+                majorityClass = i;
+                maxProbClass = probClass;
+            }
+        }
+        return majorityClass;
+    }
+
+    @Override
+    public Measurement[] getPerformanceMeasurements() {
+        ArrayList<Measurement> measurements = new ArrayList<Measurement>();
+        measurements.add(new Measurement("classified instances", this.getTotalWeightObserved()));
+        measurements.add(new Measurement("classifications correct (percent)", this.getFractionCorrectlyClassified() * 100.0));
+        measurements.add(new Measurement("Kappa Statistic (percent)", this.getKappaStatistic() * 100.0));
+        measurements.add(new Measurement("Kappa Temporal Statistic (percent)", this.getKappaTemporalStatistic() * 100.0));
+        measurements.add(new Measurement("Kappa M Statistic (percent)", this.getKappaMStatistic() * 100.0));
+        if (precisionRecallOutputOption.isSet())
+            measurements.add(new Measurement("F1 Score (percent)",
+                    this.getF1Statistic() * 100.0));
+        if (f1PerClassOption.isSet()) {
+            for (int i = 0; i < this.numClasses; i++) {
+                measurements.add(new Measurement("F1 Score for class " + i +
+                        " (percent)", 100.0 * this.getF1Statistic(i)));
+            }
+        }
+        if (precisionRecallOutputOption.isSet())
+            measurements.add(new Measurement("Precision (percent)",
+                this.getPrecisionStatistic() * 100.0));
+        if (precisionPerClassOption.isSet()) {
+            for (int i = 0; i < this.numClasses; i++) {
+                measurements.add(new Measurement("Precision for class " + i +
+                        " (percent)", 100.0 * this.getPrecisionStatistic(i)));
+            }
+        }
+        if (precisionRecallOutputOption.isSet())
+            measurements.add(new Measurement("Recall (percent)",
+                this.getRecallStatistic() * 100.0));
+        if (recallPerClassOption.isSet()) {
+            for (int i = 0; i < this.numClasses; i++) {
+                measurements.add(new Measurement("Recall for class " + i +
+                        " (percent)", 100.0 * this.getRecallStatistic(i)));
+            }
+        }
+
+        Measurement[] result = new Measurement[measurements.size()];
+
+        return measurements.toArray(result);
+    }
+
+    public double getTotalWeightObserved() {
+        return this.totalWeightObserved;
+    }
+
+    public double getFractionCorrectlyClassified() {
+        return this.weightCorrect / this.windowLength;
+    }
+
+    public double getFractionIncorrectlyClassified() {
+        return 1.0 - getFractionCorrectlyClassified();
+    }
+
+    public double getKappaStatistic() {
+        if (this.getTotalWeightObserved() > 0.0) {
+            double p0 = getFractionCorrectlyClassified();
+            double pc = 0.0;
+            for (int i = 0; i < this.numClasses; i++) {
+                pc += (this.rowWeight[i] / this.windowLength)
+                        * (this.columnWeight[i] / this.windowLength);
+            }
+            return (p0 - pc) / (1.0 - pc);
+        } else {
+            return 0;
+        }
+    }
+
+    public double getKappaTemporalStatistic() {
+        if (this.getTotalWeightObserved() > 0.0) {
+            double p0 = getFractionCorrectlyClassified();
+            double pc = this.weightCorrectNoChangeClassifier / this.baselineLength;
+
+            return (p0 - pc) / (1.0 - pc);
+        } else {
+            return 0;
+        }
+    }
+
+    public double getKappaMStatistic() {
+        if (this.getTotalWeightObserved() > 0.0) {
+            double p0 = getFractionCorrectlyClassified();
+            double pc = this.weightMajorityClassifier / this.baselineLength;
+
+            return (p0 - pc) / (1.0 - pc);
+        } else {
+            return 0;
+        }
+    }
+
+    public double getPrecisionStatistic() {
+        double total = 0;
+        for (int i = 0; i < this.numClasses; i++) {
+            total += getPrecisionStatistic(i);
+        }
+        return total / this.numClasses;
+    }
+
+    public double getPrecisionStatistic(int numClass) {
+        return this.correctWeight[numClass] / this.numPredicted[numClass];
+    }
+
+    public double getRecallStatistic() {
+        double total = 0;
+        for (int i = 0; i < this.numClasses; i++) {
+            total += getRecallStatistic(i);
+        }
+        return total / this.numClasses;
+    }
+
+    public double getRecallStatistic(int numClass) {
+        return this.correctWeight[numClass] / this.numTrue[numClass];
+    }
+
+    public double getF1Statistic() {
+        return 2 * ((this.getPrecisionStatistic() * this.getRecallStatistic())
+                / (this.getPrecisionStatistic() + this.getRecallStatistic()));
+    }
+
+    public double getF1Statistic(int numClass) {
+        return 2 * ((this.getPrecisionStatistic(numClass) * this.getRecallStatistic(numClass))
+                / (this.getPrecisionStatistic(numClass) + this.getRecallStatistic(numClass)));
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        Measurement.getMeasurementsDescription(getPerformanceMeasurements(),
+                sb, indent);
+    }
+
+    @Override
+    public void addResult(Example<Instance> testInst, Prediction prediction) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *    MetricsSink.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.File;
+
+import moa.evaluation.preview.LearningCurve;
+import moa.options.OptionHandler;
+
+/**
+ * Interface implemented by the writers of the intermediate results of
+ * evaluation tasks.
+ *
+ * @version $Revision: 7 $
+ */
+public interface MetricsSink extends OptionHandler {
+
+    /**
+     * Opens the file the entries are appended to.
+     *
+     * @param file the file to append to
+     * @param headerPrefix text written before the measurement names, or null
+     * @param rowPrefix text written before the values of every entry, or null
+     */
+    public void open(File file, String headerPrefix, String rowPrefix);
+
+    /**
+     * Writes the latest entry of a learning curve. The curve can be changed
+     * as soon as this method returns.
+     */
+    public void addEntry(LearningCurve learningCurve);
+
+    /**
+     * Writes the pending entries and closes the file.
+     */
+    public void close();
+}
@@ -18,11 +18,10 @@
  */
 package moa.evaluation;
 
-import java.util.TreeSet;
-
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ScoreRankTree;
 import moa.core.Utils;
 import moa.options.AbstractOptionHandler;
 
@@ -76,77 +75,21 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 	
 	public class Estimator {
 
-		public class Score implements Comparable<Score> {
-			/**
-			 * Predicted score of the example
-			 */
-			protected double value;
-
-			/**
-			 * Age of example - position in the window where the example was
-			 * added
-			 */
-			protected int posWindow;
-
-			/**
-			 * True if example's true label is positive
-			 */
-			protected boolean isPositive;
-
-			/**
-			 * Constructor.
-			 * 
-			 * @param value
-			 *            score value
-			 * @param position
-			 *            score position in window (defines its age)
-			 * @param isPositive
-			 *            true if the example's true label is positive
-			 */
-			public Score(double value, int position, boolean isPositive) {
-				this.value = value;
-				this.posWindow = position;
-				this.isPositive = isPositive;
-			}
+		/**
+		 * Scores in the window, counted by label
+		 */
+		protected ScoreRankTree sortedScores;
 
-			/**
-			 * Sort descending based on score value.
-			 */
-			@Override
-			public int compareTo(Score o) {
-				if (o.value < this.value) {
-					return -1;
-				} else if (o.value > this.value){
-					return 1;
-				} else {
-					if (!o.isPositive && this.isPositive) {
-						return -1;
-					} else if (o.isPositive && !this.isPositive){
-						return 1;
-					} else {
-						if (o.posWindow > this.posWindow) {
-							return -1;
-						} else if (o.posWindow < this.posWindow){
-							return 1;
-						} else {
-							return 0;
-						}
-					}
-				}
-			}
-			
-			@Override
-			public boolean equals(Object o) {
-				return (o instanceof Score) && ((Score)o).posWindow == this.posWindow;
-			}
-		}
+		/**
+		 * Scores of the window, in order of arrival
+		 */
+		protected double[] windowScores;
 
-		protected TreeSet<Score> sortedScores;
-		
-		protected TreeSet<Score> holdoutSortedScores;
+		/**
+		 * True if the example at the position of the window is positive
+		 */
+		protected boolean[] windowPositives;
 
-		protected Score[] window;
-		
 		protected double[] predictions;
 
 		protected int posWindow;
@@ -156,36 +99,52 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 		protected double numPos;
 
 		protected double numNeg;
-		
+
+		/**
+		 * Number of (positive, negative) pairs ranked correctly, ties
+		 * counting as a half
+		 */
+		protected double correctlyRankedPairs;
+
+		protected double holdoutCorrectlyRankedPairs;
+
 		protected double holdoutNumPos;
 
 		protected double holdoutNumNeg;
-		
+
 		protected double correctPredictions;
-		
+
 		protected double correctPositivePredictions;
-		
+
 	    protected double[] columnKappa;
 
 	    protected double[] rowKappa;
 
+		protected double[] distinctScores = new double[0];
+
+		protected int[] distinctPositives = new int[0];
+
+		protected int[] distinctNegatives = new int[0];
+
 		public Estimator(int sizeWindow) {
-			this.sortedScores = new TreeSet<Score>();
-			this.holdoutSortedScores = new TreeSet<Score>();
+			this.sortedScores = new ScoreRankTree(sizeWindow);
 			this.size = sizeWindow;
-			this.window = new Score[sizeWindow];
+			this.windowScores = new double[sizeWindow];
+			this.windowPositives = new boolean[sizeWindow];
 			this.predictions = new double[sizeWindow];
-			
+
 	        this.rowKappa = new double[numClasses];
 	        this.columnKappa = new double[numClasses];
 	        for (int i = 0; i < numClasses; i++) {
 	            this.rowKappa[i] = 0.0;
 	            this.columnKappa[i] = 0.0;
 	        }
-			
+
 			this.posWindow = 0;
 			this.numPos = 0;
 			this.numNeg = 0;
+			this.correctlyRankedPairs = 0;
+			this.holdoutCorrectlyRankedPairs = 0;
 			this.holdoutNumPos = 0;
 			this.holdoutNumNeg = 0;
 			this.correctPredictions = 0;
@@ -195,126 +154,91 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 		public void add(double score, boolean isPositive, boolean correctPrediction) {
             // // periodically update holdout evaluation
 			if (size > 0 && posWindow % this.size == 0) {
-				this.holdoutSortedScores = new TreeSet<Score>();
-				
-				for (Score s : this.sortedScores) {
-					this.holdoutSortedScores.add(s);
-				}
-				
+				this.holdoutCorrectlyRankedPairs = this.correctlyRankedPairs;
 				this.holdoutNumPos = this.numPos;
 				this.holdoutNumNeg = this.numNeg;
 			}
-			
-			// // if the window is used and it's full			
+
+			// // if the window is used and it's full
 			if (size > 0 && posWindow >= this.size) {
 				// // remove the oldest example
-				sortedScores.remove(window[posWindow % size]);
+				double oldestScore = windowScores[posWindow % size];
+				boolean oldestIsPositive = windowPositives[posWindow % size];
+				sortedScores.remove(oldestScore, oldestIsPositive);
+				correctlyRankedPairs -= correctlyRankedPairs(oldestScore, oldestIsPositive);
 				correctPredictions -= predictions[posWindow % size];
-				correctPositivePredictions -= window[posWindow % size].isPositive ? predictions[posWindow % size] : 0;
-				
-				if (window[posWindow % size].isPositive) {
+				correctPositivePredictions -= oldestIsPositive ? predictions[posWindow % size] : 0;
+
+				if (oldestIsPositive) {
 					numPos--;
 				} else {
 					numNeg--;
 				}
-				
-				int oldestExampleTrueClass = window[posWindow % size].isPositive ? 1 : 0;
-	            int oldestExamplePredictedClass = predictions[posWindow % size] == 1.0 ? oldestExampleTrueClass : Math.abs(oldestExampleTrueClass - 1);  
-	            
+
+				int oldestExampleTrueClass = oldestIsPositive ? 1 : 0;
+	            int oldestExamplePredictedClass = predictions[posWindow % size] == 1.0 ? oldestExampleTrueClass : Math.abs(oldestExampleTrueClass - 1);
+
 				this.rowKappa[oldestExamplePredictedClass] -= 1;
 	            this.columnKappa[oldestExampleTrueClass] -= 1;
 			}
-			
+
 			// // add new example
-			Score newScore = new Score(score, posWindow, isPositive);
-			sortedScores.add(newScore);
+			correctlyRankedPairs += correctlyRankedPairs(score, isPositive);
+			sortedScores.add(score, isPositive);
 			correctPredictions += correctPrediction ? 1 : 0;
 			correctPositivePredictions += correctPrediction && isPositive ? 1 : 0;
-			
+
             int trueClass = isPositive ? 1 : 0;
-            int predictedClass = correctPrediction ? trueClass : Math.abs(trueClass - 1);    
+            int predictedClass = correctPrediction ? trueClass : Math.abs(trueClass - 1);
             this.rowKappa[predictedClass] += 1;
             this.columnKappa[trueClass] += 1;
-			
-			if (newScore.isPositive) {
+
+			if (isPositive) {
 				numPos++;
 			} else {
 				numNeg++;
 			}
 
 			if (size > 0) {
-				window[posWindow % size] = newScore;
+				windowScores[posWindow % size] = score;
+				windowPositives[posWindow % size] = isPositive;
 				predictions[posWindow % size] = correctPrediction ? 1 : 0;
 			}
-			
-			//// posWindow needs to be always incremented to differentiate between examples in the red-black tree
+
 			posWindow++;
 		}
 
+		/**
+		 * Number of pairs an example forms with the examples of the other label
+		 * that are ranked correctly, ties counting as a half.
+		 */
+		protected double correctlyRankedPairs(double score, boolean isPositive) {
+			if (isPositive) {
+				return sortedScores.countLess(score, false)
+						+ sortedScores.countEqual(score, false) / 2.0;
+			}
+			return sortedScores.countGreater(score, true)
+					+ sortedScores.countEqual(score, true) / 2.0;
+		}
+
 		public double getAUC() {
-			double AUC = 0;
-			double c = 0;
-			double prevc = 0;
-			double lastPosScore = Double.MAX_VALUE;
-					
 			if (numPos == 0 || numNeg == 0) {
 				return 1;
 			}
-			
-			for (Score s : sortedScores){
-				if(s.isPositive) {			
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += 1;
-				} else {
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			return AUC / (numPos * numNeg);
+
+			return correctlyRankedPairs / (numPos * numNeg);
 		}
-		
-		public double getHoldoutAUC() {
-			double AUC = 0;
-			double c = 0;
-			double prevc = 0;
-			double lastPosScore = Double.MAX_VALUE;
 
-			if (holdoutSortedScores.isEmpty()) {
+		public double getHoldoutAUC() {
+			if (holdoutNumPos + holdoutNumNeg == 0) {
 				return 0;
 			}
-			
+
 			if (holdoutNumPos == 0 || holdoutNumNeg == 0) {
 				return 1;
 			}
 
-			for (Score s : holdoutSortedScores){
-				if(s.isPositive) {
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += 1;
-				} else {
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			return AUC / (holdoutNumPos * holdoutNumNeg);
+			return holdoutCorrectlyRankedPairs / (holdoutNumPos * holdoutNumNeg);
 		}
 
 		public double getScoredAUC() {
@@ -327,35 +251,46 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 			double R_plus, R_minus;
 			double lastPosScore = Double.MAX_VALUE;
 			double lastNegScore = Double.MAX_VALUE;
-			
+
 			if (numPos == 0 || numNeg == 0) {
 				return 1;
 			}
-			
-			for (Score s : sortedScores){
-				if(s.isPositive) {
-					if (s.value != lastPosScore) {
+
+			int numDistinct = sortedScores.numDistinctScores();
+			if (distinctScores.length < numDistinct) {
+				distinctScores = new double[numDistinct];
+				distinctPositives = new int[numDistinct];
+				distinctNegatives = new int[numDistinct];
+			}
+			sortedScores.getDescending(distinctScores, distinctPositives, distinctNegatives);
+
+			// // positives come before negatives of the same score
+			for (int i = 0; i < numDistinct; i++) {
+				double value = distinctScores[i];
+				for (int j = 0; j < distinctPositives[i]; j++) {
+					if (value != lastPosScore) {
 						prevc = c;
-						lastPosScore = s.value;
+						lastPosScore = value;
 					}
-					
-					c += s.value;
-					
-					if (s.value == lastNegScore) {
+
+					c += value;
+
+					if (value == lastNegScore) {
 						// tie
 						AOC += ((double)(r + prevr))/2.0;
 					} else {
 						AOC += r;
 					}
-				} else {
-					if (s.value != lastNegScore) {
+				}
+				for (int j = 0; j < distinctNegatives[i]; j++) {
+					if (value != lastNegScore) {
 						prevr = r;
-						lastNegScore = s.value;
+						lastNegScore = value;
 					}
-					
-					r += s.value;
-					
-					if (s.value == lastPosScore) {
+
+					r += value;
+
+					if (value == lastPosScore) {
 						// tie
 						AUC += ((double)(c + prevc))/2.0;
 					} else {
@@ -363,12 +298,12 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 					}
 				}
 			}
-			
+
 			R_minus = (numPos*r - AOC)/(numPos * numNeg);
-			R_plus = (AUC)/(numPos * numNeg);		
+			R_plus = (AUC)/(numPos * numNeg);
 			return R_plus - R_minus;
 		}
-		
+
 		public double getRatio() {
 			if(numNeg == 0) {
 				return Double.MAX_VALUE;
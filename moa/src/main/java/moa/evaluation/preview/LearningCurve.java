@@ -42,10 +42,24 @@ public class LearningCurve extends AbstractMOAObject {
 
     protected List<double[]> measurementValues = new ArrayList<double[]>();
 
+    // number of latest entries kept, or -1 to keep them all
+    protected int maxEntries = -1;
+
     public LearningCurve(String orderingMeasurementName) {
         this.measurementNames.add(orderingMeasurementName);
     }
 
+    /**
+     * Keeps only the latest entries, so that the memory used by the curve
+     * does not grow with the length of the stream.
+     *
+     * @param maxEntries the number of entries kept, or -1 to keep them all
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        discardOldEntries();
+    }
+
     public String getOrderingMeasurementName() {
         return this.measurementNames.get(0);
     }
@@ -80,6 +94,15 @@ public class LearningCurve extends AbstractMOAObject {
             index++;
         }
         this.measurementValues.add(index, entryVals.getArrayRef());
+        discardOldEntries();
+    }
+
+    protected void discardOldEntries() {
+        if (this.maxEntries > 0) {
+            while (this.measurementValues.size() > this.maxEntries) {
+                this.measurementValues.remove(0);
+            }
+        }
     }
 
     public int numEntries() {
@@ -38,15 +38,20 @@ import moa.evaluation.preview.LearningCurve;
 import moa.streams.ArffFileStream;
 import moa.streams.ExampleStream;
 import moa.tasks.EvaluatePrequential;
+import moa.tasks.ExperimentGridExecutor;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ *
+ * Runs every classifier on every stream, in parallel and resuming from
+ * ./checkpoint.txt if it exists. The number of threads can be given as
+ * first argument, all processors are used by default.
  *
  * To run:
  * nohup java -Xms20g -Xmx20g -XX:-UseGCOverheadLimit -cp "moa-pom.jar:./lib/*" -javaagent:./sizeofag.jar moa.experiments.NewFeatureSelectionExperiments > log.log 2> error.log &
@@ -60,61 +65,77 @@ public class NewFeatureSelectionExperiments {
     private static final int NUM_IRRELEVANT_FEATURES = 500;
     private static final String EVALUATOR_TYPE = "WINDOWAUC";
     private static final String EXPERIMENT_TYPE = "BOOSTING";
+    private static final String CHECKPOINT_FILE = "./checkpoint.txt";
 
-    public static void main(String args[]) throws IOException {
+    public static void main(String args[]) throws IOException, InterruptedException {
         System.out.println("Loading checkpoint...");
-        String checkpoint[] = null;
+        File checkpoint = new File(CHECKPOINT_FILE);
+        boolean resume = checkpoint.exists();
+        if (resume) {
+            System.out.println("Resuming from " + checkpoint.getPath());
+        }
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 0;
 
         System.out.print("Preparing folders for outputting results...");
-        prepareFolder(checkpoint == null);
-
-        // Prepares a buffer to output the summary file
-        PrintWriter writer = new PrintWriter(new FileOutputStream("./summary.csv", true));
-        if (checkpoint == null) {
-            writer.println("Stream,Classifier,"
-                    + (EXPERIMENT_TYPE.equals("BOOSTING") ? ",,,,,," : "")
-                    + "Avg Accuracy, "
-                    + "Avg AUC, CPU Time, "
-                    + "RAM-Hours, "
-                    + "AVG Recall Relevant, AVG Complement of Complexity Penalty, "
-                    + "AVG SA, AVG # selected, AVG pct selected");
-        }
+        prepareFolder(!resume);
+
+        // the summary file is written by the executor, in the grid order
+        ExperimentGridExecutor executor = new ExperimentGridExecutor(numThreads);
+        executor.setCheckpointFile(checkpoint);
+        executor.setSummaryFile(new File("./summary.csv"), "Stream,Classifier,"
+                + (EXPERIMENT_TYPE.equals("BOOSTING") ? ",,,,,," : "")
+                + "Avg Accuracy, "
+                + "Avg AUC, CPU Time, "
+                + "RAM-Hours, "
+                + "AVG Recall Relevant, AVG Complement of Complexity Penalty, "
+                + "AVG SA, AVG # selected, AVG pct selected");
         System.out.println("OK!");
 
         System.out.print("Instantiating all classifiers...");
-        HashMap<String, Classifier> classifiers = instantiateClassifiers();
+        final HashMap<String, Classifier> classifiers = instantiateClassifiers();
         System.out.println("OK!");
         System.out.print("Instantiating all experiments...");
-        HashMap<String, ExampleStream> streams = instantiateStreams();
+        final HashMap<String, ExampleStream> streams = instantiateStreams();
         System.out.println("OK!");
 
         System.out.println("\n\n\n");
         System.out.println("========= RUNNING  EXPERIMENTS =========\n");
-        int indexExperiment = 1;
-        int numExperiments = streams.size() * classifiers.size();
+        final int numExperiments = streams.size() * classifiers.size();
+        final AtomicInteger numFinished = new AtomicInteger();
         System.out.println(classifiers.size() + " classifiers are instantiated.");
         System.out.println(streams.size() + " streams are instantiated.");
-        System.out.println(numExperiments + " experiments are starting... NOW!");
-        for (String strStream : streams.keySet()) {
-            ExampleStream s;
-            if(streams.get(strStream) instanceof ArffFileStream){
-                s = (ExampleStream) streams.get(strStream);
-            }else{
-                s = (ExampleStream) streams.get(strStream).copy();
-            }
-            System.out.println("\n\n\n\n\n\n- Running: " + strStream + "\t(" + indexExperiment + "/" + (streams.size() * classifiers.size()) + ")");
-            for (String strClassifier : classifiers.keySet()) {
-                Classifier c = classifiers.get(strClassifier).copy();
-                System.out.print("--" + strClassifier + "\t");
-                appendResults(writer, runExperiment(strClassifier, c, strStream, s));
-                System.out.println(((float) 100 * indexExperiment / (streams.size() * classifiers.size())) + "% overall complete...\n");
-                indexExperiment++;
+        for (final String strStream : streams.keySet()) {
+            for (final String strClassifier : classifiers.keySet()) {
+                executor.addCell(strStream + " | " + strClassifier, new Callable<String>() {
+                    @Override
+                    public String call() {
+                        // every experiment works on its own stream and classifier
+                        ExampleStream s = copyStream(streams.get(strStream));
+                        Classifier c = classifiers.get(strClassifier).copy();
+                        System.out.println("- Running: " + strStream + "\t" + strClassifier);
+                        String line = runExperiment(strClassifier, c, strStream, s);
+                        System.out.println(((float) 100 * numFinished.incrementAndGet() / numExperiments) + "% overall complete...");
+                        return line;
+                    }
+                });
             }
         }
+        System.out.println(numExperiments + " experiments are starting... NOW!");
+        executor.run();
 
         System.out.println("\n========= EXPERIMENTS COMPLETE =========");
     }
 
+    private static ExampleStream copyStream(ExampleStream s) {
+        if (s instanceof ArffFileStream) {
+            // holds an open reader, so it cannot be copied
+            ArffFileStream arff = (ArffFileStream) s;
+            return new ArffFileStream(arff.arffFileOption.getFile().getPath(),
+                    arff.classIndexOption.getValue());
+        }
+        return (ExampleStream) s.copy();
+    }
+
     private static String runExperiment(String strClassifier, Classifier c,
                                         String strStream, ExampleStream s) {
         // prepares the stream and the classifier for execution        
@@ -145,13 +166,8 @@ public class NewFeatureSelectionExperiments {
                 ? NUM_INSTANCES_STREAM : EVALUATION_FREQUENCY;
         prequential.sampleFrequencyOption.setValue(sampleFreq);
         prequential.dumpFileOption.setValue("./results/" + filename);
-        if(s instanceof ArffFileStream){
-            s.restart();
-            prequential.streamOption.setCurrentObject(s);
-        }else{
-            prequential.streamOption.setCurrentObject(s.copy());
-        }
-        prequential.learnerOption.setCurrentObject(c.copy());
+        prequential.streamOption.setCurrentObject(s);
+        prequential.learnerOption.setCurrentObject(c);
         prequential.prepareForUse();
         LearningCurve lc = (LearningCurve) prequential.doTask();
 
@@ -435,11 +451,6 @@ public class NewFeatureSelectionExperiments {
         return filename;
     }
 
-    private static void appendResults(PrintWriter writer, String line) {
-        writer.println(line);
-        writer.flush();
-    }
-
     private static void eraseIfExists(String string) {
         File file = new File(string);
         if (file.exists()) {
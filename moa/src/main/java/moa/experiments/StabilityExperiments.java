@@ -26,12 +26,15 @@ import moa.classifiers.featureselection.FeatureSelectionClassifier;
 import moa.classifiers.featureselection.newfeatureselection.BoostingSelector;
 import moa.classifiers.featureselection.newfeatureselection.BoostingSelector2;
 import moa.classifiers.trees.HoeffdingTree;
-import moa.evaluation.LearningCurve;
 import moa.streams.ExampleStream;
 import moa.tasks.EvaluateFeatureSelectionStability;
+import moa.tasks.ExperimentGridExecutor;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
 
 public class StabilityExperiments {
 
@@ -41,34 +44,46 @@ public class StabilityExperiments {
     private static final int DRIFT_WINDOW_SIZE = 1000;
     private static final int NUM_CONCEPTS = 3;
     private static final int NUM_IRRELEVANT_FEATURES = 200;
+    private static final String CHECKPOINT_FILE = "./stability-checkpoint.txt";
 
-    public static void main(String args[]){
-        HashMap<String, ExampleStream> streams = instantiateExperiments();
-        HashMap<String, Classifier> selectors = instantiateSelectors();
+    public static void main(String args[]) throws IOException, InterruptedException {
+        final HashMap<String, ExampleStream> streams = instantiateExperiments();
+        final HashMap<String, Classifier> selectors = instantiateSelectors();
         String validations[] = new String[]{"Cross-Validation", "Bootstrap-Validation", "Split-Validation"};
 
-        for(String stream : streams.keySet()){
-            System.out.println("--> " + stream);
-            for(String selector : selectors.keySet()){
-                System.out.println("\t\t --> " + selector.toString());
-                for(String validation : validations) {
-                    EvaluateFeatureSelectionStability task = new EvaluateFeatureSelectionStability();
-                    Classifier s = selectors.get(selector);
-                    task.selectionOption.setCurrentObject(s.copy());
-                    task.instanceLimitOption.setValue(NUM_INSTANCES_STREAM);
-                    task.sampleFrequencyOption.setValue(EVALUATION_FREQUENCY);
-                    task.memCheckFrequencyOption.setValue(EVALUATION_FREQUENCY);
-                    task.validationMethodologyOption.setChosenLabel(validation);
-                    task.similarityMetricOption.setChosenLabel("Tanimoto");
-                    ExampleStream sCpy = streams.get(stream);
-                    sCpy.restart();
-                    task.streamOption.setCurrentObject(sCpy);
-                    task.dumpFileOption.setValue("./VAL=" + validation + "_" + selector + "-" + stream + ".csv");
-                    task.prepareForUse();
-                    LearningCurve lc = (LearningCurve) task.doTask();
+        // experiments already in the checkpoint are skipped
+        ExperimentGridExecutor executor = new ExperimentGridExecutor(
+                args.length > 0 ? Integer.parseInt(args[0]) : 0);
+        executor.setCheckpointFile(new File(CHECKPOINT_FILE));
+        for(final String stream : streams.keySet()){
+            for(final String selector : selectors.keySet()){
+                for(final String validation : validations) {
+                    executor.addCell(stream + " | " + selector + " | " + validation, new Callable<String>() {
+                        @Override
+                        public String call() {
+                            System.out.println("--> " + stream + "\t" + selector + "\t" + validation);
+                            EvaluateFeatureSelectionStability task = new EvaluateFeatureSelectionStability();
+                            Classifier s = selectors.get(selector);
+                            task.selectionOption.setCurrentObject(s.copy());
+                            task.instanceLimitOption.setValue(NUM_INSTANCES_STREAM);
+                            task.sampleFrequencyOption.setValue(EVALUATION_FREQUENCY);
+                            task.memCheckFrequencyOption.setValue(EVALUATION_FREQUENCY);
+                            task.validationMethodologyOption.setChosenLabel(validation);
+                            task.similarityMetricOption.setChosenLabel("Tanimoto");
+                            ExampleStream sCpy = (ExampleStream) streams.get(stream).copy();
+                            sCpy.restart();
+                            task.streamOption.setCurrentObject(sCpy);
+                            task.dumpFileOption.setValue("./VAL=" + validation + "_" + selector + "-" + stream + ".csv");
+                            task.prepareForUse();
+                            task.doTask();
+                            // the results are in the dump file
+                            return null;
+                        }
+                    });
                 }
             }
         }
+        executor.run();
     }
 
     private static HashMap<String,Classifier> instantiateSelectors() {
@@ -24,6 +24,7 @@ import java.util.List;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.options.ClassOption;
+import com.github.javacliparser.FileOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.recommender.data.RecommenderData;
@@ -53,6 +54,8 @@ import moa.tasks.TaskMonitor;
  *      regularization</li>
  * <li> i: iterations - the number of iterations to be used when retraining
  *      user and item features (online training). </li>
+ * <li> m: factors file - prefix of the files the user and item features are
+ *      memory-mapped from, instead of keeping them on the heap</li>
  * </lu>
  * 
  */
@@ -79,12 +82,17 @@ public class BRISMFPredictor extends AbstractOptionHandler implements RatingPred
 
     public ClassOption dataOption = new ClassOption("data", 'd',
             "Data", RecommenderData.class, "moa.recommender.data.MemRecommenderData");
+
+    public FileOption factorsFileOption = new FileOption("factorsFile", 'm',
+            "Prefix of the files to memory-map the user and item features from, empty to keep them on the heap.",
+            null, null, true);
      
     
     @Override
     protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
         RecommenderData data = (RecommenderData) getPreparedClassOption(this.dataOption);
-        rp = new moa.recommender.rc.predictor.impl.BRISMFPredictor(featuresOption.getValue(), data.getData(), lRateOption.getValue(), rFactorOption.getValue(), false);
+        close();
+        rp = new moa.recommender.rc.predictor.impl.BRISMFPredictor(featuresOption.getValue(), data.getData(), lRateOption.getValue(), rFactorOption.getValue(), factorsFileOption.getFile(), false);
         rp.setNIterations(iterationsOption.getValue());
     }
 
@@ -116,4 +124,15 @@ public class BRISMFPredictor extends AbstractOptionHandler implements RatingPred
         rp.train();
     }
     
+    /**
+     * Closes the files the features are mapped from, if any. The predictor
+     * must be prepared again before it is used.
+     */
+    public void close() {
+        if (rp != null) {
+            rp.close();
+            rp = null;
+        }
+    }
+    
 }
@@ -20,12 +20,15 @@
 
 package moa.recommender.rc.predictor.impl;
 
+import java.io.File;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import moa.recommender.rc.data.RecommenderData;
+import moa.recommender.rc.utils.FactorStore;
 import moa.recommender.rc.utils.Pair;
 import moa.recommender.rc.utils.Rating;
 import moa.recommender.rc.utils.SparseVector;
@@ -57,18 +60,25 @@ import moa.recommender.rc.utils.Updatable;
  *      user and item features (online training). </li>
  * </lu>
  * 
+ * <p>The feature vectors are kept in {@link FactorStore}s, which can be
+ * mapped from files for catalogues that do not fit in the heap. The
+ * training methods taking arrays of ids and ratings do not allocate.</p>
+ * 
  */
 
 public class BRISMFPredictor implements Updatable {
     
     protected RecommenderData data;
     protected int nFeatures;
-    protected HashMap<Integer, float[]> userFeature;
-    protected HashMap<Integer, float[]> itemFeature;
+    protected FactorStore userFeature;
+    protected FactorStore itemFeature;
     protected Random rnd;
     protected double lRate = 0.01;
     protected double rFactor = 0.02;
     protected int nIterations = 30;
+    // ids and ratings of the vector being retrained, reused between updates
+    protected int[] idBuffer = new int[16];
+    protected double[] ratingBuffer = new double[16];
     
     public void setLRate(double lRate) {
         this.lRate = lRate;
@@ -87,20 +97,29 @@ public class BRISMFPredictor implements Updatable {
     }
     
     public BRISMFPredictor(int nFeatures, RecommenderData data, boolean train) {
-        this.data = data;
-        this.nFeatures = nFeatures;
-        this.userFeature = new HashMap<Integer, float[]>();
-        this.itemFeature = new HashMap<Integer, float[]>();
-        this.rnd = new Random(12345);
-        data.attachUpdatable(this);
-        if (train) train();
+        this(nFeatures, data, 0.01, 0.02, train);
     }
     
     public BRISMFPredictor(int nFeatures, RecommenderData data, double lRate, double rFactor, boolean train) {
+        this(nFeatures, data, lRate, rFactor, null, train);
+    }
+    
+    /**
+     * @param factorsFile prefix of the files the user and item vectors are
+     * mapped from (with the suffixes .users and .items), or null to keep
+     * them on the heap
+     */
+    public BRISMFPredictor(int nFeatures, RecommenderData data, double lRate, double rFactor, File factorsFile, boolean train) {
         this.data = data;
         this.nFeatures = nFeatures;
-        this.userFeature = new HashMap<Integer, float[]>();
-        this.itemFeature = new HashMap<Integer, float[]>();
+        if (factorsFile == null) {
+            this.userFeature = new FactorStore(nFeatures);
+            this.itemFeature = new FactorStore(nFeatures);
+        }
+        else {
+            this.userFeature = new FactorStore(nFeatures, new File(factorsFile.getPath() + ".users"));
+            this.itemFeature = new FactorStore(nFeatures, new File(factorsFile.getPath() + ".items"));
+        }
         this.rnd = new Random(12345);
         this.lRate = lRate;
         this.rFactor = rFactor;
@@ -108,25 +127,41 @@ public class BRISMFPredictor implements Updatable {
         if (train) train();
     }
     
-    private void resetFeatures(float[] feats, boolean userFeats) {
-        int n = feats.length;
-        for (int i = 0; i < n; ++i)
-            feats[i] = (float)0.01*(rnd.nextFloat()*2 - 1);
-        if (userFeats) feats[0] = 1;
-        else feats[1] = 1;
+    /**
+     * Closes the files the feature vectors are mapped from. The predictor
+     * cannot be used afterwards.
+     */
+    public void close() {
+        userFeature.close();
+        itemFeature.close();
+    }
+    
+    private void resetFeatures(FloatBuffer feats, int off, boolean userFeats) {
+        for (int i = 0; i < nFeatures; ++i)
+            feats.put(off + i, (float)0.01*(rnd.nextFloat()*2 - 1));
+        if (userFeats) feats.put(off, 1);
+        else feats.put(off + 1, 1);
     }
     
     public double predictRating(int userID, int itemID) {
-        float[] userFeats = userFeature.get(userID);
-        float[] itemFeats = itemFeature.get(itemID);
-        return predictRating(userFeats, itemFeats);
+        int userSlot = userFeature.getSlot(userID);
+        int itemSlot = itemFeature.getSlot(itemID);
+        if (userSlot < 0 || itemSlot < 0)
+            return predictRating(null, 0, null, 0);
+        return predictRating(userFeature.page(userSlot), userFeature.offset(userSlot),
+                itemFeature.page(itemSlot), itemFeature.offset(itemSlot));
     }
     
     public double predictRating(float userFeats[], float itemFeats[]) {
+        return predictRating(userFeats == null ? null : FloatBuffer.wrap(userFeats), 0,
+                itemFeats == null ? null : FloatBuffer.wrap(itemFeats), 0);
+    }
+    
+    protected double predictRating(FloatBuffer userFeats, int userOff, FloatBuffer itemFeats, int itemOff) {
         double ret = data.getGlobalMean();
         if (userFeats != null && itemFeats != null)
             for (int i = 0; i < nFeatures; ++i)
-                ret += userFeats[i]*itemFeats[i];
+                ret += userFeats.get(userOff + i)*itemFeats.get(itemOff + i);
 
         if (ret < data.getMinRating()) ret = data.getMinRating();
         else if (ret > data.getMaxRating()) ret = data.getMaxRating();
@@ -134,122 +169,148 @@ public class BRISMFPredictor implements Updatable {
         return ret;
     }
     
-    public float[] trainUserFeats(List<Integer> itm, List<Double> rat, int nIts) {
-        float[] userFeats = new float[nFeatures];
-        resetFeatures(userFeats, true);
+    protected void trainUserFeats(FloatBuffer userFeats, int userOff, int[] itm, double[] rat, int n, int nIts) {
+        resetFeatures(userFeats, userOff, true);
         
-        int n = itm.size();
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int itemID = itm.get(i);
-                float[] itemFeats = itemFeature.get(itemID);
-                double rating = rat.get(i);
-                double pred = predictRating(userFeats, itemFeats);
+                int itemSlot = itemFeature.getSlot(itm[i]);
+                FloatBuffer itemFeats = itemSlot < 0 ? null : itemFeature.page(itemSlot);
+                int itemOff = itemSlot < 0 ? 0 : itemFeature.offset(itemSlot);
+                double rating = rat[i];
+                double pred = predictRating(userFeats, userOff, itemFeats, itemOff);
                 double err = rating - pred;
                 
                 if (itemFeats != null)
-                    for (int j = 1; j < nFeatures; ++j) 
-                        userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
+                    for (int j = 1; j < nFeatures; ++j) {
+                        float uv = userFeats.get(userOff + j);
+                        userFeats.put(userOff + j, (float)(uv + lRate*(err*itemFeats.get(itemOff + j) - rFactor*uv)));
+                    }
             }
         }
-        
-        return userFeats;
     }
     
-    public float[] trainItemFeats(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
-        float[] itemFeats = new float[nFeatures];
-        resetFeatures(itemFeats, false);
+    protected void trainItemFeats(FloatBuffer itemFeats, int itemOff, int[] usr, double[] rat, int n, int nIts) {
+        resetFeatures(itemFeats, itemOff, false);
         
-        int n = usr.size();
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int userID = usr.get(i);
-                float[] userFeats = userFeature.get(userID);
-                double rating = rat.get(i);
-                double pred = predictRating(userFeats, itemFeats);
+                int userSlot = userFeature.getSlot(usr[i]);
+                FloatBuffer userFeats = userSlot < 0 ? null : userFeature.page(userSlot);
+                int userOff = userSlot < 0 ? 0 : userFeature.offset(userSlot);
+                double rating = rat[i];
+                double pred = predictRating(userFeats, userOff, itemFeats, itemOff);
                 double err = rating - pred;
                 
                 if (userFeats != null) {
-                    itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
-                    for (int j = 2; j < nFeatures; ++j)
-                        itemFeats[j] += lRate*(err*userFeats[j] - rFactor*itemFeats[j]);
+                    float iv = itemFeats.get(itemOff);
+                    itemFeats.put(itemOff, (float)(iv + lRate*(err*userFeats.get(userOff) - rFactor*iv)));
+                    for (int j = 2; j < nFeatures; ++j) {
+                        iv = itemFeats.get(itemOff + j);
+                        itemFeats.put(itemOff + j, (float)(iv + lRate*(err*userFeats.get(userOff + j) - rFactor*iv)));
+                    }
                 }
             }
         }
-        
+    }
+    
+    public float[] trainUserFeats(List<Integer> itm, List<Double> rat, int nIts) {
+        int n = copyToBuffers(itm, rat);
+        float[] userFeats = new float[nFeatures];
+        trainUserFeats(FloatBuffer.wrap(userFeats), 0, idBuffer, ratingBuffer, n, nIts);
+        return userFeats;
+    }
+    
+    public float[] trainItemFeats(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
+        int n = copyToBuffers(usr, rat);
+        float[] itemFeats = new float[nFeatures];
+        trainItemFeats(FloatBuffer.wrap(itemFeats), 0, idBuffer, ratingBuffer, n, nIts);
         return itemFeats;
     }
     
+    /**
+     * Retrains the vector of a user from the first n items and ratings of
+     * the arrays.
+     */
+    public void trainUser(int userID, int[] itm, double[] rat, int n, int nIts) {
+        int slot = userFeature.addSlot(userID);
+        trainUserFeats(userFeature.page(slot), userFeature.offset(slot), itm, rat, n, nIts);
+    }
+    
+    /**
+     * Retrains the vector of an item from the first n users and ratings of
+     * the arrays.
+     */
+    public void trainItem(int itemID, int[] usr, double[] rat, int n, int nIts) {
+        int slot = itemFeature.addSlot(itemID);
+        trainItemFeats(itemFeature.page(slot), itemFeature.offset(slot), usr, rat, n, nIts);
+    }
+    
     public void trainUser(int userID, List<Integer> itm, List<Double> rat, int nIts) {
-        userFeature.put(userID, trainUserFeats(itm, rat, nIts));
+        int n = copyToBuffers(itm, rat);
+        trainUser(userID, idBuffer, ratingBuffer, n, nIts);
     }
     
     public void trainUser(int userID, int nIts) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat, nIts);
+        int n = copyToBuffers(data.getRatingsUser(userID));
+        trainUser(userID, idBuffer, ratingBuffer, n, nIts);
     }
     
     public void trainUser(int userID, List<Integer> itm, List<Double> rat) {
-        userFeature.put(userID, trainUserFeats(itm, rat, nIterations));
+        trainUser(userID, itm, rat, nIterations);
     }
     
     public void trainItem(int itemID) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat);
+        trainItem(itemID, nIterations);
     }
     
     public void trainItem(int itemID, int nIts) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat, nIts);
+        int n = copyToBuffers(data.getRatingsItem(itemID));
+        trainItem(itemID, idBuffer, ratingBuffer, n, nIts);
     }
     
     public void trainUser(int userID) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat);
+        trainUser(userID, nIterations);
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIterations));
+        trainItem(itemID, usr, rat, nIterations);
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIts));
+        int n = copyToBuffers(usr, rat);
+        trainItem(itemID, idBuffer, ratingBuffer, n, nIts);
+    }
+    
+    private void ensureBuffers(int n) {
+        if (idBuffer.length < n) {
+            int len = Math.max(n, idBuffer.length*2);
+            idBuffer = Arrays.copyOf(idBuffer, len);
+            ratingBuffer = Arrays.copyOf(ratingBuffer, len);
+        }
+    }
+    
+    private int copyToBuffers(List<Integer> ids, List<Double> rat) {
+        int n = ids.size();
+        ensureBuffers(n);
+        for (int i = 0; i < n; ++i) {
+            idBuffer[i] = ids.get(i);
+            ratingBuffer[i] = rat.get(i);
+        }
+        return n;
+    }
+    
+    private int copyToBuffers(SparseVector rats) {
+        ensureBuffers(rats.size());
+        int n = 0;
+        Iterator<Pair<Integer, Double>> it = rats.iterator();
+        while (it.hasNext()) {
+            Pair<Integer, Double> p = it.next();
+            idBuffer[n] = p.getFirst();
+            ratingBuffer[n] = p.getSecond();
+            ++n;
+        }
+        return n;
     }
     
     public void train() {
@@ -260,16 +321,14 @@ public class BRISMFPredictor implements Updatable {
         
         Iterator<Integer> it = data.getUsers().iterator();
         while (it.hasNext()) {
-            float[] feats = new float[nFeatures];
-            resetFeatures(feats, true);
-            userFeature.put(it.next(), feats);
+            int slot = userFeature.addSlot(it.next());
+            resetFeatures(userFeature.page(slot), userFeature.offset(slot), true);
         }
         
         it = data.getItems().iterator();
         while (it.hasNext()) {
-            float[] feats = new float[nFeatures];
-            resetFeatures(feats, false);
-            itemFeature.put(it.next(), feats);
+            int slot = itemFeature.addSlot(it.next());
+            resetFeatures(itemFeature.page(slot), itemFeature.offset(slot), false);
         }
 
         int exit = 0;
@@ -289,21 +348,28 @@ public class BRISMFPredictor implements Updatable {
                     if (count == 0) ratTest.add(rat);
                 }
                 else {
-                    int userID = rat.userID;
-                    int itemID = rat.itemID;
                     double rating = rat.rating;
-                    float[] userFeats = userFeature.get(userID);
-                    float[] itemFeats = itemFeature.get(itemID);
+                    int userSlot = userFeature.getSlot(rat.userID);
+                    int itemSlot = itemFeature.getSlot(rat.itemID);
+                    FloatBuffer userFeats = userFeature.page(userSlot);
+                    FloatBuffer itemFeats = itemFeature.page(itemSlot);
+                    int userOff = userFeature.offset(userSlot);
+                    int itemOff = itemFeature.offset(itemSlot);
                     
-                    double pred = predictRating(userFeats, itemFeats);
+                    double pred = predictRating(userFeats, userOff, itemFeats, itemOff);
                     double err = rating - pred;
                     
-                    itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
-                    userFeats[1] += lRate*(err*itemFeats[1] - rFactor*userFeats[1]);
+                    float uv = userFeats.get(userOff);
+                    float iv = itemFeats.get(itemOff);
+                    itemFeats.put(itemOff, (float)(iv + lRate*(err*uv - rFactor*iv)));
+                    uv = userFeats.get(userOff + 1);
+                    iv = itemFeats.get(itemOff + 1);
+                    userFeats.put(userOff + 1, (float)(uv + lRate*(err*iv - rFactor*uv)));
                     for (int j = 2; j < nFeatures; ++j) {
-                        double uv = userFeats[j];
-                        userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
-                        itemFeats[j] += lRate*(err*uv - rFactor*itemFeats[j]);
+                        uv = userFeats.get(userOff + j);
+                        iv = itemFeats.get(itemOff + j);
+                        userFeats.put(userOff + j, (float)(uv + lRate*(err*iv - rFactor*uv)));
+                        itemFeats.put(itemOff + j, (float)(iv + lRate*(err*uv - rFactor*iv)));
                     }
                 }
                 ++idx;
@@ -330,10 +396,16 @@ public class BRISMFPredictor implements Updatable {
         while (exit < 1);
     }
     
+    /**
+     * @return a copy of the vector of the user, or null if it has none
+     */
     public float[] getUserFeatures(int userID) {
         return userFeature.get(userID);
     }
 
+    /**
+     * @return a copy of the vector of the item, or null if it has none
+     */
     public float[] getItemFeatures(int itemID) {
         return itemFeature.get(itemID);
     }
@@ -379,52 +451,37 @@ public class BRISMFPredictor implements Updatable {
         double prob2 = Math.pow(0.99, nItm);
 
         if (nUsr < 5 || rnd.nextDouble() < prob1) {
-            SparseVector usrRats = data.getRatingsUser(userID);
-            ArrayList<Integer> itm = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            
             //Train user
-            boolean found = false;
-            Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                itm.add(p.getFirst());
-                if (p.getFirst() == itemID) {
-                    found = true;
-                    rat.add(rating);
-                }
-                else rat.add(p.getSecond());
+            int n = copyToBuffers(data.getRatingsUser(userID));
+            int pos = indexOf(itemID, n);
+            if (pos < 0) {
+                ensureBuffers(n + 1);
+                idBuffer[n] = itemID;
+                pos = n++;
             }
-            if (!found) {
-                itm.add(itemID);
-                rat.add(rating);
-            }
-            trainUser(userID, itm, rat);
+            ratingBuffer[pos] = rating;
+            trainUser(userID, idBuffer, ratingBuffer, n, nIterations);
         }
         
         if (nItm < 5 || rnd.nextDouble() < prob2) {
-            SparseVector itmRats = data.getRatingsItem(itemID);
             //Train item
-            Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-            boolean found = false;
-            ArrayList<Integer> usr = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                usr.add(p.getFirst());
-                if (p.getFirst() == userID) {
-                    found = true;
-                    rat.add(rating);
-                }
-                else rat.add(p.getSecond());
-            }
-            if (!found) {
-                usr.add(itemID);
-                rat.add(rating);
+            int n = copyToBuffers(data.getRatingsItem(itemID));
+            int pos = indexOf(userID, n);
+            if (pos < 0) {
+                ensureBuffers(n + 1);
+                idBuffer[n] = itemID;
+                pos = n++;
             }
-            trainItem(itemID, usr, rat);
+            ratingBuffer[pos] = rating;
+            trainItem(itemID, idBuffer, ratingBuffer, n, nIterations);
         }
     }
+    
+    private int indexOf(int id, int n) {
+        for (int i = 0; i < n; ++i)
+            if (idBuffer[i] == id) return i;
+        return -1;
+    }
 
     @Override
     public void updateRemoveRating(int userID, int itemID) {
@@ -438,4 +495,13 @@ public class BRISMFPredictor implements Updatable {
 		return ret;
 	}
 
+	/**
+	 * Predicts the ratings of the user for the first n items of the array,
+	 * without boxing them.
+	 */
+	public void predictRatings(int userID, int[] itemIDS, int n, double[] ret) {
+		for (int i = 0; i < n; ++i)
+			ret[i] = predictRating(userID, itemIDS[i]);
+	}
+
 }
@@ -0,0 +1,275 @@
+/*
+ *    FactorStore.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Feature vectors of a fixed length, indexed by user or item id.
+ *
+ * <p>Ids are mapped to slots by an open addressing hash table of primitive
+ * ints, and the vectors of all the slots are stored one after the other in
+ * pages of floats, so no object is allocated per id. The pages are kept on
+ * the heap, or mapped from a file when one is given, which keeps very large
+ * catalogues out of the heap. The file is only used as backing memory: the
+ * table of ids is not saved in it.</p>
+ *
+ * <p>The vector of a slot is read and written through the page and offset
+ * of the slot:</p>
+ * <pre>
+ * FloatBuffer page = store.page(slot);
+ * int offset = store.offset(slot);
+ * for (int i = 0; i &lt; store.getNumFeatures(); ++i)
+ *     sum += page.get(offset + i);
+ * </pre>
+ */
+
+public class FactorStore {
+
+    protected static final int PAGE_BITS = 14;
+    protected static final int PAGE_SLOTS = 1 << PAGE_BITS;
+    protected static final int PAGE_MASK = PAGE_SLOTS - 1;
+    protected static final int FREE = -1;
+
+    protected int nFeatures;
+    protected File file;
+    protected RandomAccessFile raf;
+    protected FloatBuffer[] pages;
+    protected int nPages;
+    protected int nSlots;
+    protected int[] freeSlots;
+    protected int nFree;
+
+    // open addressing table with linear probing, FREE marks empty entries
+    protected int[] keys;
+    protected int[] slots;
+    protected int mask;
+    protected int size;
+
+    public FactorStore(int nFeatures) {
+        this(nFeatures, null);
+    }
+
+    /**
+     * @param nFeatures the length of the vectors
+     * @param file the file the vectors are mapped from, or null to keep them
+     * on the heap. Its contents are overwritten.
+     */
+    public FactorStore(int nFeatures, File file) {
+        this.nFeatures = Math.max(nFeatures, 1);
+        this.file = file;
+        if (file != null) {
+            try {
+                raf = new RandomAccessFile(file, "rw");
+                raf.setLength(0);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot open factor file " + file, e);
+            }
+        }
+        pages = new FloatBuffer[4];
+        freeSlots = new int[16];
+        keys = new int[16];
+        slots = new int[16];
+        Arrays.fill(slots, FREE);
+        mask = keys.length - 1;
+    }
+
+    public int getNumFeatures() {
+        return nFeatures;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return getSlot(id) != FREE;
+    }
+
+    /**
+     * @return the slot of the id, or -1 if it is not in the store
+     */
+    public int getSlot(int id) {
+        int pos = Hash.hashCode(id) & mask;
+        while (slots[pos] != FREE) {
+            if (keys[pos] == id) return slots[pos];
+            pos = (pos + 1) & mask;
+        }
+        return FREE;
+    }
+
+    /**
+     * Returns the slot of the id, adding the id if it is not in the store.
+     * The vector of a new slot is not initialized.
+     */
+    public int addSlot(int id) {
+        int pos = Hash.hashCode(id) & mask;
+        while (slots[pos] != FREE) {
+            if (keys[pos] == id) return slots[pos];
+            pos = (pos + 1) & mask;
+        }
+        int slot = newSlot();
+        keys[pos] = id;
+        slots[pos] = slot;
+        if (++size * 2 > keys.length) grow();
+        return slot;
+    }
+
+    public boolean remove(int id) {
+        int pos = Hash.hashCode(id) & mask;
+        while (slots[pos] != FREE) {
+            if (keys[pos] == id) {
+                if (nFree == freeSlots.length)
+                    freeSlots = Arrays.copyOf(freeSlots, nFree * 2);
+                freeSlots[nFree++] = slots[pos];
+                slots[pos] = FREE;
+                --size;
+                shiftBack(pos);
+                return true;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the ids. The pages are kept to be reused.
+     */
+    public void clear() {
+        Arrays.fill(slots, FREE);
+        size = 0;
+        nSlots = 0;
+        nFree = 0;
+    }
+
+    /**
+     * Releases the pages and closes the file they are mapped from. The store
+     * cannot be used afterwards.
+     */
+    public void close() {
+        clear();
+        pages = new FloatBuffer[0];
+        nPages = 0;
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot close factor file " + file, e);
+            } finally {
+                raf = null;
+            }
+        }
+    }
+
+    public FloatBuffer page(int slot) {
+        return pages[slot >>> PAGE_BITS];
+    }
+
+    public int offset(int slot) {
+        return (slot & PAGE_MASK) * nFeatures;
+    }
+
+    /**
+     * @return a copy of the vector of the id, or null if it is not in the
+     * store
+     */
+    public float[] get(int id) {
+        int slot = getSlot(id);
+        if (slot == FREE) return null;
+        float[] feats = new float[nFeatures];
+        FloatBuffer page = page(slot);
+        int offset = offset(slot);
+        for (int i = 0; i < nFeatures; ++i)
+            feats[i] = page.get(offset + i);
+        return feats;
+    }
+
+    public void put(int id, float[] feats) {
+        int slot = addSlot(id);
+        FloatBuffer page = page(slot);
+        int offset = offset(slot);
+        for (int i = 0; i < nFeatures; ++i)
+            page.put(offset + i, feats[i]);
+    }
+
+    private int newSlot() {
+        if (nFree > 0) return freeSlots[--nFree];
+        int slot = nSlots++;
+        if ((slot >>> PAGE_BITS) == nPages) addPage();
+        return slot;
+    }
+
+    private void addPage() {
+        if (nPages == pages.length)
+            pages = Arrays.copyOf(pages, nPages * 2);
+        int floats = PAGE_SLOTS * nFeatures;
+        if (raf == null) {
+            pages[nPages] = FloatBuffer.allocate(floats);
+        } else {
+            long bytes = 4L * floats;
+            try {
+                pages[nPages] = raf.getChannel()
+                        .map(FileChannel.MapMode.READ_WRITE, nPages * bytes, bytes)
+                        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot map factor file " + file, e);
+            }
+        }
+        ++nPages;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new int[oldKeys.length * 2];
+        slots = new int[oldKeys.length * 2];
+        Arrays.fill(slots, FREE);
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldSlots[i] == FREE) continue;
+            int pos = Hash.hashCode(oldKeys[i]) & mask;
+            while (slots[pos] != FREE) pos = (pos + 1) & mask;
+            keys[pos] = oldKeys[i];
+            slots[pos] = oldSlots[i];
+        }
+    }
+
+    // moves back the entries after a removed one, so no probe sequence
+    // is broken by the hole
+    private void shiftBack(int hole) {
+        int pos = (hole + 1) & mask;
+        while (slots[pos] != FREE) {
+            int home = Hash.hashCode(keys[pos]) & mask;
+            // the entry can fill the hole if its home is not in (hole, pos]
+            if (((pos - home) & mask) >= ((pos - hole) & mask)) {
+                keys[hole] = keys[pos];
+                slots[hole] = slots[pos];
+                slots[pos] = FREE;
+                hole = pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+    }
+}
@@ -21,6 +21,7 @@
 package moa.tasks;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import java.io.File;
@@ -32,6 +33,7 @@ import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.MetricsSink;
 import moa.evaluation.preview.LearningCurve;
 import moa.learners.ChangeDetectorLearner;
 import moa.options.ClassOption;
@@ -90,6 +92,13 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public ClassOption metricsSinkOption = new ClassOption("metricsSink", 'k',
+            "Writer of the intermediate results to the dump file.",
+            MetricsSink.class, "CSVMetricsSink");
+
+    public FlagOption constantMemoryOption = new FlagOption("constantMemory", 'z',
+            "Keep only the latest entry of the learning curve in memory.");
+
     /*public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);*/
 
@@ -107,6 +116,9 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
         LearningPerformanceEvaluator evaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
         LearningCurve learningCurve = new LearningCurve(
                 "learning evaluation instances");
+        if (this.constantMemoryOption.isSet()) {
+            learningCurve.setMaxEntries(1);
+        }
 
         learner.setModelContext(stream.getHeader());
         int maxInstances = this.instanceLimitOption.getValue();
@@ -116,20 +128,10 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
         monitor.setCurrentActivity("Evaluating learner...", -1.0);
 
         File dumpFile = this.dumpFileOption.getFile();
-        PrintStream immediateResultStream = null;
+        MetricsSink metricsSink = null;
         if (dumpFile != null) {
-            try {
-                if (dumpFile.exists()) {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile, true), true);
-                } else {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open immediate result file: " + dumpFile, ex);
-            }
+            metricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+            metricsSink.open(dumpFile, null, null);
         }
         //File for output predictions
       /*  File outputPredictionFile = this.outputPredictionFileOption.getFile();
@@ -148,7 +150,6 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
                         "Unable to open prediction result file: " + outputPredictionFile, ex);
             }
         }*/
-        boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
@@ -197,17 +198,15 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
                         },
                         evaluator, learner));
 
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
-                    }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
+                if (metricsSink != null) {
+                    metricsSink.addEntry(learningCurve);
                 }
             }
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (metricsSink != null) {
+                        metricsSink.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -228,8 +227,8 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
                         - evaluateStartTime);
             }
         }
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
+        if (metricsSink != null) {
+            metricsSink.close();
         }
        /* if (outputPredictionResultStream != null) {
             outputPredictionResultStream.close();
@@ -20,20 +20,20 @@
 package moa.tasks;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import moa.classifiers.featureselection.AbstractFeatureSelector;
 import moa.classifiers.featureselection.FeatureSelectionClassifier;
 import moa.core.*;
-import moa.evaluation.LearningCurve;
+import moa.evaluation.preview.LearningCurve;
 import moa.evaluation.LearningEvaluation;
+import moa.evaluation.MetricsSink;
 import moa.options.ClassOption;
 import moa.streams.ExampleStream;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Random;
@@ -70,6 +70,13 @@ public class EvaluateFeatureSelectionStability extends ClassificationMainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public ClassOption metricsSinkOption = new ClassOption("metricsSink", 'k',
+            "Writer of the intermediate results to the dump file.",
+            MetricsSink.class, "CSVMetricsSink");
+
+    public FlagOption constantMemoryOption = new FlagOption("constantMemory", 'z',
+            "Keep only the latest entry of the learning curve in memory.");
+
     public IntOption numFoldsOption = new IntOption("numFolds", 'w',
             "The number of folds (e.g. distributed models) to be used.", 10, 1, Integer.MAX_VALUE);
 
@@ -121,6 +128,9 @@ public class EvaluateFeatureSelectionStability extends ClassificationMainTask {
 
         LearningCurve learningCurve = new LearningCurve(
                 "learning evaluation instances");
+        if (this.constantMemoryOption.isSet()) {
+            learningCurve.setMaxEntries(1);
+        }
         int maxInstances = this.instanceLimitOption.getValue();
         long instancesProcessed = 0;
         int maxSeconds = this.timeLimitOption.getValue();
@@ -128,23 +138,12 @@ public class EvaluateFeatureSelectionStability extends ClassificationMainTask {
         monitor.setCurrentActivity("Evaluating learner...", -1.0);
 
         File dumpFile = this.dumpFileOption.getFile();
-        PrintStream immediateResultStream = null;
+        MetricsSink metricsSink = null;
         if (dumpFile != null) {
-            try {
-                if (dumpFile.exists()) {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile, true), true);
-                } else {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open immediate result file: " + dumpFile, ex);
-            }
+            metricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+            metricsSink.open(dumpFile, null, null);
         }
 
-        boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
@@ -215,17 +214,15 @@ public class EvaluateFeatureSelectionStability extends ClassificationMainTask {
 
                 learningCurve.insertEntry(new LearningEvaluation(result));
 
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
-                    }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
+                if (metricsSink != null) {
+                    metricsSink.addEntry(learningCurve);
                 }
             }
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (metricsSink != null) {
+                        metricsSink.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -245,8 +242,8 @@ public class EvaluateFeatureSelectionStability extends ClassificationMainTask {
                         - evaluateStartTime);
             }
         }
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
+        if (metricsSink != null) {
+            metricsSink.close();
         }
         return learningCurve;
 
@@ -20,8 +20,6 @@
 package moa.tasks;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 import moa.classifiers.Classifier;
 import moa.core.Example;
 import moa.core.InstanceExample;
@@ -30,10 +28,12 @@ import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.MetricsSink;
 import moa.evaluation.preview.LearningCurve;
 import moa.learners.Learner;
 import moa.options.ClassOption;
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import moa.streams.InstanceStream;
@@ -120,6 +120,13 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 	public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
 			"File to append intermediate csv reslts to.", null, "csv", true);
 
+	public ClassOption metricsSinkOption = new ClassOption("metricsSink", 'k',
+			"Writer of the intermediate results to the dump file.",
+			MetricsSink.class, "CSVMetricsSink");
+
+	public FlagOption constantMemoryOption = new FlagOption("constantMemory", 'z',
+			"Keep only the latest entry of the learning curve in memory.");
+
 	/**
 	 * Defines the task's result type.
 	 */
@@ -142,23 +149,15 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 		monitor.setCurrentActivity("Evaluating learner...", -1.0);
 		LearningCurve learningCurve = new LearningCurve(
 				"learning evaluation instances");
+		if (this.constantMemoryOption.isSet()) {
+			learningCurve.setMaxEntries(1);
+		}
 		File dumpFile = this.dumpFileOption.getFile();
-		PrintStream immediateResultStream = null;
+		MetricsSink metricsSink = null;
 		if (dumpFile != null) {
-			try {
-				if (dumpFile.exists()) {
-					immediateResultStream = new PrintStream(
-							new FileOutputStream(dumpFile, true), true);
-				} else {
-					immediateResultStream = new PrintStream(
-							new FileOutputStream(dumpFile), true);
-				}
-			} catch (Exception ex) {
-				throw new RuntimeException(
-						"Unable to open immediate result file: " + dumpFile, ex);
-			}
+			metricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+			metricsSink.open(dumpFile, null, null);
 		}
-		boolean firstDump = true;
 		boolean firstChunk = true;
 		boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
 		long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
@@ -176,6 +175,9 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 				if (chunkInstances.numInstances()
 						% INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
 					if (monitor.taskShouldAbort()) {
+						if (metricsSink != null) {
+							metricsSink.close();
+						}
 						return null;
 					}
 					
@@ -245,21 +247,17 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 					evaluator, 
 					learner));
 				
-				if (immediateResultStream != null) {
-					if (firstDump) {
-						immediateResultStream.println(learningCurve
-								.headerToString());
-						firstDump = false;
-					}
-					immediateResultStream.println(learningCurve
-							.entryToString(learningCurve.numEntries() - 1));
-					immediateResultStream.flush();
+				if (metricsSink != null) {
+					metricsSink.addEntry(learningCurve);
 				}
 			}
 			
 			////Memory testing
 			if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
 				if (monitor.taskShouldAbort()) {
+					if (metricsSink != null) {
+						metricsSink.close();
+					}
 					return null;
 				}
 				long estimatedRemainingInstances = stream
@@ -284,8 +282,8 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 								- evaluateStartTime);
 			}
 		}
-		if (immediateResultStream != null) {
-			immediateResultStream.close();
+		if (metricsSink != null) {
+			metricsSink.close();
 		}
 		return learningCurve;
 	}
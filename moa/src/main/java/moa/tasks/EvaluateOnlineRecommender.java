@@ -26,6 +26,7 @@ import moa.evaluation.preview.LearningCurve;
 import moa.options.ClassOption;
 import com.github.javacliparser.IntOption;
 import moa.recommender.dataset.Dataset;
+import moa.recommender.predictor.BRISMFPredictor;
 import moa.recommender.predictor.RatingPredictor;
 import moa.recommender.rc.data.RecommenderData;
 
@@ -77,6 +78,17 @@ public class EvaluateOnlineRecommender extends AuxiliarMainTask {
         
         Dataset d = (Dataset) getPreparedClassOption(this.datasetOption);
         RatingPredictor rp = (RatingPredictor)getPreparedClassOption(this.ratingPredictorOption);
+        try {
+            return evaluate(monitor, d, rp);
+        } finally {
+            // the features can be mapped from files, which are left open otherwise
+            if (rp instanceof BRISMFPredictor) {
+                ((BRISMFPredictor) rp).close();
+            }
+        }
+    }
+
+    protected Object evaluate(TaskMonitor monitor, Dataset d, RatingPredictor rp) {
         LearningCurve learningCurve = new LearningCurve("n");
         RecommenderData data = rp.getData();
         data.clear();
@@ -21,8 +21,6 @@
 package moa.tasks;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 import com.github.javacliparser.FileOption;
@@ -37,6 +35,7 @@ import moa.core.StringUtils;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.MetricsSink;
 import moa.evaluation.preview.LearningCurve;
 import moa.learners.Learner;
 import moa.options.ClassOption;
@@ -91,6 +90,13 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public ClassOption metricsSinkOption = new ClassOption("metricsSink", 'k',
+            "Writer of the intermediate results to the dump file.",
+            MetricsSink.class, "CSVMetricsSink");
+
+    public FlagOption constantMemoryOption = new FlagOption("constantMemory", 'z',
+            "Keep only the latest entry of the learning curve in memory.");
+
     public FlagOption cacheTestOption = new FlagOption("cacheTest", 'c',
             "Cache test instances in memory.");
 
@@ -102,23 +108,15 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
         learner.setModelContext(stream.getHeader());
         long instancesProcessed = 0;
         LearningCurve learningCurve = new LearningCurve("evaluation instances");
+        if (this.constantMemoryOption.isSet()) {
+            learningCurve.setMaxEntries(1);
+        }
         File dumpFile = this.dumpFileOption.getFile();
-        PrintStream immediateResultStream = null;
+        MetricsSink metricsSink = null;
         if (dumpFile != null) {
-            try {
-                if (dumpFile.exists()) {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile, true), true);
-                } else {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open immediate result file: " + dumpFile, ex);
-            }
+            metricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+            metricsSink.open(dumpFile, null, null);
         }
-        boolean firstDump = true;
         ExampleStream testStream = null;
         int testSize = this.testSizeOption.getValue();
         if (this.cacheTestOption.isSet()) {
@@ -130,6 +128,9 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
                 if (testInstances.numInstances()
                         % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                     if (monitor.taskShouldAbort()) {
+                        if (metricsSink != null) {
+                            metricsSink.close();
+                        }
                         return null;
                     }
                     monitor.setCurrentActivityFractionComplete((double) testInstances.numInstances()
@@ -160,6 +161,9 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
                 instancesProcessed++;
                 if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                     if (monitor.taskShouldAbort()) {
+                        if (metricsSink != null) {
+                            metricsSink.close();
+                        }
                         return null;
                     }
                     monitor.setCurrentActivityFractionComplete((double) (instancesProcessed)
@@ -197,6 +201,9 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
                 testInstancesProcessed++;
                 if (testInstancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                     if (monitor.taskShouldAbort()) {
+                        if (metricsSink != null) {
+                            metricsSink.close();
+                        }
                         return null;
                     }
                     monitor.setCurrentActivityFractionComplete((double) testInstancesProcessed
@@ -229,13 +236,8 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
                 measurements.add(measurement);
             }
             learningCurve.insertEntry(new LearningEvaluation(measurements.toArray(new Measurement[measurements.size()])));
-            if (immediateResultStream != null) {
-                if (firstDump) {
-                    immediateResultStream.println(learningCurve.headerToString());
-                    firstDump = false;
-                }
-                immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                immediateResultStream.flush();
+            if (metricsSink != null) {
+                metricsSink.addEntry(learningCurve);
             }
             if (monitor.resultPreviewRequested()) {
                 monitor.setLatestResultPreview(learningCurve.copy());
@@ -280,8 +282,8 @@ public class EvaluatePeriodicHeldOutTest extends ClassificationMainTask {
             // lastNumNodes = numNodes;
             // }
         }
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
+        if (metricsSink != null) {
+            metricsSink.close();
         }
         return learningCurve;
     }
@@ -36,10 +36,12 @@ import moa.evaluation.EWMAClassificationPerformanceEvaluator;
 import moa.evaluation.FadingFactorClassificationPerformanceEvaluator;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.MetricsSink;
 import moa.learners.Learner;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
@@ -96,6 +98,13 @@ public class EvaluatePrequential extends ClassificationMainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public ClassOption metricsSinkOption = new ClassOption("metricsSink", 'k',
+            "Writer of the intermediate results to the dump file.",
+            MetricsSink.class, "CSVMetricsSink");
+
+    public FlagOption constantMemoryOption = new FlagOption("constantMemory", 'z',
+            "Keep only the latest entry of the learning curve in memory.");
+
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
 
@@ -119,6 +128,9 @@ public class EvaluatePrequential extends ClassificationMainTask {
         LearningPerformanceEvaluator evaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
         LearningCurve learningCurve = new LearningCurve(
                 "learning evaluation instances");
+        if (this.constantMemoryOption.isSet()) {
+            learningCurve.setMaxEntries(1);
+        }
 
         //New for prequential methods
         if (evaluator instanceof WindowClassificationPerformanceEvaluator) {
@@ -152,20 +164,10 @@ public class EvaluatePrequential extends ClassificationMainTask {
         monitor.setCurrentActivity("Evaluating learner...", -1.0);
 
         File dumpFile = this.dumpFileOption.getFile();
-        PrintStream immediateResultStream = null;
+        MetricsSink metricsSink = null;
         if (dumpFile != null) {
-            try {
-                if (dumpFile.exists()) {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile, true), true);
-                } else {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open immediate result file: " + dumpFile, ex);
-            }
+            metricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+            metricsSink.open(dumpFile, null, null);
         }
         //File for output predictions
         File outputPredictionFile = this.outputPredictionFileOption.getFile();
@@ -184,7 +186,6 @@ public class EvaluatePrequential extends ClassificationMainTask {
                         "Unable to open prediction result file: " + outputPredictionFile, ex);
             }
         }
-        boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
@@ -232,17 +233,15 @@ public class EvaluatePrequential extends ClassificationMainTask {
                         },
                         evaluator, learner));
 
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
-                    }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
+                if (metricsSink != null) {
+                    metricsSink.addEntry(learningCurve);
                 }
             }
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (metricsSink != null) {
+                        metricsSink.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -263,8 +262,8 @@ public class EvaluatePrequential extends ClassificationMainTask {
                         - evaluateStartTime);
             }
         }
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
+        if (metricsSink != null) {
+            metricsSink.close();
         }
         if (outputPredictionResultStream != null) {
             outputPredictionResultStream.close();
@@ -31,6 +31,7 @@ import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
+import moa.evaluation.MetricsSink;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.preview.LearningCurve;
 import moa.evaluation.EWMAClassificationPerformanceEvaluator;
@@ -120,6 +121,13 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public ClassOption metricsSinkOption = new ClassOption("metricsSink", 'K',
+            "Writer of the intermediate results to the dump file.",
+            MetricsSink.class, "CSVMetricsSink");
+
+    public FlagOption constantMemoryOption = new FlagOption("constantMemory", 'z',
+            "Keep only the latest entry of the learning curve in memory.");
+
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
 
@@ -145,6 +153,9 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
         LearningPerformanceEvaluator evaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
         LearningCurve learningCurve = new LearningCurve(
                 "learning evaluation instances");
+        if (this.constantMemoryOption.isSet()) {
+            learningCurve.setMaxEntries(1);
+        }
 
         this.trainInstances = new LinkedList<Example>();
         
@@ -179,20 +190,10 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
         monitor.setCurrentActivity("Evaluating learner...", -1.0);
 
         File dumpFile = this.dumpFileOption.getFile();
-        PrintStream immediateResultStream = null;
+        MetricsSink metricsSink = null;
         if (dumpFile != null) {
-            try {
-                if (dumpFile.exists()) {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile, true), true);
-                } else {
-                    immediateResultStream = new PrintStream(
-                            new FileOutputStream(dumpFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException(
-                        "Unable to open immediate result file: " + dumpFile, ex);
-            }
+            metricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+            metricsSink.open(dumpFile, null, null);
         }
         //File for output predictions
         File outputPredictionFile = this.outputPredictionFileOption.getFile();
@@ -211,7 +212,6 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                         "Unable to open prediction result file: " + outputPredictionFile, ex);
             }
         }
-        boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
@@ -293,17 +293,15 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                                 RAMHours)
                             },
                             evaluator, learner));
-                    if (immediateResultStream != null) {
-                        if (firstDump) {
-                            immediateResultStream.println(learningCurve.headerToString());
-                            firstDump = false;
-                        }
-                        immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                        immediateResultStream.flush();
+                    if (metricsSink != null) {
+                        metricsSink.addEntry(learningCurve);
                     }
                 }
                 if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                     if (monitor.taskShouldAbort()) {
+                        if (metricsSink != null) {
+                            metricsSink.close();
+                        }
                         return null;
                     }
                     long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -325,8 +323,8 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                 }
             }
         }
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
+        if (metricsSink != null) {
+            metricsSink.close();
         }
         if (outputPredictionResultStream != null) {
             outputPredictionResultStream.close();
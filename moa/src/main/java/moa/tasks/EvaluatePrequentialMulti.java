@@ -0,0 +1,389 @@
+/*
+ *    EvaluatePrequentialMulti.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.File;
+import java.util.concurrent.locks.LockSupport;
+
+import moa.classifiers.MultiClassClassifier;
+import moa.core.BoundedSPSCQueue;
+import moa.core.Example;
+import moa.core.InstanceExample;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.core.TimingUtils;
+import moa.evaluation.LearningEvaluation;
+import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.MetricsSink;
+import moa.evaluation.preview.LearningCurve;
+import moa.learners.Learner;
+import moa.options.ClassOption;
+import moa.streams.ExampleStream;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.ListOption;
+import com.github.javacliparser.Option;
+
+/**
+ * Task for evaluating several classifiers on the same stream by testing then
+ * training with each example in sequence, reading the stream only once.
+ *
+ * <p>Each learner is trained and evaluated on its own thread, with a copy of
+ * the evaluator. The task thread reads the stream and hands every example to
+ * all learners through bounded single-producer single-consumer queues, so a
+ * slow learner only holds the reader back once its queue is full. The result
+ * is one learning curve per learner, in the order of the learner list, with
+ * the same measurements as EvaluatePrequential.</p>
+ *
+ * <p>Examples are shared between learners. Learners that modify the
+ * examples they are given need the copyExamples option.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class EvaluatePrequentialMulti extends ClassificationMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Evaluates several classifiers on a single pass over a stream by testing then training with each example in sequence.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ListOption learnerListOption = new ListOption("learners", 'l',
+            "Learners to train.",
+            new ClassOption("learner", ' ', "", MultiClassClassifier.class,
+            "moa.classifiers.bayes.NaiveBayes"),
+            new Option[]{
+                new ClassOption("", ' ', "", MultiClassClassifier.class,
+                "moa.classifiers.bayes.NaiveBayes"),
+                new ClassOption("", ' ', "", MultiClassClassifier.class,
+                "moa.classifiers.trees.HoeffdingTree")},
+            ',');
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to learn from.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public ClassOption evaluatorOption = new ClassOption("evaluator", 'e',
+            "Classification performance evaluation method.",
+            LearningPerformanceEvaluator.class,
+            "WindowClassificationPerformanceEvaluator");
+
+    public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
+            "Maximum number of instances to test/train on  (-1 = no limit).",
+            100000000, -1, Integer.MAX_VALUE);
+
+    public IntOption sampleFrequencyOption = new IntOption("sampleFrequency",
+            'f',
+            "How many instances between samples of the learning performance.",
+            100000, 1, Integer.MAX_VALUE);
+
+    public IntOption queueSizeOption = new IntOption("queueSize", 'b',
+            "How many examples each learner can lag behind the stream.",
+            1024, 1, BoundedSPSCQueue.MAX_CAPACITY);
+
+    public FlagOption copyExamplesOption = new FlagOption("copyExamples", 'c',
+            "Give each learner its own copy of every example.");
+
+    public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
+            "File to append intermediate csv results to, numbered for each learner.",
+            null, "csv", true);
+
+    public ClassOption metricsSinkOption = new ClassOption("metricsSink", 'k',
+            "Writer of the intermediate results to the dump files.",
+            MetricsSink.class, "CSVMetricsSink");
+
+    public FlagOption constantMemoryOption = new FlagOption("constantMemory", 'z',
+            "Keep only the latest entry of the learning curves in memory.");
+
+    // marks the end of the examples, when the stream has no more of them
+    protected static final Example END_OF_STREAM = new InstanceExample(null);
+
+    // marks the end of the examples, when the instance limit was reached
+    protected static final Example END_OF_EXAMPLES = new InstanceExample(null);
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningCurve[].class;
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        LearningPerformanceEvaluator baseEvaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
+        Option[] learnerOptions = this.learnerListOption.getList();
+        LearnerWorker[] workers = new LearnerWorker[learnerOptions.length];
+        Thread[] threads = new Thread[learnerOptions.length];
+        LearningCurve[] learningCurves = new LearningCurve[learnerOptions.length];
+        MetricsSink baseMetricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+        for (int i = 0; i < workers.length; i++) {
+            monitor.setCurrentActivity("Materializing learner " + (i + 1)
+                    + "...", -1.0);
+            Learner learner = (Learner) ((ClassOption) learnerOptions[i]).materializeObject(monitor, repository);
+            if (monitor.taskShouldAbort()) {
+                for (int j = 0; j < i; j++) {
+                    if (workers[j].metricsSink != null) {
+                        workers[j].metricsSink.close();
+                    }
+                }
+                return null;
+            }
+            learner.prepareForUse(monitor, repository);
+            learner.setModelContext(stream.getHeader());
+            learningCurves[i] = new LearningCurve("learning evaluation instances");
+            if (this.constantMemoryOption.isSet()) {
+                learningCurves[i].setMaxEntries(1);
+            }
+            workers[i] = new LearnerWorker(learner,
+                    (LearningPerformanceEvaluator) baseEvaluator.copy(),
+                    learningCurves[i], openDumpFile(baseMetricsSink, i));
+            threads[i] = new Thread(workers[i], getClass().getSimpleName()
+                    + "-learner-" + (i + 1));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        monitor.setCurrentActivity("Evaluating learners...", -1.0);
+        int maxInstances = this.instanceLimitOption.getValue();
+        long instancesProcessed = 0;
+        // the workers are stopped on every exit but the normal end, as they
+        // would otherwise wait for examples forever
+        boolean completed = false;
+        boolean interrupted = false;
+        try {
+            while (stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed < maxInstances))) {
+                Example example = stream.nextInstance();
+                for (LearnerWorker worker : workers) {
+                    worker.put(example);
+                }
+                instancesProcessed++;
+                if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                }
+            }
+            Example end = stream.hasMoreInstances() ? END_OF_EXAMPLES : END_OF_STREAM;
+            for (LearnerWorker worker : workers) {
+                worker.put(end);
+            }
+            monitor.setCurrentActivity("Waiting for learners to finish...", -1.0);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            interrupted = true;
+            return null;
+        } catch (RuntimeException e) {
+            // a learner that failed is reported below, once the others are stopped
+            if (!hasFailedWorker(workers)) {
+                throw e;
+            }
+        } finally {
+            if (!completed) {
+                stopWorkers(threads);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = 0; i < workers.length; i++) {
+            if (workers[i].failure != null) {
+                throw new RuntimeException("Learner " + (i + 1) + " failed.",
+                        workers[i].failure);
+            }
+        }
+        return learningCurves;
+    }
+
+    protected boolean hasFailedWorker(LearnerWorker[] workers) {
+        for (LearnerWorker worker : workers) {
+            if (worker.failure != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void stopWorkers(Thread[] threads) {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    protected MetricsSink openDumpFile(MetricsSink baseMetricsSink, int learnerIndex) {
+        File dumpFile = this.dumpFileOption.getFile();
+        if (dumpFile == null) {
+            return null;
+        }
+        String name = dumpFile.getName();
+        int extension = name.lastIndexOf('.');
+        String numbered = extension < 0 ? name + "-" + (learnerIndex + 1)
+                : name.substring(0, extension) + "-" + (learnerIndex + 1)
+                + name.substring(extension);
+        File learnerDumpFile = new File(dumpFile.getParentFile(), numbered);
+        MetricsSink metricsSink = (MetricsSink) baseMetricsSink.copy();
+        metricsSink.open(learnerDumpFile, null, null);
+        return metricsSink;
+    }
+
+    /**
+     * Tests then trains one learner on the examples of its queue.
+     */
+    protected class LearnerWorker implements Runnable {
+
+        protected Learner learner;
+
+        protected LearningPerformanceEvaluator evaluator;
+
+        protected LearningCurve learningCurve;
+
+        protected MetricsSink metricsSink;
+
+        protected BoundedSPSCQueue<Example> queue;
+
+        protected volatile Throwable failure;
+
+        public LearnerWorker(Learner learner,
+                LearningPerformanceEvaluator evaluator,
+                LearningCurve learningCurve, MetricsSink metricsSink) {
+            this.learner = learner;
+            this.evaluator = evaluator;
+            this.learningCurve = learningCurve;
+            this.metricsSink = metricsSink;
+            this.queue = new BoundedSPSCQueue<Example>(queueSizeOption.getValue());
+        }
+
+        /**
+         * Hands an example to the learner, waiting while its queue is full.
+         */
+        public void put(Example example) throws InterruptedException {
+            while (!this.queue.offer(example)) {
+                if (this.failure != null) {
+                    throw new RuntimeException("Learner failed.", this.failure);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(10000);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                evaluate();
+            } catch (InterruptedException e) {
+                // the task was cancelled
+            } catch (Throwable t) {
+                this.failure = t;
+            } finally {
+                if (this.metricsSink != null) {
+                    try {
+                        this.metricsSink.close();
+                    } catch (Throwable t) {
+                        if (this.failure == null) {
+                            this.failure = t;
+                        }
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void evaluate() throws InterruptedException {
+            int sampleFrequency = sampleFrequencyOption.getValue();
+            boolean copyExamples = copyExamplesOption.isSet();
+            boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
+            long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            long lastEvaluateStartTime = evaluateStartTime;
+            double RAMHours = 0.0;
+            long instancesProcessed = 0;
+            while (true) {
+                Example example = this.queue.take();
+                if (example == END_OF_EXAMPLES) {
+                    return;
+                }
+                boolean endOfStream = example == END_OF_STREAM;
+                if (!endOfStream) {
+                    if (copyExamples) {
+                        example = example.copy();
+                    }
+                    double[] prediction = this.learner.getVotesForInstance(example);
+                    this.evaluator.addResult(example, prediction);
+                    this.learner.trainOnInstance(example);
+                    instancesProcessed++;
+                }
+                if ((!endOfStream && (instancesProcessed % sampleFrequency == 0))
+                        || (endOfStream && (instancesProcessed % sampleFrequency != 0))) {
+                    long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+                    double RAMHoursIncrement = this.learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                    RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                    RAMHours += RAMHoursIncrement;
+                    lastEvaluateStartTime = evaluateTime;
+                    this.learningCurve.insertEntry(new LearningEvaluation(
+                            new Measurement[]{
+                                new Measurement(
+                                "learning evaluation instances",
+                                instancesProcessed),
+                                new Measurement(
+                                "evaluation time ("
+                                + (preciseCPUTiming ? "cpu "
+                                : "") + "seconds)",
+                                time),
+                                new Measurement(
+                                "model cost (RAM-Hours)",
+                                RAMHours)
+                            },
+                            this.evaluator, this.learner));
+                    if (this.metricsSink != null) {
+                        this.metricsSink.addEntry(this.learningCurve);
+                    }
+                }
+                if (endOfStream) {
+                    return;
+                }
+            }
+        }
+    }
+}
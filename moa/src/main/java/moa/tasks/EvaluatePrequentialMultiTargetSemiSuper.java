@@ -40,6 +40,7 @@ import moa.evaluation.EWMAClassificationPerformanceEvaluator;
 import moa.evaluation.FadingFactorClassificationPerformanceEvaluator;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
+import moa.evaluation.MetricsSink;
 import moa.evaluation.MultiTargetPerformanceEvaluator;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.preview.LearningCurve;
@@ -102,6 +103,10 @@ public class EvaluatePrequentialMultiTargetSemiSuper extends MultiTargetMainTask
                 'q',"How many instances between memory bound checks.", 100000, 0,Integer.MAX_VALUE);
     public FileOption dumpFileOption = new FileOption("dumpFile", 
                 'd',"File to append intermediate csv results to.", null, "csv", true);
+    public ClassOption metricsSinkOption = new ClassOption("metricsSink",
+                'k',"Writer of the intermediate results to the dump file.", MetricsSink.class, "CSVMetricsSink");
+    public FlagOption constantMemoryOption = new FlagOption("constantMemory",
+                'Z',"Keep only the latest entry of the learning curve in memory.");
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 
                 'o',"File to append output predictions to.", null, "pred", true);
     public IntOption widthOption = new IntOption("width",
@@ -131,6 +136,9 @@ public class EvaluatePrequentialMultiTargetSemiSuper extends MultiTargetMainTask
         ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
         LearningPerformanceEvaluator evaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
         LearningCurve learningCurve = new LearningCurve("learning evaluation instances");
+        if (this.constantMemoryOption.isSet()) {
+            learningCurve.setMaxEntries(1);
+        }
 
         
         //New for prequential methods
@@ -166,17 +174,10 @@ public class EvaluatePrequentialMultiTargetSemiSuper extends MultiTargetMainTask
 
         
         File dumpFile = this.dumpFileOption.getFile();
-        PrintStream immediateResultStream = null;
+        MetricsSink metricsSink = null;
         if (dumpFile != null) {
-            try {
-                if (dumpFile.exists()) {
-                    immediateResultStream = new PrintStream(new FileOutputStream(dumpFile, true), true);
-                } else {
-                    immediateResultStream = new PrintStream(new FileOutputStream(dumpFile), true);
-                }
-            } catch (Exception ex) {
-                throw new RuntimeException("Unable to open immediate result file: " + dumpFile, ex);
-            }
+            metricsSink = (MetricsSink) getPreparedClassOption(this.metricsSinkOption);
+            metricsSink.open(dumpFile, null, null);
         }
         
         //File for output predictions
@@ -194,7 +195,6 @@ public class EvaluatePrequentialMultiTargetSemiSuper extends MultiTargetMainTask
             }
         }
         
-        boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
@@ -329,17 +329,15 @@ public class EvaluatePrequentialMultiTargetSemiSuper extends MultiTargetMainTask
                         },
                         evaluator, learner));
 
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
-                    }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
+                if (metricsSink != null) {
+                    metricsSink.addEntry(learningCurve);
                 }
             }
             if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
                 if (monitor.taskShouldAbort()) {
+                    if (metricsSink != null) {
+                        metricsSink.close();
+                    }
                     return null;
                 }
                 long estimatedRemainingInstances = stream.estimatedRemainingInstances();
@@ -387,20 +385,15 @@ public class EvaluatePrequentialMultiTargetSemiSuper extends MultiTargetMainTask
                 },
                 evaluator, learner));
 
-        if (immediateResultStream != null) {
-            if (firstDump) {
-                immediateResultStream.println(learningCurve.headerToString());
-                firstDump = false;
-            }
-            immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-            immediateResultStream.flush();
+        if (metricsSink != null) {
+            metricsSink.addEntry(learningCurve);
         }
 
         StringBuilder sb= new StringBuilder();
         learner.getDescription(sb, 0);
         System.out.println(sb.toString());
-        if (immediateResultStream != null) {
-            immediateResultStream.close();
+        if (metricsSink != null) {
+            metricsSink.close();
         }
         if (outputPredictionResultStream != null) {
             outputPredictionResultStream.close();
@@ -0,0 +1,263 @@
+/*
+ *    ExperimentGridExecutor.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the cells of an experiment grid in parallel.
+ *
+ * <p>Each cell is an independent experiment, identified by a key, that
+ * returns a line for the summary of the grid (or null). Cells are run on a
+ * work-stealing pool, so long cells do not hold back the others, and must
+ * only use their own copies of streams and learners.</p>
+ *
+ * <p>When a checkpoint file is set, the key and summary line of every
+ * finished cell are appended to it. Running the same grid again with the
+ * same checkpoint file skips the cells already in it, so a crashed or
+ * killed run resumes where it stopped. The summary file is written in the
+ * order the cells were added, whatever order they finish in, and is
+ * rebuilt from the checkpoint when resuming.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class ExperimentGridExecutor {
+
+    protected int numThreads;
+
+    protected File checkpointFile;
+
+    protected File summaryFile;
+
+    protected String summaryHeader;
+
+    protected List<String> keys = new ArrayList<String>();
+
+    protected List<Callable<String>> cells = new ArrayList<Callable<String>>();
+
+    // state of the current run, guarded by this
+    protected String[] lines;
+
+    protected boolean[] finished;
+
+    protected int nextLineToWrite;
+
+    protected PrintWriter checkpointWriter;
+
+    protected PrintWriter summaryWriter;
+
+    protected List<String> failedKeys;
+
+    /**
+     * @param numThreads	the number of cells run at the same time, or 0 for
+     * the number of available processors
+     */
+    public ExperimentGridExecutor(int numThreads) {
+        this.numThreads = numThreads > 0 ? numThreads
+                : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public void setSummaryFile(File summaryFile, String header) {
+        this.summaryFile = summaryFile;
+        this.summaryHeader = header;
+    }
+
+    public void addCell(String key, Callable<String> cell) {
+        if ((key.indexOf('\t') >= 0) || (key.indexOf('\n') >= 0)
+                || (key.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException("Cell keys cannot contain tabs or line breaks: " + key);
+        }
+        if (this.keys.contains(key)) {
+            throw new IllegalArgumentException("Duplicate cell key: " + key);
+        }
+        this.keys.add(key);
+        this.cells.add(cell);
+    }
+
+    public int numCells() {
+        return this.cells.size();
+    }
+
+    /**
+     * Runs all the cells not in the checkpoint and waits for them.
+     *
+     * @return the summary lines of the cells, in the order they were added,
+     * null for cells without a line
+     * @throws RuntimeException if some cells failed, after all the others
+     * were run
+     */
+    public String[] run() throws IOException, InterruptedException {
+        int numCells = this.cells.size();
+        this.lines = new String[numCells];
+        this.finished = new boolean[numCells];
+        this.nextLineToWrite = 0;
+        this.failedKeys = new ArrayList<String>();
+        Map<String, String> done = readCheckpoint();
+        for (int i = 0; i < numCells; i++) {
+            if (done.containsKey(this.keys.get(i))) {
+                this.lines[i] = done.get(this.keys.get(i));
+                this.finished[i] = true;
+            }
+        }
+        if (this.checkpointFile != null) {
+            this.checkpointWriter = new PrintWriter(new FileOutputStream(
+                    this.checkpointFile, true));
+        }
+        if (this.summaryFile != null) {
+            this.summaryWriter = new PrintWriter(new FileOutputStream(
+                    this.summaryFile, false));
+            if (this.summaryHeader != null) {
+                this.summaryWriter.println(this.summaryHeader);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(this.numThreads);
+        try {
+            synchronized (this) {
+                writeFinishedLines();
+            }
+            for (int i = 0; i < numCells; i++) {
+                if (!this.finished[i]) {
+                    final int cell = i;
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            runCell(cell);
+                        }
+                    });
+                }
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting, cells can take hours
+            }
+        } finally {
+            pool.shutdownNow();
+            if (this.checkpointWriter != null) {
+                this.checkpointWriter.close();
+            }
+            if (this.summaryWriter != null) {
+                this.summaryWriter.close();
+            }
+        }
+        if (!this.failedKeys.isEmpty()) {
+            throw new RuntimeException(this.failedKeys.size()
+                    + " experiment(s) failed: " + this.failedKeys);
+        }
+        return this.lines;
+    }
+
+    protected void runCell(int cell) {
+        String line;
+        try {
+            line = this.cells.get(cell).call();
+        } catch (Throwable t) {
+            System.err.println("Experiment " + this.keys.get(cell) + " failed:");
+            t.printStackTrace();
+            synchronized (this) {
+                this.failedKeys.add(this.keys.get(cell));
+                // failed cells are left out of the checkpoint, to be run again
+                this.finished[cell] = true;
+                writeFinishedLines();
+            }
+            return;
+        }
+        synchronized (this) {
+            this.lines[cell] = line;
+            this.finished[cell] = true;
+            if (this.checkpointWriter != null) {
+                this.checkpointWriter.println(escape(this.keys.get(cell)) + '\t'
+                        + (line == null ? "" : '+' + escape(line)));
+                this.checkpointWriter.flush();
+            }
+            writeFinishedLines();
+        }
+    }
+
+    // writes the lines of the cells finished without a gap from the first one
+    protected void writeFinishedLines() {
+        while ((this.nextLineToWrite < this.finished.length)
+                && this.finished[this.nextLineToWrite]) {
+            String line = this.lines[this.nextLineToWrite];
+            if ((this.summaryWriter != null) && (line != null)) {
+                this.summaryWriter.println(line);
+            }
+            this.nextLineToWrite++;
+        }
+        if (this.summaryWriter != null) {
+            this.summaryWriter.flush();
+        }
+    }
+
+    protected Map<String, String> readCheckpoint() throws IOException {
+        Map<String, String> done = new HashMap<String, String>();
+        if ((this.checkpointFile == null) || !this.checkpointFile.exists()) {
+            return done;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(this.checkpointFile));
+        try {
+            String entry;
+            while ((entry = reader.readLine()) != null) {
+                int separator = entry.indexOf('\t');
+                if (separator < 0) {
+                    // partially written by a crashed run
+                    continue;
+                }
+                String line = entry.substring(separator + 1);
+                done.put(unescape(entry.substring(0, separator)),
+                        line.isEmpty() ? null : unescape(line.substring(1)));
+            }
+        } finally {
+            reader.close();
+        }
+        return done;
+    }
+
+    protected static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    protected static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c == '\\') && (i + 1 < s.length())) {
+                char next = s.charAt(++i);
+                sb.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
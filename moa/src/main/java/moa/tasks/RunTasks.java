@@ -20,9 +20,17 @@
  */
 package moa.tasks;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import moa.core.ObjectRepository;
 import moa.options.ClassOption;
+import com.github.javacliparser.FileOption;
 import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
 import com.github.javacliparser.StringOption;
 
 /**
@@ -56,6 +64,10 @@ public class RunTasks extends AuxiliarMainTask {
     public FloatOption incrementValueOption = new FloatOption("incrementValue",
             'i', "Increment value", 0.1);
 
+    public IntOption numThreadsOption = new IntOption("numThreads", 'n',
+            "Number of tasks to run at the same time, 0 for one per processor. When larger than 1, each task writes its own dump files.",
+            1, 0, Integer.MAX_VALUE);
+
     @Override
     public Class<?> getTaskResultType() {
         return this.task.getTaskResultType();
@@ -65,27 +77,80 @@ public class RunTasks extends AuxiliarMainTask {
 
     @Override
     protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
-        Object result = null;
-
-        String commandString = this.taskOption.getValueAsCLIString();
+        Task template = (Task) getPreparedClassOption(this.taskOption);
+        int numThreads = this.numThreadsOption.getValue();
+        List<Task> tasks = new ArrayList<Task>();
         //for each possible value of the parameter
         for (double valueParameter = this.firstValueOption.getValue();
                 valueParameter <= this.lastValueOption.getValue();
                 valueParameter += this.incrementValueOption.getValue()) {
             //Add parameter
-            this.task = (Task) getPreparedClassOption(this.taskOption);
-            if (this.task instanceof EvaluatePrequential) {
-                String classifier = ((EvaluatePrequential) this.task).learnerOption.getValueAsCLIString();
-                ((EvaluatePrequential) this.task).learnerOption.setValueViaCLIString(classifier + " -" + classifierParameterOption.getValue() + " " + valueParameter);
+            Task task = (Task) template.copy();
+            if (task instanceof EvaluatePrequential) {
+                EvaluatePrequential prequential = (EvaluatePrequential) task;
+                String classifier = prequential.learnerOption.getValueAsCLIString();
+                prequential.learnerOption.setValueViaCLIString(classifier + " -" + classifierParameterOption.getValue() + " " + valueParameter);
+                if (numThreads != 1) {
+                    separateFile(prequential.dumpFileOption, valueParameter);
+                    separateFile(prequential.outputPredictionFileOption, valueParameter);
+                }
             }
-            if (this.task instanceof EvaluateInterleavedTestThenTrain) {
-                String classifier = ((EvaluateInterleavedTestThenTrain) this.task).learnerOption.getValueAsCLIString();
-                ((EvaluateInterleavedTestThenTrain) this.task).learnerOption.setValueViaCLIString(classifier + " -" + classifierParameterOption.getValue() + " " + valueParameter);
+            if (task instanceof EvaluateInterleavedTestThenTrain) {
+                EvaluateInterleavedTestThenTrain interleaved = (EvaluateInterleavedTestThenTrain) task;
+                String classifier = interleaved.learnerOption.getValueAsCLIString();
+                interleaved.learnerOption.setValueViaCLIString(classifier + " -" + classifierParameterOption.getValue() + " " + valueParameter);
+                if (numThreads != 1) {
+                    separateFile(interleaved.dumpFileOption, valueParameter);
+                }
+            }
+            tasks.add(task);
+        }
+        if (tasks.isEmpty()) {
+            return null;
+        }
+        this.task = tasks.get(tasks.size() - 1);
+        if (numThreads == 1) {
+            //Run tasks
+            Object result = null;
+            for (Task task : tasks) {
+                this.task = task;
+                result = task.doTask(monitor, repository);
             }
-            //Run task
-            result = this.task.doTask(monitor, repository);
-            //System.out.println(((AbstractOptionHandler) this.task).getCLICreationString(Task.class));
+            return result;
+        }
+        final Object[] results = new Object[tasks.size()];
+        ExperimentGridExecutor executor = new ExperimentGridExecutor(numThreads);
+        for (int i = 0; i < tasks.size(); i++) {
+            final int index = i;
+            final Task task = tasks.get(i);
+            executor.addCell("task " + i, new Callable<String>() {
+                @Override
+                public String call() {
+                    results[index] = task.doTask();
+                    return null;
+                }
+            });
+        }
+        monitor.setCurrentActivityDescription("Running " + tasks.size() + " tasks...");
+        try {
+            executor.run();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return results[results.length - 1];
+    }
+
+    // runs in parallel must not write to the same file
+    protected static void separateFile(FileOption option, double valueParameter) {
+        File file = option.getFile();
+        if (file != null) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            name = dot < 0 ? name + "_" + valueParameter
+                    : name.substring(0, dot) + "_" + valueParameter + name.substring(dot);
+            option.setValue(new File(file.getParentFile(), name).getPath());
         }
-        return result;
     }
 }
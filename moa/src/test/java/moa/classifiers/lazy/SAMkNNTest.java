@@ -0,0 +1,157 @@
+/*
+ *    SAMkNNTest.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.classifiers.lazy;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import moa.classifiers.AbstractClassifier;
+import moa.core.Utils;
+import moa.streams.generators.RandomRBFGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Compares the votes of SAMkNN, which keeps the STM distances in a ring of
+ * triangular rows, with the votes recorded with the previous implementation,
+ * which kept a full distance matrix. The classes are swapped regularly, so
+ * the STM shrinks many times. With missing values, the previous
+ * implementation ranked the NaN distances after the others, as the current
+ * one does.
+ */
+public class SAMkNNTest {
+
+	protected static final int NUM_INSTANCES = 3000;
+
+	protected static final int SWAP_PERIOD = 500;
+
+	protected static final int INSPECTION_PERIOD = 250;
+
+	protected static final double EPS = 1e-9;
+
+	/**
+	 * Runs a learner prequentially. The memory holds more instances than the
+	 * stream, so the LTM, whose compression is randomized, is never
+	 * compressed.
+	 *
+	 * @param missing probability of an attribute value being missing
+	 * @param correct receives the number of correct predictions
+	 * @return the votes at every inspection point
+	 */
+	protected double[][] run(AbstractClassifier learner, String options, double missing, int[] correct) {
+		RandomRBFGenerator stream = new RandomRBFGenerator();
+		stream.prepareForUse();
+		learner.getOptions().setViaCLIString(options);
+		learner.prepareForUse();
+		learner.setModelContext(stream.getHeader());
+
+		Random random = new Random(1);
+		double[][] inspected = new double[NUM_INSTANCES / INSPECTION_PERIOD][];
+		correct[0] = 0;
+		for (int i = 0; i < NUM_INSTANCES; i++) {
+			Instance inst = stream.nextInstance().getData();
+			if ((i / SWAP_PERIOD) % 2 == 1) {
+				inst.setClassValue(1 - inst.classValue());
+			}
+			for (int j = 0; j < inst.numAttributes(); j++) {
+				if (j != inst.classIndex() && random.nextDouble() < missing) {
+					inst.setMissing(j);
+				}
+			}
+			double[] votes = learner.getVotesForInstance(inst);
+			if (Utils.maxIndex(votes) == (int) inst.classValue()) {
+				correct[0]++;
+			}
+			if ((i + 1) % INSPECTION_PERIOD == 0) {
+				inspected[i / INSPECTION_PERIOD] = votes;
+			}
+			learner.trainOnInstance(inst);
+		}
+		return inspected;
+	}
+
+	protected void checkVotes(String options, double missing, double[][] expectedVotes, int expectedCorrect) {
+		int[] correct = new int[1];
+		double[][] votes = run(new SAMkNN(), options, missing, correct);
+		for (int i = 0; i < expectedVotes.length; i++) {
+			assertArrayEquals("votes at instance " + (i + 1) * INSPECTION_PERIOD, expectedVotes[i], votes[i], EPS);
+		}
+		assertEquals(expectedCorrect, correct[0]);
+	}
+
+	@Test
+	public void testVotes() {
+		// no missing values
+		checkVotes("-w 5000", 0.0, new double[][]{
+				{14.867756182013949, 1.2643975284323548},
+				{4.5259974842330415, 1.218786815901689},
+				{6.03386455603074, 1.3242142797156047},
+				{4.96016632383906, 0.0},
+				{3.5720025270685363, 16.671421382065674},
+				{0.0, 15.864205216446026},
+				{0.0, 53.53433372484106},
+				{0.0, 7.108572094248445},
+				{0.0, 7.348706252014822},
+				{0.0, 12.702346125497787},
+				{2.82928932034215, 2.328249460898163},
+				{21.56637690288494, 0.0}
+		}, 2086);
+	}
+
+	@Test
+	public void testVotesWithMissingValues() {
+		// the distances to instances with missing values are NaN
+		checkVotes("-w 5000", 0.02, new double[][]{
+				{Double.NaN, Double.NaN},
+				{5.4933160410231245, 0.0},
+				{Double.NaN, Double.NaN},
+				{4.96016632383906, 0.0},
+				{3.5720025270685363, 16.671421382065674},
+				{0.0, 14.54931240828192},
+				{0.0, 53.53433372484106},
+				{0.0, 5.385830147059101},
+				{Double.NaN, Double.NaN},
+				{0.0, 12.702346125497787},
+				{Double.NaN, Double.NaN},
+				{9.433552573812682, 0.0}
+		}, 1923);
+	}
+
+	@Test
+	public void testVotesWithMissingValuesRecalculatingError() {
+		// the STM size is adapted from errors computed again on the stored distances
+		checkVotes("-w 5000 -r", 0.02, new double[][]{
+				{Double.NaN, 0.0},
+				{5.4933160410231245, 0.0},
+				{Double.NaN, 0.0},
+				{4.952009073997744, 0.0},
+				{3.5720025270685363, 16.671421382065674},
+				{0.0, 14.54931240828192},
+				{0.0, 55.52182945009593},
+				{0.0, 5.631447547503069},
+				{Double.NaN, Double.NaN},
+				{0.0, 12.80067524120118},
+				{0.0, Double.NaN},
+				{21.593240271780687, 0.0}
+		}, 2035);
+	}
+}
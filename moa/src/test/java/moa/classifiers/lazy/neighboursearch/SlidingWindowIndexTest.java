@@ -0,0 +1,203 @@
+/*
+ *    SlidingWindowIndexTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.lazy.neighboursearch;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Checks that the window index finds the same neighbours as a linear search
+ * over an Instances window that goes through the same additions and
+ * deletions.
+ */
+public class SlidingWindowIndexTest {
+
+	protected static final int NUM_ATTRIBUTES = 8;
+
+	protected static Instances newHeader(int classIndex) {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		for (int a = 0; a < NUM_ATTRIBUTES; a++) {
+			if (a == classIndex) {
+				attributes.add(new Attribute("class", Arrays.asList("a", "b", "c")));
+			} else if (a % 3 == 2) {
+				attributes.add(new Attribute("nominal" + a, Arrays.asList("u", "v", "w", "x")));
+			} else {
+				attributes.add(new Attribute("numeric" + a));
+			}
+		}
+		Instances header = new Instances("test", attributes, 0);
+		header.setClassIndex(classIndex);
+		return header;
+	}
+
+	/**
+	 * Creates an instance, with a few missing values if asked, and numeric
+	 * values taking few distinct values if asked, so that distances tie.
+	 */
+	protected static Instance newInstance(Instances header, Random random,
+			boolean missing, boolean discrete) {
+		Instance inst = new DenseInstance(header.numAttributes());
+		inst.setDataset(header);
+		for (int a = 0; a < header.numAttributes(); a++) {
+			if (header.attribute(a).isNominal()) {
+				inst.setValue(a, random.nextInt(header.attribute(a).numValues()));
+			} else if (discrete) {
+				inst.setValue(a, random.nextInt(3));
+			} else {
+				// a few outliers change the ranges of the attributes
+				inst.setValue(a, random.nextGaussian() * (a + 1)
+						+ (random.nextDouble() < 0.01 ? 50 : 0));
+			}
+			if (missing && (a != header.classIndex()) && (random.nextDouble() < 0.05)) {
+				inst.setMissing(a);
+			}
+		}
+		return inst;
+	}
+
+	protected static List<String> sortedValues(List<Instance> instances) {
+		List<String> values = new ArrayList<String>();
+		for (Instance inst : instances) {
+			values.add(Arrays.toString(inst.toDoubleArray()));
+		}
+		Collections.sort(values);
+		return values;
+	}
+
+	protected static void checkNeighbours(int classIndex, boolean missing,
+			boolean discrete) throws Exception {
+		checkNeighbours(classIndex, missing, discrete, -1);
+	}
+
+	/**
+	 * Checks the neighbours over a window, where the values of the numeric
+	 * attribute unobserved are always missing, if it is not -1, while the
+	 * targets not in the window have values for it. The index takes such
+	 * an attribute as one without range, where LinearNNSearch normalizes the
+	 * values to NaN, so it is compared with a linear search for the target
+	 * with the value missing, which gives the same distances.
+	 */
+	protected static void checkNeighbours(int classIndex, boolean missing,
+			boolean discrete, int unobserved) throws Exception {
+		Random random = new Random(classIndex + (missing ? 10 : 0) + (discrete ? 20 : 0));
+		Instances header = newHeader(classIndex);
+		Instances window = new Instances(header, 0);
+		SlidingWindowIndex index = new SlidingWindowIndex(window);
+		for (int step = 0; step < 2000; step++) {
+			Instance inst = newInstance(header, random, missing, discrete);
+			if (window.numInstances() > 0) {
+				// the target is sometimes in the window, and left out of its
+				// own neighbours
+				Instance target = random.nextInt(5) == 0
+						? window.instance(random.nextInt(window.numInstances())) : inst;
+				int k = Math.min(1 + random.nextInt(7), window.numInstances());
+				Instance expectedTarget = target;
+				if ((unobserved >= 0) && !target.isMissing(unobserved)) {
+					expectedTarget = target.copy();
+					expectedTarget.setMissing(unobserved);
+				}
+				Instances expected = new LinearNNSearch(window).kNearestNeighbours(expectedTarget, k);
+				List<Instance> expectedNeighbours = new ArrayList<Instance>();
+				for (int i = 0; i < expected.numInstances(); i++) {
+					expectedNeighbours.add(expected.instance(i));
+				}
+				List<Instance> neighbours = new ArrayList<Instance>();
+				int previous = -1;
+				for (int position : index.kNearestNeighbours(target, k)) {
+					assertTrue(position > previous);
+					neighbours.add(window.instance(position));
+					previous = position;
+				}
+				assertEquals("neighbours at step " + step,
+						sortedValues(expectedNeighbours), sortedValues(neighbours));
+
+				double[] distances = index.euclideanDistances(inst);
+				for (int p = 0; p < window.numInstances(); p++) {
+					double sum = 0;
+					for (int i = 0; i < inst.numInputAttributes(); i++) {
+						double diff = inst.valueInputAttribute(i)
+								- window.instance(p).valueInputAttribute(i);
+						sum += diff * diff;
+					}
+					assertEquals(Math.sqrt(sum), distances[p], 0.0);
+				}
+			}
+			if (unobserved >= 0) {
+				// the targets have values the window does not have
+				inst.setMissing(unobserved);
+			}
+			window.add(inst);
+			index.add(window.instance(window.numInstances() - 1));
+			// deletes the oldest instances like a sliding window, and others
+			// like the compression of SAMkNN
+			if (random.nextBoolean() && window.numInstances() > 300) {
+				window.delete(0);
+				index.delete(0);
+			}
+			if (random.nextInt(4) == 0 && window.numInstances() > 1) {
+				int position = random.nextInt(window.numInstances());
+				window.delete(position);
+				index.delete(position);
+			}
+			assertEquals(window.numInstances(), index.size());
+			for (int p = 0; p < window.numInstances(); p++) {
+				assertSame(window.instance(p), index.instance(p));
+			}
+		}
+	}
+
+	@Test
+	public void testNumericAndNominalAttributes() throws Exception {
+		checkNeighbours(NUM_ATTRIBUTES - 1, false, false);
+	}
+
+	@Test
+	public void testClassInTheMiddle() throws Exception {
+		checkNeighbours(3, false, false);
+	}
+
+	@Test
+	public void testMissingValues() throws Exception {
+		checkNeighbours(NUM_ATTRIBUTES - 1, true, false);
+		checkNeighbours(3, true, false);
+	}
+
+	@Test
+	public void testAttributeWithoutValues() throws Exception {
+		checkNeighbours(NUM_ATTRIBUTES - 1, false, false, 0);
+		checkNeighbours(3, true, false, 1);
+	}
+
+	@Test
+	public void testTiedDistances() throws Exception {
+		checkNeighbours(NUM_ATTRIBUTES - 1, false, true);
+		checkNeighbours(3, true, true);
+	}
+}
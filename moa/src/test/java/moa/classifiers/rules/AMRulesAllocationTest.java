@@ -0,0 +1,191 @@
+/*
+ *    AMRulesAllocationTest.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.classifiers.rules;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import moa.classifiers.AbstractClassifier;
+import moa.core.Measurement;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Checks that AMRules does not build debug messages it does not print, and
+ * that its training loop does not allocate more than its model needs.
+ */
+public class AMRulesAllocationTest {
+
+	protected static final int NUM_ATTRIBUTES = 20;
+
+	// budgets of allocations per trained instance, in bytes, measured on the
+	// current code with about a third of headroom. Building the debug message
+	// of a single instance costs more than any of them.
+	protected static final long STEADY_BYTES_PER_INSTANCE = 4 * 1024;
+
+	protected static final long STEADY_BYTES_PER_INSTANCE_OLD = 512;
+
+	protected static final long RULES_BYTES_PER_INSTANCE = 16 * 1024;
+
+	protected static final long RULES_BYTES_PER_INSTANCE_OLD = 2 * 1024;
+
+	/**
+	 * Instance counting the calls to toString, which allocates a lot, as
+	 * the debug messages of every instance would.
+	 */
+	protected static class CountingInstance extends DenseInstance {
+
+		private static final long serialVersionUID = 1L;
+
+		protected int[] count;
+
+		public CountingInstance(double[] values, int[] count) {
+			super(1.0, values);
+			this.count = count;
+		}
+
+		@Override
+		public String toString() {
+			count[0]++;
+			char[] text = new char[64 * 1024];
+			Arrays.fill(text, ' ');
+			return new String(text);
+		}
+	}
+
+	protected Instance[] newInstances(int numInstances, int[] count) {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+			attributes.add(new Attribute("x" + i));
+		}
+		attributes.add(new Attribute("y"));
+		Instances data = new Instances("allocation", attributes, 0);
+		data.setClassIndex(NUM_ATTRIBUTES);
+		InstancesHeader header = new InstancesHeader(data);
+		Random random = new Random(1);
+		Instance[] instances = new Instance[numInstances];
+		for (int n = 0; n < numInstances; n++) {
+			// few distinct values, so the attribute observers stop growing
+			double[] values = new double[NUM_ATTRIBUTES + 1];
+			for (int i = 0; i < NUM_ATTRIBUTES; i++) {
+				values[i] = random.nextInt(10) / 10.0;
+			}
+			values[NUM_ATTRIBUTES] = (values[0] > 0.5 ? 2.0 : 0.0) + values[1];
+			instances[n] = new CountingInstance(values, count);
+			instances[n].setDataset(header);
+		}
+		return instances;
+	}
+
+	protected AbstractClassifier newLearner(AbstractClassifier learner, String options, Instance[] instances) {
+		learner.getOptions().setViaCLIString(options);
+		learner.setModelContext(new InstancesHeader(instances[0].dataset()));
+		learner.prepareForUse();
+		return learner;
+	}
+
+	protected void checkMessagesNotBuilt(AbstractClassifier learner) {
+		int[] count = new int[1];
+		Instance[] instances = newInstances(3000, count);
+		newLearner(learner, "-g 50", instances);
+		for (Instance instance : instances) {
+			learner.getVotesForInstance(instance);
+			learner.trainOnInstance(instance);
+		}
+		assertEquals(0, count[0]);
+	}
+
+	@Test
+	public void testMessagesNotBuilt() {
+		checkMessagesNotBuilt(new AMRulesRegressor());
+		checkMessagesNotBuilt(new AMRulesRegressorOld());
+	}
+
+	protected int numRules(AbstractClassifier learner) {
+		for (Measurement measurement : learner.getModelMeasurements()) {
+			if (measurement.getName().equals("rules (number)")) {
+				return (int) measurement.getValue();
+			}
+		}
+		throw new AssertionError("No number of rules");
+	}
+
+	/**
+	 * Trains on half of the instances, then measures the allocations of the
+	 * other half.
+	 *
+	 * @return the learner, trained on all the instances
+	 */
+	protected AbstractClassifier checkTrainingAllocation(AbstractClassifier learner,
+			String options, long bytesPerInstanceBudget) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		int[] count = new int[1];
+		Instance[] instances = newInstances(4000, count);
+		newLearner(learner, options, instances);
+		int warmup = instances.length / 2;
+		for (int i = 0; i < warmup; i++) {
+			learner.trainOnInstance(instances[i]);
+		}
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = warmup; i < instances.length; i++) {
+			learner.trainOnInstance(instances[i]);
+		}
+		long bytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+		long bytesPerInstance = bytes / (instances.length - warmup);
+		assertTrue(learner.getClass().getSimpleName() + " " + options + " allocated " + bytesPerInstance
+				+ " bytes per instance", bytesPerInstance < bytesPerInstanceBudget);
+		return learner;
+	}
+
+	@Test
+	public void testSteadyStateAllocation() {
+		// no expansions, the model stops growing once it has seen every value
+		checkTrainingAllocation(new AMRulesRegressor(), "-g 1000000", STEADY_BYTES_PER_INSTANCE);
+		checkTrainingAllocation(new AMRulesRegressorOld(), "-g 1000000", STEADY_BYTES_PER_INSTANCE_OLD);
+	}
+
+	@Test
+	public void testAllocationWithRules() {
+		// rules are created and expanded before and during the measures, so
+		// the rule index and the covering rules are exercised
+		AbstractClassifier learner = checkTrainingAllocation(new AMRulesRegressor(), "-g 200", RULES_BYTES_PER_INSTANCE);
+		assertTrue(numRules(learner) > 2);
+		learner = checkTrainingAllocation(new AMRulesRegressorOld(), "-g 200", RULES_BYTES_PER_INSTANCE_OLD);
+		assertTrue(numRules(learner) > 2);
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ *    RuleCoverageIndexTest.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+package moa.classifiers.rules.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import moa.classifiers.rules.core.conditionaltests.NumericAttributeBinaryRulePredicate;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Checks that the rules found by the coverage index are the ones whose
+ * predicates all hold, while rules are added, inserted, removed and
+ * expanded.
+ */
+public class RuleCoverageIndexTest {
+
+	protected static final int NUM_NUMERIC = 5;
+
+	protected static final int NUM_NOMINAL = 2;
+
+	protected static final int NUM_VALUES = 4;
+
+	protected static InstancesHeader newHeader(int classIndex) {
+		List<Attribute> inputs = new ArrayList<Attribute>();
+		for (int a = 0; a < NUM_NUMERIC; a++) {
+			inputs.add(new Attribute("numeric" + a));
+		}
+		for (int a = 0; a < NUM_NOMINAL; a++) {
+			inputs.add(new Attribute("nominal" + a, Arrays.asList("a", "b", "c", "d")));
+		}
+		List<Attribute> attributes = new ArrayList<Attribute>(inputs);
+		attributes.add(classIndex, new Attribute("target"));
+		InstancesHeader header = new InstancesHeader(new Instances("test",
+				attributes, 0));
+		header.setClassIndex(classIndex);
+		return header;
+	}
+
+	/**
+	 * Creates an instance with few distinct values, so that they often equal
+	 * the thresholds of the predicates, and a few missing values.
+	 */
+	protected static Instance newInstance(InstancesHeader header, Random random) {
+		Instance inst = new DenseInstance(header.numAttributes());
+		inst.setDataset(header);
+		for (int a = 0; a < header.numAttributes(); a++) {
+			if (a == header.classIndex()) {
+				inst.setValue(a, random.nextDouble());
+			} else if (random.nextDouble() < 0.05) {
+				inst.setMissing(a);
+			} else if (header.attribute(a).isNominal()) {
+				inst.setValue(a, random.nextInt(NUM_VALUES));
+			} else {
+				inst.setValue(a, random.nextInt(5) / 2.0);
+			}
+		}
+		return inst;
+	}
+
+	/**
+	 * Creates a predicate of one of the types the rule learners use. Negated
+	 * numeric binary tests and NaN thresholds are not indexed, and are
+	 * evaluated directly.
+	 */
+	protected static Predicate newPredicate(Random random) {
+		double threshold = random.nextInt(5) / 2.0 + (random.nextBoolean() ? 0.25 : 0.0);
+		switch (random.nextInt(4)) {
+		case 0:
+			return new NumericRulePredicate(random.nextInt(NUM_NUMERIC),
+					threshold, random.nextBoolean());
+		case 1:
+			return new NominalRulePredicate(NUM_NUMERIC + random.nextInt(NUM_NOMINAL),
+					random.nextInt(NUM_VALUES), random.nextBoolean());
+		case 2:
+			NumericAttributeBinaryRulePredicate test = new NumericAttributeBinaryRulePredicate(
+					random.nextInt(NUM_NUMERIC), threshold, random.nextInt(3));
+			if (random.nextInt(4) == 0) {
+				test.negateCondition();
+			}
+			return test;
+		default:
+			return new NumericRulePredicate(random.nextInt(NUM_NUMERIC),
+					random.nextInt(10) == 0 ? Double.NaN : threshold, random.nextBoolean());
+		}
+	}
+
+	protected static List<Predicate> newPredicates(Random random) {
+		List<Predicate> predicates = new ArrayList<Predicate>();
+		int numPredicates = random.nextInt(4);
+		for (int i = 0; i < numPredicates; i++) {
+			predicates.add(newPredicate(random));
+		}
+		return predicates;
+	}
+
+	protected static BitSet linearScan(List<List<Predicate>> rules, Instance inst) {
+		BitSet covering = new BitSet();
+		for (int pos = 0; pos < rules.size(); pos++) {
+			boolean isCovering = true;
+			for (Predicate predicate : rules.get(pos)) {
+				if (!predicate.evaluate(inst)) {
+					isCovering = false;
+					break;
+				}
+			}
+			if (isCovering) {
+				covering.set(pos);
+			}
+		}
+		return covering;
+	}
+
+	protected static void checkCovering(int classIndex) {
+		Random random = new Random(classIndex);
+		InstancesHeader header = newHeader(classIndex);
+		RuleCoverageIndex<List<Predicate>> index = new RuleCoverageIndex<List<Predicate>>();
+		List<List<Predicate>> rules = new ArrayList<List<Predicate>>();
+		for (int step = 0; step < 3000; step++) {
+			int operation = random.nextInt(10);
+			if (rules.isEmpty() || operation < 4) {
+				List<Predicate> rule = newPredicates(random);
+				if (random.nextBoolean()) {
+					rules.add(rule);
+					index.add(rule, rule);
+				} else {
+					int position = random.nextInt(rules.size() + 1);
+					rules.add(position, rule);
+					index.insert(position, rule, rule);
+				}
+			} else if (operation < 7 || rules.size() > 60) {
+				int position = random.nextInt(rules.size());
+				rules.remove(position);
+				index.remove(position);
+			} else {
+				// expands a rule with a new predicate, as a split does
+				int position = random.nextInt(rules.size());
+				rules.get(position).add(newPredicate(random));
+				index.update(position, rules.get(position));
+			}
+			assertEquals(rules.size(), index.size());
+			for (int pos = 0; pos < rules.size(); pos++) {
+				assertSame(rules.get(pos), index.get(pos));
+			}
+			for (int i = 0; i < 10; i++) {
+				Instance inst = newInstance(header, random);
+				assertEquals("covering rules at step " + step,
+						linearScan(rules, inst), index.getCovering(inst));
+			}
+		}
+		index.clear();
+		assertEquals(0, index.size());
+		assertTrue(index.getCovering(newInstance(header, random)).isEmpty());
+	}
+
+	@Test
+	public void testClassLast() {
+		checkCovering(NUM_NUMERIC + NUM_NOMINAL);
+	}
+
+	@Test
+	public void testClassFirst() {
+		checkCovering(0);
+	}
+
+	@Test
+	public void testClassInTheMiddle() {
+		checkCovering(2);
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ *    CompiledHoeffdingTreeTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.trees;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import moa.classifiers.trees.HoeffdingTree.FoundNode;
+import moa.classifiers.trees.HoeffdingTree.Node;
+import moa.streams.ConceptDriftStream;
+import moa.streams.InstanceStream;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Checks that the flattened copy of a Hoeffding tree sorts instances to the
+ * same leaves and gives the same votes as the tree itself, while the tree
+ * grows, deactivates leaves and swaps subtrees.
+ */
+public class CompiledHoeffdingTreeTest {
+
+	protected static HoeffdingTree newTree(HoeffdingTree tree, String options)
+			throws Exception {
+		tree.getOptions().setViaCLIString(options);
+		tree.prepareForUse();
+		tree.resetLearning();
+		return tree;
+	}
+
+	protected static List<Instance> testInstances(InstanceStream stream,
+			int numInstances) {
+		// some values are missing, so that instances stop at split nodes
+		Random random = new Random(1);
+		List<Instance> instances = new ArrayList<Instance>();
+		for (int i = 0; i < numInstances; i++) {
+			Instance inst = stream.nextInstance().getData();
+			for (int j = 0; j < inst.numAttributes(); j++) {
+				if ((j != inst.classIndex()) && (random.nextDouble() < 0.05)) {
+					inst.setMissing(j);
+				}
+			}
+			instances.add(inst);
+		}
+		return instances;
+	}
+
+	protected static double[] padded(double[] votes, int length) {
+		return Arrays.copyOf(votes, Math.max(votes.length, length));
+	}
+
+	/**
+	 * Checks that the flattened copy kept up to date by the tree, and a copy
+	 * compiled from scratch, find the node the tree sorts the instances to.
+	 */
+	protected static void assertSameLeaves(HoeffdingTree tree,
+			List<Instance> instances) {
+		CompiledHoeffdingTree compiled = tree.getCompiledTree();
+		CompiledHoeffdingTree recompiled = new CompiledHoeffdingTree(tree.treeRoot);
+		for (Instance inst : instances) {
+			FoundNode found = tree.treeRoot.filterInstanceToLeaf(inst, null, -1);
+			Node expected = found.node != null ? found.node : found.parent;
+			assertSame(expected, compiled.getNode(compiled.sortInstance(inst)));
+			assertSame(expected, recompiled.getNode(recompiled.sortInstance(inst)));
+		}
+	}
+
+	protected static void checkVotes(String options) throws Exception {
+		HoeffdingTree interpreted = newTree(new HoeffdingTree(), options);
+		HoeffdingTree compiled = newTree(new HoeffdingTree(), options + " -f");
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.prepareForUse();
+		RandomTreeGenerator testStream = new RandomTreeGenerator();
+		testStream.instanceRandomSeedOption.setValue(2);
+		testStream.prepareForUse();
+		List<Instance> instances = testInstances(testStream, 200);
+		int numClasses = stream.getHeader().numClasses();
+		for (int i = 1; i <= 10000; i++) {
+			Instance inst = stream.nextInstance().getData();
+			interpreted.trainOnInstance(inst);
+			compiled.trainOnInstance(inst);
+			if (i % 500 == 0) {
+				assertSameLeaves(compiled, instances);
+				for (Instance testInst : instances) {
+					double[] expected = interpreted.getVotesForInstance(testInst);
+					assertArrayEquals(expected, compiled.getVotesForInstance(testInst), 0.0);
+					assertArrayEquals(padded(expected, numClasses),
+							padded(compiled.getVotesForInstance(testInst,
+									new double[numClasses]), numClasses), 0.0);
+				}
+			}
+		}
+		assertEquals(interpreted.decisionNodeCount, compiled.decisionNodeCount);
+		assertTrue(compiled.decisionNodeCount > 0);
+	}
+
+	@Test
+	public void testMajorityClassLeaves() throws Exception {
+		checkVotes("-l MC");
+	}
+
+	@Test
+	public void testNaiveBayesLeaves() throws Exception {
+		checkVotes("-l NB");
+	}
+
+	@Test
+	public void testNaiveBayesAdaptiveLeaves() throws Exception {
+		checkVotes("-l NBAdaptive");
+	}
+
+	@Test
+	public void testBinarySplits() throws Exception {
+		checkVotes("-b");
+	}
+
+	@Test
+	public void testDeactivatedLeaves() throws Exception {
+		checkVotes("-m 20000 -e 500");
+	}
+
+	@Test
+	public void testHoeffdingAdaptiveTreeSwaps() throws Exception {
+		HoeffdingAdaptiveTree tree = (HoeffdingAdaptiveTree) newTree(
+				new HoeffdingAdaptiveTree(), "-f");
+		ConceptDriftStream stream = new ConceptDriftStream();
+		stream.getOptions().setViaCLIString(
+				"-s (generators.RandomTreeGenerator -r 1) "
+				+ "-d (generators.RandomTreeGenerator -r 3) -p 5000 -w 100");
+		stream.prepareForUse();
+		// instances of the concepts before and after the drift
+		List<Instance> instances = new ArrayList<Instance>();
+		for (int treeSeed : new int[]{1, 3}) {
+			RandomTreeGenerator testStream = new RandomTreeGenerator();
+			testStream.treeRandomSeedOption.setValue(treeSeed);
+			testStream.instanceRandomSeedOption.setValue(2);
+			testStream.prepareForUse();
+			instances.addAll(testInstances(testStream, 100));
+		}
+		int numClasses = stream.getHeader().numClasses();
+		for (int i = 1; i <= 15000; i++) {
+			tree.trainOnInstance((Instance) stream.nextInstance().getData());
+			if (i % 250 == 0) {
+				assertSameLeaves(tree, instances);
+				for (Instance testInst : instances) {
+					assertArrayEquals(padded(tree.getVotesForInstance(testInst), numClasses),
+							padded(tree.getVotesForInstance(testInst,
+									new double[numClasses]), numClasses), 0.0);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ *    HoeffdingTreeSpillTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.trees;
+
+import static org.junit.Assert.*;
+
+import moa.classifiers.trees.HoeffdingTree.ActiveLearningNode;
+import moa.classifiers.trees.HoeffdingTree.FoundNode;
+import moa.classifiers.trees.HoeffdingTree.InactiveLearningNode;
+import moa.classifiers.trees.HoeffdingTree.SpilledLearningNode;
+import moa.core.SerializeUtils;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Checks that the statistics of spilled leaves are restored as they were,
+ * so that a tree whose leaves were spilled and reactivated predicts and
+ * grows like a tree whose leaves stayed in memory.
+ */
+public class HoeffdingTreeSpillTest {
+
+	// naive Bayes leaves use the attribute observers to predict, and a grace
+	// period of 1 makes the split checks independent of the weight seen at
+	// reactivation
+	protected static final String OPTIONS = "-o -l NB -g 1";
+
+	protected static HoeffdingTree newTree() throws Exception {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.getOptions().setViaCLIString(OPTIONS);
+		tree.prepareForUse();
+		tree.resetLearning();
+		return tree;
+	}
+
+	protected static RandomTreeGenerator newStream() {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.prepareForUse();
+		return stream;
+	}
+
+	protected static void train(HoeffdingTree tree, RandomTreeGenerator stream,
+			int numInstances) {
+		for (int i = 0; i < numInstances; i++) {
+			tree.trainOnInstance(stream.nextInstance().getData());
+		}
+	}
+
+	protected static void spillAllLeaves(HoeffdingTree tree) {
+		for (FoundNode found : tree.findLearningNodes()) {
+			if (found.node instanceof ActiveLearningNode) {
+				tree.spillLearningNode((ActiveLearningNode) found.node,
+						found.parent, found.parentBranch);
+			}
+		}
+		assertEquals(0, tree.activeLeafNodeCount);
+	}
+
+	protected static void activateAllLeaves(HoeffdingTree tree) {
+		for (FoundNode found : tree.findLearningNodes()) {
+			assertTrue(found.node instanceof SpilledLearningNode);
+			tree.activateLearningNode((InactiveLearningNode) found.node,
+					found.parent, found.parentBranch);
+		}
+		assertEquals(0, tree.inactiveLeafNodeCount);
+	}
+
+	protected static void assertSameVotes(HoeffdingTree expected,
+			HoeffdingTree actual) {
+		RandomTreeGenerator testStream = newStream();
+		testStream.instanceRandomSeedOption.setValue(2);
+		testStream.restart();
+		for (int i = 0; i < 500; i++) {
+			Instance inst = testStream.nextInstance().getData();
+			assertArrayEquals(expected.getVotesForInstance(inst),
+					actual.getVotesForInstance(inst), 0.0);
+		}
+	}
+
+	@Test
+	public void testRestoredObserversAreUnchanged() throws Exception {
+		HoeffdingTree tree = newTree();
+		train(tree, newStream(), 2000);
+		FoundNode[] leaves = tree.findLearningNodes();
+		byte[][] observers = new byte[leaves.length][];
+		for (int i = 0; i < leaves.length; i++) {
+			observers[i] = SerializeUtils.toByteArray(((ActiveLearningNode) leaves[i].node)
+					.getAttributeObservers());
+		}
+		spillAllLeaves(tree);
+		assertEquals(leaves.length, tree.spillFile.numLiveRecords());
+		leaves = tree.findLearningNodes();
+		for (int i = 0; i < leaves.length; i++) {
+			assertArrayEquals(observers[i], SerializeUtils.toByteArray(
+					((SpilledLearningNode) leaves[i].node).restoreAttributeObservers()));
+		}
+		assertEquals(0, tree.spillFile.numLiveRecords());
+	}
+
+	@Test
+	public void testSpilledTreeGrowsLikeTreeInMemory() throws Exception {
+		HoeffdingTree inMemory = newTree();
+		HoeffdingTree spilled = newTree();
+		RandomTreeGenerator inMemoryStream = newStream();
+		RandomTreeGenerator spilledStream = newStream();
+		for (int round = 0; round < 5; round++) {
+			train(inMemory, inMemoryStream, 1000);
+			train(spilled, spilledStream, 1000);
+			spillAllLeaves(spilled);
+			activateAllLeaves(spilled);
+			assertSameVotes(inMemory, spilled);
+		}
+		assertEquals(inMemory.decisionNodeCount, spilled.decisionNodeCount);
+		assertTrue(inMemory.decisionNodeCount > 0);
+	}
+
+	@Test
+	public void testCopiedSpilledLeavesAreRestored() throws Exception {
+		HoeffdingTree inMemory = newTree();
+		HoeffdingTree spilled = newTree();
+		train(inMemory, newStream(), 3000);
+		train(spilled, newStream(), 3000);
+		spillAllLeaves(spilled);
+		// the copy reads the observers from the spill file of the original
+		HoeffdingTree copy = (HoeffdingTree) spilled.copy();
+		activateAllLeaves(copy);
+		assertSameVotes(inMemory, copy);
+		activateAllLeaves(spilled);
+		assertSameVotes(inMemory, spilled);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ *    ScoreRankTreeTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks the counts of a score rank tree against a list of the scores it
+ * holds, while scores are added and removed.
+ */
+public class ScoreRankTreeTest {
+
+	protected static void assertSameCounts(List<Double> scores,
+			List<Boolean> labels, ScoreRankTree tree, double value) {
+		for (boolean isPositive : new boolean[]{true, false}) {
+			int greater = 0, equal = 0, less = 0;
+			for (int i = 0; i < scores.size(); i++) {
+				if (labels.get(i) == isPositive) {
+					double score = scores.get(i);
+					if (score > value) {
+						greater++;
+					} else if (score == value) {
+						equal++;
+					} else {
+						less++;
+					}
+				}
+			}
+			assertEquals(greater, tree.countGreater(value, isPositive));
+			assertEquals(equal, tree.countEqual(value, isPositive));
+			assertEquals(less, tree.countLess(value, isPositive));
+		}
+	}
+
+	protected static void assertSameScores(List<Double> scores,
+			List<Boolean> labels, ScoreRankTree tree) {
+		TreeMap<Double, int[]> counts = new TreeMap<Double, int[]>();
+		int numPositives = 0;
+		for (int i = 0; i < scores.size(); i++) {
+			int[] count = counts.get(scores.get(i));
+			if (count == null) {
+				count = new int[2];
+				counts.put(scores.get(i), count);
+			}
+			count[labels.get(i) ? 0 : 1]++;
+			numPositives += labels.get(i) ? 1 : 0;
+		}
+		assertEquals(numPositives, tree.numPositives());
+		assertEquals(scores.size() - numPositives, tree.numNegatives());
+		assertEquals(counts.size(), tree.numDistinctScores());
+
+		double[] distinctScores = new double[counts.size()];
+		int[] positives = new int[counts.size()];
+		int[] negatives = new int[counts.size()];
+		assertEquals(counts.size(), tree.getDescending(distinctScores, positives, negatives));
+		int i = 0;
+		for (Double score : counts.descendingKeySet()) {
+			assertEquals(score, distinctScores[i], 0.0);
+			assertEquals(counts.get(score)[0], positives[i]);
+			assertEquals(counts.get(score)[1], negatives[i]);
+			i++;
+		}
+	}
+
+	@Test
+	public void testCountsWhileAddingAndRemoving() {
+		Random random = new Random(1);
+		// starts small so that the tree grows
+		ScoreRankTree tree = new ScoreRankTree(4);
+		List<Double> scores = new ArrayList<Double>();
+		List<Boolean> labels = new ArrayList<Boolean>();
+		for (int i = 0; i < 5000; i++) {
+			if (scores.isEmpty() || (scores.size() < 300 && random.nextDouble() < 0.55)
+					|| random.nextDouble() < 0.45) {
+				// scores with few distinct values, so many of them are tied
+				double score = random.nextInt(50) / 50.0;
+				boolean isPositive = random.nextBoolean();
+				tree.add(score, isPositive);
+				scores.add(score);
+				labels.add(isPositive);
+			} else {
+				int index = random.nextInt(scores.size());
+				tree.remove(scores.remove(index), labels.remove(index));
+			}
+			if (i % 50 == 0) {
+				assertSameScores(scores, labels, tree);
+				for (int j = -1; j <= 50; j++) {
+					assertSameCounts(scores, labels, tree, j / 50.0);
+				}
+				assertSameCounts(scores, labels, tree, random.nextDouble());
+			}
+		}
+		// removes everything, so that all nodes are recycled
+		while (!scores.isEmpty()) {
+			tree.remove(scores.remove(0), labels.remove(0));
+		}
+		assertSameScores(scores, labels, tree);
+		assertEquals(0, tree.countGreater(0.5, true));
+	}
+}
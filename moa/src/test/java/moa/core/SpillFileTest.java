@@ -0,0 +1,121 @@
+/*
+ *    SpillFileTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the records written to a spill file are read back unchanged,
+ * and that the space of released records is reused.
+ */
+public class SpillFileTest {
+
+	protected static byte[] randomRecord(Random random, int length) {
+		byte[] record = new byte[length];
+		random.nextBytes(record);
+		return record;
+	}
+
+	@Test
+	public void testRecordsAreReadBack() throws Exception {
+		Random random = new Random(1);
+		SpillFile file = new SpillFile(1024);
+		try {
+			List<byte[]> records = new ArrayList<byte[]>();
+			List<Long> handles = new ArrayList<Long>();
+			for (int i = 0; i < 100; i++) {
+				byte[] record = randomRecord(random, random.nextInt(300));
+				records.add(record);
+				handles.add(file.write(record));
+			}
+			assertEquals(100, file.numLiveRecords());
+			for (int i = 0; i < records.size(); i++) {
+				byte[] record = records.get(i);
+				assertArrayEquals(record, file.read(handles.get(i), record.length));
+			}
+			// reading does not release the records
+			for (int i = records.size() - 1; i >= 0; i--) {
+				byte[] record = records.get(i);
+				assertArrayEquals(record, file.read(handles.get(i), record.length));
+				file.release(handles.get(i));
+			}
+			assertEquals(0, file.numLiveRecords());
+		} finally {
+			file.close();
+		}
+	}
+
+	@Test
+	public void testRecordsLargerThanSegments() throws Exception {
+		Random random = new Random(2);
+		SpillFile file = new SpillFile(64);
+		try {
+			byte[] small = randomRecord(random, 10);
+			byte[] large = randomRecord(random, 1000);
+			long smallHandle = file.write(small);
+			long largeHandle = file.write(large);
+			assertTrue(file.getFileSize() >= 64 + 1000);
+			assertArrayEquals(large, file.read(largeHandle, large.length));
+			assertArrayEquals(small, file.read(smallHandle, small.length));
+		} finally {
+			file.close();
+		}
+	}
+
+	@Test
+	public void testReleasedSegmentsAreReused() throws Exception {
+		Random random = new Random(3);
+		SpillFile file = new SpillFile(1024);
+		try {
+			// keeps about as many records live as fit in four segments
+			List<byte[]> records = new ArrayList<byte[]>();
+			List<Long> handles = new ArrayList<Long>();
+			long maxFileSize = 0;
+			for (int i = 0; i < 10000; i++) {
+				byte[] record = randomRecord(random, 1 + random.nextInt(100));
+				records.add(record);
+				handles.add(file.write(record));
+				if (records.size() > 80) {
+					int oldest = 0;
+					assertArrayEquals(records.get(oldest),
+							file.read(handles.get(oldest), records.get(oldest).length));
+					file.release(handles.get(oldest));
+					records.remove(oldest);
+					handles.remove(oldest);
+				}
+				maxFileSize = Math.max(maxFileSize, file.getFileSize());
+			}
+			assertEquals(records.size(), file.numLiveRecords());
+			for (int i = 0; i < records.size(); i++) {
+				assertArrayEquals(records.get(i),
+						file.read(handles.get(i), records.get(i).length));
+			}
+			// 80 records of at most 100 bytes span at most 9 segments, and a
+			// file that does not reuse them would hold the 500KB written
+			assertTrue("file grew to " + maxFileSize, maxFileSize <= 10 * 1024);
+		} finally {
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ *    FastWindowClassificationPerformanceEvaluatorTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import moa.core.InstanceExample;
+import moa.core.Measurement;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Checks that the fast sliding window evaluator gives the same measurements
+ * as WindowClassificationPerformanceEvaluator.
+ */
+public class FastWindowClassificationPerformanceEvaluatorTest {
+
+	protected static final int NUM_CLASSES = 4;
+
+	protected static final String OPTIONS = "-o -p -r -f";
+
+	protected static InstancesHeader newHeader() {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("x"));
+		List<String> classValues = new ArrayList<String>();
+		for (int i = 0; i < NUM_CLASSES; i++) {
+			classValues.add("c" + i);
+		}
+		attributes.add(new Attribute("class", classValues));
+		InstancesHeader header = new InstancesHeader(new Instances("test",
+				attributes, 0));
+		header.setClassIndex(1);
+		return header;
+	}
+
+	protected static void assertSameMeasurements(Measurement[] expected,
+			Measurement[] actual, int numResults) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			String name = expected[i].getName();
+			assertEquals(name, actual[i].getName());
+			assertEquals(name + " after " + numResults + " results",
+					expected[i].getValue(), actual[i].getValue(), 1e-9);
+		}
+	}
+
+	protected static void checkMeasurements(int width, double outOfRangeFraction)
+			throws Exception {
+		WindowClassificationPerformanceEvaluator window = new WindowClassificationPerformanceEvaluator();
+		window.getOptions().setViaCLIString(OPTIONS + " -w " + width);
+		window.prepareForUse();
+		FastWindowClassificationPerformanceEvaluator fast = new FastWindowClassificationPerformanceEvaluator();
+		fast.getOptions().setViaCLIString(OPTIONS + " -w " + width);
+		fast.prepareForUse();
+
+		InstancesHeader header = newHeader();
+		Random random = new Random(width);
+		double[] weights = {1.0, 1.0, 1.0, 0.5, 2.0, 0.0};
+		for (int i = 1; i <= 3000; i++) {
+			// skewed classes, drifting every 500 results, so that the
+			// majority class and kappa-M change
+			int trueClass = random.nextDouble() < 0.6 ? (i / 500) % NUM_CLASSES
+					: random.nextInt(NUM_CLASSES);
+			Instance inst = new DenseInstance(weights[random.nextInt(weights.length)],
+					new double[]{random.nextDouble(), trueClass});
+			inst.setDataset(header);
+			double[] votes = new double[random.nextDouble() < outOfRangeFraction
+					? NUM_CLASSES + 2 : NUM_CLASSES];
+			for (int j = 0; j < votes.length; j++) {
+				votes[j] = random.nextDouble();
+			}
+			// mostly right predictions
+			if (random.nextDouble() < 0.5) {
+				votes[trueClass] += 1.0;
+			}
+			InstanceExample example = new InstanceExample(inst);
+			window.addResult(example, votes);
+			fast.addResult(example, votes);
+			if (i % 10 == 0) {
+				assertSameMeasurements(window.getPerformanceMeasurements(),
+						fast.getPerformanceMeasurements(), i);
+			}
+		}
+	}
+
+	@Test
+	public void testSmallWindow() throws Exception {
+		checkMeasurements(10, 0.0);
+	}
+
+	@Test
+	public void testLargeWindow() throws Exception {
+		checkMeasurements(1000, 0.0);
+	}
+
+	@Test
+	public void testOutOfRangePredictions() throws Exception {
+		checkMeasurements(100, 0.05);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ *    WindowAUCImbalancedPerformanceEvaluatorTest.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+import moa.evaluation.WindowAUCImbalancedPerformanceEvaluator.Estimator;
+
+import org.junit.Test;
+
+/**
+ * Checks the AUC maintained incrementally by the windowed AUC evaluator
+ * against the AUC recomputed from all the pairs of the window.
+ */
+public class WindowAUCImbalancedPerformanceEvaluatorTest {
+
+	/**
+	 * AUC of the examples, computed from all (positive, negative) pairs,
+	 * ties counting as a half.
+	 */
+	protected static double recomputeAUC(LinkedList<double[]> window) {
+		double numPos = 0, numNeg = 0, correctlyRankedPairs = 0;
+		for (double[] positive : window) {
+			if (positive[1] == 1.0) {
+				numPos++;
+				for (double[] negative : window) {
+					if (negative[1] == 0.0) {
+						if (positive[0] > negative[0]) {
+							correctlyRankedPairs += 1.0;
+						} else if (positive[0] == negative[0]) {
+							correctlyRankedPairs += 0.5;
+						}
+					}
+				}
+			} else {
+				numNeg++;
+			}
+		}
+		if (numPos == 0 || numNeg == 0) {
+			return 1;
+		}
+		return correctlyRankedPairs / (numPos * numNeg);
+	}
+
+	protected static void checkAUC(int width, int numExamples) {
+		WindowAUCImbalancedPerformanceEvaluator evaluator = new WindowAUCImbalancedPerformanceEvaluator();
+		evaluator.widthOption.setValue(width);
+		evaluator.reset(2);
+		Estimator estimator = evaluator.getAucEstimator();
+		Random random = new Random(width);
+		LinkedList<double[]> window = new LinkedList<double[]>();
+		double holdoutAUC = 0;
+		for (int i = 0; i < numExamples; i++) {
+			if (width > 0 && i % width == 0) {
+				holdoutAUC = window.isEmpty() ? 0 : recomputeAUC(window);
+			}
+			// imbalanced labels, and scores with few distinct values and
+			// better for positives, so that ties and runs of a label happen
+			boolean isPositive = random.nextDouble() < 0.2;
+			double score = Math.min(random.nextInt(20) + (isPositive ? 5 : 0), 20) / 20.0;
+			estimator.add(score, isPositive, random.nextBoolean());
+			window.add(new double[]{score, isPositive ? 1.0 : 0.0});
+			if (width > 0 && window.size() > width) {
+				window.removeFirst();
+			}
+			assertEquals("AUC after " + (i + 1) + " examples",
+					recomputeAUC(window), estimator.getAUC(), 1e-12);
+			if (width > 0) {
+				assertEquals("holdout AUC after " + (i + 1) + " examples",
+						holdoutAUC, estimator.getHoldoutAUC(), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void testSmallWindow() {
+		checkAUC(10, 1000);
+	}
+
+	@Test
+	public void testLargeWindow() {
+		checkAUC(200, 2000);
+	}
+
+	@Test
+	public void testWithoutWindow() {
+		checkAUC(0, 500);
+	}
+}